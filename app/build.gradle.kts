@@ -16,6 +16,20 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Point Firestore at the local emulator (10.0.2.2 is the host from the Android emulator)
+        buildConfigField("boolean", "USE_FIRESTORE_EMULATOR", "false")
+        buildConfigField("String", "FIRESTORE_EMULATOR_HOST", "\"10.0.2.2\"")
+        buildConfigField("int", "FIRESTORE_EMULATOR_PORT", "8080")
+
+        // Map tiles: cache budget for browsed tiles, and our own z/x/y tile server.
+        // Empty uses OSM's servers, which do not allow pre-seeding.
+        buildConfigField("int", "TILE_CACHE_MAX_MB", "300")
+        buildConfigField("String", "TILE_SERVER_URL", "\"\"")
+    }
+
+    buildFeatures {
+        buildConfig = true
     }
 
     buildTypes {
@@ -26,6 +40,27 @@ android {
                 "proguard-rules.pro"
             )
         }
+        // Release-like build for the :benchmark module, debuggable builds skew timings
+        create("benchmark") {
+            initWith(getByName("release"))
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+        }
+    }
+    // Load harness shared by the JVM fake and the emulator-backed instrumented run
+    sourceSets {
+        getByName("test").java.srcDir("src/sharedTest/java")
+        getByName("androidTest").java.srcDir("src/sharedTest/java")
+    }
+    // Forward -Dloadtest.* from the Gradle command line into the unit test JVM
+    testOptions {
+        // FirebaseFirestoreException's constructor reaches android.text.TextUtils and Log
+        unitTests.isReturnDefaultValues = true
+        unitTests.all {
+            System.getProperties().stringPropertyNames()
+                .filter { name -> name.startsWith("loadtest.") }
+                .forEach { name -> it.systemProperty(name, System.getProperty(name)) }
+        }
     }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
@@ -58,9 +93,18 @@ dependencies {
     implementation("androidx.lifecycle:lifecycle-livedata-ktx:2.8.7")
 
 
+    // Paging for the booking lists
+    implementation("androidx.paging:paging-runtime:3.3.6")
+    implementation("androidx.paging:paging-guava:3.3.6")
+    implementation("androidx.room:room-paging:2.6.1")
+    implementation("androidx.concurrent:concurrent-futures:1.2.0")
+
     // OSMDroid for maps (free alternative to Google Maps)
     implementation ("org.osmdroid:osmdroid-android:6.1.16")
 
+    // Background tile pre-seeding
+    implementation("androidx.work:work-runtime:2.10.0")
+
     // Location services
     implementation("com.google.android.gms:play-services-location:21.3.0")
 
@@ -0,0 +1,177 @@
+package com.smartparking.adapters;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LifecycleRegistry;
+import androidx.paging.PagingData;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.smartparking.R;
+import com.smartparking.models.Booking;
+import com.smartparking.models.Vehicle;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scrolls the booking and vehicle lists through a long data set and records how long
+ * each scroll step takes to bind and lay out on the main thread.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BookingListScrollBenchmark {
+
+    private static final String TAG = "ListScrollBenchmark";
+    private static final int ROWS = 2000;
+    private static final int SCROLL_STEPS = 300;
+    private static final int SCROLL_STEP_PX = 250;
+    private static final long FRAME_BUDGET_MS = 16;
+
+    private Instrumentation instrumentation;
+    private Context context;
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        context = new ContextThemeWrapper(instrumentation.getTargetContext(), R.style.Theme_SmartParkingApp);
+    }
+
+    @Test
+    public void scrollingBookings_staysWithinFrameBudget() {
+        List<BookingListItem> items = new ArrayList<>(ROWS);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < ROWS; i++) {
+            Booking booking = new Booking("booking-" + i, "user", "space-" + (i % 50), "vehicle",
+                    now - i * 3_600_000L, now - i * 3_600_000L + 7_200_000L, 4.5 + i % 7);
+            booking.setBookingStatus(i % 3 == 0 ? "COMPLETED" : "RESERVED");
+            items.add(BookingListItem.from(booking));
+        }
+
+        RecyclerView[] list = new RecyclerView[1];
+        BookingAdapter[] adapter = new BookingAdapter[1];
+        TestLifecycleOwner owner = new TestLifecycleOwner();
+        instrumentation.runOnMainSync(() -> {
+            owner.registry.setCurrentState(Lifecycle.State.RESUMED);
+            adapter[0] = new BookingAdapter(context, new NoOpClickListener());
+            list[0] = createList(adapter[0]);
+            adapter[0].submitData(owner.getLifecycle(), PagingData.from(items));
+        });
+        waitForItemCount(list[0], ROWS);
+
+        long[] stepMs = scroll(list[0]);
+        report("bookings", stepMs);
+        instrumentation.runOnMainSync(() -> owner.registry.setCurrentState(Lifecycle.State.DESTROYED));
+    }
+
+    @Test
+    public void scrollingVehicles_staysWithinFrameBudget() {
+        List<Vehicle> vehicles = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            vehicles.add(new Vehicle("vehicle-" + i, "user", "MH01AB" + i, "Make " + (i % 20),
+                    "Model " + (i % 30), i % 2 == 0 ? "Black" : "White", "CAR"));
+        }
+
+        RecyclerView[] list = new RecyclerView[1];
+        instrumentation.runOnMainSync(() -> {
+            VehicleAdapter adapter = new VehicleAdapter(context);
+            list[0] = createList(adapter);
+            adapter.setVehicles(vehicles);
+        });
+        waitForItemCount(list[0], ROWS);
+
+        long[] stepMs = scroll(list[0]);
+        report("vehicles", stepMs);
+    }
+
+    private RecyclerView createList(RecyclerView.Adapter<?> adapter) {
+        RecyclerView recyclerView = new RecyclerView(context);
+        recyclerView.setLayoutManager(new LinearLayoutManager(context));
+        recyclerView.setAdapter(adapter);
+        layout(recyclerView);
+        return recyclerView;
+    }
+
+    private void layout(RecyclerView recyclerView) {
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, 1080, 1920);
+    }
+
+    private void waitForItemCount(RecyclerView recyclerView, int expected) {
+        long deadline = SystemClock.uptimeMillis() + 10_000;
+        int[] count = new int[1];
+        do {
+            instrumentation.waitForIdleSync();
+            instrumentation.runOnMainSync(() -> count[0] = recyclerView.getAdapter().getItemCount());
+            if (count[0] == expected) {
+                break;
+            }
+            SystemClock.sleep(20);
+        } while (SystemClock.uptimeMillis() < deadline);
+        assertEquals(expected, count[0]);
+    }
+
+    // Each step scrolls, binds the rows that came into view and lays the list out again
+    private long[] scroll(RecyclerView recyclerView) {
+        long[] stepMs = new long[SCROLL_STEPS];
+        instrumentation.runOnMainSync(() -> {
+            layout(recyclerView);
+            for (int i = 0; i < SCROLL_STEPS; i++) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                recyclerView.scrollBy(0, SCROLL_STEP_PX);
+                layout(recyclerView);
+                stepMs[i] = (SystemClock.elapsedRealtimeNanos() - start) / 1_000_000;
+            }
+        });
+        return stepMs;
+    }
+
+    private void report(String name, long[] stepMs) {
+        long[] sorted = stepMs.clone();
+        Arrays.sort(sorted);
+        long p50 = sorted[sorted.length / 2];
+        long p90 = sorted[(int) (sorted.length * 0.9)];
+        long max = sorted[sorted.length - 1];
+        Log.i(TAG, name + " scroll step p50 " + p50 + "ms, p90 " + p90 + "ms, max " + max + "ms");
+        assertTrue(name + " p90 scroll step took " + p90 + "ms", p90 <= FRAME_BUDGET_MS);
+    }
+
+    private static class TestLifecycleOwner implements LifecycleOwner {
+        final LifecycleRegistry registry = LifecycleRegistry.createUnsafe(this);
+
+        @NonNull
+        @Override
+        public Lifecycle getLifecycle() {
+            return registry;
+        }
+    }
+
+    private static class NoOpClickListener implements BookingAdapter.BookingClickListener {
+        @Override
+        public void onBookingClick(Booking booking) {
+        }
+
+        @Override
+        public void onCancelBooking(Booking booking) {
+        }
+    }
+}
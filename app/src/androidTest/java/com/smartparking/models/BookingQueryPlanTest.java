@@ -0,0 +1,111 @@
+package com.smartparking.models;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Guards the BookingDao hot queries against regressing to full table scans. The SQL
+ * below mirrors the @Query strings in BookingDao.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BookingQueryPlanTest {
+
+    private static final String ACTIVE_FOR_USER = "SELECT * FROM bookings WHERE userId = ? "
+            + "AND bookingStatus IN ('RESERVED', 'ACTIVE') ORDER BY startTime ASC";
+    private static final String PAST_FOR_USER = "SELECT * FROM bookings WHERE userId = ? "
+            + "AND bookingStatus = 'COMPLETED' ORDER BY endTime DESC";
+    private static final String PAST_FOR_USER_PAGED = BookingDao.BOOKING_ROWS
+            + "WHERE bookings.userId = ? AND bookings.bookingStatus = 'COMPLETED' ORDER BY bookings.endTime DESC";
+    private static final String ALL_FOR_USER = "SELECT * FROM bookings WHERE userId = ? ORDER BY startTime DESC";
+    private static final String ACTIVE_FOR_SPACE = "SELECT * FROM bookings WHERE parkingSpaceId = ? AND endTime > ?";
+    private static final String OCCUPYING_FOR_SPACE = "SELECT * FROM bookings WHERE parkingSpaceId = ? "
+            + "AND bookingStatus IN ('RESERVED', 'ACTIVE')";
+
+    private ParkingDatabase database;
+    private SupportSQLiteDatabase db;
+
+    @Before
+    public void createDatabase() {
+        database = Room.inMemoryDatabaseBuilder(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(), ParkingDatabase.class).build();
+        db = database.getOpenHelper().getWritableDatabase();
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    public void userQueries_useUserIndices() {
+        assertUsesIndex(ACTIVE_FOR_USER, "index_bookings_userId_bookingStatus_startTime", "user");
+        assertUsesIndex(PAST_FOR_USER, "index_bookings_userId_bookingStatus_endTime", "user");
+        assertUsesIndex(PAST_FOR_USER_PAGED, "index_bookings_userId_bookingStatus_endTime", "user");
+        assertUsesIndex(ALL_FOR_USER, "index_bookings_userId_startTime", "user");
+        // Sorting comes straight from the index
+        assertFalse(plan(ALL_FOR_USER, "user").contains("USE TEMP B-TREE"));
+        assertFalse(plan(PAST_FOR_USER, "user").contains("USE TEMP B-TREE"));
+        assertFalse(plan(PAST_FOR_USER_PAGED, "user").contains("USE TEMP B-TREE"));
+    }
+
+    @Test
+    public void parkingSpaceQueries_useSpaceIndex() {
+        assertUsesIndex(ACTIVE_FOR_SPACE, "index_bookings_parkingSpaceId_endTime", "space", 0L);
+        assertUsesIndex(OCCUPYING_FOR_SPACE, "index_bookings_parkingSpaceId_endTime", "space");
+    }
+
+    @Test
+    public void migration5To6_createsTheSameIndices() {
+        db.execSQL("DROP INDEX `index_bookings_userId_bookingStatus_startTime`");
+        db.execSQL("DROP INDEX `index_bookings_userId_startTime`");
+        db.execSQL("DROP INDEX `index_bookings_parkingSpaceId_endTime`");
+        // Added by 7 -> 8, it would serve the user queries too
+        db.execSQL("DROP INDEX `index_bookings_userId_bookingStatus_endTime`");
+        assertTrue(plan(ACTIVE_FOR_USER, "user").contains("SCAN"));
+
+        ParkingDatabase.MIGRATION_5_6.migrate(db);
+
+        assertUsesIndex(ACTIVE_FOR_USER, "index_bookings_userId_bookingStatus_startTime", "user");
+        assertUsesIndex(ALL_FOR_USER, "index_bookings_userId_startTime", "user");
+        assertUsesIndex(ACTIVE_FOR_SPACE, "index_bookings_parkingSpaceId_endTime", "space", 0L);
+    }
+
+    @Test
+    public void migration7To8_createsThePastBookingsIndex() {
+        db.execSQL("DROP INDEX `index_bookings_userId_bookingStatus_endTime`");
+        assertTrue(plan(PAST_FOR_USER, "user").contains("USE TEMP B-TREE"));
+
+        ParkingDatabase.MIGRATION_7_8.migrate(db);
+
+        assertUsesIndex(PAST_FOR_USER, "index_bookings_userId_bookingStatus_endTime", "user");
+        assertFalse(plan(PAST_FOR_USER_PAGED, "user").contains("USE TEMP B-TREE"));
+    }
+
+    private void assertUsesIndex(String sql, String index, Object... args) {
+        String plan = plan(sql, args);
+        assertTrue("Expected " + index + " for " + sql + " but plan was:\n" + plan, plan.contains(index));
+    }
+
+    private String plan(String sql, Object... args) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = db.query("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+}
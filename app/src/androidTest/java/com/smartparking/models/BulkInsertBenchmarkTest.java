@@ -0,0 +1,103 @@
+package com.smartparking.models;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares one-transaction-per-row inserts with paged bulk inserts on an on-disk
+ * database, where every commit pays for a journal sync.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BulkInsertBenchmarkTest {
+
+    private static final String TAG = "BulkInsertBenchmark";
+    private static final String DB_NAME = "bulk_insert_benchmark";
+    private static final int ROWS = 5000;
+    private static final int PAGE_SIZE = 500;
+
+    private Context context;
+    private ParkingDatabase database;
+
+    @Before
+    public void createDatabase() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        database = Room.databaseBuilder(context, ParkingDatabase.class, DB_NAME).build();
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void pagedInsertAll_isFasterThanRowByRowInserts() {
+        ParkingSpaceDao dao = database.parkingSpaceDao();
+
+        long rowByRowStart = SystemClock.elapsedRealtime();
+        for (ParkingSpace space : parkingSpaces("single-")) {
+            dao.insert(space);
+        }
+        long rowByRowMs = SystemClock.elapsedRealtime() - rowByRowStart;
+
+        List<ParkingSpace> bulk = parkingSpaces("bulk-");
+        long bulkStart = SystemClock.elapsedRealtime();
+        for (int from = 0; from < bulk.size(); from += PAGE_SIZE) {
+            dao.insertAll(bulk.subList(from, Math.min(bulk.size(), from + PAGE_SIZE)));
+        }
+        long bulkMs = SystemClock.elapsedRealtime() - bulkStart;
+
+        Log.i(TAG, "Row by row: " + rowByRowMs + "ms (" + rowsPerSecond(rowByRowMs) + " rows/sec), paged: "
+                + bulkMs + "ms (" + rowsPerSecond(bulkMs) + " rows/sec)");
+        assertEquals(2 * ROWS, dao.getAllParkingSpacesSync().size());
+        assertTrue("Paged inserts took " + bulkMs + "ms vs " + rowByRowMs + "ms row by row",
+                bulkMs * 2 < rowByRowMs);
+    }
+
+    @Test
+    public void insertAll_upsertsExistingRows() {
+        BookingDao dao = database.bookingDao();
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            bookings.add(new Booking("booking-" + i, "user", "space-" + (i % 10), "vehicle",
+                    i * 1000L, i * 1000L + 500, 2.0));
+        }
+        dao.insertAll(bookings);
+        for (Booking booking : bookings) {
+            booking.setBookingStatus("CANCELLED");
+        }
+        dao.insertAll(bookings);
+
+        assertEquals(0, dao.getOccupyingBookingsForParkingSpaceSync("space-0").size());
+    }
+
+    private List<ParkingSpace> parkingSpaces(String idPrefix) {
+        List<ParkingSpace> spaces = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            spaces.add(new ParkingSpace(idPrefix + i, "Lot " + i, "Address " + i,
+                    19.0 + i * 1e-4, 72.8 + i * 1e-4, 50, 2.5, "owner"));
+        }
+        return spaces;
+    }
+
+    private static long rowsPerSecond(long elapsedMs) {
+        return ROWS * 1000L / Math.max(1, elapsedMs);
+    }
+}
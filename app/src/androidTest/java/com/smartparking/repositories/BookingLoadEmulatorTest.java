@@ -0,0 +1,54 @@
+package com.smartparking.repositories;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.smartparking.BuildConfig;
+import com.smartparking.loadtest.BookingLoadHarness;
+import com.smartparking.loadtest.LoadProfile;
+import com.smartparking.loadtest.LoadReport;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The booking load harness against the Firestore emulator, using the real SpotCounter.
+ * Start it with {@code firebase emulators:start --only firestore} before running this test.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BookingLoadEmulatorTest {
+
+    private static final String TAG = "BookingLoadEmulatorTest";
+
+    private static FirebaseFirestore firestore;
+
+    @BeforeClass
+    public static void useEmulator() {
+        firestore = FirebaseFirestore.getInstance();
+        if (!BuildConfig.USE_FIRESTORE_EMULATOR) {
+            try {
+                firestore.useEmulator(BuildConfig.FIRESTORE_EMULATOR_HOST, BuildConfig.FIRESTORE_EMULATOR_PORT);
+            } catch (IllegalStateException e) {
+                // Firestore was already used by the app process; it keeps its existing host
+            }
+        }
+    }
+
+    @Test
+    public void concurrentUsers_neverOversellOrLeakSpots() throws Exception {
+        LoadProfile profile = new LoadProfile();
+        profile.users = 16;
+        profile.operationsPerUser = 20;
+
+        LoadReport report = new BookingLoadHarness(new SpotCounterBookingBackend(new FirestoreSpotStore(firestore)), profile).run();
+        Log.i(TAG, report.toString());
+
+        assertEquals(0, report.oversold);
+        assertEquals(0, report.accountingMismatches);
+    }
+}
@@ -0,0 +1,137 @@
+package com.smartparking.repositories;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.smartparking.models.OutboxEntry;
+import com.smartparking.models.ParkingDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays against a fake replayer to check how the drainer treats failing entries, since
+ * entries replay strictly in order and a stuck head holds back everything behind it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class OutboxTest {
+
+    private static final String OPERATION = "test.write";
+
+    private ParkingDatabase database;
+    private ExecutorService executor;
+    private Outbox outbox;
+
+    private final List<String> replayed = new CopyOnWriteArrayList<>();
+    private final List<String> rejected = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void createOutbox() {
+        database = Room.inMemoryDatabaseBuilder(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(), ParkingDatabase.class).build();
+        executor = Executors.newSingleThreadExecutor();
+        outbox = new Outbox(database, executor);
+    }
+
+    @After
+    public void closeDatabase() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        database.close();
+    }
+
+    @Test
+    public void brokenHead_isRejectedAndTheQueueMovesOn() throws Exception {
+        CountDownLatch goodReplayed = new CountDownLatch(1);
+        register(entry -> {
+            if (entry.getDocumentId().equals("bad")) {
+                throw new IllegalStateException("Unparseable payload");
+            }
+            if (entry.getDocumentId().equals("null")) {
+                return Tasks.forException(new NullPointerException());
+            }
+            replayed.add(entry.getDocumentId());
+            goodReplayed.countDown();
+            return Tasks.forResult(null);
+        });
+
+        outbox.enqueue(new OutboxEntry(OPERATION, "bad", "{}"), null, null);
+        outbox.enqueue(new OutboxEntry(OPERATION, "null", "{}"), null, null);
+        outbox.enqueue(new OutboxEntry(OPERATION, "good", "{}"), null, null);
+
+        assertTrue(goodReplayed.await(5, TimeUnit.SECONDS));
+        assertTrue(awaitPending(0).isEmpty());
+        assertEquals(Arrays.asList("bad", "null"), rejected);
+        assertEquals(Collections.singletonList("good"), replayed);
+    }
+
+    @Test
+    public void unavailable_staysQueuedForRetry() throws Exception {
+        CountDownLatch attempted = new CountDownLatch(1);
+        register(entry -> {
+            attempted.countDown();
+            return Tasks.forException(new FirebaseFirestoreException("Offline",
+                    FirebaseFirestoreException.Code.UNAVAILABLE));
+        });
+
+        outbox.enqueue(new OutboxEntry(OPERATION, "offline", "{}"), null, null);
+
+        assertTrue(attempted.await(5, TimeUnit.SECONDS));
+        List<OutboxEntry> pending = awaitPending(1);
+        assertEquals(1, pending.size());
+        assertEquals(1, pending.get(0).getAttempts());
+        assertTrue(pending.get(0).getNextAttemptAt() > System.currentTimeMillis());
+        assertTrue(rejected.isEmpty());
+    }
+
+    private interface Push {
+        Task<Void> push(OutboxEntry entry);
+    }
+
+    private void register(Push push) {
+        outbox.register(OPERATION, 1, new Outbox.Replayer() {
+            @Override
+            public Task<Void> replay(List<OutboxEntry> entries) {
+                return push.push(entries.get(0));
+            }
+
+            @Override
+            public void onRejected(OutboxEntry entry, Exception e) {
+                rejected.add(entry.getDocumentId());
+            }
+        });
+    }
+
+    // The drainer updates the queue after the replay returns, wait until it is empty
+    // (attempts 0) or its head has been tried that many times
+    private List<OutboxEntry> awaitPending(int attempts) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            List<OutboxEntry> pending = executor.submit(() -> outbox.getPending(OPERATION)).get(5, TimeUnit.SECONDS);
+            boolean settled = attempts == 0 ? pending.isEmpty()
+                    : !pending.isEmpty() && pending.get(0).getAttempts() == attempts;
+            if (settled || System.currentTimeMillis() > deadline) {
+                return pending;
+            }
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.smartparking.repositories;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.smartparking.BuildConfig;
+import com.smartparking.models.Booking;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Concurrent booking load against the Firestore emulator. Start it with
+ * {@code firebase emulators:start --only firestore} before running this test.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SpotCounterLoadTest {
+
+    private static final int CAPACITY = 25;
+    private static final int CONCURRENT_BOOKINGS = 120;
+
+    private static FirebaseFirestore firestore;
+
+    @BeforeClass
+    public static void useEmulator() {
+        firestore = FirebaseFirestore.getInstance();
+        if (!BuildConfig.USE_FIRESTORE_EMULATOR) {
+            try {
+                firestore.useEmulator(BuildConfig.FIRESTORE_EMULATOR_HOST, BuildConfig.FIRESTORE_EMULATOR_PORT);
+            } catch (IllegalStateException e) {
+                // Firestore was already used by the app process; it keeps its existing host
+            }
+        }
+    }
+
+    @Test
+    public void concurrentBookings_neverOversellSingleDocumentLot() throws Exception {
+        String spaceId = createLot();
+        SpotCounter counter = new SpotCounter(firestore);
+
+        int booked = runConcurrentBookings(counter, spaceId);
+
+        DocumentSnapshot lot = Tasks.await(
+                firestore.collection("parkingSpaces").document(spaceId).get(), 30, TimeUnit.SECONDS);
+        assertEquals(CAPACITY, booked);
+        assertEquals(0L, (long) lot.getLong(SpotCounter.FIELD_AVAILABLE_SPOTS));
+    }
+
+    @Test
+    public void concurrentBookings_neverOversellShardedLot() throws Exception {
+        String spaceId = createLot();
+        SpotCounter counter = new SpotCounter(firestore);
+        Tasks.await(counter.enableSharding(spaceId, 5), 30, TimeUnit.SECONDS);
+
+        int booked = runConcurrentBookings(counter, spaceId);
+
+        QuerySnapshot shards = Tasks.await(firestore.collection("parkingSpaces").document(spaceId)
+                .collection(SpotCounter.SHARDS_COLLECTION).get(), 30, TimeUnit.SECONDS);
+        long remaining = 0;
+        for (QueryDocumentSnapshot shard : shards) {
+            remaining += shard.getLong(SpotCounter.FIELD_AVAILABLE_SPOTS);
+        }
+        assertEquals(CAPACITY, booked);
+        assertEquals(0L, remaining);
+    }
+
+    @Test
+    public void cancellingTwice_restoresOneSpot() throws Exception {
+        String spaceId = createLot();
+        SpotCounter counter = new SpotCounter(firestore);
+        Booking booking = newBooking(spaceId);
+        Tasks.await(counter.reserveSpot(booking), 30, TimeUnit.SECONDS);
+
+        Tasks.await(Tasks.whenAllComplete(
+                counter.releaseSpot(booking.getBookingId()),
+                counter.releaseSpot(booking.getBookingId())), 30, TimeUnit.SECONDS);
+
+        DocumentSnapshot lot = Tasks.await(
+                firestore.collection("parkingSpaces").document(spaceId).get(), 30, TimeUnit.SECONDS);
+        assertEquals((long) CAPACITY, (long) lot.getLong(SpotCounter.FIELD_AVAILABLE_SPOTS));
+    }
+
+    private int runConcurrentBookings(SpotCounter counter, String spaceId) throws Exception {
+        List<Task<Void>> attempts = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_BOOKINGS; i++) {
+            attempts.add(counter.reserveSpot(newBooking(spaceId)));
+        }
+        Tasks.await(Tasks.whenAllComplete(attempts), 120, TimeUnit.SECONDS);
+
+        int booked = 0;
+        for (Task<Void> attempt : attempts) {
+            if (attempt.isSuccessful()) {
+                booked++;
+            }
+        }
+        return booked;
+    }
+
+    private String createLot() throws Exception {
+        String spaceId = "load-test-" + UUID.randomUUID();
+        Map<String, Object> lot = new HashMap<>();
+        lot.put("spaceId", spaceId);
+        lot.put("name", "Load Test Lot");
+        lot.put("totalSpots", CAPACITY);
+        lot.put(SpotCounter.FIELD_AVAILABLE_SPOTS, CAPACITY);
+        Tasks.await(firestore.collection("parkingSpaces").document(spaceId).set(lot), 30, TimeUnit.SECONDS);
+        return spaceId;
+    }
+
+    private Booking newBooking(String spaceId) {
+        long now = System.currentTimeMillis();
+        return new Booking(UUID.randomUUID().toString(), "load-test-user", spaceId, "vehicle",
+                now, now + 60 * 60 * 1000, 2.0);
+    }
+}
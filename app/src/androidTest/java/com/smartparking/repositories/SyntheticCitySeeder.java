@@ -0,0 +1,91 @@
+package com.smartparking.repositories;
+
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.smartparking.BuildConfig;
+import com.smartparking.ParkingApp;
+import com.smartparking.utils.SyntheticCity;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loads a synthetic city into the Firestore emulator for load testing. Skipped unless
+ * requested, e.g.
+ * {@code ./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.seedLots=50000
+ * -Pandroid.testInstrumentationRunnerArguments.seedBookings=1000000}
+ */
+@RunWith(AndroidJUnit4.class)
+public class SyntheticCitySeeder {
+
+    private static final String TAG = "SyntheticCitySeeder";
+    private static final long SEED = 42;
+    private static final int USERS = 20000;
+
+    @BeforeClass
+    public static void useEmulator() {
+        if (!BuildConfig.USE_FIRESTORE_EMULATOR) {
+            try {
+                FirebaseFirestore.getInstance().useEmulator(
+                        BuildConfig.FIRESTORE_EMULATOR_HOST, BuildConfig.FIRESTORE_EMULATOR_PORT);
+            } catch (IllegalStateException e) {
+                // Firestore was already used by the app process; it keeps its existing host
+            }
+        }
+    }
+
+    @Test
+    public void seed() throws Exception {
+        Bundle args = InstrumentationRegistry.getArguments();
+        int lots = Integer.parseInt(args.getString("seedLots", "0"));
+        int bookings = Integer.parseInt(args.getString("seedBookings", "0"));
+        Assume.assumeTrue("No seedLots argument, nothing to seed", lots > 0);
+
+        ParkingApp app = ParkingApp.from(InstrumentationRegistry.getInstrumentation().getTargetContext());
+        SyntheticCity city = new SyntheticCity(SEED, lots, USERS);
+
+        BulkWriter.Progress lotsDone = await("lots",
+                app.getParkingRepository().seedParkingSpaces(city.lots(), false));
+        assertNull(lotsDone.getError());
+        assertEquals(lots, lotsDone.getItemsWritten());
+
+        if (bookings > 0) {
+            BulkWriter.Progress bookingsDone = await("bookings",
+                    app.getBookingRepository().seedBookings(city.bookings(bookings), false));
+            assertNull(bookingsDone.getError());
+            assertEquals(bookings, bookingsDone.getItemsWritten());
+        }
+    }
+
+    private static BulkWriter.Progress await(String what, LiveData<BulkWriter.Progress> progress)
+            throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<BulkWriter.Progress> last = new AtomicReference<>();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> progress.observeForever(p -> {
+            Log.i(TAG, what + ": " + p.getItemsWritten() + " written, "
+                    + Math.round(p.getItemsPerSecond()) + "/sec");
+            if (p.isDone()) {
+                last.set(p);
+                done.countDown();
+            }
+        }));
+        assertTrue(what + " did not finish", done.await(2, TimeUnit.HOURS));
+        return last.get();
+    }
+}
@@ -0,0 +1,90 @@
+package com.smartparking.utils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Minimal HTTP server on 127.0.0.1 answering every GET with the same PNG, a stand-in for a
+// z/x/y tile server so seeding runs without the network. Counts requests, and can be told
+// to fail so retries can be exercised.
+class LocalTileServer implements Closeable {
+
+    // 1x1 transparent PNG
+    private static final byte[] TILE = {
+            (byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0x00, 0x00, 0x00, 0x0D, 'I', 'H', 'D', 'R',
+            0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x01, 0x08, 0x06, 0x00, 0x00, 0x00, 0x1F, 0x15, (byte) 0xC4,
+            (byte) 0x89, 0x00, 0x00, 0x00, 0x0D, 'I', 'D', 'A', 'T', 0x78, (byte) 0x9C, 0x63, 0x00, 0x01, 0x00, 0x00,
+            0x05, 0x00, 0x01, 0x0D, 0x0A, 0x2D, (byte) 0xB4, 0x00, 0x00, 0x00, 0x00, 'I', 'E', 'N', 'D', (byte) 0xAE,
+            0x42, 0x60, (byte) 0x82
+    };
+
+    private final ServerSocket serverSocket;
+    private final Thread thread;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile boolean failing;
+
+    LocalTileServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        thread = new Thread(this::serve, "LocalTileServer");
+        thread.start();
+    }
+
+    String getBaseUrl() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/";
+    }
+
+    int getRequestCount() {
+        return requests.get();
+    }
+
+    void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    private void serve() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                handle(socket);
+            } catch (IOException e) {
+                // Closed, or the client went away
+            }
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            // Skip the request line and headers
+        }
+        requests.incrementAndGet();
+
+        OutputStream out = socket.getOutputStream();
+        if (failing) {
+            out.write("HTTP/1.1 503 Service Unavailable\r\nContent-Length: 0\r\nConnection: close\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+        } else {
+            out.write(("HTTP/1.1 200 OK\r\nContent-Type: image/png\r\nContent-Length: " + TILE.length
+                    + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(TILE);
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
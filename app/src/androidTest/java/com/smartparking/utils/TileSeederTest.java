@@ -0,0 +1,89 @@
+package com.smartparking.utils;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.osmdroid.tileprovider.modules.DatabaseFileArchive;
+import org.osmdroid.tileprovider.tilesource.OnlineTileSourceBase;
+import org.osmdroid.util.MapTileIndex;
+
+import java.io.File;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Seeds a small area around Vile Parle from {@link LocalTileServer} and checks the archive
+ * osmdroid reads offline.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TileSeederTest {
+
+    private static final TileRegion REGION = new TileRegion("test", 19.09, 72.82, 19.12, 72.85, 12, 14);
+
+    private LocalTileServer server;
+    private OnlineTileSourceBase tileSource;
+    private File archive;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        server = new LocalTileServer();
+        tileSource = MapTiles.createTileSource(server.getBaseUrl());
+        archive = new File(context.getCacheDir(), "tile-seeder-test.sqlite");
+        archive.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+        archive.delete();
+    }
+
+    @Test
+    public void seed_downloadsEveryTileOnce() throws Exception {
+        TileSeeder seeder = new TileSeeder(tileSource, archive, "test");
+
+        TileSeeder.Result first = seeder.seed(REGION, () -> false);
+        assertEquals(REGION.tileCount(), first.downloaded);
+        assertTrue(first.isComplete());
+
+        // A second run finds everything in the archive and stays off the network
+        TileSeeder.Result second = seeder.seed(REGION, () -> false);
+        assertEquals(0, second.downloaded);
+        assertEquals(REGION.tileCount(), second.skipped);
+        assertEquals(REGION.tileCount(), server.getRequestCount());
+
+        DatabaseFileArchive database = DatabaseFileArchive.getDatabaseFileArchive(archive);
+        try (InputStream tile = database.getInputStream(tileSource,
+                MapTileIndex.getTileIndex(12, TileRegion.tileX(72.834547, 12), TileRegion.tileY(19.1079172, 12)))) {
+            assertNotNull(tile);
+        } finally {
+            database.close();
+        }
+    }
+
+    @Test
+    public void seed_resumesAfterFailures() throws Exception {
+        TileSeeder seeder = new TileSeeder(tileSource, archive, "test");
+
+        server.setFailing(true);
+        TileSeeder.Result failed = seeder.seed(REGION, () -> false);
+        assertFalse(failed.isComplete());
+        assertEquals(0, failed.downloaded);
+
+        server.setFailing(false);
+        TileSeeder.Result retried = seeder.seed(REGION, () -> false);
+        assertTrue(retried.isComplete());
+        assertEquals(REGION.tileCount(), retried.downloaded);
+    }
+}
@@ -1,15 +1,126 @@
-// app/src/main/java/com/smartparking/ParkingApp.java
 package com.smartparking;
 
 import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+
 import com.google.firebase.FirebaseApp;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.smartparking.repositories.BookingRepository;
+import com.smartparking.repositories.DocumentCache;
+import com.smartparking.repositories.Outbox;
+import com.smartparking.repositories.ParkingRepository;
+import com.smartparking.repositories.RegionPackRepository;
+import com.smartparking.repositories.RoomRepository;
+import com.smartparking.repositories.VehicleRepository;
+import com.smartparking.utils.AppExecutors;
+import com.smartparking.utils.MapTiles;
+import com.smartparking.utils.MarkerIconCache;
 import com.smartparking.utils.NotificationHelper;
+import com.smartparking.workers.RegionPackWorker;
+import com.smartparking.workers.TileSeedWorker;
 
 public class ParkingApp extends Application {
+
+    private AppExecutors appExecutors;
+    private ParkingRepository parkingRepository;
+    private BookingRepository bookingRepository;
+    private RoomRepository roomRepository;
+    private Outbox outbox;
+    private VehicleRepository vehicleRepository;
+    private DocumentCache documentCache;
+    private RegionPackRepository regionPackRepository;
+
+    public static ParkingApp from(Context context) {
+        return (ParkingApp) context.getApplicationContext();
+    }
+
     @Override
     public void onCreate() {
         super.onCreate();
+        appExecutors = new AppExecutors();
         FirebaseApp.initializeApp(this);
+        if (BuildConfig.USE_FIRESTORE_EMULATOR) {
+            // Local stand-in for Firestore when testing realtime and load scenarios
+            FirebaseFirestore.getInstance().useEmulator(
+                    BuildConfig.FIRESTORE_EMULATOR_HOST, BuildConfig.FIRESTORE_EMULATOR_PORT);
+        }
         NotificationHelper.createNotificationChannel(this);
+        MarkerIconCache.getInstance(this).prewarm(appExecutors.compute());
+        // Tile cache must be set up before the first MapView, seeding waits for unmetered network
+        // and region packs refresh whenever the device is online
+        MapTiles.configure(this);
+        TileSeedWorker.schedule(this);
+        RegionPackWorker.schedule(this);
+
+        // Register the outbox replayers and push anything left over from the last run
+        getBookingRepository();
+        getVehicleRepository();
+        getOutbox().drainNow();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            appExecutors.logStats();
+        }
+    }
+
+    public AppExecutors getAppExecutors() {
+        return appExecutors;
+    }
+
+    // Repositories are app-wide so screens share their executors and in-memory indexes
+    public synchronized ParkingRepository getParkingRepository() {
+        if (parkingRepository == null) {
+            parkingRepository = new ParkingRepository(this, appExecutors, getDocumentCache(), getRegionPackRepository());
+        }
+        return parkingRepository;
+    }
+
+    public synchronized BookingRepository getBookingRepository() {
+        if (bookingRepository == null) {
+            bookingRepository = new BookingRepository(this, appExecutors, getParkingRepository(), getOutbox());
+        }
+        return bookingRepository;
+    }
+
+    public synchronized Outbox getOutbox() {
+        if (outbox == null) {
+            outbox = new Outbox(this, appExecutors.io());
+        }
+        return outbox;
+    }
+
+    public synchronized VehicleRepository getVehicleRepository() {
+        if (vehicleRepository == null) {
+            vehicleRepository = new VehicleRepository(appExecutors, getOutbox());
+        }
+        return vehicleRepository;
+    }
+
+    // Shared so every screen reading the same document joins one request
+    public synchronized DocumentCache getDocumentCache() {
+        if (documentCache == null) {
+            documentCache = new DocumentCache(FirebaseFirestore.getInstance(),
+                    DocumentCache.DEFAULT_MAX_ENTRIES, DocumentCache.DEFAULT_TTL_MS);
+        }
+        return documentCache;
+    }
+
+    // Offline packs are memory-mapped once and shared by every query
+    public synchronized RegionPackRepository getRegionPackRepository() {
+        if (regionPackRepository == null) {
+            regionPackRepository = new RegionPackRepository(this, FirebaseFirestore.getInstance());
+        }
+        return regionPackRepository;
+    }
+
+    public synchronized RoomRepository getRoomRepository() {
+        if (roomRepository == null) {
+            roomRepository = new RoomRepository(this, appExecutors);
+        }
+        return roomRepository;
     }
-}
\ No newline at end of file
+}
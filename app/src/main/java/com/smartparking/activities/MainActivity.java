@@ -33,7 +33,7 @@ import androidx.navigation.ui.NavigationUI;
 import com.google.android.material.navigation.NavigationView;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.FirebaseFirestore;
+import com.smartparking.ParkingApp;
 import com.smartparking.R;
 import com.smartparking.fragments.BookingDetailsDialogFragment;
 import com.smartparking.fragments.MapFragment;
@@ -193,8 +193,7 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         } else if (FirebaseAuth.getInstance().getCurrentUser() != null) {
             // If User object is null but user is authenticated, fetch from Firestore
             String userId = FirebaseAuth.getInstance().getCurrentUser().getUid();
-            FirebaseFirestore.getInstance().collection("users").document(userId)
-                    .get()
+            ParkingApp.from(this).getDocumentCache().get("users", userId)
                     .addOnSuccessListener(documentSnapshot -> {
                         if (documentSnapshot.exists()) {
                             User userData = documentSnapshot.toObject(User.class);
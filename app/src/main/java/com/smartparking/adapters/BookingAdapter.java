@@ -1,4 +1,3 @@
-// app/src/main/java/com/smartparking/adapters/BookingAdapter.java
 package com.smartparking.adapters;
 
 import android.content.Context;
@@ -10,38 +9,43 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.paging.PagingDataAdapter;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.smartparking.R;
 import com.smartparking.models.Booking;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
-import java.util.Locale;
+// Paged booking list. Rows that are not loaded yet are null placeholders. Diffing runs
+// on a background thread inside the paging differ and rows arrive pre-formatted.
+public class BookingAdapter extends PagingDataAdapter<BookingListItem, BookingAdapter.BookingViewHolder> {
 
-public class BookingAdapter extends RecyclerView.Adapter<BookingAdapter.BookingViewHolder> {
-
-    private List<Booking> bookings;
     private final Context context;
     private final BookingClickListener listener;
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy HH:mm", Locale.getDefault());
 
     public interface BookingClickListener {
         void onBookingClick(Booking booking);
         void onCancelBooking(Booking booking);
     }
 
+    private static final DiffUtil.ItemCallback<BookingListItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<BookingListItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull BookingListItem oldItem, @NonNull BookingListItem newItem) {
+            return oldItem.getBookingId().equals(newItem.getBookingId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull BookingListItem oldItem, @NonNull BookingListItem newItem) {
+            return oldItem.hasSameContent(newItem);
+        }
+    };
+
     public BookingAdapter(Context context, BookingClickListener listener) {
+        super(DIFF_CALLBACK);
         this.context = context;
         this.listener = listener;
     }
 
-    public void setBookings(List<Booking> bookings) {
-        this.bookings = bookings;
-        notifyDataSetChanged();
-    }
-
     @NonNull
     @Override
     public BookingViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -51,17 +55,14 @@ public class BookingAdapter extends RecyclerView.Adapter<BookingAdapter.BookingV
 
     @Override
     public void onBindViewHolder(@NonNull BookingViewHolder holder, int position) {
-        if (bookings != null) {
-            Booking booking = bookings.get(position);
-            holder.bind(booking);
+        BookingListItem item = getItem(position);
+        if (item != null) {
+            holder.bind(item);
+        } else {
+            holder.bindPlaceholder();
         }
     }
 
-    @Override
-    public int getItemCount() {
-        return bookings != null ? bookings.size() : 0;
-    }
-
     class BookingViewHolder extends RecyclerView.ViewHolder {
 
         private final TextView textViewParkingName;
@@ -79,43 +80,27 @@ public class BookingAdapter extends RecyclerView.Adapter<BookingAdapter.BookingV
             buttonCancel = itemView.findViewById(R.id.buttonCancel);
         }
 
-        public void bind(Booking booking) {
-            // Set parking name (this would normally come from a join with ParkingSpace)
-            textViewParkingName.setText(booking.getParkingSpaceId());
-
-            // Set booking time
-            String timeStr = dateFormat.format(new Date(booking.getStartTime())) +
-                    " - " +
-                    dateFormat.format(new Date(booking.getEndTime()));
-            textViewTime.setText(timeStr);
-
-            // Set booking status
-            textViewStatus.setText(booking.getBookingStatus());
-
-            // Set color based on status
-            int colorRes;
-            switch (booking.getBookingStatus()) {
-                case "ACTIVE":
-                    colorRes = R.color.colorAvailable;
-                    break;
-                case "COMPLETED":
-                    colorRes = R.color.colorTextLight;
-                    break;
-                case "CANCELLED":
-                    colorRes = R.color.colorUnavailable;
-                    break;
-                default: // RESERVED
-                    colorRes = R.color.colorAccent;
-                    break;
-            }
-            textViewStatus.setTextColor(ContextCompat.getColor(context, colorRes));
+        // Keeps the row height while the page is loading
+        public void bindPlaceholder() {
+            textViewParkingName.setText("");
+            textViewTime.setText("");
+            textViewStatus.setText("");
+            textViewAmount.setText("");
+            buttonCancel.setVisibility(View.GONE);
+            itemView.setOnClickListener(null);
+        }
+
+        public void bind(BookingListItem item) {
+            Booking booking = item.getBooking();
 
-            // Set amount
-            String amountStr = "$" + String.format(Locale.getDefault(), "%.2f", booking.getTotalAmount());
-            textViewAmount.setText(amountStr);
+            textViewParkingName.setText(item.getTitle());
+            textViewTime.setText(item.getTimeRange());
+            textViewStatus.setText(item.getStatus());
+            textViewStatus.setTextColor(ContextCompat.getColor(context, item.getStatusColorRes()));
+            textViewAmount.setText(item.getAmount());
 
             // Show cancel button for active or reserved bookings
-            if (booking.getBookingStatus().equals("ACTIVE") || booking.getBookingStatus().equals("RESERVED")) {
+            if (item.isCancellable()) {
                 buttonCancel.setVisibility(View.VISIBLE);
                 buttonCancel.setOnClickListener(v -> listener.onCancelBooking(booking));
             } else {
@@ -126,4 +111,4 @@ public class BookingAdapter extends RecyclerView.Adapter<BookingAdapter.BookingV
             itemView.setOnClickListener(v -> listener.onBookingClick(booking));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,103 @@
+package com.smartparking.adapters;
+
+import com.smartparking.R;
+import com.smartparking.models.Booking;
+import com.smartparking.models.BookingWithParking;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Objects;
+
+// Booking row with every string already formatted, built off the main thread so
+// binding a row is only setText calls
+public class BookingListItem {
+
+    // DateTimeFormatter is thread-safe, unlike SimpleDateFormat
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm", Locale.getDefault()).withZone(ZoneId.systemDefault());
+
+    private final Booking booking;
+    private final String title;
+    private final String timeRange;
+    private final String status;
+    private final int statusColorRes;
+    private final String amount;
+    private final boolean cancellable;
+
+    private BookingListItem(Booking booking, String title) {
+        this.booking = booking;
+        this.title = title;
+        this.timeRange = DATE_FORMAT.format(Instant.ofEpochMilli(booking.getStartTime()))
+                + " - " + DATE_FORMAT.format(Instant.ofEpochMilli(booking.getEndTime()));
+        this.status = booking.getBookingStatus();
+        this.statusColorRes = statusColor(booking.getBookingStatus());
+        this.amount = "$" + String.format(Locale.getDefault(), "%.2f", booking.getTotalAmount());
+        this.cancellable = "ACTIVE".equals(status) || "RESERVED".equals(status);
+    }
+
+    public static BookingListItem from(Booking booking) {
+        return new BookingListItem(booking, booking.getParkingSpaceId());
+    }
+
+    public static BookingListItem from(BookingWithParking row) {
+        return new BookingListItem(row.getBooking(), row.getDisplayName());
+    }
+
+    private static int statusColor(String status) {
+        if (status == null) {
+            return R.color.colorAccent;
+        }
+        switch (status) {
+            case "ACTIVE":
+                return R.color.colorAvailable;
+            case "COMPLETED":
+                return R.color.colorTextLight;
+            case "CANCELLED":
+                return R.color.colorUnavailable;
+            default: // RESERVED
+                return R.color.colorAccent;
+        }
+    }
+
+    public Booking getBooking() {
+        return booking;
+    }
+
+    public String getBookingId() {
+        return booking.getBookingId();
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getTimeRange() {
+        return timeRange;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public int getStatusColorRes() {
+        return statusColorRes;
+    }
+
+    public String getAmount() {
+        return amount;
+    }
+
+    public boolean isCancellable() {
+        return cancellable;
+    }
+
+    // Same displayed content, used by the list diff
+    public boolean hasSameContent(BookingListItem other) {
+        return Objects.equals(title, other.title)
+                && Objects.equals(timeRange, other.timeRange)
+                && Objects.equals(status, other.status)
+                && Objects.equals(amount, other.amount);
+    }
+}
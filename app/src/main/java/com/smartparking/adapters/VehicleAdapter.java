@@ -1,33 +1,81 @@
-// app/src/main/java/com/smartparking/adapters/VehicleAdapter.java
 package com.smartparking.adapters;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.smartparking.ParkingApp;
 import com.smartparking.R;
 import com.smartparking.models.Vehicle;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
 
-public class VehicleAdapter extends RecyclerView.Adapter<VehicleAdapter.VehicleViewHolder> {
+// Vehicle list with display strings built and diffs computed on a background thread;
+// only the rows that actually changed are rebound
+public class VehicleAdapter extends ListAdapter<VehicleAdapter.VehicleListItem, VehicleAdapter.VehicleViewHolder> {
 
     private Context context;
-    private List<Vehicle> vehicles = new ArrayList<>();
+    private final Executor backgroundExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Drops formatted lists that were overtaken by a newer setVehicles call
+    private int submitGeneration = 0;
+
+    private static final DiffUtil.ItemCallback<VehicleListItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<VehicleListItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull VehicleListItem oldItem, @NonNull VehicleListItem newItem) {
+            return oldItem.vehicleId.equals(newItem.vehicleId);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull VehicleListItem oldItem, @NonNull VehicleListItem newItem) {
+            return oldItem.vehicleInfo.equals(newItem.vehicleInfo)
+                    && Objects.equals(oldItem.licensePlate, newItem.licensePlate);
+        }
+    };
 
     public VehicleAdapter(Context context) {
+        this(context, ParkingApp.from(context).getAppExecutors().compute());
+    }
+
+    private VehicleAdapter(Context context, Executor backgroundExecutor) {
+        super(new AsyncDifferConfig.Builder<>(DIFF_CALLBACK).setBackgroundThreadExecutor(backgroundExecutor).build());
         this.context = context;
+        this.backgroundExecutor = backgroundExecutor;
+        setHasStableIds(true);
     }
 
     public void setVehicles(List<Vehicle> vehicles) {
-        this.vehicles = vehicles;
-        notifyDataSetChanged();
+        int generation = ++submitGeneration;
+        List<Vehicle> snapshot = new ArrayList<>(vehicles);
+        backgroundExecutor.execute(() -> {
+            List<VehicleListItem> items = new ArrayList<>(snapshot.size());
+            for (Vehicle vehicle : snapshot) {
+                items.add(new VehicleListItem(vehicle));
+            }
+            mainHandler.post(() -> {
+                if (generation == submitGeneration) {
+                    submitList(items);
+                }
+            });
+        });
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).stableId;
     }
 
     @NonNull
@@ -39,13 +87,32 @@ public class VehicleAdapter extends RecyclerView.Adapter<VehicleAdapter.VehicleV
 
     @Override
     public void onBindViewHolder(@NonNull VehicleViewHolder holder, int position) {
-        Vehicle vehicle = vehicles.get(position);
-        holder.bind(vehicle);
+        holder.bind(getItem(position));
     }
 
-    @Override
-    public int getItemCount() {
-        return vehicles.size();
+    // Vehicle row with its display strings already built
+    public static class VehicleListItem {
+        final String vehicleId;
+        final long stableId;
+        final String vehicleInfo;
+        final String licensePlate;
+
+        VehicleListItem(Vehicle vehicle) {
+            vehicleId = vehicle.getVehicleId();
+            stableId = stableId(vehicleId);
+            vehicleInfo = vehicle.getMake() + " " + vehicle.getModel() + " (" + vehicle.getColor() + ")";
+            licensePlate = vehicle.getLicensePlate();
+        }
+    }
+
+    // 64-bit FNV-1a of the id, so ids only collide if the hashes do
+    static long stableId(String id) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
     }
 
     class VehicleViewHolder extends RecyclerView.ViewHolder {
@@ -59,10 +126,9 @@ public class VehicleAdapter extends RecyclerView.Adapter<VehicleAdapter.VehicleV
             textViewLicensePlate = itemView.findViewById(R.id.textViewLicensePlate);
         }
 
-        public void bind(Vehicle vehicle) {
-            String vehicleInfo = vehicle.getMake() + " " + vehicle.getModel() + " (" + vehicle.getColor() + ")";
-            textViewVehicleInfo.setText(vehicleInfo);
-            textViewLicensePlate.setText(vehicle.getLicensePlate());
+        public void bind(VehicleListItem item) {
+            textViewVehicleInfo.setText(item.vehicleInfo);
+            textViewLicensePlate.setText(item.licensePlate);
         }
     }
-}
\ No newline at end of file
+}
@@ -18,7 +18,7 @@ import androidx.fragment.app.DialogFragment;
 
 import com.google.android.material.bottomsheet.BottomSheetDialogFragment;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.FirebaseFirestore;
+import com.smartparking.ParkingApp;
 import com.smartparking.R;
 import com.smartparking.models.Vehicle;
 
@@ -35,7 +35,6 @@ public class AddVehicleDialogFragment extends BottomSheetDialogFragment {
     private Spinner spinnerVehicleType;
     private Button buttonSave;
 
-    private FirebaseFirestore firestore;
     private String userId;
 
     @Override
@@ -43,7 +42,6 @@ public class AddVehicleDialogFragment extends BottomSheetDialogFragment {
         super.onCreate(savedInstanceState);
         setStyle(DialogFragment.STYLE_NORMAL, R.style.ThemeOverlay_App_BottomSheetDialog);
 
-        firestore = FirebaseFirestore.getInstance();
         userId = FirebaseAuth.getInstance().getCurrentUser() != null ?
                 FirebaseAuth.getInstance().getCurrentUser().getUid() : "";
     }
@@ -124,28 +122,26 @@ public class AddVehicleDialogFragment extends BottomSheetDialogFragment {
                 vehicleType
         );
 
-        // Save to Firestore
+        // Save locally, the outbox pushes it to Firestore when the network allows
         buttonSave.setEnabled(false);
         buttonSave.setText("Saving...");
 
-        firestore.collection("vehicles")
-                .document(vehicleId)
-                .set(vehicle)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Vehicle added successfully");
-                    Toast.makeText(getContext(), "Vehicle added successfully", Toast.LENGTH_SHORT).show();
-                    dismiss();
-
-                    // Notify parent fragment to refresh
-                    if (getParentFragment() instanceof ProfileFragment) {
-                        ((ProfileFragment) getParentFragment()).refreshVehicles();
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error adding vehicle", e);
-                    Toast.makeText(getContext(), "Error adding vehicle: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    buttonSave.setEnabled(true);
-                    buttonSave.setText("Save");
-                });
+        ParkingApp.from(requireContext()).getVehicleRepository().saveVehicle(vehicle).observe(this, saved -> {
+            if (saved) {
+                Log.d(TAG, "Vehicle added successfully");
+                Toast.makeText(getContext(), "Vehicle added successfully", Toast.LENGTH_SHORT).show();
+
+                // Notify parent fragment to refresh
+                if (getParentFragment() instanceof ProfileFragment) {
+                    ((ProfileFragment) getParentFragment()).refreshVehicles();
+                }
+                dismiss();
+            } else {
+                Log.e(TAG, "Error adding vehicle");
+                Toast.makeText(getContext(), "Error adding vehicle", Toast.LENGTH_SHORT).show();
+                buttonSave.setEnabled(true);
+                buttonSave.setText("Save");
+            }
+        });
     }
 }
\ No newline at end of file
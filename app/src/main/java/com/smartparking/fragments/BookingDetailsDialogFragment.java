@@ -28,6 +28,7 @@ import com.google.zxing.BarcodeFormat;
 import com.google.zxing.WriterException;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
+import com.smartparking.ParkingApp;
 import com.smartparking.R;
 import com.smartparking.models.Booking;
 import com.smartparking.models.ParkingSpace;
@@ -44,7 +45,6 @@ public class BookingDetailsDialogFragment extends BottomSheetDialogFragment {
 
     private BookingViewModel bookingViewModel;
     private String bookingId;
-    private FirebaseFirestore firestore;
 
     private TextView textViewParkingName;
     private TextView textViewAddress;
@@ -58,6 +58,8 @@ public class BookingDetailsDialogFragment extends BottomSheetDialogFragment {
     private ImageView imageViewClose;
     private ProgressBar progressBar;
 
+    private String renderedQrContent;
+
     private SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy HH:mm", Locale.getDefault());
 
     public static BookingDetailsDialogFragment newInstance(String bookingId) {
@@ -77,7 +79,6 @@ public class BookingDetailsDialogFragment extends BottomSheetDialogFragment {
         }
 
         setStyle(DialogFragment.STYLE_NORMAL, R.style.ThemeOverlay_App_BottomSheetDialog);
-        firestore = FirebaseFirestore.getInstance();
     }
 
     @Nullable
@@ -126,9 +127,10 @@ public class BookingDetailsDialogFragment extends BottomSheetDialogFragment {
                 progressBar.setVisibility(View.VISIBLE);
             }
 
-            // First try loading from Room database via ViewModel
-            bookingViewModel.getBookingById(bookingId).observe(getViewLifecycleOwner(), booking -> {
-                if (booking != null) {
+            // First try Room, which returns the booking already joined with its parking space
+            bookingViewModel.getBookingWithParkingById(bookingId).observe(getViewLifecycleOwner(), row -> {
+                if (row != null) {
+                    Booking booking = row.getBooking();
                     Log.d(TAG, "Booking loaded from Room: " + booking.getBookingId());
                     updateUI(booking);
 
@@ -137,8 +139,13 @@ public class BookingDetailsDialogFragment extends BottomSheetDialogFragment {
                         progressBar.setVisibility(View.GONE);
                     }
 
-                    // Load parking space details
-                    loadParkingSpaceDetails(booking.getParkingSpaceId());
+                    if (row.hasParkingDetails()) {
+                        textViewParkingName.setText(row.getParkingName());
+                        textViewAddress.setText(row.getParkingAddress());
+                    } else {
+                        // Parking space not synced yet
+                        loadParkingSpaceDetails(booking.getParkingSpaceId());
+                    }
                 } else {
                     Log.d(TAG, "Booking not found in Room, trying Firestore directly");
 
@@ -267,9 +274,8 @@ public class BookingDetailsDialogFragment extends BottomSheetDialogFragment {
     private void loadParkingSpaceDetails(String parkingSpaceId) {
         Log.d(TAG, "Loading parking space details for ID: " + parkingSpaceId);
 
-        firestore.collection("parkingSpaces")
-                .document(parkingSpaceId)
-                .get()
+        ParkingApp.from(requireContext()).getParkingRepository()
+                .getParkingSpaceDocument(parkingSpaceId)
                 .addOnSuccessListener(documentSnapshot -> {
                     if (documentSnapshot.exists()) {
                         ParkingSpace parkingSpace = documentSnapshot.toObject(ParkingSpace.class);
@@ -325,6 +331,7 @@ public class BookingDetailsDialogFragment extends BottomSheetDialogFragment {
         if (booking.getBookingStatus().equals("ACTIVE") || booking.getBookingStatus().equals("RESERVED")) {
             generateQRCode(booking);
         } else {
+            renderedQrContent = null;
             imageViewQRCode.setVisibility(View.GONE);
         }
 
@@ -349,33 +356,54 @@ public class BookingDetailsDialogFragment extends BottomSheetDialogFragment {
     }
 
     private void generateQRCode(Booking booking) {
-        try {
-            // Create QR code content with booking details
-            String qrContent = "BOOKING:" + booking.getBookingId() +
-                    "|SPACE:" + booking.getParkingSpaceId() +
-                    "|USER:" + booking.getUserId() +
-                    "|START:" + booking.getStartTime() +
-                    "|END:" + booking.getEndTime();
-
-            QRCodeWriter writer = new QRCodeWriter();
-            BitMatrix bitMatrix = writer.encode(qrContent, BarcodeFormat.QR_CODE, 512, 512);
+        // Create QR code content with booking details
+        String qrContent = "BOOKING:" + booking.getBookingId() +
+                "|SPACE:" + booking.getParkingSpaceId() +
+                "|USER:" + booking.getUserId() +
+                "|START:" + booking.getStartTime() +
+                "|END:" + booking.getEndTime();
+        if (qrContent.equals(renderedQrContent)) {
+            return;
+        }
+        renderedQrContent = qrContent;
+
+        // Encoding and filling 512x512 pixels takes longer than a frame, so do it off the main thread
+        ParkingApp.from(requireContext()).getAppExecutors().compute().execute(() -> {
+            Bitmap bitmap;
+            try {
+                bitmap = encodeQRCode(qrContent);
+            } catch (WriterException e) {
+                Log.e(TAG, "Error generating QR code", e);
+                bitmap = null;
+            }
+            Bitmap result = bitmap;
+            imageViewQRCode.post(() -> {
+                if (!isAdded() || !qrContent.equals(renderedQrContent)) {
+                    return;
+                }
+                if (result != null) {
+                    imageViewQRCode.setImageBitmap(result);
+                    imageViewQRCode.setVisibility(View.VISIBLE);
+                } else {
+                    imageViewQRCode.setVisibility(View.GONE);
+                }
+            });
+        });
+    }
 
-            int width = bitMatrix.getWidth();
-            int height = bitMatrix.getHeight();
-            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+    private static Bitmap encodeQRCode(String content) throws WriterException {
+        BitMatrix bitMatrix = new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, 512, 512);
 
+        int width = bitMatrix.getWidth();
+        int height = bitMatrix.getHeight();
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
             for (int x = 0; x < width; x++) {
-                for (int y = 0; y < height; y++) {
-                    bitmap.setPixel(x, y, bitMatrix.get(x, y) ? Color.BLACK : Color.WHITE);
-                }
+                pixels[offset + x] = bitMatrix.get(x, y) ? Color.BLACK : Color.WHITE;
             }
-
-            imageViewQRCode.setImageBitmap(bitmap);
-            imageViewQRCode.setVisibility(View.VISIBLE);
-        } catch (WriterException e) {
-            Log.e(TAG, "Error generating QR code", e);
-            imageViewQRCode.setVisibility(View.GONE);
         }
+        return Bitmap.createBitmap(pixels, width, height, Bitmap.Config.RGB_565);
     }
 
     private void showErrorAndDismiss() {
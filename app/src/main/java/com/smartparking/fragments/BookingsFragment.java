@@ -13,17 +13,21 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LiveData;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.paging.LoadState;
+import androidx.paging.PagingData;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.tabs.TabLayout;
 import com.smartparking.R;
 import com.smartparking.adapters.BookingAdapter;
+import com.smartparking.adapters.BookingListItem;
 import com.smartparking.models.Booking;
 import com.smartparking.viewmodels.BookingViewModel;
 
-import java.util.List;
+import kotlin.Unit;
 
 public class BookingsFragment extends Fragment implements BookingAdapter.BookingClickListener {
 
@@ -35,6 +39,7 @@ public class BookingsFragment extends Fragment implements BookingAdapter.Booking
     private ProgressBar progressBar;
     private TabLayout tabLayout;
     private BookingAdapter bookingAdapter;
+    private LiveData<PagingData<BookingListItem>> shownBookings;
 
     @Nullable
     @Override
@@ -61,6 +66,12 @@ public class BookingsFragment extends Fragment implements BookingAdapter.Booking
         recyclerViewBookings.setLayoutManager(new LinearLayoutManager(getContext()));
         bookingAdapter = new BookingAdapter(requireContext(), this);
         recyclerViewBookings.setAdapter(bookingAdapter);
+        bookingAdapter.addLoadStateListener(loadStates -> {
+            if (loadStates.getRefresh() instanceof LoadState.NotLoading) {
+                updateEmptyState(bookingAdapter.getItemCount() == 0);
+            }
+            return Unit.INSTANCE;
+        });
 
         // Setup TabLayout
         tabLayout.addTab(tabLayout.newTab().setText("Upcoming"));
@@ -112,30 +123,20 @@ public class BookingsFragment extends Fragment implements BookingAdapter.Booking
     private void loadBookings(int tabPosition) {
         Log.d(TAG, "Loading bookings for tab: " + tabPosition);
 
-        if (tabPosition == 0) {
-            // Upcoming bookings
-            bookingViewModel.getActiveBookings().observe(getViewLifecycleOwner(), bookings -> {
-                Log.d(TAG, "Active bookings: " + (bookings != null ? bookings.size() : 0));
-                updateBookingsList(bookings);
-            });
-        } else {
-            // Past bookings
-            bookingViewModel.getPastBookings().observe(getViewLifecycleOwner(), bookings -> {
-                Log.d(TAG, "Past bookings: " + (bookings != null ? bookings.size() : 0));
-                updateBookingsList(bookings);
-            });
+        // Only the selected tab feeds the adapter
+        if (shownBookings != null) {
+            shownBookings.removeObservers(getViewLifecycleOwner());
         }
+        shownBookings = tabPosition == 0
+                ? bookingViewModel.getActiveBookingsPaged()   // Upcoming bookings
+                : bookingViewModel.getPastBookingsPaged();    // Past bookings
+        shownBookings.observe(getViewLifecycleOwner(), pagingData ->
+                bookingAdapter.submitData(getViewLifecycleOwner().getLifecycle(), pagingData));
     }
 
-    private void updateBookingsList(List<Booking> bookings) {
-        if (bookings != null && !bookings.isEmpty()) {
-            bookingAdapter.setBookings(bookings);
-            recyclerViewBookings.setVisibility(View.VISIBLE);
-            textViewNoBookings.setVisibility(View.GONE);
-        } else {
-            recyclerViewBookings.setVisibility(View.GONE);
-            textViewNoBookings.setVisibility(View.VISIBLE);
-        }
+    private void updateEmptyState(boolean empty) {
+        recyclerViewBookings.setVisibility(empty ? View.GONE : View.VISIBLE);
+        textViewNoBookings.setVisibility(empty ? View.VISIBLE : View.GONE);
     }
 
     @Override
@@ -25,10 +25,12 @@ import com.google.android.material.bottomsheet.BottomSheetDialogFragment;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.smartparking.ParkingApp;
 import com.smartparking.R;
 import com.smartparking.models.ParkingSpace;
 import com.smartparking.models.Vehicle;
 import com.smartparking.repositories.BookingRepository;
+import com.smartparking.utils.Metrics;
 import com.smartparking.utils.NotificationHelper;
 import com.smartparking.viewmodels.BookingViewModel;
 
@@ -245,9 +247,8 @@ public class CreateBookingDialogFragment extends BottomSheetDialogFragment {
             return;
         }
 
-        firestore.collection("parkingSpaces")
-                .document(parkingId)
-                .get()
+        ParkingApp.from(requireContext()).getParkingRepository()
+                .getParkingSpaceDocument(parkingId)
                 .addOnSuccessListener(documentSnapshot -> {
                     if (isAdded()) {
                         if (documentSnapshot.exists()) {
@@ -452,6 +453,8 @@ public class CreateBookingDialogFragment extends BottomSheetDialogFragment {
             return;
         }
 
+        Metrics.startFlow(Metrics.FLOW_BOOK_TO_CONFIRMATION);
+
         // Show progress
         buttonBook.setEnabled(false);
         buttonBook.setText("Checking availability...");
@@ -482,16 +485,18 @@ public class CreateBookingDialogFragment extends BottomSheetDialogFragment {
                     "mock-booking-" + System.currentTimeMillis(),
                     parkingSpace.getName()
             );
+            Metrics.endFlow(Metrics.FLOW_BOOK_TO_CONFIRMATION);
 
             // Show success message and close dialog
             safeShowToast("Booking created successfully");
             dismiss();
         } else {
             // For real data, check if user already has a booking at this time
-            BookingRepository bookingRepo = new BookingRepository(requireActivity().getApplication());
+            BookingRepository bookingRepo = ParkingApp.from(requireContext()).getBookingRepository();
             bookingRepo.canCreateBooking(
                     userId,
                     parkingSpace.getSpaceId(),
+                    parkingSpace.getTotalSpots(),
                     startCalendar.getTimeInMillis(),
                     endCalendar.getTimeInMillis()
             ).observe(getViewLifecycleOwner(), canBook -> {
@@ -516,7 +521,7 @@ public class CreateBookingDialogFragment extends BottomSheetDialogFragment {
                 } else {
                     buttonBook.setEnabled(true);
                     buttonBook.setText(R.string.book_now);
-                    safeShowToast("You already have an overlapping booking. Please choose a different time.");
+                    safeShowToast("You already have an overlapping booking or the lot is full at that time. Please choose a different time.");
                 }
             });
         }
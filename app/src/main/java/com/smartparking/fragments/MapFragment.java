@@ -7,7 +7,6 @@ import android.content.pm.PackageManager;
 import android.graphics.drawable.Drawable;
 import android.location.Location;
 import android.os.Bundle;
-import android.preference.PreferenceManager;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.LayoutInflater;
@@ -24,6 +23,7 @@ import androidx.annotation.Nullable;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LiveData;
 import androidx.lifecycle.ViewModelProvider;
 
 import com.google.android.gms.location.FusedLocationProviderClient;
@@ -34,15 +34,21 @@ import com.google.android.gms.location.LocationServices;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.smartparking.R;
 import com.smartparking.models.ParkingSpace;
+import com.smartparking.utils.MapTiles;
+import com.smartparking.utils.MarkerIconCache;
+import com.smartparking.utils.Metrics;
+import com.smartparking.utils.ParkingMarkerManager;
 import com.smartparking.viewmodels.MapViewModel;
 
-import org.osmdroid.config.Configuration;
-import org.osmdroid.tileprovider.tilesource.TileSourceFactory;
+import org.osmdroid.events.DelayedMapListener;
+import org.osmdroid.events.MapListener;
+import org.osmdroid.events.ScrollEvent;
+import org.osmdroid.events.ZoomEvent;
+import org.osmdroid.util.BoundingBox;
 import org.osmdroid.util.GeoPoint;
 import org.osmdroid.views.MapView;
 import org.osmdroid.views.overlay.Marker;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -50,6 +56,11 @@ public class MapFragment extends Fragment {
 
     private static final String TAG = "MapFragment";
     private static final int LOCATION_PERMISSION_REQUEST_CODE = 1;
+    // Realtime subscriptions follow the map once it has settled
+    private static final long REGION_UPDATE_DELAY_MS = 500;
+    // Lots are loaded for the visible area plus this fraction of it on each side, so short
+    // pans stay covered until the next load
+    private static final double LOAD_MARGIN = 0.5;
     private static final String[] REQUIRED_PERMISSIONS = {
             Manifest.permission.ACCESS_FINE_LOCATION,
             Manifest.permission.ACCESS_COARSE_LOCATION
@@ -64,7 +75,10 @@ public class MapFragment extends Fragment {
     private ImageButton buttonFilter;
 
     private boolean locationPermissionGranted = false;
-    private List<Marker> parkingMarkers = new ArrayList<>();
+    private Marker userMarker;
+    private ParkingMarkerManager parkingMarkerManager;
+    // Results of the last search, shown instead of the visible area's lots until cleared
+    private LiveData<List<ParkingSpace>> searchResults;
 
     // Mumbai coordinates for fixed location
     private final double MUMBAI_LAT = 19.1079172;
@@ -73,11 +87,7 @@ public class MapFragment extends Fragment {
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
-        // Initialize OSMDroid configuration
-        Context ctx = requireActivity().getApplicationContext();
-        Configuration.getInstance().load(ctx, PreferenceManager.getDefaultSharedPreferences(ctx));
-        Configuration.getInstance().setUserAgentValue(requireActivity().getPackageName());
-
+        // OSMDroid is configured once in ParkingApp, see MapTiles
         return inflater.inflate(R.layout.fragment_map, container, false);
     }
 
@@ -94,10 +104,13 @@ public class MapFragment extends Fragment {
         buttonFilter = view.findViewById(R.id.buttonFilter);
 
         // Configure map
-        mapView.setTileSource(TileSourceFactory.MAPNIK);
+        mapView.setTileSource(MapTiles.getTileSource());
         mapView.setMultiTouchControls(true);
         mapView.getController().setZoom(15.0);
 
+        // Parking markers are loaded per viewport and recycled as the map moves
+        parkingMarkerManager = new ParkingMarkerManager(requireContext(), mapView, this::showParkingDetailsDialog);
+
         // Set click listeners
         fabMyLocation.setOnClickListener(v -> moveToUserLocation());
 
@@ -124,6 +137,36 @@ public class MapFragment extends Fragment {
         // Initialize ViewModel
         mapViewModel = new ViewModelProvider(this).get(MapViewModel.class);
 
+        mapViewModel.getMapParkingSpaces().observe(getViewLifecycleOwner(), parkingSpaces -> {
+            if (searchResults == null) {
+                displayParkingSpaces(parkingSpaces);
+            }
+        });
+
+        // Live availability deltas for the visible region
+        mapViewModel.getAvailabilityUpdates().observe(getViewLifecycleOwner(), update -> {
+            for (ParkingSpace parkingSpace : update.getChanged()) {
+                parkingMarkerManager.updateParkingSpace(parkingSpace);
+            }
+            for (String spaceId : update.getRemovedIds()) {
+                parkingMarkerManager.removeParkingSpace(spaceId);
+            }
+        });
+        mapView.addMapListener(new DelayedMapListener(new MapListener() {
+            @Override
+            public boolean onScroll(ScrollEvent event) {
+                updateVisibleRegion();
+                return false;
+            }
+
+            @Override
+            public boolean onZoom(ZoomEvent event) {
+                updateVisibleRegion();
+                return false;
+            }
+        }, REGION_UPDATE_DELAY_MS));
+        mapView.addOnFirstLayoutListener((v, left, top, right, bottom) -> updateVisibleRegion());
+
         // Initialize location services
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(requireActivity());
 
@@ -133,9 +176,7 @@ public class MapFragment extends Fragment {
         // Use a fixed location for Mumbai
         updateUserLocation(MUMBAI_LAT, MUMBAI_LNG);
         mapViewModel.setUserLocation(MUMBAI_LAT, MUMBAI_LNG);
-
-        // Add mock parking spaces directly
-        addAndDisplayMockParkingSpaces();
+        mapViewModel.loadNearbyParkingSpaces();
 
         Log.d(TAG, "MapFragment initialized");
     }
@@ -245,15 +286,6 @@ public class MapFragment extends Fragment {
     }
 
     private void updateUserMarker(GeoPoint userPoint) {
-        // Find existing user marker
-        Marker userMarker = null;
-        for (Marker marker : parkingMarkers) {
-            if (marker.getId().equals("user_location")) {
-                userMarker = marker;
-                break;
-            }
-        }
-
         // Create new marker if not found
         if (userMarker == null) {
             Log.d(TAG, "Creating new user marker");
@@ -262,14 +294,13 @@ public class MapFragment extends Fragment {
             userMarker.setTitle("My Location");
             userMarker.setAnchor(Marker.ANCHOR_CENTER, Marker.ANCHOR_BOTTOM);
 
-            Drawable userIcon = ContextCompat.getDrawable(requireContext(), R.drawable.ic_my_location);
+            Drawable userIcon = MarkerIconCache.getInstance(requireContext()).getIcon(R.drawable.ic_my_location);
             if (userIcon != null) {
                 userMarker.setIcon(userIcon);
             } else {
                 Log.e(TAG, "User location icon drawable not found");
             }
 
-            parkingMarkers.add(userMarker);
             mapView.getOverlays().add(userMarker);
         }
 
@@ -277,6 +308,35 @@ public class MapFragment extends Fragment {
         mapView.invalidate();
     }
 
+    // Scope the realtime availability listener to the circle around the visible map and
+    // load the lots around it
+    private void updateVisibleRegion() {
+        if (mapView.getWidth() == 0 || mapView.getHeight() == 0) {
+            return;
+        }
+        BoundingBox box = mapView.getBoundingBox();
+        GeoPoint center = new GeoPoint(box.getCenterLatitude(), box.getCenterLongitude());
+        double radiusInKm = center.distanceToAsDouble(
+                new GeoPoint(box.getLatNorth(), box.getLonEast())) / 1000.0;
+        mapViewModel.setVisibleRegion(center.getLatitude(), center.getLongitude(), radiusInKm);
+        loadVisibleParkingSpaces(box);
+    }
+
+    private void loadVisibleParkingSpaces(BoundingBox box) {
+        double latMargin = (box.getLatNorth() - box.getLatSouth()) * LOAD_MARGIN;
+        double south = Math.max(-90, box.getLatSouth() - latMargin);
+        double north = Math.min(90, box.getLatNorth() + latMargin);
+        double west = box.getLonWest();
+        double east = box.getLonEast();
+        // A box crossing the antimeridian (west > east) is passed through as is
+        if (west <= east) {
+            double lngMargin = (east - west) * LOAD_MARGIN;
+            west = Math.max(-180, west - lngMargin);
+            east = Math.min(180, east + lngMargin);
+        }
+        mapViewModel.loadParkingSpacesInBounds(south, west, north, east);
+    }
+
     private void moveToUserLocation() {
         Log.d(TAG, "Move to user location requested");
         Double latitude = mapViewModel.getUserLatitude().getValue();
@@ -298,78 +358,33 @@ public class MapFragment extends Fragment {
     private void displayParkingSpaces(List<ParkingSpace> parkingSpaces) {
         Log.d(TAG, "Displaying " + parkingSpaces.size() + " parking spaces on map");
 
-        // Remove old parking markers
-        List<Marker> markersToKeep = new ArrayList<>();
-        for (Marker marker : parkingMarkers) {
-            if (marker.getId().equals("user_location")) {
-                markersToKeep.add(marker);
-            } else {
-                mapView.getOverlays().remove(marker);
-            }
-        }
-        parkingMarkers.clear();
-        parkingMarkers.addAll(markersToKeep);
-
-        // Create new markers for parking spaces
-        for (ParkingSpace parkingSpace : parkingSpaces) {
-            Log.d(TAG, "Creating marker for " + parkingSpace.getName() + " at " +
-                    parkingSpace.getLatitude() + ", " + parkingSpace.getLongitude());
-
-            Marker marker = new Marker(mapView);
-            marker.setId(parkingSpace.getSpaceId());
-            marker.setTitle(parkingSpace.getName());
-            marker.setSnippet("Available: " + parkingSpace.getAvailableSpots() +
-                    " / " + parkingSpace.getTotalSpots() +
-                    "\nRate: $" + parkingSpace.getHourlyRate() + "/hr");
-            marker.setPosition(new GeoPoint(parkingSpace.getLatitude(), parkingSpace.getLongitude()));
-            marker.setAnchor(Marker.ANCHOR_CENTER, Marker.ANCHOR_BOTTOM);
-
-            // Set different icons based on availability
-            int iconRes = parkingSpace.getAvailableSpots() > 0 ?
-                    R.drawable.ic_parking_available : R.drawable.ic_parking_full;
-            Drawable icon = ContextCompat.getDrawable(requireContext(), iconRes);
-            if (icon != null) {
-                marker.setIcon(icon);
-            } else {
-                Log.e(TAG, "Parking icon drawable not found for resource: " + iconRes);
-            }
-
-            // Handle marker click
-            marker.setOnMarkerClickListener((m, mapView) -> {
-                Log.d(TAG, "Marker clicked: " + parkingSpace.getName());
-                showParkingDetailsDialog(parkingSpace);
-                return true;
-            });
-
-            parkingMarkers.add(marker);
-            mapView.getOverlays().add(marker);
-        }
-
-        mapView.invalidate();
+        // Markers are only created for the spaces inside the current viewport
+        Metrics.time("map.displayParkingSpaces", () -> parkingMarkerManager.setParkingSpaces(parkingSpaces));
     }
 
     private void searchParkingSpaces(String query) {
         Log.d(TAG, "Searching for parking spaces with query: " + query);
 
-        if (query == null || query.isEmpty()) {
-            // Show all mock spaces if query is empty
-            displayParkingSpaces(createMockParkingSpaces());
-            return;
+        if (searchResults != null) {
+            searchResults.removeObservers(getViewLifecycleOwner());
         }
-
-        // Filter mock spaces by name/address
-        List<ParkingSpace> allSpaces = createMockParkingSpaces();
-        List<ParkingSpace> filteredSpaces = new ArrayList<>();
-
-        for (ParkingSpace space : allSpaces) {
-            if (space.getName().toLowerCase().contains(query.toLowerCase()) ||
-                    space.getAddress().toLowerCase().contains(query.toLowerCase())) {
-                filteredSpaces.add(space);
+        if (query == null || query.trim().isEmpty()) {
+            // Back to the lots around the visible map
+            searchResults = null;
+            List<ParkingSpace> visible = mapViewModel.getMapParkingSpaces().getValue();
+            if (visible != null) {
+                displayParkingSpaces(visible);
             }
+            updateVisibleRegion();
+            return;
         }
 
-        Log.d(TAG, "Found " + filteredSpaces.size() + " spaces matching query: " + query);
-        displayParkingSpaces(filteredSpaces);
+        // Matches on name or address from Room, or from the region packs before the first sync
+        searchResults = mapViewModel.searchParkingSpaces(query.trim());
+        searchResults.observe(getViewLifecycleOwner(), filteredSpaces -> {
+            Log.d(TAG, "Found " + filteredSpaces.size() + " spaces matching query: " + query);
+            displayParkingSpaces(filteredSpaces);
+        });
     }
 
     // Update this method in MapFragment.java
@@ -392,73 +407,6 @@ public class MapFragment extends Fragment {
         dialogFragment.show(getParentFragmentManager(), "parking_details");
     }
 
-    // Method to directly create and show mock parking spaces
-    private void addAndDisplayMockParkingSpaces() {
-        List<ParkingSpace> mockSpaces = createMockParkingSpaces();
-        Log.d(TAG, "Created " + mockSpaces.size() + " mock parking spaces");
-        displayParkingSpaces(mockSpaces);
-    }
-
-    // Create mock parking spaces for testing
-    private List<ParkingSpace> createMockParkingSpaces() {
-        List<ParkingSpace> mockSpaces = new ArrayList<>();
-
-        // Mumbai coordinates
-        double mumbaiLat = MUMBAI_LAT;
-        double mumbaiLng = MUMBAI_LNG;
-
-        // Create parking spaces around that location
-        mockSpaces.add(new ParkingSpace(
-                "parking-college",
-                "College Parking",
-                "Mukesh Patel School, Vile Parle West, Mumbai",
-                mumbaiLat,
-                mumbaiLng,
-                40,
-                2.00,
-                "owner1"
-        ));
-
-        mockSpaces.add(new ParkingSpace(
-                "parking-mall",
-                "Shopping Mall Parking",
-                "Juhu Mall, Mumbai",
-                mumbaiLat + 0.003,
-                mumbaiLng - 0.002,
-                100,
-                3.50,
-                "owner2"
-        ));
-
-        mockSpaces.add(new ParkingSpace(
-                "parking-airport",
-                "Airport Parking",
-                "Mumbai International Airport",
-                mumbaiLat - 0.002,
-                mumbaiLng + 0.005,
-                200,
-                5.00,
-                "owner3"
-        ));
-
-        mockSpaces.add(new ParkingSpace(
-                "parking-station",
-                "Railway Station Parking",
-                "Vile Parle Station, Mumbai",
-                mumbaiLat + 0.001,
-                mumbaiLng - 0.001,
-                60,
-                1.50,
-                "owner1"
-        ));
-
-        // Set one parking space as full
-        ParkingSpace airportParking = mockSpaces.get(2);
-        airportParking.setAvailableSpots(0);
-
-        return mockSpaces;
-    }
-
     // Add a method to manually add a test parking spot at current location
     public void addTestSpotAtCurrentLocation() {
         Double lat = mapViewModel.getUserLatitude().getValue();
@@ -480,10 +428,9 @@ public class MapFragment extends Fragment {
                 "testowner"
         );
 
-        // Add to displayed spaces
-        List<ParkingSpace> currentSpaces = new ArrayList<>(createMockParkingSpaces());
-        currentSpaces.add(testSpace);
-        displayParkingSpaces(currentSpaces);
+        // Show it right away, the Firestore write reaches the map through Room afterwards
+        mapViewModel.addParkingSpace(testSpace);
+        parkingMarkerManager.updateParkingSpace(testSpace);
 
         Toast.makeText(requireContext(), "Added test parking spot at your location", Toast.LENGTH_SHORT).show();
     }
@@ -491,20 +438,18 @@ public class MapFragment extends Fragment {
     public void refreshMapData() {
         Log.d(TAG, "Refreshing map data");
 
-        // For Firebase implementation, get the user location
+        // Re-run the nearby query around the user and reload the visible area
         Double lat = mapViewModel.getUserLatitude().getValue();
         Double lng = mapViewModel.getUserLongitude().getValue();
 
         if (lat != null && lng != null) {
-            // This will trigger a refresh of the nearby parking spaces
             mapViewModel.setUserLocation(lat, lng);
         } else {
             // Use default location
             mapViewModel.setUserLocation(MUMBAI_LAT, MUMBAI_LNG);
         }
-
-        // For mock data approach, recreate the spaces
-        addAndDisplayMockParkingSpaces();
+        mapViewModel.loadNearbyParkingSpaces();
+        updateVisibleRegion();
     }
 
     @Override
@@ -539,6 +484,9 @@ public class MapFragment extends Fragment {
     public void onDestroy() {
         super.onDestroy();
         Log.d(TAG, "MapFragment destroyed");
+        if (parkingMarkerManager != null) {
+            parkingMarkerManager.detach();
+        }
         if (mapView != null) {
             mapView.onDetach();
         }
@@ -0,0 +1,89 @@
+package com.smartparking.fragments;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.DialogFragment;
+
+import com.smartparking.ParkingApp;
+import com.smartparking.R;
+import com.smartparking.utils.AppExecutors;
+import com.smartparking.utils.InstrumentedExecutor;
+import com.smartparking.utils.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+
+// Debug screen with the current span histograms, counters and executor stats
+public class MetricsDialogFragment extends DialogFragment {
+    private static final String TAG = "MetricsDialogFragment";
+
+    private TextView textViewMetrics;
+    private AppExecutors appExecutors;
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setStyle(DialogFragment.STYLE_NORMAL, R.style.ThemeOverlay_AppCompat_Dialog_Alert);
+    }
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        return inflater.inflate(R.layout.fragment_metrics, container, false);
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        appExecutors = ParkingApp.from(requireContext()).getAppExecutors();
+
+        textViewMetrics = view.findViewById(R.id.textViewMetrics);
+        Button buttonReset = view.findViewById(R.id.buttonReset);
+        Button buttonRefresh = view.findViewById(R.id.buttonRefresh);
+        Button buttonExport = view.findViewById(R.id.buttonExport);
+
+        buttonReset.setOnClickListener(v -> {
+            Metrics.reset();
+            showMetrics();
+        });
+        buttonRefresh.setOnClickListener(v -> showMetrics());
+        buttonExport.setOnClickListener(v -> exportMetrics());
+
+        showMetrics();
+    }
+
+    private void showMetrics() {
+        StringBuilder text = new StringBuilder(Metrics.report());
+        text.append("# executors\n");
+        for (InstrumentedExecutor.Stats stats : appExecutors.getStats()) {
+            text.append(stats).append('\n');
+        }
+        textViewMetrics.setText(text);
+    }
+
+    private void exportMetrics() {
+        Context context = requireContext().getApplicationContext();
+        appExecutors.io().execute(() -> {
+            String message;
+            try {
+                File file = Metrics.export(context);
+                message = "Exported to " + file.getAbsolutePath();
+            } catch (IOException e) {
+                Log.e(TAG, "Error exporting metrics", e);
+                message = "Export failed: " + e.getMessage();
+            }
+            String result = message;
+            textViewMetrics.post(() -> Toast.makeText(context, result, Toast.LENGTH_LONG).show());
+        });
+    }
+}
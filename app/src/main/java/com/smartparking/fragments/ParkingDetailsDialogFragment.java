@@ -6,6 +6,7 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.TextView;
@@ -17,9 +18,10 @@ import androidx.fragment.app.DialogFragment;
 
 import com.google.android.material.bottomsheet.BottomSheetDialogFragment;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.FirebaseFirestore;
+import com.smartparking.ParkingApp;
 import com.smartparking.R;
 import com.smartparking.models.ParkingSpace;
+import com.smartparking.utils.Metrics;
 
 public class ParkingDetailsDialogFragment extends BottomSheetDialogFragment {
 
@@ -48,7 +50,6 @@ public class ParkingDetailsDialogFragment extends BottomSheetDialogFragment {
     private TextView textViewRate;
     private Button buttonBook;
     private ImageView imageViewClose;
-    private FirebaseFirestore firestore;
 
     public static ParkingDetailsDialogFragment newInstance(String parkingId) {
         ParkingDetailsDialogFragment fragment = new ParkingDetailsDialogFragment();
@@ -74,7 +75,6 @@ public class ParkingDetailsDialogFragment extends BottomSheetDialogFragment {
         }
 
         setStyle(DialogFragment.STYLE_NORMAL, R.style.ThemeOverlay_App_BottomSheetDialog);
-        firestore = FirebaseFirestore.getInstance();
     }
 
     @Nullable
@@ -100,6 +100,7 @@ public class ParkingDetailsDialogFragment extends BottomSheetDialogFragment {
         // If we have arguments with parking details, use those directly
         if (name != null && !name.isEmpty()) {
             updateUIFromArguments();
+            refreshAvailability();
         } else {
             // Otherwise try to fetch from Firestore
             loadParkingDetails();
@@ -126,20 +127,45 @@ public class ParkingDetailsDialogFragment extends BottomSheetDialogFragment {
         if (availableSpots <= 0) {
             buttonBook.setText(R.string.no_spots_available);
         }
+        endFlowOnNextDraw();
+    }
+
+    // The marker's availability may be stale. Nearby lots are usually prefetched, so this
+    // is served from the document cache without waiting on the network; sharded lots also
+    // read their shards.
+    private void refreshAvailability() {
+        if (parkingId == null) {
+            return;
+        }
+        ParkingApp.from(requireContext()).getParkingRepository()
+                .getAvailableSpots(parkingId)
+                .addOnSuccessListener(spots -> {
+                    if (!isAdded() || spots == null || spots.intValue() == availableSpots) {
+                        return;
+                    }
+                    availableSpots = spots.intValue();
+                    textViewAvailability.setText(availableSpots + " / " + totalSpots + " spots available");
+                    buttonBook.setEnabled(availableSpots > 0);
+                    buttonBook.setText(availableSpots > 0 ? R.string.book_now : R.string.no_spots_available);
+                })
+                .addOnFailureListener(e -> Log.w(TAG, "Could not refresh availability", e));
     }
 
     private void loadParkingDetails() {
         Log.d(TAG, "Loading parking details from Firestore for ID: " + parkingId);
         if (parkingId != null) {
-            firestore.collection("parkingSpaces")
-                    .document(parkingId)
-                    .get()
+            ParkingApp.from(requireContext()).getParkingRepository()
+                    .getParkingSpaceDocument(parkingId)
                     .addOnSuccessListener(documentSnapshot -> {
                         if (documentSnapshot.exists()) {
                             Log.d(TAG, "Parking document exists in Firestore");
                             ParkingSpace parkingSpace = documentSnapshot.toObject(ParkingSpace.class);
                             if (parkingSpace != null) {
                                 updateUI(parkingSpace);
+                                availableSpots = parkingSpace.getAvailableSpots();
+                                totalSpots = parkingSpace.getTotalSpots();
+                                // Sharded lots do not keep the count on the document
+                                refreshAvailability();
                             } else {
                                 Log.e(TAG, "Failed to convert document to ParkingSpace");
                                 showErrorAndDismiss();
@@ -175,6 +201,23 @@ public class ParkingDetailsDialogFragment extends BottomSheetDialogFragment {
         if (parkingSpace.getAvailableSpots() <= 0) {
             buttonBook.setText(R.string.no_spots_available);
         }
+        endFlowOnNextDraw();
+    }
+
+    // The marker tap flow ends when the filled-in details reach the screen
+    private void endFlowOnNextDraw() {
+        View view = getView();
+        if (view == null) {
+            return;
+        }
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                Metrics.endFlow(Metrics.FLOW_MARKER_TO_DETAILS);
+                return true;
+            }
+        });
     }
 
     private void showErrorAndDismiss() {
@@ -18,17 +18,12 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.FirebaseFirestore;
+import com.smartparking.ParkingApp;
 import com.smartparking.R;
 import com.smartparking.adapters.VehicleAdapter;
 import com.smartparking.models.User;
-import com.smartparking.models.Vehicle;
 import com.smartparking.viewmodels.AuthViewModel;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class ProfileFragment extends Fragment {
 
     private static final String TAG = "ProfileFragment";
@@ -42,7 +37,6 @@ public class ProfileFragment extends Fragment {
     private TextView textViewNoVehicles;
 
     private AuthViewModel authViewModel;
-    private FirebaseFirestore firestore;
     private FirebaseUser currentUser;
     private VehicleAdapter vehicleAdapter;
 
@@ -68,7 +62,6 @@ public class ProfileFragment extends Fragment {
         textViewNoVehicles = view.findViewById(R.id.textViewNoVehicles);
 
         // Initialize Firebase components
-        firestore = FirebaseFirestore.getInstance();
         currentUser = FirebaseAuth.getInstance().getCurrentUser();
 
         // Initialize ViewModel
@@ -114,9 +107,8 @@ public class ProfileFragment extends Fragment {
             textViewEmail.setText(currentUser.getEmail());
 
             // Get additional user data from Firestore
-            firestore.collection("users")
-                    .document(currentUser.getUid())
-                    .get()
+            ParkingApp.from(requireContext()).getDocumentCache()
+                    .get("users", currentUser.getUid())
                     .addOnSuccessListener(documentSnapshot -> {
                         if (documentSnapshot.exists()) {
                             Log.d(TAG, "User document exists in Firestore");
@@ -159,18 +151,10 @@ public class ProfileFragment extends Fragment {
 
     private void loadUserVehicles() {
         if (currentUser != null) {
-            firestore.collection("vehicles")
-                    .whereEqualTo("userId", currentUser.getUid())
-                    .get()
-                    .addOnSuccessListener(queryDocumentSnapshots -> {
-                        List<Vehicle> vehicles = new ArrayList<>();
-                        for (DocumentSnapshot document : queryDocumentSnapshots) {
-                            Vehicle vehicle = document.toObject(Vehicle.class);
-                            if (vehicle != null) {
-                                vehicles.add(vehicle);
-                            }
-                        }
-
+            // Includes vehicles that are saved locally but not yet in Firestore
+            ParkingApp.from(requireContext()).getVehicleRepository()
+                    .getVehicles(currentUser.getUid())
+                    .observe(getViewLifecycleOwner(), vehicles -> {
                         if (vehicles.isEmpty()) {
                             textViewNoVehicles.setVisibility(View.VISIBLE);
                             recyclerViewVehicles.setVisibility(View.GONE);
@@ -179,10 +163,6 @@ public class ProfileFragment extends Fragment {
                             recyclerViewVehicles.setVisibility(View.VISIBLE);
                             vehicleAdapter.setVehicles(vehicles);
                         }
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Error loading vehicles", e);
-                        Toast.makeText(getContext(), "Error loading vehicles", Toast.LENGTH_SHORT).show();
                     });
         }
     }
@@ -5,11 +5,13 @@ import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Button;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
+import com.smartparking.BuildConfig;
 import com.smartparking.R;
 
 public class SettingsFragment extends Fragment {
@@ -24,5 +26,12 @@ public class SettingsFragment extends Fragment {
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         // Initialize settings UI here
+
+        if (BuildConfig.DEBUG) {
+            Button buttonMetrics = view.findViewById(R.id.buttonMetrics);
+            buttonMetrics.setVisibility(View.VISIBLE);
+            buttonMetrics.setOnClickListener(v ->
+                    new MetricsDialogFragment().show(getParentFragmentManager(), "metrics"));
+        }
     }
 }
\ No newline at end of file
@@ -4,11 +4,21 @@ package com.smartparking.models;
 import androidx.annotation.NonNull;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import java.util.Date;
 
-@Entity(tableName = "bookings")
+// Indices back the BookingDao hot paths: user tabs filter on userId and bookingStatus and
+// sort by startTime (upcoming) or endTime (past), per-space lookups filter on parkingSpaceId
+// and endTime
+@Entity(tableName = "bookings",
+        indices = {
+                @Index(value = {"userId", "bookingStatus", "startTime"}),
+                @Index(value = {"userId", "bookingStatus", "endTime"}),
+                @Index(value = {"userId", "startTime"}),
+                @Index(value = {"parkingSpaceId", "endTime"})
+        })
 //,
 //        foreignKeys = {
 //                @ForeignKey(entity = User.class,
@@ -2,6 +2,7 @@
 package com.smartparking.models;
 
 import androidx.lifecycle.LiveData;
+import androidx.paging.PagingSource;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
@@ -14,21 +15,35 @@ import java.util.List;
 @Dao
 public interface BookingDao {
 
+    // Bookings joined with the cached parking space name, address and rate
+    String BOOKING_ROWS = "SELECT bookings.*, parking_spaces.name AS parkingName, "
+            + "parking_spaces.address AS parkingAddress, parking_spaces.hourlyRate AS parkingHourlyRate "
+            + "FROM bookings LEFT JOIN parking_spaces ON parking_spaces.spaceId = bookings.parkingSpaceId ";
+
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insert(Booking booking);
 
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<Booking> bookings);
+
     @Update
     void update(Booking booking);
 
     @Delete
     void delete(Booking booking);
 
+    @Query("DELETE FROM bookings WHERE bookingId IN (:bookingIds)")
+    void deleteByIds(List<String> bookingIds);
+
     @Query("SELECT * FROM bookings WHERE userId = :userId ORDER BY startTime DESC")
     LiveData<List<Booking>> getBookingsByUserId(String userId);
 
     @Query("SELECT * FROM bookings WHERE bookingId = :bookingId")
     LiveData<Booking> getBookingById(String bookingId);
 
+    @Query("SELECT * FROM bookings WHERE bookingId = :bookingId")
+    Booking getBookingByIdSync(String bookingId);
+
     @Query("SELECT * FROM bookings WHERE parkingSpaceId = :parkingSpaceId AND endTime > :currentTime")
     LiveData<List<Booking>> getActiveBookingsForParkingSpace(String parkingSpaceId, long currentTime);
 
@@ -38,6 +53,26 @@ public interface BookingDao {
     @Query("SELECT * FROM bookings WHERE userId = :userId AND bookingStatus = 'COMPLETED' ORDER BY endTime DESC")
     LiveData<List<Booking>> getPastBookingsForUser(String userId);
 
+    @Query("SELECT * FROM bookings WHERE parkingSpaceId = :parkingSpaceId AND bookingStatus IN ('RESERVED', 'ACTIVE')")
+    List<Booking> getOccupyingBookingsForParkingSpaceSync(String parkingSpaceId);
+
+    // Paged versions of the booking tabs
+    @Query(BOOKING_ROWS + "WHERE bookings.userId = :userId AND bookings.bookingStatus IN ('RESERVED', 'ACTIVE') "
+            + "ORDER BY bookings.startTime ASC")
+    PagingSource<Integer, BookingWithParking> getActiveBookingsForUserPaged(String userId);
+
+    @Query(BOOKING_ROWS + "WHERE bookings.userId = :userId AND bookings.bookingStatus = 'COMPLETED' "
+            + "ORDER BY bookings.endTime DESC")
+    PagingSource<Integer, BookingWithParking> getPastBookingsForUserPaged(String userId);
+
+    @Query(BOOKING_ROWS + "WHERE bookings.bookingId = :bookingId")
+    LiveData<BookingWithParking> getBookingWithParkingById(String bookingId);
+
+    // Last row of the Past tab, which Firestore orders by endTime then document id, both descending
+    @Query("SELECT * FROM bookings WHERE userId = :userId AND bookingStatus = 'COMPLETED' "
+            + "ORDER BY endTime ASC, bookingId ASC LIMIT 1")
+    Booking getOldestPastBooking(String userId);
+
     @Query("DELETE FROM bookings")
     void deleteAllBookings();
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.smartparking.models;
+
+import androidx.room.Embedded;
+
+// Booking row joined with the parking space it is for. The parking columns are null
+// when the space is not cached locally.
+public class BookingWithParking {
+
+    @Embedded
+    private Booking booking;
+    private String parkingName;
+    private String parkingAddress;
+    private Double parkingHourlyRate;
+
+    public Booking getBooking() {
+        return booking;
+    }
+
+    public void setBooking(Booking booking) {
+        this.booking = booking;
+    }
+
+    public String getParkingName() {
+        return parkingName;
+    }
+
+    public void setParkingName(String parkingName) {
+        this.parkingName = parkingName;
+    }
+
+    public String getParkingAddress() {
+        return parkingAddress;
+    }
+
+    public void setParkingAddress(String parkingAddress) {
+        this.parkingAddress = parkingAddress;
+    }
+
+    public Double getParkingHourlyRate() {
+        return parkingHourlyRate;
+    }
+
+    public void setParkingHourlyRate(Double parkingHourlyRate) {
+        this.parkingHourlyRate = parkingHourlyRate;
+    }
+
+    public boolean hasParkingDetails() {
+        return parkingName != null;
+    }
+
+    // Parking name, or the raw id until the space is synced
+    public String getDisplayName() {
+        return parkingName != null ? parkingName : booking.getParkingSpaceId();
+    }
+}
@@ -0,0 +1,49 @@
+package com.smartparking.models;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface OutboxDao {
+
+    // Returns -1 when an entry with the same idempotency key is already queued
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insert(OutboxEntry entry);
+
+    // Replaces a queued entry with the same idempotency key. The entry gets a new id, so a
+    // replay of the old one that is already in flight cannot delete it.
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    long insertOrReplace(OutboxEntry entry);
+
+    // Oldest entries first, the drainer replays them in order
+    @Query("SELECT * FROM outbox ORDER BY id ASC LIMIT :limit")
+    List<OutboxEntry> getOldest(int limit);
+
+    @Query("SELECT * FROM outbox WHERE operation = :operation ORDER BY id ASC")
+    List<OutboxEntry> getByOperation(String operation);
+
+    @Query("SELECT documentId FROM outbox WHERE documentId IN (:documentIds)")
+    List<String> getPendingDocumentIds(List<String> documentIds);
+
+    @Query("UPDATE outbox SET attempts = :attempts, nextAttemptAt = :nextAttemptAt, lastError = :lastError "
+            + "WHERE id IN (:ids)")
+    void markRetry(List<Long> ids, int attempts, long nextAttemptAt, String lastError);
+
+    // Makes every waiting entry due now, e.g. when the network comes back
+    @Query("UPDATE outbox SET nextAttemptAt = 0 WHERE nextAttemptAt > 0")
+    int clearBackoff();
+
+    @Query("DELETE FROM outbox WHERE id IN (:ids)")
+    void deleteByIds(List<Long> ids);
+
+    @Query("DELETE FROM outbox WHERE operation = :operation AND documentId = :documentId")
+    int deleteByDocument(String operation, String documentId);
+
+    @Query("SELECT COUNT(*) FROM outbox")
+    LiveData<Integer> getPendingCount();
+}
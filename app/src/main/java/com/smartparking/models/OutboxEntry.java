@@ -0,0 +1,121 @@
+package com.smartparking.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+// A local mutation waiting to be replayed to Firestore. Entries are replayed in id
+// order; the idempotency key is unique so enqueueing the same mutation twice keeps
+// one entry.
+@Entity(tableName = "outbox",
+        indices = {
+                @Index(value = {"idempotencyKey"}, unique = true),
+                @Index(value = {"documentId"})
+        })
+public class OutboxEntry {
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+    @NonNull
+    private String idempotencyKey = "";
+    @NonNull
+    private String operation = "";
+    @NonNull
+    private String documentId = "";
+    // Operation specific data, JSON
+    private String payload;
+    private int attempts;
+    private long nextAttemptAt;
+    private long createdAt;
+    private String lastError;
+
+    public OutboxEntry() {
+        // Required empty constructor for Room
+    }
+
+    @Ignore
+    public OutboxEntry(@NonNull String operation, @NonNull String documentId, String payload) {
+        this.idempotencyKey = operation + ":" + documentId;
+        this.operation = operation;
+        this.documentId = documentId;
+        this.payload = payload;
+        this.createdAt = System.currentTimeMillis();
+        this.nextAttemptAt = createdAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    @NonNull
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(@NonNull String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    @NonNull
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(@NonNull String operation) {
+        this.operation = operation;
+    }
+
+    @NonNull
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(@NonNull String documentId) {
+        this.documentId = documentId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public long getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(long nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
@@ -3,29 +3,100 @@ package com.smartparking.models;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
-@Database(entities = {User.class, Vehicle.class, ParkingSpace.class, Booking.class}, version = 3, exportSchema = false)
+import com.smartparking.BuildConfig;
+import com.smartparking.utils.Metrics;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Database(entities = {User.class, Vehicle.class, ParkingSpace.class, Booking.class, SyncState.class, OutboxEntry.class}, version = 9, exportSchema = false)
 public abstract class ParkingDatabase extends RoomDatabase {
 
     private static ParkingDatabase instance;
 
+    // 5 -> 6: Booking indices
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_bookings_userId_bookingStatus_startTime` "
+                    + "ON `bookings` (`userId`, `bookingStatus`, `startTime`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_bookings_userId_startTime` "
+                    + "ON `bookings` (`userId`, `startTime`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_bookings_parkingSpaceId_endTime` "
+                    + "ON `bookings` (`parkingSpaceId`, `endTime`)");
+        }
+    };
+
+    // 6 -> 7: outbox of local writes waiting for Firestore
+    public static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `outbox` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`idempotencyKey` TEXT NOT NULL, `operation` TEXT NOT NULL, `documentId` TEXT NOT NULL, "
+                    + "`payload` TEXT, `attempts` INTEGER NOT NULL, `nextAttemptAt` INTEGER NOT NULL, "
+                    + "`createdAt` INTEGER NOT NULL, `lastError` TEXT)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_outbox_idempotencyKey` "
+                    + "ON `outbox` (`idempotencyKey`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_outbox_documentId` ON `outbox` (`documentId`)");
+        }
+    };
+
+    // 7 -> 8: past bookings are sorted by endTime
+    public static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_bookings_userId_bookingStatus_endTime` "
+                    + "ON `bookings` (`userId`, `bookingStatus`, `endTime`)");
+        }
+    };
+
+    // 8 -> 9: resume cursor for interrupted full syncs
+    public static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `sync_state` ADD COLUMN `fullSyncCursor` TEXT");
+        }
+    };
+
     public abstract UserDao userDao();
     public abstract VehicleDao vehicleDao();
     public abstract ParkingSpaceDao parkingSpaceDao();
     public abstract BookingDao bookingDao();
+    public abstract SyncStateDao syncStateDao();
+    public abstract OutboxDao outboxDao();
 
+    // Statement kind and main table of Room's generated SQL, for the debug statement counters
+    private static final Pattern SQL_STATEMENT = Pattern.compile(
+            "^\\s*(SELECT|INSERT|UPDATE|DELETE)\\b(?:.*?\\b(?:FROM|INTO))?\\s+(?:OR\\s+\\w+\\s+)?`?(\\w+)`?",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
 
     public static synchronized ParkingDatabase getInstance(Context context) {
         if (instance == null) {
-            instance = Room.databaseBuilder(
+            RoomDatabase.Builder<ParkingDatabase> builder = Room.databaseBuilder(
                             context.getApplicationContext(),
                             ParkingDatabase.class,
                             "parking_database")
-                    .fallbackToDestructiveMigration() // This will delete and recreate the database
-                    .build();
+                    .addMigrations(MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9)
+                    // Versions before 5 were only ever a cache of Firestore, they are rebuilt by the next sync
+                    .fallbackToDestructiveMigrationFrom(1, 2, 3, 4);
+            if (BuildConfig.DEBUG) {
+                // Counts every statement, including the LiveData and paging queries Room runs on its own
+                builder.setQueryCallback((sql, args) -> {
+                    Matcher matcher = SQL_STATEMENT.matcher(sql);
+                    if (matcher.find()) {
+                        Metrics.count("room.sql." + matcher.group(1).toLowerCase(Locale.US) + "." + matcher.group(2));
+                    }
+                }, Runnable::run);
+            }
+            instance = builder.build();
         }
         return instance;
     }
@@ -7,6 +7,7 @@ import androidx.room.Ignore;
 import androidx.annotation.NonNull;
 
 import com.google.firebase.firestore.GeoPoint;
+import com.smartparking.utils.GeoHashUtils;
 
 @Entity(tableName = "parking_spaces")
 public class ParkingSpace {
@@ -23,6 +24,7 @@ public class ParkingSpace {
     private double hourlyRate;
     private boolean isActive;
     private String ownerId;
+    private String geohash;
 
     // Default constructor required by Room
     public ParkingSpace() {
@@ -44,6 +46,7 @@ public class ParkingSpace {
         this.hourlyRate = hourlyRate;
         this.isActive = true;
         this.ownerId = ownerId;
+        this.geohash = GeoHashUtils.encode(latitude, longitude);
     }
 
     @NonNull
@@ -127,6 +130,19 @@ public class ParkingSpace {
         this.ownerId = ownerId;
     }
 
+    public String getGeohash() {
+        return geohash;
+    }
+
+    public void setGeohash(String geohash) {
+        this.geohash = geohash;
+    }
+
+    // Recompute the geohash after the coordinates change
+    public void updateGeohash() {
+        this.geohash = GeoHashUtils.encode(latitude, longitude);
+    }
+
     // Helper method to create GeoPoint for Firestore
     public GeoPoint getGeoPoint() {
         return new GeoPoint(latitude, longitude);
@@ -17,18 +17,38 @@ public interface ParkingSpaceDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insert(ParkingSpace parkingSpace);
 
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<ParkingSpace> parkingSpaces);
+
     @Update
     void update(ParkingSpace parkingSpace);
 
+    // Returns 0 when the row is missing or already has this count
+    @Query("UPDATE parking_spaces SET availableSpots = :availableSpots "
+            + "WHERE spaceId = :spaceId AND availableSpots != :availableSpots")
+    int updateAvailableSpots(String spaceId, int availableSpots);
+
     @Delete
     void delete(ParkingSpace parkingSpace);
 
+    @Query("DELETE FROM parking_spaces WHERE spaceId IN (:spaceIds)")
+    void deleteByIds(List<String> spaceIds);
+
     @Query("SELECT * FROM parking_spaces")
     LiveData<List<ParkingSpace>> getAllParkingSpaces();
 
+    @Query("SELECT * FROM parking_spaces")
+    List<ParkingSpace> getAllParkingSpacesSync();
+
     @Query("SELECT * FROM parking_spaces WHERE spaceId = :spaceId")
     LiveData<ParkingSpace> getParkingSpaceById(String spaceId);
 
+    @Query("SELECT * FROM parking_spaces WHERE spaceId = :spaceId")
+    ParkingSpace getParkingSpaceByIdSync(String spaceId);
+
+    @Query("SELECT * FROM parking_spaces WHERE spaceId IN (:spaceIds)")
+    List<ParkingSpace> getParkingSpacesByIdsSync(List<String> spaceIds);
+
     @Query("SELECT * FROM parking_spaces WHERE availableSpots > 0")
     LiveData<List<ParkingSpace>> getAvailableParkingSpaces();
 
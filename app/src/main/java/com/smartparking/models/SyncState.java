@@ -0,0 +1,74 @@
+package com.smartparking.models;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+// Delta sync progress for one synced collection (or one user's slice of it)
+@Entity(tableName = "sync_state")
+public class SyncState {
+    @PrimaryKey
+    @NonNull
+    private String syncKey;
+    // Server updatedAt of the newest document applied locally, in millis
+    private long changesWatermark;
+    // Server deletedAt of the newest tombstone applied locally, in millis
+    private long tombstonesWatermark;
+    private long lastSyncedAt;
+    // Id of the last document applied by a full read still in progress, null once it finished
+    @Nullable
+    private String fullSyncCursor;
+
+    public SyncState() {
+        // Required empty constructor for Room
+    }
+
+    @Ignore
+    public SyncState(@NonNull String syncKey) {
+        this.syncKey = syncKey;
+    }
+
+    @NonNull
+    public String getSyncKey() {
+        return syncKey;
+    }
+
+    public void setSyncKey(@NonNull String syncKey) {
+        this.syncKey = syncKey;
+    }
+
+    public long getChangesWatermark() {
+        return changesWatermark;
+    }
+
+    public void setChangesWatermark(long changesWatermark) {
+        this.changesWatermark = changesWatermark;
+    }
+
+    public long getTombstonesWatermark() {
+        return tombstonesWatermark;
+    }
+
+    public void setTombstonesWatermark(long tombstonesWatermark) {
+        this.tombstonesWatermark = tombstonesWatermark;
+    }
+
+    public long getLastSyncedAt() {
+        return lastSyncedAt;
+    }
+
+    public void setLastSyncedAt(long lastSyncedAt) {
+        this.lastSyncedAt = lastSyncedAt;
+    }
+
+    @Nullable
+    public String getFullSyncCursor() {
+        return fullSyncCursor;
+    }
+
+    public void setFullSyncCursor(@Nullable String fullSyncCursor) {
+        this.fullSyncCursor = fullSyncCursor;
+    }
+}
@@ -0,0 +1,19 @@
+package com.smartparking.models;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+@Dao
+public interface SyncStateDao {
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsert(SyncState syncState);
+
+    @Query("SELECT * FROM sync_state WHERE syncKey = :syncKey")
+    SyncState getSyncState(String syncKey);
+
+    @Query("DELETE FROM sync_state WHERE syncKey = :syncKey")
+    void reset(String syncKey);
+}
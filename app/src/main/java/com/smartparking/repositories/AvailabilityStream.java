@@ -0,0 +1,148 @@
+package com.smartparking.repositories;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.firebase.firestore.ListenerRegistration;
+import com.smartparking.models.ParkingSpace;
+import com.smartparking.utils.GeoHashUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Live parking availability for the region the map is looking at. Listens to the
+// Firestore geohash cells covering the region, consumes only document changes and
+// coalesces them so observers get at most one update per MIN_EMIT_INTERVAL_MS. Zoomed out
+// past MAX_RADIUS_KM the map shows clusters and the stream pauses, since the covering
+// cells would take in a whole metro area's lots or the entire collection.
+public class AvailabilityStream {
+    private static final String TAG = "AvailabilityStream";
+
+    private static final long MIN_EMIT_INTERVAL_MS = 300;
+    // Subscribe a bit wider than asked so small pans don't re-subscribe
+    private static final double REGION_PADDING = 1.5;
+    // Largest padded region that is listened to
+    private static final double MAX_RADIUS_KM = 15;
+
+    private final ParkingRepository parkingRepository;
+    private final MutableLiveData<AvailabilityUpdate> updates = new MutableLiveData<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final Map<String, ParkingSpace> pendingChanged = new LinkedHashMap<>();
+    private final Set<String> pendingRemoved = new LinkedHashSet<>();
+    private boolean flushScheduled = false;
+    private long lastEmitTime = 0;
+
+    private ListenerRegistration registration;
+    private double regionLatitude;
+    private double regionLongitude;
+    private double regionRadiusKm;
+
+    public AvailabilityStream(ParkingRepository parkingRepository) {
+        this.parkingRepository = parkingRepository;
+    }
+
+    public LiveData<AvailabilityUpdate> getUpdates() {
+        return updates;
+    }
+
+    // Scope the stream to a circle. Keeps the current subscription if it already covers it.
+    public void setRegion(double latitude, double longitude, double radiusInKm) {
+        if (registration != null && covers(latitude, longitude, radiusInKm)) {
+            return;
+        }
+        stop();
+        if (radiusInKm * REGION_PADDING > MAX_RADIUS_KM) {
+            Log.d(TAG, "Region of " + radiusInKm + "km too large, availability paused");
+            return;
+        }
+
+        regionLatitude = latitude;
+        regionLongitude = longitude;
+        regionRadiusKm = radiusInKm * REGION_PADDING;
+        Log.d(TAG, "Listening to availability within " + regionRadiusKm + "km of "
+                + latitude + ", " + longitude);
+        registration = parkingRepository.listenForAvailabilityChanges(
+                regionLatitude, regionLongitude, regionRadiusKm, this::onChanges);
+    }
+
+    public void stop() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+        mainHandler.removeCallbacks(flushRunnable);
+        flushScheduled = false;
+        pendingChanged.clear();
+        pendingRemoved.clear();
+    }
+
+    private boolean covers(double latitude, double longitude, double radiusInKm) {
+        double distance = GeoHashUtils.distanceKm(regionLatitude, regionLongitude, latitude, longitude);
+        return distance + radiusInKm <= regionRadiusKm;
+    }
+
+    private void onChanges(List<ParkingSpace> changed, List<String> removedIds) {
+        for (ParkingSpace space : changed) {
+            pendingRemoved.remove(space.getSpaceId());
+            pendingChanged.put(space.getSpaceId(), space);
+        }
+        for (String spaceId : removedIds) {
+            pendingChanged.remove(spaceId);
+            pendingRemoved.add(spaceId);
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        long delay = Math.max(0, lastEmitTime + MIN_EMIT_INTERVAL_MS - SystemClock.uptimeMillis());
+        mainHandler.postDelayed(flushRunnable, delay);
+    }
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled = false;
+            if (pendingChanged.isEmpty() && pendingRemoved.isEmpty()) {
+                return;
+            }
+            lastEmitTime = SystemClock.uptimeMillis();
+            updates.setValue(new AvailabilityUpdate(
+                    new ArrayList<>(pendingChanged.values()), new ArrayList<>(pendingRemoved)));
+            pendingChanged.clear();
+            pendingRemoved.clear();
+        }
+    };
+
+    // One coalesced batch of availability changes
+    public static class AvailabilityUpdate {
+        private final List<ParkingSpace> changed;
+        private final List<String> removedIds;
+
+        AvailabilityUpdate(List<ParkingSpace> changed, List<String> removedIds) {
+            this.changed = changed;
+            this.removedIds = removedIds;
+        }
+
+        public List<ParkingSpace> getChanged() {
+            return changed;
+        }
+
+        public List<String> getRemovedIds() {
+            return removedIds;
+        }
+    }
+}
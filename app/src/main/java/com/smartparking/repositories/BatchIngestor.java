@@ -0,0 +1,119 @@
+package com.smartparking.repositories;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Copies a Firestore query result into Room in pages. Snapshots are converted to
+// entities on the compute pool and each page is upserted in a single Room transaction
+// on the IO pool, so a large sync costs one commit per page instead of one per row.
+public class BatchIngestor<T> {
+
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    public interface Mapper<T> {
+        T map(DocumentSnapshot document);
+    }
+
+    // Must write the whole page in one transaction, e.g. a DAO @Insert taking a List
+    public interface PageWriter<T> {
+        void write(List<T> page);
+    }
+
+    private final String tag;
+    private final Executor computeExecutor;
+    private final Executor ioExecutor;
+    private final int pageSize;
+    private final Mapper<T> mapper;
+    private final PageWriter<T> writer;
+
+    private final AtomicLong rowsIngested = new AtomicLong();
+    private final AtomicLong pagesWritten = new AtomicLong();
+    private volatile double lastRowsPerSecond = 0;
+
+    public BatchIngestor(String name, Executor computeExecutor, Executor ioExecutor, int pageSize,
+                         Mapper<T> mapper, PageWriter<T> writer) {
+        this.tag = "BatchIngestor[" + name + "]";
+        this.computeExecutor = computeExecutor;
+        this.ioExecutor = ioExecutor;
+        this.pageSize = pageSize;
+        this.mapper = mapper;
+        this.writer = writer;
+    }
+
+    public void ingest(List<? extends DocumentSnapshot> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        long startedAt = SystemClock.elapsedRealtime();
+        int pageCount = (documents.size() + pageSize - 1) / pageSize;
+        AtomicInteger pagesLeft = new AtomicInteger(pageCount);
+
+        for (int from = 0; from < documents.size(); from += pageSize) {
+            List<? extends DocumentSnapshot> slice =
+                    documents.subList(from, Math.min(documents.size(), from + pageSize));
+            computeExecutor.execute(() -> {
+                List<T> page = new ArrayList<>(slice.size());
+                for (DocumentSnapshot document : slice) {
+                    T row = mapper.map(document);
+                    if (row != null) {
+                        page.add(row);
+                    }
+                }
+                ioExecutor.execute(() -> {
+                    try {
+                        writer.write(page);
+                        rowsIngested.addAndGet(page.size());
+                        pagesWritten.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        Log.e(tag, "Error writing page of " + page.size() + " rows", e);
+                    }
+                    if (pagesLeft.decrementAndGet() == 0) {
+                        report(documents.size(), pageCount, SystemClock.elapsedRealtime() - startedAt);
+                    }
+                });
+            });
+        }
+    }
+
+    // Map and write one page on the calling thread, for callers that need the rows
+    // committed before they continue (e.g. inside their own Room transaction)
+    public int ingestPageSync(List<? extends DocumentSnapshot> documents) {
+        List<T> page = new ArrayList<>(documents.size());
+        for (DocumentSnapshot document : documents) {
+            T row = mapper.map(document);
+            if (row != null) {
+                page.add(row);
+            }
+        }
+        writer.write(page);
+        rowsIngested.addAndGet(page.size());
+        pagesWritten.incrementAndGet();
+        return page.size();
+    }
+
+    public long getRowsIngested() {
+        return rowsIngested.get();
+    }
+
+    public long getPagesWritten() {
+        return pagesWritten.get();
+    }
+
+    public double getLastRowsPerSecond() {
+        return lastRowsPerSecond;
+    }
+
+    private void report(int rows, int pages, long elapsedMs) {
+        lastRowsPerSecond = rows * 1000.0 / Math.max(1, elapsedMs);
+        Log.d(tag, "Ingested " + rows + " rows in " + pages + " pages, " + elapsedMs + "ms ("
+                + Math.round(lastRowsPerSecond) + " rows/sec)");
+    }
+}
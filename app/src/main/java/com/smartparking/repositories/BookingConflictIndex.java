@@ -0,0 +1,132 @@
+package com.smartparking.repositories;
+
+import android.util.Log;
+
+import com.smartparking.models.Booking;
+import com.smartparking.models.BookingDao;
+import com.smartparking.utils.IntervalTree;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Per parking space interval index of the bookings that hold a spot (RESERVED or
+// ACTIVE), so time-slot capacity checks don't scan every booking. A space's tree is
+// loaded from Room the first time it is queried and is then kept current by the
+// repository's booking writes. Queries hit Room on first use, so call them off the
+// main thread.
+public class BookingConflictIndex {
+    private static final String TAG = "BookingConflictIndex";
+
+    private final BookingDao bookingDao;
+    private final Map<String, IntervalTree<Booking>> treesBySpace = new ConcurrentHashMap<>();
+    // Space of every indexed booking, so a booking moved to another space is removed from the old tree
+    private final Map<String, String> spaceByBookingId = new ConcurrentHashMap<>();
+
+    public BookingConflictIndex(BookingDao bookingDao) {
+        this.bookingDao = bookingDao;
+    }
+
+    // Number of spot-holding bookings overlapping [startTime, endTime)
+    public int countOverlapping(String parkingSpaceId, long startTime, long endTime) {
+        return treeFor(parkingSpaceId).countOverlapping(startTime, endTime);
+    }
+
+    public List<Booking> getOverlapping(String parkingSpaceId, long startTime, long endTime) {
+        return treeFor(parkingSpaceId).queryOverlapping(startTime, endTime);
+    }
+
+    // Peak number of spots taken at the same time within [startTime, endTime)
+    public int maxConcurrent(String parkingSpaceId, long startTime, long endTime) {
+        return treeFor(parkingSpaceId).maxConcurrent(startTime, endTime);
+    }
+
+    public boolean hasCapacity(String parkingSpaceId, int totalSpots, long startTime, long endTime) {
+        return maxConcurrent(parkingSpaceId, startTime, endTime) < totalSpots;
+    }
+
+    // Call after the booking has been written to Room
+    public void onBookingSaved(Booking booking) {
+        String previousSpace = spaceByBookingId.get(booking.getBookingId());
+        if (previousSpace != null && !previousSpace.equals(booking.getParkingSpaceId())) {
+            removeFromSpace(previousSpace, booking.getBookingId());
+        }
+
+        IntervalTree<Booking> tree = treesBySpace.get(booking.getParkingSpaceId());
+        if (tree == null) {
+            // Wait out a load in progress, it may have read Room before this write
+            synchronized (treesBySpace) {
+                tree = treesBySpace.get(booking.getParkingSpaceId());
+            }
+            if (tree == null) {
+                // Not loaded yet, the booking is picked up from Room on first query
+                return;
+            }
+        }
+        if (holdsSpot(booking)) {
+            tree.put(booking.getBookingId(), booking.getStartTime(), booking.getEndTime(), booking);
+            spaceByBookingId.put(booking.getBookingId(), booking.getParkingSpaceId());
+        } else {
+            removeFromSpace(booking.getParkingSpaceId(), booking.getBookingId());
+        }
+    }
+
+    public void onBookingDeleted(Booking booking) {
+        String space = spaceByBookingId.get(booking.getBookingId());
+        removeFromSpace(space != null ? space : booking.getParkingSpaceId(), booking.getBookingId());
+    }
+
+    public void onBookingDeleted(String bookingId) {
+        removeFromSpace(spaceByBookingId.get(bookingId), bookingId);
+    }
+
+    // Drop a space's tree after its bookings were replaced in Room, the next query reloads it
+    public void invalidate(String parkingSpaceId) {
+        synchronized (treesBySpace) {
+            treesBySpace.remove(parkingSpaceId);
+            spaceByBookingId.values().removeIf(parkingSpaceId::equals);
+        }
+    }
+
+    public void clear() {
+        treesBySpace.clear();
+        spaceByBookingId.clear();
+    }
+
+    private IntervalTree<Booking> treeFor(String parkingSpaceId) {
+        IntervalTree<Booking> tree = treesBySpace.get(parkingSpaceId);
+        if (tree != null) {
+            return tree;
+        }
+        synchronized (treesBySpace) {
+            tree = treesBySpace.get(parkingSpaceId);
+            if (tree == null) {
+                tree = new IntervalTree<>();
+                List<Booking> bookings = bookingDao.getOccupyingBookingsForParkingSpaceSync(parkingSpaceId);
+                for (Booking booking : bookings) {
+                    if (holdsSpot(booking)) {
+                        tree.put(booking.getBookingId(), booking.getStartTime(), booking.getEndTime(), booking);
+                        spaceByBookingId.put(booking.getBookingId(), parkingSpaceId);
+                    }
+                }
+                treesBySpace.put(parkingSpaceId, tree);
+                Log.d(TAG, "Loaded " + tree.size() + " bookings for parking space " + parkingSpaceId);
+            }
+            return tree;
+        }
+    }
+
+    private void removeFromSpace(String parkingSpaceId, String bookingId) {
+        spaceByBookingId.remove(bookingId);
+        IntervalTree<Booking> tree = parkingSpaceId != null ? treesBySpace.get(parkingSpaceId) : null;
+        if (tree != null) {
+            tree.remove(bookingId);
+        }
+    }
+
+    private static boolean holdsSpot(Booking booking) {
+        String status = booking.getBookingStatus();
+        return ("RESERVED".equals(status) || "ACTIVE".equals(status))
+                && booking.getEndTime() > booking.getStartTime();
+    }
+}
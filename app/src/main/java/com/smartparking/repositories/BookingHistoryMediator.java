@@ -0,0 +1,98 @@
+package com.smartparking.repositories;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.concurrent.futures.CallbackToFutureAdapter;
+import androidx.paging.ExperimentalPagingApi;
+import androidx.paging.ListenableFutureRemoteMediator;
+import androidx.paging.LoadType;
+import androidx.paging.PagingState;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.smartparking.models.Booking;
+import com.smartparking.models.BookingDao;
+import com.smartparking.models.BookingWithParking;
+import com.smartparking.utils.Metrics;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+// Back-fills a user's past bookings from Firestore when the Past tab scrolls past the
+// oldest booking in Room. Newer history is kept current by the delta sync, so refresh
+// and prepend have nothing to load.
+@ExperimentalPagingApi
+public class BookingHistoryMediator extends ListenableFutureRemoteMediator<Integer, BookingWithParking> {
+    private static final String TAG = "BookingHistoryMediator";
+
+    private final FirebaseFirestore firestore;
+    private final BookingDao bookingDao;
+    private final Executor ioExecutor;
+    private final String userId;
+    private final BatchIngestor<Booking> ingestor;
+
+    public BookingHistoryMediator(FirebaseFirestore firestore, BookingDao bookingDao, Executor ioExecutor,
+                                  BatchIngestor<Booking> ingestor, String userId) {
+        this.firestore = firestore;
+        this.bookingDao = bookingDao;
+        this.ioExecutor = ioExecutor;
+        this.ingestor = ingestor;
+        this.userId = userId;
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<InitializeAction> initializeFuture() {
+        // Show what Room has straight away
+        return immediate(InitializeAction.SKIP_INITIAL_REFRESH);
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<MediatorResult> loadFuture(@NonNull LoadType loadType,
+                                                       @NonNull PagingState<Integer, BookingWithParking> state) {
+        if (loadType != LoadType.APPEND) {
+            return immediate(new MediatorResult.Success(loadType == LoadType.PREPEND));
+        }
+
+        int pageSize = state.getConfig().pageSize;
+        return CallbackToFutureAdapter.getFuture(completer -> {
+            ioExecutor.execute(() -> {
+                Booking oldest = Metrics.time("room.bookings.getOldestPast",
+                        () -> bookingDao.getOldestPastBooking(userId));
+                // The document id breaks endTime ties, so bookings that ended together are
+                // neither skipped nor loaded twice across a page boundary
+                Query query = firestore.collection("bookings")
+                        .whereEqualTo("userId", userId)
+                        .whereEqualTo("bookingStatus", "COMPLETED")
+                        .orderBy("endTime", Query.Direction.DESCENDING)
+                        .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING)
+                        .limit(pageSize);
+                if (oldest != null) {
+                    query = query.startAfter(oldest.getEndTime(), oldest.getBookingId());
+                }
+                Metrics.trace("firestore.bookings.getPastPage", query.get())
+                        .addOnSuccessListener(ioExecutor, snapshot -> {
+                            List<DocumentSnapshot> documents = snapshot.getDocuments();
+                            // Room invalidates the PagingSource once the page is written
+                            ingestor.ingestPageSync(documents);
+                            Log.d(TAG, "Back-filled " + documents.size() + " past bookings for " + userId);
+                            completer.set(new MediatorResult.Success(documents.size() < pageSize));
+                        })
+                        .addOnFailureListener(e -> {
+                            Log.e(TAG, "Error back-filling past bookings", e);
+                            completer.set(new MediatorResult.Error(e));
+                        });
+            });
+            return "BookingHistoryMediator.load";
+        });
+    }
+
+    private static <T> ListenableFuture<T> immediate(T value) {
+        return CallbackToFutureAdapter.getFuture(completer -> completer.set(value));
+    }
+}
@@ -5,57 +5,136 @@ import android.app.Application;
 import android.content.Context;
 import android.util.Log;
 
+import androidx.annotation.OptIn;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-
+import androidx.paging.ExperimentalPagingApi;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.GeoPoint;
+import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.WriteBatch;
 import com.smartparking.models.Booking;
 import com.smartparking.models.BookingDao;
+import com.smartparking.models.BookingWithParking;
+import com.smartparking.models.OutboxEntry;
 import com.smartparking.models.ParkingDatabase;
 import com.smartparking.models.ParkingSpace;
+import com.smartparking.utils.AppExecutors;
+import com.smartparking.utils.Metrics;
 import com.smartparking.utils.NotificationHelper;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 public class BookingRepository {
     private static final String TAG = "BookingRepository";
 
+    // Pages stay small and at most MAX_LOADED_BOOKINGS rows are held, however long the history is
+    private static final int PAGE_SIZE = 20;
+    private static final int MAX_LOADED_BOOKINGS = 200;
+
+    public static final String OP_CREATE_BOOKING = "createBooking";
+    public static final String OP_CANCEL_BOOKING = "cancelBooking";
+
+    private final ParkingDatabase database;
     private final BookingDao bookingDao;
     private final FirebaseFirestore firestore;
-    private final ExecutorService executorService;
+    private final Executor executorService;
     private final ParkingRepository parkingRepository;
+    private final SpotCounter spotCounter;
     private final Application application; // Store the application reference
+    private final BookingConflictIndex conflictIndex;
+    private final BatchIngestor<Booking> ingestor;
+    private final SyncEngine syncEngine;
+    private final Outbox outbox;
 
-    public BookingRepository(Application application) {
+    public BookingRepository(Application application, AppExecutors appExecutors,
+                             ParkingRepository parkingRepository, Outbox outbox) {
         this.application = application; // Save the application reference
-        ParkingDatabase database = ParkingDatabase.getInstance(application);
+        database = ParkingDatabase.getInstance(application);
         bookingDao = database.bookingDao();
         firestore = FirebaseFirestore.getInstance();
-        executorService = Executors.newFixedThreadPool(4);
-        parkingRepository = new ParkingRepository(application);
+        executorService = appExecutors.io();
+        this.parkingRepository = parkingRepository;
+        spotCounter = new SpotCounter(firestore);
+        conflictIndex = new BookingConflictIndex(bookingDao);
+        ingestor = new BatchIngestor<>("bookings", appExecutors.compute(), executorService,
+                BatchIngestor.DEFAULT_PAGE_SIZE, document -> document.toObject(Booking.class),
+                this::insertBookingsSync);
+        syncEngine = new SyncEngine(firestore, database, executorService);
+        this.outbox = outbox;
+
+        // Each booking write is a transaction on its lot's counter, so they are pushed one at a time
+        outbox.register(OP_CREATE_BOOKING, 1, new CreateBookingReplayer());
+        outbox.register(OP_CANCEL_BOOKING, 1, new CancelBookingReplayer());
     }
 
     // Room database operations
     public void insertBooking(Booking booking) {
-        executorService.execute(() -> bookingDao.insert(booking));
+        executorService.execute(() -> {
+            Metrics.time("room.bookings.insert", () -> bookingDao.insert(booking));
+            conflictIndex.onBookingSaved(booking);
+        });
     }
 
     public void updateBooking(Booking booking) {
-        executorService.execute(() -> bookingDao.update(booking));
+        executorService.execute(() -> {
+            Metrics.time("room.bookings.update", () -> bookingDao.update(booking));
+            conflictIndex.onBookingSaved(booking);
+        });
+    }
+
+    // Upserts the whole list in one Room transaction, call from a background thread
+    private void insertBookingsSync(List<Booking> bookings) {
+        Metrics.time("room.bookings.insertAll", () -> bookingDao.insertAll(bookings));
+        for (Booking booking : bookings) {
+            conflictIndex.onBookingSaved(booking);
+        }
     }
 
     public void deleteBooking(Booking booking) {
-        executorService.execute(() -> bookingDao.delete(booking));
+        executorService.execute(() -> {
+            Metrics.time("room.bookings.delete", () -> bookingDao.delete(booking));
+            conflictIndex.onBookingDeleted(booking);
+        });
+    }
+
+    // Time-slot capacity from the booking interval index
+    public LiveData<Integer> getOverlappingBookingCount(String parkingSpaceId, long startTime, long endTime) {
+        MutableLiveData<Integer> count = new MutableLiveData<>();
+        executorService.execute(() ->
+                count.postValue(conflictIndex.countOverlapping(parkingSpaceId, startTime, endTime)));
+        return count;
+    }
+
+    public LiveData<Integer> getPeakOccupancy(String parkingSpaceId, long startTime, long endTime) {
+        MutableLiveData<Integer> peak = new MutableLiveData<>();
+        executorService.execute(() ->
+                peak.postValue(conflictIndex.maxConcurrent(parkingSpaceId, startTime, endTime)));
+        return peak;
     }
 
     public LiveData<List<Booking>> getBookingsByUserId(String userId) {
@@ -66,28 +145,17 @@ public class BookingRepository {
         return bookingDao.getBookingById(bookingId);
     }
 
+    public LiveData<BookingWithParking> getBookingWithParkingById(String bookingId) {
+        return bookingDao.getBookingWithParkingById(bookingId);
+    }
+
     // In BookingRepository.java, update the getActiveBookingsForUser method
     public LiveData<List<Booking>> getActiveBookingsForUser(String userId) {
         // First, try to get from Room database
         LiveData<List<Booking>> roomBookings = bookingDao.getActiveBookingsForUser(userId);
 
-        // Also fetch fresh data from Firestore
-        firestore.collection("bookings")
-                .whereEqualTo("userId", userId)
-                .whereIn("bookingStatus", Arrays.asList("RESERVED", "ACTIVE"))
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<Booking> bookings = new ArrayList<>();
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        Booking booking = document.toObject(Booking.class);
-                        bookings.add(booking);
-
-                        // Update local database
-                        insertBooking(booking);
-                    }
-                    Log.d(TAG, "Fetched " + bookings.size() + " active bookings for user " + userId);
-                })
-                .addOnFailureListener(e -> Log.e(TAG, "Error fetching active bookings", e));
+        // Also pull the user's booking changes from Firestore
+        fetchBookingsFromFirestore(userId);
 
         return roomBookings;
     }
@@ -96,30 +164,58 @@ public class BookingRepository {
         return bookingDao.getPastBookingsForUser(userId);
     }
 
+    public LiveData<PagingData<BookingWithParking>> getActiveBookingsPaged(String userId) {
+        fetchBookingsFromFirestore(userId);
+        Pager<Integer, BookingWithParking> pager = new Pager<>(pagingConfig(),
+                () -> bookingDao.getActiveBookingsForUserPaged(userId));
+        return PagingLiveData.getLiveData(pager);
+    }
+
+    // Older history is pulled from Firestore page by page as the list reaches the end of Room
+    @OptIn(markerClass = ExperimentalPagingApi.class)
+    public LiveData<PagingData<BookingWithParking>> getPastBookingsPaged(String userId) {
+        Pager<Integer, BookingWithParking> pager = new Pager<>(pagingConfig(), null,
+                new BookingHistoryMediator(firestore, bookingDao, executorService, ingestor, userId),
+                () -> bookingDao.getPastBookingsForUserPaged(userId));
+        return PagingLiveData.getLiveData(pager);
+    }
+
+    private static PagingConfig pagingConfig() {
+        return new PagingConfig(PAGE_SIZE, PAGE_SIZE, true, PAGE_SIZE * 2, MAX_LOADED_BOOKINGS);
+    }
+
     // Firestore operations
+    // Only bookings changed or deleted since the user's last sync are read
     public void fetchBookingsFromFirestore(String userId) {
-        firestore.collection("bookings")
-                .whereEqualTo("userId", userId)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<Booking> bookings = new ArrayList<>();
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        Booking booking = document.toObject(Booking.class);
-                        bookings.add(booking);
+        syncEngine.sync(new UserBookingsSyncSpec(userId));
+    }
 
-                        // Insert into Room database
-                        insertBooking(booking);
-                    }
-                    Log.d(TAG, "Fetched " + bookings.size() + " bookings for user " + userId);
-                })
-                .addOnFailureListener(e -> Log.e(TAG, "Error fetching bookings", e));
+    // Booking objects carry no updatedAt field, so it is stamped in the same batch
+    private Task<Void> writeBookingToFirestore(Booking booking) {
+        DocumentReference bookingRef = firestore.collection("bookings").document(booking.getBookingId());
+        WriteBatch batch = firestore.batch();
+        batch.set(bookingRef, booking);
+        batch.update(bookingRef, SyncEngine.FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+        return Metrics.trace("firestore.bookings.set", batch.commit());
+    }
+
+    // Writes bookings in full write batches. With cacheLocally each committed batch is also
+    // upserted into Room; leave it off for load-test data sets.
+    public LiveData<BulkWriter.Progress> seedBookings(Iterator<Booking> bookings, boolean cacheLocally) {
+        // set() plus the updatedAt stamp is two writes per booking
+        BulkWriter<Booking> writer = new BulkWriter<>("bookings", firestore, executorService, 2,
+                (batch, booking) -> {
+                    DocumentReference bookingRef = firestore.collection("bookings").document(booking.getBookingId());
+                    batch.set(bookingRef, booking);
+                    batch.update(bookingRef, SyncEngine.FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+                },
+                cacheLocally ? this::insertBookingsSync : null);
+        return writer.write(bookings);
     }
 
     public void addMockBookingToFirestore(Booking booking) {
         // Add to Firestore
-        firestore.collection("bookings")
-                .document(booking.getBookingId())
-                .set(booking)
+        writeBookingToFirestore(booking)
                 .addOnSuccessListener(aVoid -> {
                     Log.d(TAG, "Mock booking added to Firestore");
                 })
@@ -128,157 +224,175 @@ public class BookingRepository {
                 });
     }
 
+    // Saves the booking locally and queues it for Firestore. Success means the booking is
+    // on disk; the spot is taken on the server when the outbox replays it, and a sold-out
+    // lot cancels it then.
     public MutableLiveData<Boolean> createBooking(Booking booking, ParkingSpace parkingSpace) {
         MutableLiveData<Boolean> success = new MutableLiveData<>();
 
-        // Check if parking space is available
-        if (parkingSpace.getAvailableSpots() <= 0) {
-            Log.e(TAG, "Cannot create booking, no available spots");
-            success.setValue(false);
-            return success;
+        String payload;
+        try {
+            payload = new JSONObject().put("parkingName", parkingSpace.getName()).toString();
+        } catch (JSONException e) {
+            payload = null;
         }
 
-        // Add to Firestore
-        firestore.collection("bookings")
-                .document(booking.getBookingId())
-                .set(booking)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Booking added to Firestore");
-
-                    // Insert into Room database
-                    insertBooking(booking);
-
-                    // Update available spots in parking space
-                    parkingSpace.setAvailableSpots(parkingSpace.getAvailableSpots() - 1);
-                    parkingRepository.updateParkingSpaceInFirestore(parkingSpace);
-
-                    // Send booking confirmation notification
-                    Context context = application.getApplicationContext();
-                    NotificationHelper.showBookingConfirmationNotification(
-                            context,
-                            booking.getBookingId(),
-                            parkingSpace.getName()
-                    );
-
-                    // Schedule reminder notifications
-                    if (booking.getStartTime() > System.currentTimeMillis()) {
-                        NotificationHelper.scheduleBookingReminderNotification(
-                                context,
-                                booking.getBookingId(),
-                                parkingSpace.getName(),
-                                booking.getStartTime()
-                        );
-                    }
-
-                    NotificationHelper.scheduleBookingExpiryNotification(
-                            context,
-                            booking.getBookingId(),
-                            parkingSpace.getName(),
-                            booking.getEndTime()
-                    );
-
-                    success.setValue(true);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error adding booking", e);
-                    success.setValue(false);
-                });
+        outbox.enqueue(new OutboxEntry(OP_CREATE_BOOKING, booking.getBookingId(), payload), () -> {
+            boolean alreadySaved = getBookingByIdSync(booking.getBookingId()) != null;
+            Metrics.time("room.bookings.insert", () -> bookingDao.insert(booking));
+            conflictIndex.onBookingSaved(booking);
+            if (!alreadySaved) {
+                // Mirror the taken spot in the local cache, once per booking
+                parkingRepository.takeAvailableSpotSync(booking.getParkingSpaceId());
+            }
+        }, () -> {
+            Log.d(TAG, "Booking saved locally: " + booking.getBookingId());
+            success.postValue(true);
+        });
 
         return success;
     }
 
+    // Cancels locally right away and queues the cancellation for Firestore
     public MutableLiveData<Boolean> cancelBooking(String bookingId) {
         MutableLiveData<Boolean> success = new MutableLiveData<>();
 
-        // Get the booking
-        firestore.collection("bookings")
-                .document(bookingId)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (documentSnapshot.exists()) {
-                        Booking booking = documentSnapshot.toObject(Booking.class);
-
-                        if (booking != null) {
-                            // Update booking status
-                            booking.setBookingStatus("CANCELLED");
-
-                            // Update in Firestore with the full booking object, not just one field
-                            firestore.collection("bookings")
-                                    .document(bookingId)
-                                    .set(booking)  // Use set instead of update to ensure all fields are updated
-                                    .addOnSuccessListener(aVoid -> {
-                                        Log.d(TAG, "Booking cancelled in Firestore");
-
-                                        // Update in Room database
-                                        updateBooking(booking);
-
-                                        // Restore available spot in parking space
-                                        restoreParkingSpaceSpot(booking.getParkingSpaceId());
-
-                                        success.setValue(true);
-                                    })
-                                    .addOnFailureListener(e -> {
-                                        Log.e(TAG, "Error cancelling booking", e);
-                                        success.setValue(false);
-                                    });
-                        } else {
-                            Log.e(TAG, "Booking is null");
-                            success.setValue(false);
-                        }
-                    } else {
-                        Log.e(TAG, "Booking not found");
-                        success.setValue(false);
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error getting booking", e);
-                    success.setValue(false);
-                });
+        outbox.enqueue(new OutboxEntry(OP_CANCEL_BOOKING, bookingId, null), () -> {
+            Booking booking = getBookingByIdSync(bookingId);
+            if (booking != null) {
+                boolean heldSpot = "RESERVED".equals(booking.getBookingStatus())
+                        || "ACTIVE".equals(booking.getBookingStatus());
+                booking.setBookingStatus("CANCELLED");
+                Metrics.time("room.bookings.update", () -> bookingDao.update(booking));
+                conflictIndex.onBookingSaved(booking);
+                if (heldSpot) {
+                    // Pushed or not, the spot is free again in the local cache
+                    parkingRepository.restoreAvailableSpotSync(booking.getParkingSpaceId());
+                }
+            }
+        }, () -> success.postValue(true));
 
         return success;
     }
 
-    // Add this helper method to handle restoring parking space spots
-    private void restoreParkingSpaceSpot(String parkingSpaceId) {
-        if (parkingSpaceId.startsWith("parking-")) {
-            // This is a mock parking space, no need to update in Firestore
-            Log.d(TAG, "Mock parking space, no need to restore spots");
-            return;
+    private Booking getBookingByIdSync(String bookingId) {
+        return Metrics.time("room.bookings.getByIdSync", () -> bookingDao.getBookingByIdSync(bookingId));
+    }
+
+    // Returns the booking if this cancelled it, null if it was missing or already cancelled
+    private Booking markCancelledLocally(String bookingId) {
+        Booking booking = getBookingByIdSync(bookingId);
+        if (booking == null || "CANCELLED".equals(booking.getBookingStatus())) {
+            return null;
         }
+        booking.setBookingStatus("CANCELLED");
+        Metrics.time("room.bookings.update", () -> bookingDao.update(booking));
+        conflictIndex.onBookingSaved(booking);
+        return booking;
+    }
 
-        // For real parking spaces, restore the spot in Firestore
-        firestore.collection("parkingSpaces")
-                .document(parkingSpaceId)
-                .get()
-                .addOnSuccessListener(parkingDoc -> {
-                    if (parkingDoc.exists()) {
-                        ParkingSpace parkingSpace = parkingDoc.toObject(ParkingSpace.class);
-                        if (parkingSpace != null) {
-                            int newAvailableSpots = parkingSpace.getAvailableSpots() + 1;
-
-                            // Update in Firestore
-                            firestore.collection("parkingSpaces")
-                                    .document(parkingSpaceId)
-                                    .update("availableSpots", newAvailableSpots)
-                                    .addOnSuccessListener(aVoid2 -> {
-                                        Log.d(TAG, "Parking space updated in Firestore, available spots: " + newAvailableSpots);
-                                    })
-                                    .addOnFailureListener(e -> {
-                                        Log.e(TAG, "Error updating parking space", e);
-                                    });
-                        }
-                    }
-                });
+    private static String parkingNameOf(OutboxEntry entry) {
+        if (entry.getPayload() != null) {
+            try {
+                return new JSONObject(entry.getPayload()).optString("parkingName", "your parking space");
+            } catch (JSONException e) {
+                Log.e(TAG, "Bad outbox payload for " + entry.getDocumentId(), e);
+            }
+        }
+        return "your parking space";
+    }
+
+    // Takes the spot and writes the booking in one transaction. Replays are harmless,
+    // SpotCounter skips bookings that already exist.
+    private class CreateBookingReplayer implements Outbox.Replayer {
+        @Override
+        public Task<Void> replay(List<OutboxEntry> entries) {
+            OutboxEntry entry = entries.get(0);
+            Booking booking = getBookingByIdSync(entry.getDocumentId());
+            if (booking == null) {
+                // Removed locally before it was pushed
+                return Tasks.forResult(null);
+            }
+            if ("CANCELLED".equals(booking.getBookingStatus())) {
+                // Cancelled before it was pushed: nothing to reserve, and the queued cancel
+                // would find no booking on the server to release. cancelBooking already gave
+                // the spot back locally.
+                outbox.discard(OP_CANCEL_BOOKING, booking.getBookingId());
+                Log.d(TAG, "Booking " + booking.getBookingId() + " was cancelled before it was pushed");
+                return Tasks.forResult(null);
+            }
+            Task<Void> reserve = Metrics.trace("firestore.bookings.reserveSpot", spotCounter.reserveSpot(booking));
+            return reserve.addOnSuccessListener(executorService, aVoid -> {
+                Log.d(TAG, "Booking added to Firestore");
+                parkingRepository.invalidateParkingSpace(booking.getParkingSpaceId());
+                String parkingName = parkingNameOf(entry);
+                Context context = application.getApplicationContext();
+                NotificationHelper.showBookingConfirmationNotification(
+                        context, booking.getBookingId(), parkingName);
+                Metrics.endFlow(Metrics.FLOW_BOOK_TO_CONFIRMATION);
+
+                // Schedule reminder notifications
+                if (booking.getStartTime() > System.currentTimeMillis()) {
+                    NotificationHelper.scheduleBookingReminderNotification(
+                            context, booking.getBookingId(), parkingName, booking.getStartTime());
+                }
+                NotificationHelper.scheduleBookingExpiryNotification(
+                        context, booking.getBookingId(), parkingName, booking.getEndTime());
+            });
+        }
+
+        @Override
+        public void onRejected(OutboxEntry entry, Exception e) {
+            if (SpotCounter.isSoldOut(e)) {
+                Log.e(TAG, "Cannot create booking, no available spots");
+            } else {
+                Log.e(TAG, "Error adding booking", e);
+            }
+            Booking cancelled = markCancelledLocally(entry.getDocumentId());
+            if (cancelled != null) {
+                // Undo the optimistic decrement from createBooking
+                parkingRepository.restoreAvailableSpot(cancelled.getParkingSpaceId());
+            }
+            NotificationHelper.showBookingRejectedNotification(application.getApplicationContext(),
+                    entry.getDocumentId(), parkingNameOf(entry));
+        }
     }
 
-    public LiveData<Boolean> canCreateBooking(String userId, String parkingSpaceId, long startTime, long endTime) {
+    // Cancels and gives the spot back. Replaying an already cancelled booking is a no-op.
+    private class CancelBookingReplayer implements Outbox.Replayer {
+        @Override
+        public Task<Void> replay(List<OutboxEntry> entries) {
+            String bookingId = entries.get(0).getDocumentId();
+            Task<String> release = Metrics.trace("firestore.bookings.releaseSpot", spotCounter.releaseSpot(bookingId));
+            return release.continueWith(task -> {
+                if (!task.isSuccessful()) {
+                    throw task.getException();
+                }
+                String parkingSpaceId = task.getResult();
+                if (parkingSpaceId != null) {
+                    parkingRepository.invalidateParkingSpace(parkingSpaceId);
+                }
+                Log.d(TAG, parkingSpaceId != null ? "Booking cancelled in Firestore" : "Booking was already cancelled");
+                return null;
+            });
+        }
+
+        @Override
+        public void onRejected(OutboxEntry entry, Exception e) {
+            // The booking never reached Firestore, the local cancel already stands
+            Log.e(TAG, "Error cancelling booking " + entry.getDocumentId(), e);
+        }
+    }
+
+    public LiveData<Boolean> canCreateBooking(String userId, String parkingSpaceId, int totalSpots,
+                                              long startTime, long endTime) {
         MutableLiveData<Boolean> canBook = new MutableLiveData<>();
 
         // Check if the user has any overlapping bookings
-        firestore.collection("bookings")
-                .whereEqualTo("userId", userId)
-                .whereIn("bookingStatus", Arrays.asList("RESERVED", "ACTIVE"))
-                .get()
+        Metrics.trace("firestore.bookings.getActiveForUser", firestore.collection("bookings")
+                        .whereEqualTo("userId", userId)
+                        .whereIn("bookingStatus", Arrays.asList("RESERVED", "ACTIVE"))
+                        .get())
                 .addOnSuccessListener(queryDocumentSnapshots -> {
                     boolean hasOverlap = false;
 
@@ -297,7 +411,11 @@ public class BookingRepository {
                         }
                     }
 
-                    canBook.setValue(!hasOverlap);
+                    if (hasOverlap) {
+                        canBook.setValue(false);
+                    } else {
+                        checkTimeSlotCapacity(parkingSpaceId, totalSpots, startTime, endTime, canBook);
+                    }
                 })
                 .addOnFailureListener(e -> {
                     Log.e(TAG, "Error checking existing bookings", e);
@@ -307,6 +425,62 @@ public class BookingRepository {
         return canBook;
     }
 
+    // Refresh the space's spot-holding bookings into Room, then check that the peak
+    // occupancy over the requested slot still leaves a spot free
+    private void checkTimeSlotCapacity(String parkingSpaceId, int totalSpots, long startTime, long endTime,
+                                       MutableLiveData<Boolean> canBook) {
+        Metrics.trace("firestore.bookings.getActiveForSpace", firestore.collection("bookings")
+                        .whereEqualTo("parkingSpaceId", parkingSpaceId)
+                        .whereIn("bookingStatus", Arrays.asList("RESERVED", "ACTIVE"))
+                        .get())
+                .addOnCompleteListener(task -> executorService.execute(() -> {
+                    if (task.isSuccessful() && task.getResult() != null) {
+                        List<Booking> bookings = new ArrayList<>();
+                        for (QueryDocumentSnapshot document : task.getResult()) {
+                            bookings.add(document.toObject(Booking.class));
+                        }
+                        replaceOccupyingBookingsSync(parkingSpaceId, bookings);
+                    } else {
+                        // Fall back to what Room already has
+                        Log.e(TAG, "Error fetching bookings for parking space " + parkingSpaceId, task.getException());
+                    }
+
+                    int peak = conflictIndex.maxConcurrent(parkingSpaceId, startTime, endTime);
+                    Log.d(TAG, "Peak occupancy " + peak + "/" + totalSpots + " for parking space " + parkingSpaceId);
+                    canBook.postValue(peak < totalSpots);
+                }));
+    }
+
+    // The server's spot-holding bookings for a space replace the local ones, so bookings
+    // cancelled or completed elsewhere stop counting against its capacity. Bookings still
+    // waiting in the outbox are not on the server yet and are kept.
+    private void replaceOccupyingBookingsSync(String parkingSpaceId, List<Booking> bookings) {
+        Set<String> onServer = new HashSet<>();
+        for (Booking booking : bookings) {
+            onServer.add(booking.getBookingId());
+        }
+        List<String> stale = new ArrayList<>();
+        for (Booking local : Metrics.time("room.bookings.getOccupyingForSpaceSync",
+                () -> bookingDao.getOccupyingBookingsForParkingSpaceSync(parkingSpaceId))) {
+            if (!onServer.contains(local.getBookingId())) {
+                stale.add(local.getBookingId());
+            }
+        }
+        stale.removeAll(outbox.getPendingDocumentIds(stale));
+
+        database.runInTransaction(() -> {
+            if (!stale.isEmpty()) {
+                Metrics.time("room.bookings.deleteByIds", () -> bookingDao.deleteByIds(stale));
+            }
+            Metrics.time("room.bookings.insertAll", () -> bookingDao.insertAll(bookings));
+        });
+        // Rebuilt from Room on the next query
+        conflictIndex.invalidate(parkingSpaceId);
+        if (!stale.isEmpty()) {
+            Log.d(TAG, "Dropped " + stale.size() + " stale bookings for parking space " + parkingSpaceId);
+        }
+    }
+
     // Helper method to create a booking object with a new ID
     public Booking createBookingObject(String userId, String parkingSpaceId, String vehicleId,
                                        long startTime, long endTime, double hourlyRate) {
@@ -365,16 +539,61 @@ public class BookingRepository {
                 5.0
         );
 
-        // Add all bookings to Firestore
-        firestore.collection("bookings").document(pastBooking.getBookingId()).set(pastBooking);
-        firestore.collection("bookings").document(activeBooking.getBookingId()).set(activeBooking);
-        firestore.collection("bookings").document(futureBooking.getBookingId()).set(futureBooking);
-
-        // Add to Room database
-        insertBooking(pastBooking);
-        insertBooking(activeBooking);
-        insertBooking(futureBooking);
+        // One Firestore batch and one Room transaction for all of them
+        seedBookings(Arrays.asList(pastBooking, activeBooking, futureBooking).iterator(), true);
 
         Log.d(TAG, "Generated mock bookings for user " + userId);
     }
-}
\ No newline at end of file
+
+    private class UserBookingsSyncSpec implements SyncEngine.SyncSpec {
+        private final String userId;
+
+        UserBookingsSyncSpec(String userId) {
+            this.userId = userId;
+        }
+
+        @Override
+        public String getKey() {
+            return "bookings:" + userId;
+        }
+
+        @Override
+        public Query getQuery() {
+            return firestore.collection("bookings").whereEqualTo("userId", userId);
+        }
+
+        @Override
+        public Query getTombstoneQuery() {
+            return SyncEngine.tombstones(firestore, "bookings").whereEqualTo("userId", userId);
+        }
+
+        @Override
+        public void applyChanges(List<DocumentSnapshot> documents) {
+            // Bookings with queued local writes are newer than the server copy
+            List<String> ids = new ArrayList<>(documents.size());
+            for (DocumentSnapshot document : documents) {
+                ids.add(document.getId());
+            }
+            List<String> pending = outbox.getPendingDocumentIds(ids);
+            if (pending.isEmpty()) {
+                ingestor.ingestPageSync(documents);
+                return;
+            }
+            List<DocumentSnapshot> applied = new ArrayList<>(documents.size());
+            for (DocumentSnapshot document : documents) {
+                if (!pending.contains(document.getId())) {
+                    applied.add(document);
+                }
+            }
+            ingestor.ingestPageSync(applied);
+        }
+
+        @Override
+        public void applyDeletes(List<String> documentIds) {
+            Metrics.time("room.bookings.deleteByIds", () -> bookingDao.deleteByIds(documentIds));
+            for (String bookingId : documentIds) {
+                conflictIndex.onBookingDeleted(bookingId);
+            }
+        }
+    }
+}
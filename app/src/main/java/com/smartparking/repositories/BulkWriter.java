@@ -0,0 +1,226 @@
+package com.smartparking.repositories;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bulk seeding and import. Items are pulled lazily from an iterator, packed into Firestore
+// write batches up to the 500-write limit and committed with a few batches in flight. Each
+// committed page can also be upserted into Room in one transaction. Large synthetic data
+// sets stream through without being held in memory.
+public class BulkWriter<T> {
+
+    public static final int MAX_BATCH_WRITES = 500;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 1000;
+    // Progress is posted every this many items
+    private static final int PROGRESS_INTERVAL = 5000;
+
+    // Adds the writes for one item to the batch, using exactly writesPerItem writes
+    public interface DocumentWriter<T> {
+        void write(WriteBatch batch, T item);
+    }
+
+    private final String tag;
+    private final FirebaseFirestore firestore;
+    private final Executor ioExecutor;
+    private final int itemsPerBatch;
+    private final DocumentWriter<T> documentWriter;
+    private final BatchIngestor.PageWriter<T> roomWriter;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+    // roomWriter may be null to write to Firestore only
+    public BulkWriter(String name, FirebaseFirestore firestore, Executor ioExecutor, int writesPerItem,
+                      DocumentWriter<T> documentWriter, BatchIngestor.PageWriter<T> roomWriter) {
+        this.tag = "BulkWriter[" + name + "]";
+        this.firestore = firestore;
+        this.ioExecutor = ioExecutor;
+        this.itemsPerBatch = MAX_BATCH_WRITES / writesPerItem;
+        this.documentWriter = documentWriter;
+        this.roomWriter = roomWriter;
+    }
+
+    // More batches in flight helps against the emulator, fewer is kinder to production quotas
+    public BulkWriter<T> setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        return this;
+    }
+
+    public LiveData<Progress> write(Iterator<T> items) {
+        Run run = new Run(items);
+        ioExecutor.execute(run::start);
+        return run.progress;
+    }
+
+    public static class Progress {
+        private final long itemsWritten;
+        private final long batchesCommitted;
+        private final long elapsedMs;
+        private final boolean done;
+        private final Exception error;
+
+        Progress(long itemsWritten, long batchesCommitted, long elapsedMs, boolean done, Exception error) {
+            this.itemsWritten = itemsWritten;
+            this.batchesCommitted = batchesCommitted;
+            this.elapsedMs = elapsedMs;
+            this.done = done;
+            this.error = error;
+        }
+
+        public long getItemsWritten() {
+            return itemsWritten;
+        }
+
+        public long getBatchesCommitted() {
+            return batchesCommitted;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+
+        // Set when a batch still failed after retries; the run stops there
+        public Exception getError() {
+            return error;
+        }
+
+        public double getItemsPerSecond() {
+            return itemsWritten * 1000.0 / Math.max(1, elapsedMs);
+        }
+    }
+
+    // One pass over an iterator. Every committed batch pulls the next one, so at most
+    // maxInFlight batches are outstanding.
+    private class Run {
+        private final Iterator<T> items;
+        private final MutableLiveData<Progress> progress = new MutableLiveData<>();
+        private final long startedAt = SystemClock.elapsedRealtime();
+        private final AtomicLong itemsWritten = new AtomicLong();
+        private final AtomicLong batchesCommitted = new AtomicLong();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+        private long lastReported = 0;
+        private boolean exhausted = false;
+        private volatile Exception error;
+
+        Run(Iterator<T> items) {
+            this.items = items;
+        }
+
+        void start() {
+            for (int i = 0; i < maxInFlight; i++) {
+                if (!commitNext()) {
+                    break;
+                }
+            }
+            maybeFinish();
+        }
+
+        // Pulls and commits the next page, returns false when there is nothing left
+        private boolean commitNext() {
+            if (error != null) {
+                return false;
+            }
+            List<T> page = nextPage();
+            if (page.isEmpty()) {
+                return false;
+            }
+            inFlight.incrementAndGet();
+            commit(page, 1);
+            return true;
+        }
+
+        private synchronized List<T> nextPage() {
+            List<T> page = new ArrayList<>(itemsPerBatch);
+            while (!exhausted && page.size() < itemsPerBatch) {
+                if (items.hasNext()) {
+                    page.add(items.next());
+                } else {
+                    exhausted = true;
+                }
+            }
+            return page;
+        }
+
+        private void commit(List<T> page, int attempt) {
+            WriteBatch batch = firestore.batch();
+            for (T item : page) {
+                documentWriter.write(batch, item);
+            }
+            Task<Void> task = batch.commit();
+            task.addOnCompleteListener(ioExecutor, done -> {
+                if (!done.isSuccessful()) {
+                    if (attempt < MAX_ATTEMPTS) {
+                        Log.w(tag, "Batch failed, retrying (attempt " + attempt + ")", done.getException());
+                        mainHandler.postDelayed(() -> ioExecutor.execute(() -> commit(page, attempt + 1)),
+                                RETRY_DELAY_MS * attempt);
+                        return;
+                    }
+                    Log.e(tag, "Batch of " + page.size() + " failed, stopping", done.getException());
+                    error = done.getException();
+                } else {
+                    if (roomWriter != null) {
+                        try {
+                            roomWriter.write(page);
+                        } catch (RuntimeException e) {
+                            Log.e(tag, "Error caching page of " + page.size() + " items", e);
+                        }
+                    }
+                    batchesCommitted.incrementAndGet();
+                    reportProgress(itemsWritten.addAndGet(page.size()));
+                }
+                inFlight.decrementAndGet();
+                commitNext();
+                maybeFinish();
+            });
+        }
+
+        private synchronized void reportProgress(long written) {
+            if (written - lastReported >= PROGRESS_INTERVAL) {
+                lastReported = written;
+                progress.postValue(snapshot(false));
+            }
+        }
+
+        private void maybeFinish() {
+            boolean drained;
+            synchronized (this) {
+                drained = exhausted || error != null;
+            }
+            if (drained && inFlight.get() == 0 && finished.compareAndSet(false, true)) {
+                Progress last = snapshot(true);
+                Log.d(tag, "Wrote " + last.getItemsWritten() + " items in " + last.getBatchesCommitted()
+                        + " batches, " + last.getElapsedMs() + "ms ("
+                        + Math.round(last.getItemsPerSecond()) + " items/sec)");
+                progress.postValue(last);
+            }
+        }
+
+        private Progress snapshot(boolean done) {
+            return new Progress(itemsWritten.get(), batchesCommitted.get(),
+                    SystemClock.elapsedRealtime() - startedAt, done, error);
+        }
+    }
+}
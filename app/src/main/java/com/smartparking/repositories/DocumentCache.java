@@ -0,0 +1,106 @@
+package com.smartparking.repositories;
+
+import android.os.SystemClock;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.smartparking.utils.Metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Read-through cache for single Firestore documents such as parkingSpaces/{id} and
+// users/{uid}, which several screens fetch within moments of each other. Concurrent
+// reads of one document share a single get(), and results are kept for a short time
+// in an LRU map. Writers invalidate what they change; realtime listeners can put
+// fresher snapshots in directly.
+public class DocumentCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    public static final long DEFAULT_TTL_MS = 30 * 1000;
+
+    private final FirebaseFirestore firestore;
+    private final long ttlMs;
+    private final Map<String, Entry> entries;
+    // Reads on the wire, shared by everyone who asks for the same path meanwhile
+    private final Map<String, Task<DocumentSnapshot>> inFlight = new LinkedHashMap<>();
+
+    public DocumentCache(FirebaseFirestore firestore, int maxEntries, long ttlMs) {
+        this.firestore = firestore;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public Task<DocumentSnapshot> get(String collection, String documentId) {
+        return get(collection, documentId, ttlMs);
+    }
+
+    // maxAgeMs of 0 skips the cached copy but still joins a read already in flight
+    public synchronized Task<DocumentSnapshot> get(String collection, String documentId, long maxAgeMs) {
+        String path = collection + "/" + documentId;
+        Entry entry = entries.get(path);
+        if (entry != null && SystemClock.elapsedRealtime() - entry.cachedAt <= Math.min(maxAgeMs, ttlMs)) {
+            Metrics.count("documentCache.hit");
+            return Tasks.forResult(entry.snapshot);
+        }
+
+        Task<DocumentSnapshot> pending = inFlight.get(path);
+        if (pending != null) {
+            Metrics.count("documentCache.coalesced");
+            return pending;
+        }
+
+        Metrics.count("documentCache.miss");
+        Task<DocumentSnapshot> read = Metrics.trace("firestore." + collection + ".get",
+                firestore.collection(collection).document(documentId).get());
+        inFlight.put(path, read);
+        read.addOnCompleteListener(Runnable::run, task -> onReadComplete(path, task));
+        return read;
+    }
+
+    private synchronized void onReadComplete(String path, Task<DocumentSnapshot> task) {
+        // An invalidation while the read was out means its result may already be stale
+        if (inFlight.get(path) != task) {
+            return;
+        }
+        inFlight.remove(path);
+        if (task.isSuccessful() && task.getResult() != null) {
+            entries.put(path, new Entry(task.getResult()));
+        }
+    }
+
+    // Newer data seen elsewhere, e.g. from a snapshot listener
+    public synchronized void put(DocumentSnapshot snapshot) {
+        String path = snapshot.getReference().getPath();
+        inFlight.remove(path);
+        entries.put(path, new Entry(snapshot));
+    }
+
+    // Call after writing the document so the next read goes to Firestore
+    public synchronized void invalidate(String collection, String documentId) {
+        String path = collection + "/" + documentId;
+        entries.remove(path);
+        inFlight.remove(path);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        inFlight.clear();
+    }
+
+    private static class Entry {
+        final DocumentSnapshot snapshot;
+        final long cachedAt = SystemClock.elapsedRealtime();
+
+        Entry(DocumentSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+}
@@ -13,13 +13,11 @@ import com.google.android.gms.tasks.Task;
 import com.google.firebase.auth.AuthResult;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.smartparking.ParkingApp;
 import com.smartparking.models.User;
-
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import com.smartparking.utils.Metrics;
 
 public class FirebaseRepository {
     private static final String TAG = "FirebaseRepository";
@@ -28,14 +26,14 @@ public class FirebaseRepository {
     private final FirebaseFirestore firestore;
     private final MutableLiveData<FirebaseUser> userLiveData;
     private final MutableLiveData<Boolean> loggedOutLiveData;
-    private final Executor executor;
+    private final DocumentCache documentCache;
 
     public FirebaseRepository(Application application) {
         firebaseAuth = FirebaseAuth.getInstance();
         firestore = FirebaseFirestore.getInstance();
         userLiveData = new MutableLiveData<>();
         loggedOutLiveData = new MutableLiveData<>();
-        executor = Executors.newSingleThreadExecutor();
+        documentCache = ParkingApp.from(application).getDocumentCache();
 
         if (firebaseAuth.getCurrentUser() != null) {
             userLiveData.postValue(firebaseAuth.getCurrentUser());
@@ -44,7 +42,7 @@ public class FirebaseRepository {
     }
 
     public void register(String email, String password, String name, String phoneNumber) {
-        firebaseAuth.createUserWithEmailAndPassword(email, password)
+        Metrics.trace("auth.register", firebaseAuth.createUserWithEmailAndPassword(email, password))
                 .addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
                         userLiveData.postValue(firebaseAuth.getCurrentUser());
@@ -65,11 +63,12 @@ public class FirebaseRepository {
                     phoneNumber
             );
 
-            firestore.collection("users")
-                    .document(firebaseUser.getUid())
-                    .set(user)
+            Metrics.trace("firestore.users.set", firestore.collection("users")
+                            .document(firebaseUser.getUid())
+                            .set(user))
                     .addOnSuccessListener(aVoid -> {
                         Log.d(TAG, "User added to Firestore");
+                        documentCache.invalidate("users", firebaseUser.getUid());
 //                        roomRepository.insertUser(user);
                     })
                     .addOnFailureListener(e -> Log.e(TAG, "Error adding user to Firestore", e));
@@ -77,7 +76,7 @@ public class FirebaseRepository {
     }
 
     public void login(String email, String password) {
-        firebaseAuth.signInWithEmailAndPassword(email, password)
+        Metrics.trace("auth.login", firebaseAuth.signInWithEmailAndPassword(email, password))
                 .addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
                         userLiveData.postValue(firebaseAuth.getCurrentUser());
@@ -90,11 +89,12 @@ public class FirebaseRepository {
 
     public void logout() {
         firebaseAuth.signOut();
+        documentCache.clear();
         loggedOutLiveData.postValue(true);
     }
 
     public void resetPassword(String email) {
-        firebaseAuth.sendPasswordResetEmail(email)
+        Metrics.trace("auth.resetPassword", firebaseAuth.sendPasswordResetEmail(email))
                 .addOnCompleteListener(task -> {
                     if (task.isSuccessful()) {
                         Log.d(TAG, "Password reset email sent");
@@ -109,8 +109,7 @@ public class FirebaseRepository {
         FirebaseUser firebaseUser = firebaseAuth.getCurrentUser();
 
         if (firebaseUser != null) {
-            DocumentReference docRef = firestore.collection("users").document(firebaseUser.getUid());
-            docRef.get().addOnCompleteListener(task -> {
+            documentCache.get("users", firebaseUser.getUid()).addOnCompleteListener(task -> {
                 if (task.isSuccessful()) {
                     DocumentSnapshot document = task.getResult();
                     if (document.exists()) {
@@ -0,0 +1,80 @@
+package com.smartparking.repositories;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// SpotStore on Firestore
+public class FirestoreSpotStore implements SpotStore {
+
+    private final FirebaseFirestore firestore;
+
+    public FirestoreSpotStore(FirebaseFirestore firestore) {
+        this.firestore = firestore;
+    }
+
+    @Override
+    public <T> Task<T> runTransaction(TransactionFunction<T> function) {
+        return firestore.runTransaction(tx -> function.apply(new Transaction() {
+            @Override
+            public Document get(String path) throws FirebaseFirestoreException {
+                return wrap(tx.get(firestore.document(path)));
+            }
+
+            @Override
+            public void set(String path, Object data) {
+                tx.set(firestore.document(path), data);
+            }
+
+            @Override
+            public void update(String path, Map<String, Object> fields) {
+                tx.update(firestore.document(path), fields);
+            }
+        }));
+    }
+
+    @Override
+    public Task<Document> get(String path) {
+        return firestore.document(path).get().continueWith(Runnable::run, task -> wrap(task.getResult()));
+    }
+
+    @Override
+    public Task<List<Document>> getAll(String collectionPath) {
+        return firestore.collection(collectionPath).get().continueWith(Runnable::run, task -> {
+            List<Document> documents = new ArrayList<>();
+            for (DocumentSnapshot snapshot : task.getResult().getDocuments()) {
+                documents.add(wrap(snapshot));
+            }
+            return documents;
+        });
+    }
+
+    static Document wrap(DocumentSnapshot snapshot) {
+        return new Document() {
+            @Override
+            public String getPath() {
+                return snapshot.getReference().getPath();
+            }
+
+            @Override
+            public boolean exists() {
+                return snapshot.exists();
+            }
+
+            @Override
+            public Long getLong(String field) {
+                return snapshot.getLong(field);
+            }
+
+            @Override
+            public String getString(String field) {
+                return snapshot.getString(field);
+            }
+        };
+    }
+}
@@ -0,0 +1,275 @@
+package com.smartparking.repositories;
+
+import android.app.Application;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.smartparking.models.OutboxDao;
+import com.smartparking.models.OutboxEntry;
+import com.smartparking.models.ParkingDatabase;
+import com.smartparking.utils.Metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Durable queue of local writes. A mutation is applied to Room and recorded here in one
+// transaction, so the UI only waits for the disk. The drainer replays entries to Firestore
+// in order, grouping consecutive entries of the same operation into one push, and backs
+// off exponentially while Firestore is unreachable. Replayers must be idempotent: an entry
+// is only removed after its push succeeds, so it can be pushed more than once.
+public class Outbox {
+    private static final String TAG = "Outbox";
+
+    private static final int DRAIN_PAGE_SIZE = 100;
+    private static final long BASE_BACKOFF_MS = 2000;
+    private static final long MAX_BACKOFF_MS = 10 * 60 * 1000;
+
+    private final ParkingDatabase database;
+    private final OutboxDao outboxDao;
+    private final Executor executorService;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Random random = new Random();
+    private final Map<String, Registration> replayers = new ConcurrentHashMap<>();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private volatile boolean drainRequested = false;
+
+    public Outbox(Application application, Executor executorService) {
+        this(ParkingDatabase.getInstance(application), executorService);
+
+        // Flush as soon as the device is back online instead of waiting out the backoff
+        ConnectivityManager connectivityManager = application.getSystemService(ConnectivityManager.class);
+        if (connectivityManager != null) {
+            connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(@NonNull Network network) {
+                    // The head's nextAttemptAt would otherwise hold the drainer until it passes
+                    executorService.execute(() -> {
+                        Metrics.time("room.outbox.clearBackoff", () -> outboxDao.clearBackoff());
+                        drainNow();
+                    });
+                }
+            });
+        }
+    }
+
+    // Without the connectivity callback, for tests
+    Outbox(ParkingDatabase database, Executor executorService) {
+        this.database = database;
+        this.outboxDao = database.outboxDao();
+        this.executorService = executorService;
+    }
+
+    // Pushes a group of entries of one operation to Firestore
+    public interface Replayer {
+        Task<Void> replay(List<OutboxEntry> entries);
+
+        // The server refused the entry for good (sold out, not found, ...), undo it locally
+        void onRejected(OutboxEntry entry, Exception e);
+    }
+
+    // maxBatch is how many consecutive entries of this operation one replay call may take
+    public void register(String operation, int maxBatch, Replayer replayer) {
+        replayers.put(operation, new Registration(maxBatch, replayer));
+    }
+
+    // Apply the local write and queue the mutation atomically, then try to push it.
+    // Either callback may be null; onQueued runs on the background thread once both are on disk.
+    public void enqueue(OutboxEntry entry, Runnable localWrite, Runnable onQueued) {
+        enqueue(entry, false, localWrite, onQueued);
+    }
+
+    // Like enqueue, but an entry already queued under the same idempotency key is replaced,
+    // so the latest payload is the one pushed. For last-write-wins saves.
+    public void enqueueLatest(OutboxEntry entry, Runnable localWrite, Runnable onQueued) {
+        enqueue(entry, true, localWrite, onQueued);
+    }
+
+    private void enqueue(OutboxEntry entry, boolean replace, Runnable localWrite, Runnable onQueued) {
+        executorService.execute(() -> {
+            database.runInTransaction(() -> {
+                if (localWrite != null) {
+                    localWrite.run();
+                }
+                if (replace) {
+                    Metrics.time("room.outbox.insertOrReplace", () -> outboxDao.insertOrReplace(entry));
+                } else if (Metrics.time("room.outbox.insert", () -> outboxDao.insert(entry)) == -1) {
+                    Log.d(TAG, "Already queued: " + entry.getIdempotencyKey());
+                }
+            });
+            if (onQueued != null) {
+                onQueued.run();
+            }
+            drainNow();
+        });
+    }
+
+    // Documents with local changes not yet in Firestore, sync must not overwrite them
+    public List<String> getPendingDocumentIds(List<String> documentIds) {
+        if (documentIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Metrics.time("room.outbox.getPendingDocumentIds", () -> outboxDao.getPendingDocumentIds(documentIds));
+    }
+
+    // Queued entries of one operation, call from a background thread
+    public List<OutboxEntry> getPending(String operation) {
+        return Metrics.time("room.outbox.getByOperation", () -> outboxDao.getByOperation(operation));
+    }
+
+    // Drops queued entries of one operation for a document, e.g. a cancel that has nothing
+    // left to cancel. Call from a background thread; returns how many were dropped.
+    public int discard(String operation, String documentId) {
+        return Metrics.time("room.outbox.deleteByDocument", () -> outboxDao.deleteByDocument(operation, documentId));
+    }
+
+    public LiveData<Integer> getPendingCount() {
+        return outboxDao.getPendingCount();
+    }
+
+    public void drainNow() {
+        mainHandler.removeCallbacks(drainRunnable);
+        drainRequested = true;
+        if (draining.compareAndSet(false, true)) {
+            executorService.execute(this::drainNext);
+        }
+    }
+
+    private final Runnable drainRunnable = this::drainNow;
+
+    // Replays one group per call and chains the next one from its completion
+    private void drainNext() {
+        drainRequested = false;
+        List<OutboxEntry> entries = Metrics.time("room.outbox.getOldest", () -> outboxDao.getOldest(DRAIN_PAGE_SIZE));
+        if (entries.isEmpty()) {
+            finishDrain(0);
+            return;
+        }
+
+        // Entries are replayed strictly in order, so a waiting head blocks the rest
+        long now = System.currentTimeMillis();
+        OutboxEntry head = entries.get(0);
+        if (head.getNextAttemptAt() > now) {
+            finishDrain(head.getNextAttemptAt() - now);
+            return;
+        }
+
+        Registration registration = replayers.get(head.getOperation());
+        if (registration == null) {
+            // Replayers register when their repository is created, try again shortly
+            Log.w(TAG, "No replayer for " + head.getOperation());
+            finishDrain(BASE_BACKOFF_MS);
+            return;
+        }
+
+        List<OutboxEntry> group = new ArrayList<>();
+        for (OutboxEntry entry : entries) {
+            if (!entry.getOperation().equals(head.getOperation()) || group.size() >= registration.maxBatch) {
+                break;
+            }
+            group.add(entry);
+        }
+
+        long startTime = System.currentTimeMillis();
+        Task<Void> push;
+        try {
+            push = Metrics.trace("outbox." + head.getOperation(), registration.replayer.replay(group));
+        } catch (RuntimeException e) {
+            push = Tasks.forException(e);
+        }
+        push.addOnCompleteListener(executorService, task -> {
+            List<Long> ids = new ArrayList<>(group.size());
+            for (OutboxEntry entry : group) {
+                ids.add(entry.getId());
+            }
+
+            if (task.isSuccessful()) {
+                Metrics.time("room.outbox.deleteByIds", () -> outboxDao.deleteByIds(ids));
+                Log.d(TAG, "Pushed " + group.size() + " " + head.getOperation() + " in "
+                        + (System.currentTimeMillis() - startTime) + "ms");
+                drainNext();
+                return;
+            }
+
+            Exception e = task.getException();
+            if (isPermanent(e)) {
+                Log.w(TAG, head.getOperation() + " rejected by the server", e);
+                for (OutboxEntry entry : group) {
+                    registration.replayer.onRejected(entry, e);
+                }
+                Metrics.time("room.outbox.deleteByIds", () -> outboxDao.deleteByIds(ids));
+                Metrics.count("outbox." + head.getOperation() + ".rejected", group.size());
+                drainNext();
+                return;
+            }
+
+            int attempts = head.getAttempts() + 1;
+            long delay = backoff(attempts);
+            Metrics.time("room.outbox.markRetry", () -> outboxDao.markRetry(ids, attempts,
+                    System.currentTimeMillis() + delay, e != null ? e.getMessage() : null));
+            Metrics.count("outbox." + head.getOperation() + ".retried", group.size());
+            Log.d(TAG, head.getOperation() + " failed (attempt " + attempts + "), retrying in " + delay + "ms");
+            finishDrain(delay);
+        });
+    }
+
+    private void finishDrain(long retryDelay) {
+        draining.set(false);
+        if (drainRequested) {
+            // Something was queued while this pass was finishing
+            drainNow();
+        } else if (retryDelay > 0) {
+            mainHandler.postDelayed(drainRunnable, retryDelay);
+        }
+    }
+
+    // Exponential backoff with jitter so queued clients don't all retry together
+    private long backoff(int attempts) {
+        long delay = BASE_BACKOFF_MS << Math.min(attempts - 1, 16);
+        delay = Math.min(delay, MAX_BACKOFF_MS);
+        return delay / 2 + (long) (random.nextDouble() * delay / 2);
+    }
+
+    // Errors that retrying cannot fix. Firestore reports network trouble as its own
+    // exception, anything else (a replayer bug, a payload that no longer parses) fails the
+    // same way every time and would block every entry queued behind it.
+    private static boolean isPermanent(Exception e) {
+        if (!(e instanceof FirebaseFirestoreException)) {
+            return true;
+        }
+        switch (((FirebaseFirestoreException) e).getCode()) {
+            case FAILED_PRECONDITION:
+            case NOT_FOUND:
+            case ALREADY_EXISTS:
+            case PERMISSION_DENIED:
+            case INVALID_ARGUMENT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static class Registration {
+        final int maxBatch;
+        final Replayer replayer;
+
+        Registration(int maxBatch, Replayer replayer) {
+            this.maxBatch = maxBatch;
+            this.replayer = replayer;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.smartparking.repositories;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.os.BatteryManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.util.Log;
+
+import com.smartparking.models.ParkingSpace;
+import com.smartparking.utils.GeoHashUtils;
+import com.smartparking.utils.Metrics;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+// Warms the document cache with the parking spaces nearest to the user and to the centre
+// of the visible map, so tapping a nearby marker shows live availability without waiting
+// on Firestore. Skipped on metered networks, in battery saver and when the battery is low.
+public class ParkingPrefetcher {
+    private static final String TAG = "ParkingPrefetcher";
+
+    public static final int DEFAULT_COUNT = 10;
+    // Map movement settles for this long before planning
+    private static final long DEBOUNCE_MS = 500;
+    // Smaller moves within the cache TTL would fetch the same lots again
+    private static final double MIN_MOVE_KM = 0.2;
+    private static final int MIN_BATTERY_PERCENT = 20;
+
+    private final ParkingRepository parkingRepository;
+    private final ConnectivityManager connectivityManager;
+    private final BatteryManager batteryManager;
+    private final PowerManager powerManager;
+    private final Executor executor;
+    private final int count;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Focus points, touched on the main thread only
+    private double[] userLocation;
+    private double[] viewportCenter;
+    private double[] lastUserLocation;
+    private double[] lastViewportCenter;
+    private long lastPrefetchAt;
+
+    public ParkingPrefetcher(Context context, ParkingRepository parkingRepository, Executor executor, int count) {
+        this.parkingRepository = parkingRepository;
+        this.connectivityManager = context.getSystemService(ConnectivityManager.class);
+        this.batteryManager = context.getSystemService(BatteryManager.class);
+        this.powerManager = context.getSystemService(PowerManager.class);
+        this.executor = executor;
+        this.count = count;
+    }
+
+    public void setUserLocation(double latitude, double longitude) {
+        userLocation = new double[]{latitude, longitude};
+        schedule();
+    }
+
+    public void setViewportCenter(double latitude, double longitude) {
+        viewportCenter = new double[]{latitude, longitude};
+        schedule();
+    }
+
+    public void stop() {
+        mainHandler.removeCallbacks(prefetchRunnable);
+    }
+
+    private void schedule() {
+        mainHandler.removeCallbacks(prefetchRunnable);
+        mainHandler.postDelayed(prefetchRunnable, DEBOUNCE_MS);
+    }
+
+    private final Runnable prefetchRunnable = this::prefetch;
+
+    private void prefetch() {
+        boolean stale = System.currentTimeMillis() - lastPrefetchAt > DocumentCache.DEFAULT_TTL_MS;
+        if (!stale && !movedFar(userLocation, lastUserLocation) && !movedFar(viewportCenter, lastViewportCenter)) {
+            return;
+        }
+        String reason = blockedReason();
+        if (reason != null) {
+            Metrics.count("prefetch.skipped." + reason);
+            return;
+        }
+        lastPrefetchAt = System.currentTimeMillis();
+        lastUserLocation = userLocation;
+        lastViewportCenter = viewportCenter;
+
+        double[] user = userLocation;
+        double[] viewport = viewportCenter;
+        executor.execute(() -> {
+            // Nearest lots come from the in-memory spatial index, only their documents hit the network
+            Set<String> spaceIds = new LinkedHashSet<>();
+            addNearest(spaceIds, user);
+            addNearest(spaceIds, viewport);
+            for (String spaceId : spaceIds) {
+                // Fresh cache entries and reads already in flight are reused, not fetched again
+                parkingRepository.getParkingSpaceDocument(spaceId);
+            }
+            Metrics.count("prefetch.requested", spaceIds.size());
+            Log.d(TAG, "Prefetching " + spaceIds.size() + " parking spaces");
+        });
+    }
+
+    private void addNearest(Set<String> spaceIds, double[] point) {
+        if (point == null) {
+            return;
+        }
+        for (ParkingSpace space : parkingRepository.getNearestCachedParkingSpaces(point[0], point[1], count)) {
+            spaceIds.add(space.getSpaceId());
+        }
+    }
+
+    private static boolean movedFar(double[] current, double[] last) {
+        if (current == null) {
+            return false;
+        }
+        return last == null || GeoHashUtils.distanceKm(current[0], current[1], last[0], last[1]) > MIN_MOVE_KM;
+    }
+
+    // Null when prefetching is allowed, otherwise a short reason for the skip counter
+    private String blockedReason() {
+        if (connectivityManager == null || connectivityManager.getActiveNetwork() == null) {
+            return "offline";
+        }
+        if (connectivityManager.isActiveNetworkMetered()) {
+            return "metered";
+        }
+        if (powerManager != null && powerManager.isPowerSaveMode()) {
+            return "powerSave";
+        }
+        if (batteryManager != null && !batteryManager.isCharging()) {
+            // Devices without a fuel gauge report Integer.MIN_VALUE
+            int percent = batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+            if (percent > 0 && percent < MIN_BATTERY_PERCENT) {
+                return "lowBattery";
+            }
+        }
+        return null;
+    }
+}
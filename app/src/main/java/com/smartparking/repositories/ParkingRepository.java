@@ -2,50 +2,242 @@
 package com.smartparking.repositories;
 
 import android.app.Application;
+import android.net.ConnectivityManager;
 import android.util.Log;
 
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.GeoPoint;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
 import com.smartparking.models.ParkingDatabase;
 import com.smartparking.models.ParkingSpace;
 import com.smartparking.models.ParkingSpaceDao;
+import com.smartparking.utils.AppExecutors;
+import com.smartparking.utils.GeoHashUtils;
+import com.smartparking.utils.Metrics;
+import com.smartparking.utils.ParkingSpaceDiff;
+import com.smartparking.utils.SpatialIndex;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Objects;
+import java.util.concurrent.Executor;
 
 public class ParkingRepository {
     private static final String TAG = "ParkingRepository";
 
+    private final ParkingDatabase database;
     private final ParkingSpaceDao parkingSpaceDao;
     private final FirebaseFirestore firestore;
-    private final ExecutorService executorService;
+    private final Executor executorService;
+    private final BatchIngestor<ParkingSpace> ingestor;
+    private final SyncEngine syncEngine;
+    private final SyncEngine.SyncSpec syncSpec;
+    private final DocumentCache documentCache;
+    private final RegionPackRepository regionPacks;
+    private final ConnectivityManager connectivityManager;
+    private final SpotCounter spotCounter;
+
+    // Shared by every repository instance so the index is loaded from Room only once
+    private static final SpatialIndex<ParkingSpace> spatialIndex = new SpatialIndex<>();
+    private static volatile boolean spatialIndexLoaded = false;
+
+    public interface AvailabilityChangeListener {
+        void onAvailabilityChanged(List<ParkingSpace> changed, List<String> removedIds);
+    }
 
-    public ParkingRepository(Application application) {
-        ParkingDatabase database = ParkingDatabase.getInstance(application);
+    public ParkingRepository(Application application, AppExecutors appExecutors, DocumentCache documentCache,
+                             RegionPackRepository regionPacks) {
+        database = ParkingDatabase.getInstance(application);
         parkingSpaceDao = database.parkingSpaceDao();
         firestore = FirebaseFirestore.getInstance();
-        executorService = Executors.newFixedThreadPool(4);
+        executorService = appExecutors.io();
+        ingestor = new BatchIngestor<>("parkingSpaces", appExecutors.compute(), executorService,
+                BatchIngestor.DEFAULT_PAGE_SIZE, ParkingRepository::toParkingSpace, this::insertParkingSpacesSync);
+        syncEngine = new SyncEngine(firestore, database, executorService);
+        syncSpec = new ParkingSpacesSyncSpec();
+        this.documentCache = documentCache;
+        this.regionPacks = regionPacks;
+        connectivityManager = application.getSystemService(ConnectivityManager.class);
+        spotCounter = new SpotCounter(firestore);
+        loadSpatialIndex();
     }
 
     // Room database operations
     public void insertParkingSpace(ParkingSpace parkingSpace) {
-        executorService.execute(() -> parkingSpaceDao.insert(parkingSpace));
+        executorService.execute(() -> {
+            Metrics.time("room.parkingSpaces.insert", () -> parkingSpaceDao.insert(parkingSpace));
+            indexParkingSpace(parkingSpace);
+        });
     }
 
     public void updateParkingSpace(ParkingSpace parkingSpace) {
-        executorService.execute(() -> parkingSpaceDao.update(parkingSpace));
+        executorService.execute(() -> {
+            Metrics.time("room.parkingSpaces.update", () -> parkingSpaceDao.update(parkingSpace));
+            indexParkingSpace(parkingSpace);
+        });
+    }
+
+    // Gives back a spot taken in the local cache for a booking the server never accepted
+    public void restoreAvailableSpot(String spaceId) {
+        executorService.execute(() -> restoreAvailableSpotSync(spaceId));
+    }
+
+    // Cache-only spot counts for local bookings. Read-modify-write of the current row, so
+    // they can run inside the caller's Room transaction; call from a background thread.
+    public void takeAvailableSpotSync(String spaceId) {
+        adjustAvailableSpotsSync(spaceId, -1);
+    }
+
+    public void restoreAvailableSpotSync(String spaceId) {
+        adjustAvailableSpotsSync(spaceId, 1);
+    }
+
+    private void adjustAvailableSpotsSync(String spaceId, int delta) {
+        ParkingSpace parkingSpace = Metrics.time("room.parkingSpaces.getByIdSync",
+                () -> parkingSpaceDao.getParkingSpaceByIdSync(spaceId));
+        if (parkingSpace == null) {
+            return;
+        }
+        int availableSpots = Math.max(0, Math.min(parkingSpace.getTotalSpots(), parkingSpace.getAvailableSpots() + delta));
+        if (availableSpots == parkingSpace.getAvailableSpots()) {
+            return;
+        }
+        parkingSpace.setAvailableSpots(availableSpots);
+        Metrics.time("room.parkingSpaces.update", () -> parkingSpaceDao.update(parkingSpace));
+        indexParkingSpace(parkingSpace);
+    }
+
+    // Upserts the whole list in one Room transaction, call from a background thread
+    // Every parking_spaces write invalidates the booking pagers joined to it, so rows that
+    // match Room are not written and availability-only changes use the guarded column update
+    private void insertParkingSpacesSync(List<ParkingSpace> parkingSpaces) {
+        List<String> spaceIds = new ArrayList<>(parkingSpaces.size());
+        for (ParkingSpace parkingSpace : parkingSpaces) {
+            spaceIds.add(parkingSpace.getSpaceId());
+        }
+        Map<String, ParkingSpace> stored = new HashMap<>();
+        for (ParkingSpace parkingSpace : Metrics.time("room.parkingSpaces.getByIds",
+                () -> parkingSpaceDao.getParkingSpacesByIdsSync(spaceIds))) {
+            stored.put(parkingSpace.getSpaceId(), parkingSpace);
+        }
+
+        List<ParkingSpace> rows = new ArrayList<>();
+        List<ParkingSpace> availabilityOnly = new ArrayList<>();
+        for (ParkingSpace parkingSpace : parkingSpaces) {
+            ParkingSpace previous = stored.get(parkingSpace.getSpaceId());
+            if (previous == null || !sameStoredFields(previous, parkingSpace)) {
+                rows.add(parkingSpace);
+            } else if (previous.getAvailableSpots() != parkingSpace.getAvailableSpots()) {
+                availabilityOnly.add(parkingSpace);
+            }
+            indexParkingSpace(parkingSpace);
+        }
+        if (rows.isEmpty() && availabilityOnly.isEmpty()) {
+            return;
+        }
+        Metrics.time("room.parkingSpaces.upsertChanged", () -> database.runInTransaction(() -> {
+            if (!rows.isEmpty()) {
+                parkingSpaceDao.insertAll(rows);
+            }
+            for (ParkingSpace parkingSpace : availabilityOnly) {
+                parkingSpaceDao.updateAvailableSpots(parkingSpace.getSpaceId(), parkingSpace.getAvailableSpots());
+            }
+        }));
+    }
+
+    // Every column except availableSpots
+    private static boolean sameStoredFields(ParkingSpace previous, ParkingSpace next) {
+        return (ParkingSpaceDiff.compare(previous, next) & ~ParkingSpaceDiff.CHANGE_AVAILABILITY) == 0
+                && previous.getTotalSpots() == next.getTotalSpots()
+                && Objects.equals(previous.getOwnerId(), next.getOwnerId())
+                && Objects.equals(previous.getGeohash(), next.getGeohash());
     }
 
     public void deleteParkingSpace(ParkingSpace parkingSpace) {
-        executorService.execute(() -> parkingSpaceDao.delete(parkingSpace));
+        executorService.execute(() -> {
+            Metrics.time("room.parkingSpaces.delete", () -> parkingSpaceDao.delete(parkingSpace));
+            spatialIndex.remove(parkingSpace.getSpaceId());
+        });
+    }
+
+    // Spatial index over the cached parking_spaces table
+    private void loadSpatialIndex() {
+        if (spatialIndexLoaded) {
+            return;
+        }
+        executorService.execute(() -> {
+            synchronized (spatialIndex) {
+                if (spatialIndexLoaded) {
+                    return;
+                }
+                List<SpatialIndex.Entry<ParkingSpace>> entries = new ArrayList<>();
+                List<ParkingSpace> spaces = Metrics.time("room.parkingSpaces.getAllSync",
+                        parkingSpaceDao::getAllParkingSpacesSync);
+                for (ParkingSpace space : spaces) {
+                    entries.add(new SpatialIndex.Entry<>(
+                            space.getSpaceId(), space.getLatitude(), space.getLongitude(), space));
+                }
+                spatialIndex.rebuild(entries);
+                spatialIndexLoaded = true;
+                Log.d(TAG, "Spatial index built with " + entries.size() + " parking spaces");
+            }
+        });
+    }
+
+    private void indexParkingSpace(ParkingSpace parkingSpace) {
+        spatialIndex.put(parkingSpace.getSpaceId(),
+                parkingSpace.getLatitude(), parkingSpace.getLongitude(), parkingSpace);
+    }
+
+    // Until Room has parking spaces (first launch, never synced) the region packs answer instead
+    private boolean useRegionPacks() {
+        return !spatialIndexLoaded || spatialIndex.size() == 0;
+    }
+
+    public List<ParkingSpace> getCachedParkingSpacesWithinRadius(double latitude, double longitude, double radiusInKm) {
+        if (useRegionPacks()) {
+            return regionPacks.queryRadius(latitude, longitude, radiusInKm);
+        }
+        return spatialIndex.queryRadius(latitude, longitude, radiusInKm);
+    }
+
+    public List<ParkingSpace> getCachedParkingSpacesInBounds(double minLat, double minLng, double maxLat, double maxLng) {
+        if (useRegionPacks()) {
+            return regionPacks.queryBoundingBox(minLat, minLng, maxLat, maxLng);
+        }
+        return spatialIndex.queryBoundingBox(minLat, minLng, maxLat, maxLng);
+    }
+
+    public List<ParkingSpace> getNearestCachedParkingSpaces(double latitude, double longitude, int count) {
+        if (useRegionPacks()) {
+            return regionPacks.queryNearest(latitude, longitude, count);
+        }
+        return spatialIndex.queryNearest(latitude, longitude, count);
+    }
+
+    // Name or address search over the region packs, for when Room has nothing cached
+    public List<ParkingSpace> searchOfflineParkingSpaces(String query) {
+        return regionPacks.search(query);
+    }
+
+    private boolean isOnline() {
+        return connectivityManager != null && connectivityManager.getActiveNetwork() != null;
     }
 
     public LiveData<List<ParkingSpace>> getAllParkingSpaces() {
@@ -65,100 +257,140 @@ public class ParkingRepository {
     }
 
     // Firestore operations
-    public void fetchParkingSpacesFromFirestore() {
-        firestore.collection("parkingSpaces")
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<ParkingSpace> parkingSpaces = new ArrayList<>();
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        ParkingSpace parkingSpace = document.toObject(ParkingSpace.class);
-                        // Handle GeoPoint conversion if needed
-                        GeoPoint geoPoint = document.getGeoPoint("location");
-                        if (geoPoint != null) {
-                            parkingSpace.setLatitude(geoPoint.getLatitude());
-                            parkingSpace.setLongitude(geoPoint.getLongitude());
+    // Single parking space document, shared with any identical read in flight
+    public Task<DocumentSnapshot> getParkingSpaceDocument(String spaceId) {
+        return documentCache.get("parkingSpaces", spaceId);
+    }
+
+    // Live free spots. A sharded lot's parent document does not track them, so they are
+    // summed from its shards.
+    public Task<Long> getAvailableSpots(String spaceId) {
+        return getParkingSpaceDocument(spaceId).continueWithTask(
+                readTask -> Metrics.trace("firestore.parkingSpaces.getAvailableSpots",
+                        spotCounter.getAvailableSpots(readTask.getResult())));
+    }
+
+    // Synced rows of sharded lots carry the parent's stale count, replace it with the shard total
+    private void refreshShardedAvailability(List<DocumentSnapshot> documents) {
+        for (DocumentSnapshot document : documents) {
+            if (!SpotCounter.isSharded(document)) {
+                continue;
+            }
+            String spaceId = document.getId();
+            spotCounter.getAvailableSpots(document)
+                    .addOnSuccessListener(executorService, available -> {
+                        if (Metrics.time("room.parkingSpaces.updateAvailableSpots",
+                                () -> parkingSpaceDao.updateAvailableSpots(spaceId, available.intValue())) > 0) {
+                            ParkingSpace parkingSpace = Metrics.time("room.parkingSpaces.getByIdSync",
+                                    () -> parkingSpaceDao.getParkingSpaceByIdSync(spaceId));
+                            if (parkingSpace != null) {
+                                indexParkingSpace(parkingSpace);
+                            }
                         }
-                        parkingSpaces.add(parkingSpace);
+                    })
+                    .addOnFailureListener(e -> Log.w(TAG, "Could not sum shards of " + spaceId, e));
+        }
+    }
 
-                        // Insert into Room database
-                        insertParkingSpace(parkingSpace);
-                    }
-                })
-                .addOnFailureListener(e -> Log.e(TAG, "Error fetching parking spaces", e));
+    // The space's availability changed on the server, drop the cached document
+    public void invalidateParkingSpace(String spaceId) {
+        documentCache.invalidate("parkingSpaces", spaceId);
     }
 
-    public void addParkingSpaceToFirestore(ParkingSpace parkingSpace) {
-        Map<String, Object> parkingData = new HashMap<>();
-        parkingData.put("spaceId", parkingSpace.getSpaceId());
-        parkingData.put("name", parkingSpace.getName());
-        parkingData.put("address", parkingSpace.getAddress());
-        parkingData.put("location", new GeoPoint(parkingSpace.getLatitude(), parkingSpace.getLongitude()));
-        parkingData.put("totalSpots", parkingSpace.getTotalSpots());
-        parkingData.put("availableSpots", parkingSpace.getAvailableSpots());
-        parkingData.put("hourlyRate", parkingSpace.getHourlyRate());
-        parkingData.put("isActive", parkingSpace.isActive());
-        parkingData.put("ownerId", parkingSpace.getOwnerId());
+    // Only documents changed or deleted since the last sync are read
+    public void fetchParkingSpacesFromFirestore() {
+        syncEngine.sync(syncSpec);
+    }
 
-        firestore.collection("parkingSpaces")
-                .document(parkingSpace.getSpaceId())
-                .set(parkingData)
+    public void addParkingSpaceToFirestore(ParkingSpace parkingSpace) {
+        Metrics.trace("firestore.parkingSpaces.set", firestore.collection("parkingSpaces")
+                        .document(parkingSpace.getSpaceId())
+                        .set(toFirestoreData(parkingSpace)))
                 .addOnSuccessListener(aVoid -> {
                     Log.d(TAG, "Parking space added to Firestore");
+                    invalidateParkingSpace(parkingSpace.getSpaceId());
                     // Also add to local database
                     insertParkingSpace(parkingSpace);
                 })
                 .addOnFailureListener(e -> Log.e(TAG, "Error adding parking space", e));
     }
 
-    public void updateParkingSpaceInFirestore(ParkingSpace parkingSpace) {
+    // Writes parking spaces in full write batches. With cacheLocally each committed batch
+    // is also upserted into Room; leave it off for load-test data sets.
+    public LiveData<BulkWriter.Progress> seedParkingSpaces(Iterator<ParkingSpace> parkingSpaces,
+                                                           boolean cacheLocally) {
+        BulkWriter<ParkingSpace> writer = new BulkWriter<>("parkingSpaces", firestore, executorService, 1,
+                (batch, parkingSpace) -> batch.set(
+                        firestore.collection("parkingSpaces").document(parkingSpace.getSpaceId()),
+                        toFirestoreData(parkingSpace)),
+                cacheLocally ? this::insertParkingSpacesSync : null);
+        return writer.write(parkingSpaces);
+    }
+
+    private static Map<String, Object> toFirestoreData(ParkingSpace parkingSpace) {
+        parkingSpace.updateGeohash();
+
         Map<String, Object> parkingData = new HashMap<>();
+        parkingData.put("spaceId", parkingSpace.getSpaceId());
         parkingData.put("name", parkingSpace.getName());
         parkingData.put("address", parkingSpace.getAddress());
         parkingData.put("location", new GeoPoint(parkingSpace.getLatitude(), parkingSpace.getLongitude()));
+        parkingData.put("geohash", parkingSpace.getGeohash());
         parkingData.put("totalSpots", parkingSpace.getTotalSpots());
         parkingData.put("availableSpots", parkingSpace.getAvailableSpots());
         parkingData.put("hourlyRate", parkingSpace.getHourlyRate());
         parkingData.put("isActive", parkingSpace.isActive());
-
-        firestore.collection("parkingSpaces")
-                .document(parkingSpace.getSpaceId())
-                .update(parkingData)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Parking space updated in Firestore");
-                    // Also update local database
-                    updateParkingSpace(parkingSpace);
-                })
-                .addOnFailureListener(e -> Log.e(TAG, "Error updating parking space", e));
+        parkingData.put("ownerId", parkingSpace.getOwnerId());
+        parkingData.put(SyncEngine.FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+        return parkingData;
     }
 
+    // Leaves a tombstone so other devices drop the space on their next delta sync
     public void deleteParkingSpaceFromFirestore(String spaceId) {
-        firestore.collection("parkingSpaces")
-                .document(spaceId)
-                .delete()
-                .addOnSuccessListener(aVoid -> Log.d(TAG, "Parking space deleted from Firestore"))
+        Metrics.trace("firestore.parkingSpaces.delete",
+                        SyncEngine.deleteWithTombstone(firestore, "parkingSpaces", spaceId, null))
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Parking space deleted from Firestore");
+                    invalidateParkingSpace(spaceId);
+                })
                 .addOnFailureListener(e -> Log.e(TAG, "Error deleting parking space", e));
     }
 
     public LiveData<List<ParkingSpace>> getNearbyParkingSpaces(double latitude, double longitude, double radiusInKm) {
         MutableLiveData<List<ParkingSpace>> nearbySpacesLiveData = new MutableLiveData<>();
 
-        // In a production app, you would use Firestore GeoQuery or a similar solution
-        // For simplicity, we'll fetch all parking spaces and filter them locally
-        firestore.collection("parkingSpaces")
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<ParkingSpace> nearbySpaces = new ArrayList<>();
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        ParkingSpace parkingSpace = document.toObject(ParkingSpace.class);
-
-                        // Handle GeoPoint conversion if needed
-                        GeoPoint geoPoint = document.getGeoPoint("location");
-                        if (geoPoint != null) {
-                            parkingSpace.setLatitude(geoPoint.getLatitude());
-                            parkingSpace.setLongitude(geoPoint.getLongitude());
+        // Offline, Firestore would answer from whatever its local cache happens to hold
+        if (!isOnline() && regionPacks.covers(latitude, longitude)) {
+            executorService.execute(() -> nearbySpacesLiveData.postValue(
+                    regionPacks.queryRadius(latitude, longitude, radiusInKm)));
+            return nearbySpacesLiveData;
+        }
+
+        // Only read the geohash cells that cover the search circle, then filter the
+        // candidates by exact distance
+        List<Task<QuerySnapshot>> cellQueries = new ArrayList<>();
+        for (String prefix : GeoHashUtils.coveringPrefixes(latitude, longitude, radiusInKm)) {
+            Query query = firestore.collection("parkingSpaces").orderBy("geohash");
+            if (!prefix.isEmpty()) {
+                query = query.startAt(prefix).endAt(GeoHashUtils.rangeEnd(prefix));
+            }
+            cellQueries.add(Metrics.trace("firestore.parkingSpaces.getCell", query.get()));
+        }
+
+        Metrics.trace("firestore.parkingSpaces.getNearby", Tasks.whenAllSuccess(cellQueries))
+                .addOnSuccessListener(results -> {
+                    // Cells can overlap at the box edges, so de-duplicate by document id
+                    Map<String, ParkingSpace> candidates = new LinkedHashMap<>();
+                    for (Object result : results) {
+                        for (QueryDocumentSnapshot document : (QuerySnapshot) result) {
+                            if (!candidates.containsKey(document.getId())) {
+                                candidates.put(document.getId(), toParkingSpace(document));
+                            }
                         }
+                    }
 
-                        // Calculate distance
+                    List<ParkingSpace> nearbySpaces = new ArrayList<>();
+                    for (ParkingSpace parkingSpace : candidates.values()) {
                         double distance = calculateDistance(
                                 latitude, longitude,
                                 parkingSpace.getLatitude(), parkingSpace.getLongitude());
@@ -167,42 +399,166 @@ public class ParkingRepository {
                             nearbySpaces.add(parkingSpace);
                         }
                     }
+                    Log.d(TAG, "Nearby search read " + candidates.size() + " candidates from "
+                            + cellQueries.size() + " geohash cells, " + nearbySpaces.size() + " in range");
                     nearbySpacesLiveData.setValue(nearbySpaces);
                 })
                 .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error fetching nearby parking spaces", e);
-                    nearbySpacesLiveData.setValue(new ArrayList<>());
+                    Log.e(TAG, "Error fetching nearby parking spaces, answering from region packs", e);
+                    executorService.execute(() -> nearbySpacesLiveData.postValue(
+                            regionPacks.queryRadius(latitude, longitude, radiusInKm)));
                 });
 
         return nearbySpacesLiveData;
     }
 
-    // Helper method to calculate distance between two coordinates using Haversine formula
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Radius of the earth in km
+    // Realtime listener over the geohash cells covering the region. Only the document
+    // changes of each snapshot are delivered, and they are mirrored into Room. A region too
+    // large for any geohash cell gets no listener, it would stream the whole collection.
+    public ListenerRegistration listenForAvailabilityChanges(double latitude, double longitude, double radiusInKm,
+                                                             AvailabilityChangeListener listener) {
+        List<ListenerRegistration> registrations = new ArrayList<>();
+        for (String prefix : GeoHashUtils.coveringPrefixes(latitude, longitude, radiusInKm)) {
+            if (prefix.isEmpty()) {
+                Log.w(TAG, "Not listening to " + radiusInKm + "km around " + latitude + ", " + longitude
+                        + ", it covers the whole collection");
+                break;
+            }
+            Query query = firestore.collection("parkingSpaces").orderBy("geohash")
+                    .startAt(prefix).endAt(GeoHashUtils.rangeEnd(prefix));
+            registrations.add(query.addSnapshotListener((snapshots, e) -> {
+                if (e != null) {
+                    Log.e(TAG, "Availability listener failed", e);
+                    return;
+                }
+                if (snapshots == null || snapshots.getDocumentChanges().isEmpty()) {
+                    return;
+                }
+                Metrics.count("firestore.parkingSpaces.listen.snapshots");
+                Metrics.count("firestore.parkingSpaces.listen.changes", snapshots.getDocumentChanges().size());
+
+                List<ParkingSpace> changed = new ArrayList<>();
+                List<String> removedIds = new ArrayList<>();
+                for (DocumentChange change : snapshots.getDocumentChanges()) {
+                    if (change.getType() == DocumentChange.Type.REMOVED) {
+                        removedIds.add(change.getDocument().getId());
+                        invalidateParkingSpace(change.getDocument().getId());
+                    } else {
+                        changed.add(toParkingSpace(change.getDocument()));
+                        // Keep the document cache as fresh as the listener
+                        documentCache.put(change.getDocument());
+                    }
+                }
+                if (!changed.isEmpty()) {
+                    List<ParkingSpace> rows = new ArrayList<>(changed);
+                    List<DocumentSnapshot> documents = new ArrayList<>();
+                    for (DocumentChange change : snapshots.getDocumentChanges()) {
+                        if (change.getType() != DocumentChange.Type.REMOVED) {
+                            documents.add(change.getDocument());
+                        }
+                    }
+                    executorService.execute(() -> {
+                        insertParkingSpacesSync(rows);
+                        refreshShardedAvailability(documents);
+                    });
+                }
+                listener.onAvailabilityChanged(changed, removedIds);
+            }));
+        }
+
+        return () -> {
+            for (ListenerRegistration registration : registrations) {
+                registration.remove();
+            }
+        };
+    }
+
+    private class ParkingSpacesSyncSpec implements SyncEngine.SyncSpec {
+        @Override
+        public String getKey() {
+            return "parkingSpaces";
+        }
+
+        @Override
+        public Query getQuery() {
+            return firestore.collection("parkingSpaces");
+        }
+
+        @Override
+        public Query getTombstoneQuery() {
+            return SyncEngine.tombstones(firestore, "parkingSpaces");
+        }
+
+        @Override
+        public void applyChanges(List<DocumentSnapshot> documents) {
+            ingestor.ingestPageSync(documents);
+            refreshShardedAvailability(documents);
+            backfillGeohashes(documents);
+        }
 
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        @Override
+        public void applyDeletes(List<String> documentIds) {
+            Metrics.time("room.parkingSpaces.deleteByIds", () -> parkingSpaceDao.deleteByIds(documentIds));
+            for (String spaceId : documentIds) {
+                spatialIndex.remove(spaceId);
+            }
+        }
+    }
 
-        return R * c; // Distance in km
+    // Lots written without a geohash (older app versions, console edits) never match the
+    // geohash range queries behind the nearby search and the region packs. The sync reads
+    // every document, so it writes the field back for those it finds. A sync page is at
+    // most 500 documents, which fits one batch. Stamping updatedAt lets the packs' delta
+    // updates pick the lots up.
+    private void backfillGeohashes(List<DocumentSnapshot> documents) {
+        WriteBatch batch = firestore.batch();
+        int missing = 0;
+        for (DocumentSnapshot document : documents) {
+            if (document.getString("geohash") != null) {
+                continue;
+            }
+            ParkingSpace parkingSpace = toParkingSpace(document);
+            batch.update(document.getReference(), "geohash", parkingSpace.getGeohash(),
+                    SyncEngine.FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+            missing++;
+        }
+        if (missing == 0) {
+            return;
+        }
+        int count = missing;
+        Metrics.trace("firestore.parkingSpaces.backfillGeohash", batch.commit())
+                .addOnSuccessListener(aVoid -> Log.d(TAG, "Backfilled geohash on " + count + " parking spaces"))
+                .addOnFailureListener(e -> Log.e(TAG, "Error backfilling geohashes", e));
+    }
+
+    // Convert a Firestore document into a ParkingSpace, reading the coordinates from the GeoPoint
+    static ParkingSpace toParkingSpace(DocumentSnapshot document) {
+        ParkingSpace parkingSpace = document.toObject(ParkingSpace.class);
+        GeoPoint geoPoint = document.getGeoPoint("location");
+        if (geoPoint != null) {
+            parkingSpace.setLatitude(geoPoint.getLatitude());
+            parkingSpace.setLongitude(geoPoint.getLongitude());
+        }
+        if (parkingSpace.getGeohash() == null) {
+            parkingSpace.updateGeohash();
+        }
+        return parkingSpace;
+    }
+
+    // Helper method to calculate distance between two coordinates using Haversine formula
+    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
+        return GeoHashUtils.distanceKm(lat1, lon1, lat2, lon2);
     }
 
     public void addMockParkingSpaces() {
         // Only add mock data if there's no data in Firestore yet
-        firestore.collection("parkingSpaces")
-                .limit(1)
-                .get()
+        Metrics.trace("firestore.parkingSpaces.getFirst", firestore.collection("parkingSpaces")
+                        .limit(1)
+                        .get())
                 .addOnSuccessListener(queryDocumentSnapshots -> {
                     if (queryDocumentSnapshots.isEmpty()) {
-                        // Add mock data
-                        List<ParkingSpace> mockSpaces = createMockParkingSpaces();
-                        for (ParkingSpace space : mockSpaces) {
-                            addParkingSpaceToFirestore(space);
-                        }
+                        // Add mock data in one batch
+                        seedParkingSpaces(createMockParkingSpaces().iterator(), true);
                         Log.d(TAG, "Added mock parking spaces");
                     }
                 });
@@ -280,11 +636,13 @@ public class ParkingRepository {
                 space.setAvailableSpots(newAvailableSpots);
 
                 // Update in Firestore
-                firestore.collection("parkingSpaces")
-                        .document(spaceId)
-                        .update("availableSpots", newAvailableSpots)
+                Metrics.trace("firestore.parkingSpaces.updateAvailability", firestore.collection("parkingSpaces")
+                                .document(spaceId)
+                                .update("availableSpots", newAvailableSpots,
+                                        SyncEngine.FIELD_UPDATED_AT, FieldValue.serverTimestamp()))
                         .addOnSuccessListener(aVoid -> {
                             Log.d(TAG, "Mock parking space updated: " + spaceId + " now has " + newAvailableSpots + " spots");
+                            invalidateParkingSpace(spaceId);
                         })
                         .addOnFailureListener(e -> {
                             Log.e(TAG, "Error updating mock parking space", e);
@@ -0,0 +1,339 @@
+package com.smartparking.repositories;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+import com.smartparking.models.ParkingSpace;
+import com.smartparking.utils.GeoHashUtils;
+import com.smartparking.utils.MapTiles;
+import com.smartparking.utils.Metrics;
+import com.smartparking.utils.RegionPack;
+import com.smartparking.utils.RegionPackWriter;
+import com.smartparking.utils.TileRegion;
+import com.smartparking.workers.TileSeedWorker;
+
+import org.osmdroid.tileprovider.modules.DatabaseFileArchive;
+import org.osmdroid.tileprovider.tilesource.OnlineTileSourceBase;
+import org.osmdroid.util.MapTileIndex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Offline region packs for MapTiles.SEED_REGIONS: lot metadata, its spatial index and the
+// region's map tiles in one memory-mapped file per region (see RegionPack). Queries here run
+// against the packs only; ParkingRepository falls back to them when there is no network or
+// nothing cached in Room.
+//
+// update() builds a missing pack from Firestore and afterwards applies only lots changed or
+// deleted since the pack's watermarks, using the same updatedAt fields and tombstones as
+// SyncEngine. Tiles come from the region's seeded archive, which is deleted once folded in.
+public class RegionPackRepository {
+    private static final String TAG = "RegionPackRepository";
+
+    private static final long QUERY_TIMEOUT_SECONDS = 60;
+    private static final int PAGE_SIZE = 500;
+
+    private final Context context;
+    private final FirebaseFirestore firestore;
+    // Open packs by region name, null until first used. An update swaps in a newly opened pack,
+    // queries still running on the old one keep its mapping.
+    private Map<String, RegionPack> packs;
+    // Periodic and on-demand updates must not write the same pack at once
+    private final Object updateLock = new Object();
+
+    public RegionPackRepository(Context context, FirebaseFirestore firestore) {
+        this.context = context.getApplicationContext();
+        this.firestore = firestore;
+    }
+
+    public boolean covers(double latitude, double longitude) {
+        for (RegionPack pack : getPacks()) {
+            if (pack.contains(latitude, longitude)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<ParkingSpace> queryRadius(double latitude, double longitude, double radiusInKm) {
+        List<ParkingSpace> results = new ArrayList<>();
+        for (RegionPack pack : getPacks()) {
+            results.addAll(pack.queryRadius(latitude, longitude, radiusInKm));
+        }
+        Metrics.count("regionPack.query");
+        return results;
+    }
+
+    public List<ParkingSpace> queryBoundingBox(double minLat, double minLng, double maxLat, double maxLng) {
+        List<ParkingSpace> results = new ArrayList<>();
+        for (RegionPack pack : getPacks()) {
+            results.addAll(pack.queryBoundingBox(minLat, minLng, maxLat, maxLng));
+        }
+        Metrics.count("regionPack.query");
+        return results;
+    }
+
+    public List<ParkingSpace> queryNearest(double latitude, double longitude, int count) {
+        List<ParkingSpace> results = new ArrayList<>();
+        for (RegionPack pack : getPacks()) {
+            results.addAll(pack.queryNearest(latitude, longitude, count));
+        }
+        Collections.sort(results, Comparator.comparingDouble(space ->
+                GeoHashUtils.distanceKm(latitude, longitude, space.getLatitude(), space.getLongitude())));
+        Metrics.count("regionPack.query");
+        return new ArrayList<>(results.subList(0, Math.min(count, results.size())));
+    }
+
+    public List<ParkingSpace> search(String query) {
+        List<ParkingSpace> results = new ArrayList<>();
+        for (RegionPack pack : getPacks()) {
+            results.addAll(pack.search(query));
+        }
+        Metrics.count("regionPack.query");
+        return results;
+    }
+
+    private synchronized List<RegionPack> getPacks() {
+        if (packs == null) {
+            packs = new LinkedHashMap<>();
+            for (TileRegion region : MapTiles.SEED_REGIONS) {
+                RegionPack pack = openPack(region);
+                if (pack != null) {
+                    packs.put(region.getName(), pack);
+                }
+            }
+        }
+        return new ArrayList<>(packs.values());
+    }
+
+    private synchronized void setPack(TileRegion region, RegionPack pack) {
+        getPacks();
+        packs.put(region.getName(), pack);
+    }
+
+    private RegionPack openPack(TileRegion region) {
+        File file = MapTiles.packFile(context, region);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return RegionPack.open(file);
+        } catch (IOException e) {
+            // Rebuilt by the next update
+            Log.e(TAG, "Discarding unreadable region pack " + file, e);
+            return null;
+        }
+    }
+
+    // Builds or refreshes the pack for a region. Blocking, call from a worker thread.
+    public void update(TileRegion region) throws IOException, InterruptedException {
+        synchronized (updateLock) {
+            updateLocked(region);
+        }
+    }
+
+    private void updateLocked(TileRegion region) throws IOException, InterruptedException {
+        RegionPack pack = openPack(region);
+        if (pack != null && !sameArea(pack.getRegion(), region)) {
+            // The region was redrawn, the old pack's lots and tiles no longer match it
+            pack = null;
+        }
+        File archive = MapTiles.archiveFile(context, region);
+        boolean foldTiles = archive.exists() && TileSeedWorker.isSeeded(context, region)
+                && (pack == null || pack.getTileCount() == 0);
+
+        try (Metrics.Span ignored = Metrics.begin("regionPack.update")) {
+            if (pack == null || foldTiles) {
+                pack = build(region, foldTiles ? archive : null);
+                if (foldTiles) {
+                    // The pack serves these tiles now
+                    archive.delete();
+                } else if (pack.getTileCount() == 0 && TileSeedWorker.isSeeded(context, region)) {
+                    // The tiles went with the old pack, download them again
+                    TileSeedWorker.reset(context, region);
+                }
+            } else {
+                pack = applyDelta(region, pack);
+            }
+        }
+        setPack(region, pack);
+        Log.d(TAG, "Region pack " + region.getName() + " has " + pack.getLotCount() + " lots and "
+                + pack.getTileCount() + " tiles");
+    }
+
+    private RegionPack build(TileRegion region, File tileArchive) throws IOException, InterruptedException {
+        // Same geohash cell reads as the nearby search, over the circle around the region
+        double centerLat = (region.getSouth() + region.getNorth()) / 2;
+        double centerLng = (region.getWest() + region.getEast()) / 2;
+        double radius = GeoHashUtils.distanceKm(centerLat, centerLng, region.getNorth(), region.getEast());
+
+        // Watermark from before the first cell read, anything changed or deleted while the
+        // cells are read is newer and comes in with the next delta
+        List<DocumentSnapshot> newest = await(firestore.collection("parkingSpaces")
+                .orderBy(SyncEngine.FIELD_UPDATED_AT, Query.Direction.DESCENDING)
+                .limit(1)).getDocuments();
+        long watermark = newest.isEmpty() ? 0 : updatedAt(newest.get(0));
+
+        Map<String, ParkingSpace> lots = new HashMap<>();
+        for (String prefix : GeoHashUtils.coveringPrefixes(centerLat, centerLng, radius)) {
+            Query query = firestore.collection("parkingSpaces").orderBy("geohash");
+            if (!prefix.isEmpty()) {
+                query = query.startAt(prefix).endAt(GeoHashUtils.rangeEnd(prefix));
+            }
+            for (DocumentSnapshot document : await(query).getDocuments()) {
+                ParkingSpace space = ParkingRepository.toParkingSpace(document);
+                if (region.contains(space.getLatitude(), space.getLongitude())) {
+                    lots.put(space.getSpaceId(), space);
+                }
+            }
+        }
+
+        File file = MapTiles.packFile(context, region);
+        OnlineTileSourceBase tileSource = MapTiles.getTileSource();
+        if (tileArchive == null) {
+            RegionPackWriter.write(file, region, tileSource.name(), null, lots.values(), watermark, watermark);
+        } else {
+            DatabaseFileArchive database = DatabaseFileArchive.getDatabaseFileArchive(tileArchive);
+            try {
+                RegionPackWriter.write(file, region, tileSource.name(),
+                        (zoom, x, y) -> readTile(database, tileSource, zoom, x, y),
+                        lots.values(), watermark, watermark);
+            } finally {
+                database.close();
+            }
+        }
+        Metrics.count("regionPack.build");
+        return RegionPack.open(file);
+    }
+
+    private RegionPack applyDelta(TileRegion region, RegionPack pack) throws IOException, InterruptedException {
+        List<String> deleted = new ArrayList<>();
+        long tombstonesWatermark = pack.getTombstonesWatermark();
+        DocumentSnapshot after = null;
+        List<DocumentSnapshot> documents;
+        do {
+            Query query = SyncEngine.tombstones(firestore, "parkingSpaces")
+                    .whereGreaterThan(SyncEngine.FIELD_DELETED_AT, toTimestamp(pack.getTombstonesWatermark()))
+                    .orderBy(SyncEngine.FIELD_DELETED_AT)
+                    .limit(PAGE_SIZE);
+            if (after != null) {
+                query = query.startAfter(after);
+            }
+            documents = await(query).getDocuments();
+            for (DocumentSnapshot document : documents) {
+                Timestamp deletedAt = document.getTimestamp(SyncEngine.FIELD_DELETED_AT);
+                if (deletedAt != null) {
+                    tombstonesWatermark = Math.max(tombstonesWatermark, deletedAt.toDate().getTime());
+                }
+                deleted.add(document.getId());
+            }
+            after = documents.isEmpty() ? null : documents.get(documents.size() - 1);
+        } while (documents.size() == PAGE_SIZE);
+
+        Map<String, ParkingSpace> changed = new HashMap<>();
+        long changesWatermark = pack.getChangesWatermark();
+        after = null;
+        do {
+            Query query = firestore.collection("parkingSpaces")
+                    .whereGreaterThan(SyncEngine.FIELD_UPDATED_AT, toTimestamp(pack.getChangesWatermark()))
+                    .orderBy(SyncEngine.FIELD_UPDATED_AT)
+                    .limit(PAGE_SIZE);
+            if (after != null) {
+                query = query.startAfter(after);
+            }
+            documents = await(query).getDocuments();
+            for (DocumentSnapshot document : documents) {
+                changesWatermark = Math.max(changesWatermark, updatedAt(document));
+                changed.put(document.getId(), ParkingRepository.toParkingSpace(document));
+            }
+            after = documents.isEmpty() ? null : documents.get(documents.size() - 1);
+        } while (documents.size() == PAGE_SIZE);
+
+        if (changed.isEmpty() && deleted.isEmpty()) {
+            return pack;
+        }
+
+        Map<String, ParkingSpace> lots = new LinkedHashMap<>();
+        for (ParkingSpace space : pack.getAllParkingSpaces()) {
+            lots.put(space.getSpaceId(), space);
+        }
+        // Deletes first, a lot deleted and created again under the same id is also in changed
+        for (String spaceId : deleted) {
+            lots.remove(spaceId);
+        }
+        // Changes cover the whole collection, only lots inside the region are kept
+        for (ParkingSpace space : changed.values()) {
+            if (region.contains(space.getLatitude(), space.getLongitude())) {
+                lots.put(space.getSpaceId(), space);
+            } else {
+                lots.remove(space.getSpaceId());
+            }
+        }
+
+        RegionPackWriter.updateLots(pack, lots.values(), changesWatermark, tombstonesWatermark);
+        Metrics.count("regionPack.delta.changed", changed.size());
+        Metrics.count("regionPack.delta.deleted", deleted.size());
+        return RegionPack.open(pack.getFile());
+    }
+
+    private static boolean sameArea(TileRegion a, TileRegion b) {
+        return a.getSouth() == b.getSouth() && a.getWest() == b.getWest()
+                && a.getNorth() == b.getNorth() && a.getEast() == b.getEast()
+                && a.getMinZoom() == b.getMinZoom() && a.getMaxZoom() == b.getMaxZoom();
+    }
+
+    private static byte[] readTile(DatabaseFileArchive database, OnlineTileSourceBase tileSource,
+                                   int zoom, int x, int y) throws IOException {
+        try (InputStream in = database.getInputStream(tileSource, MapTileIndex.getTileIndex(zoom, x, y))) {
+            if (in == null) {
+                return null;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static QuerySnapshot await(Query query) throws IOException, InterruptedException {
+        try {
+            // Never build a pack from Firestore's local cache
+            return Tasks.await(Metrics.trace("firestore.regionPack.get", query.get(Source.SERVER)),
+                    QUERY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("Firestore read failed", e);
+        }
+    }
+
+    private static long updatedAt(DocumentSnapshot document) {
+        Timestamp timestamp = document.getTimestamp(SyncEngine.FIELD_UPDATED_AT);
+        return timestamp != null ? timestamp.toDate().getTime() : 0;
+    }
+
+    private static Timestamp toTimestamp(long millis) {
+        return new Timestamp(new Date(millis));
+    }
+}
@@ -10,34 +10,35 @@ import com.smartparking.models.User;
 import com.smartparking.models.UserDao;
 import com.smartparking.models.Vehicle;
 import com.smartparking.models.VehicleDao;
+import com.smartparking.utils.AppExecutors;
+import com.smartparking.utils.Metrics;
 
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 public class RoomRepository {
     private final UserDao userDao;
     private final VehicleDao vehicleDao;
-    private final ExecutorService executorService;
+    private final Executor executorService;
 
-    public RoomRepository(Application application) {
+    public RoomRepository(Application application, AppExecutors appExecutors) {
         ParkingDatabase database = ParkingDatabase.getInstance(application);
         userDao = database.userDao();
         vehicleDao = database.vehicleDao();
-        executorService = Executors.newFixedThreadPool(4);
+        executorService = appExecutors.io();
     }
 
     // User operations
     public void insertUser(User user) {
-        executorService.execute(() -> userDao.insert(user));
+        executorService.execute(() -> Metrics.time("room.users.insert", () -> userDao.insert(user)));
     }
 
     public void updateUser(User user) {
-        executorService.execute(() -> userDao.update(user));
+        executorService.execute(() -> Metrics.time("room.users.update", () -> userDao.update(user)));
     }
 
     public void deleteUser(User user) {
-        executorService.execute(() -> userDao.delete(user));
+        executorService.execute(() -> Metrics.time("room.users.delete", () -> userDao.delete(user)));
     }
 
     public LiveData<User> getUserById(String userId) {
@@ -45,20 +46,20 @@ public class RoomRepository {
     }
 
     public void deleteAllUsers() {
-        executorService.execute(() -> userDao.deleteAllUsers());
+        executorService.execute(() -> Metrics.time("room.users.deleteAll", () -> userDao.deleteAllUsers()));
     }
 
     // Vehicle operations
     public void insertVehicle(Vehicle vehicle) {
-        executorService.execute(() -> vehicleDao.insert(vehicle));
+        executorService.execute(() -> Metrics.time("room.vehicles.insert", () -> vehicleDao.insert(vehicle)));
     }
 
     public void updateVehicle(Vehicle vehicle) {
-        executorService.execute(() -> vehicleDao.update(vehicle));
+        executorService.execute(() -> Metrics.time("room.vehicles.update", () -> vehicleDao.update(vehicle)));
     }
 
     public void deleteVehicle(Vehicle vehicle) {
-        executorService.execute(() -> vehicleDao.delete(vehicle));
+        executorService.execute(() -> Metrics.time("room.vehicles.delete", () -> vehicleDao.delete(vehicle)));
     }
 
     public LiveData<List<Vehicle>> getVehiclesByUserId(String userId) {
@@ -70,6 +71,7 @@ public class RoomRepository {
     }
 
     public void deleteAllVehiclesByUserId(String userId) {
-        executorService.execute(() -> vehicleDao.deleteAllVehiclesByUserId(userId));
+        executorService.execute(() -> Metrics.time("room.vehicles.deleteAllByUserId",
+                () -> vehicleDao.deleteAllVehiclesByUserId(userId)));
     }
 }
\ No newline at end of file
@@ -0,0 +1,307 @@
+package com.smartparking.repositories;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.smartparking.models.Booking;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Contention-safe availability accounting for parking spaces. Booking and cancelling
+// adjust availableSpots inside a Firestore transaction together with the booking write,
+// so concurrent bookings can never oversell a lot. Very busy lots can be split into
+// shards: each shard document owns a slice of the free spots and a booking only locks
+// one shard, so write throughput grows with the shard count instead of being capped by
+// a single document. A sharded lot's parent availableSpots is left as it was when the lot
+// was split; read the live count with getAvailableSpots. Documents are accessed through
+// a SpotStore, Firestore in the app.
+public class SpotCounter {
+    private static final String TAG = "SpotCounter";
+
+    public static final String SHARDS_COLLECTION = "availabilityShards";
+    public static final String FIELD_AVAILABLE_SPOTS = "availableSpots";
+    public static final String FIELD_SHARD_COUNT = "shardCount";
+    public static final String ERROR_NO_SPOTS = "No available spots";
+    public static final String ERROR_SHARDS_CHANGED = "Shard layout changed";
+
+    // Continuations only chain the next call, run them wherever the previous step completed
+    private static final Executor DIRECT = Runnable::run;
+
+    // Shard layout rarely changes, so it is read once per parking space and then only
+    // checked inside each transaction against the parent's shardCount. A mismatch drops
+    // the cached value and fails the attempt with ABORTED, which callers retry.
+    private static final Map<String, Integer> shardCounts = new ConcurrentHashMap<>();
+
+    // Transaction attempts include Firestore's automatic retries on contention
+    private static final AtomicLong transactionAttempts = new AtomicLong();
+    private static final AtomicLong transactionCommits = new AtomicLong();
+    private static final AtomicLong soldOutRejections = new AtomicLong();
+
+    private final SpotStore store;
+    private final Random random = new Random();
+
+    public SpotCounter(FirebaseFirestore firestore) {
+        this(new FirestoreSpotStore(firestore));
+    }
+
+    public SpotCounter(SpotStore store) {
+        this.store = store;
+    }
+
+    // Take one spot and write the booking atomically. Fails with FAILED_PRECONDITION and
+    // ERROR_NO_SPOTS when the lot is full. Replaying the same booking is a no-op.
+    public Task<Void> reserveSpot(Booking booking) {
+        String parkingSpaceId = booking.getParkingSpaceId();
+        String parkingPath = parkingPath(parkingSpaceId);
+        String bookingPath = bookingPath(booking.getBookingId());
+
+        return getShardCount(parkingSpaceId).continueWithTask(DIRECT, countTask -> {
+            int shardCount = countTask.getResult();
+            int firstShard = shardCount > 0 ? random.nextInt(shardCount) : 0;
+
+            Task<Boolean> transaction = store.runTransaction(tx -> {
+                transactionAttempts.incrementAndGet();
+                if (tx.get(bookingPath).exists()) {
+                    return false;
+                }
+                SpotStore.Document parking = tx.get(parkingPath);
+                if (!parking.exists()) {
+                    throw new FirebaseFirestoreException("Parking space not found",
+                            FirebaseFirestoreException.Code.NOT_FOUND);
+                }
+                checkShardCount(parkingSpaceId, parking, shardCount);
+
+                if (shardCount == 0) {
+                    Long available = parking.getLong(FIELD_AVAILABLE_SPOTS);
+                    if (available == null || available <= 0) {
+                        soldOutRejections.incrementAndGet();
+                        throw new FirebaseFirestoreException(ERROR_NO_SPOTS,
+                                FirebaseFirestoreException.Code.FAILED_PRECONDITION);
+                    }
+                    tx.update(parkingPath, stamped(FIELD_AVAILABLE_SPOTS, available - 1));
+                    setBooking(tx, bookingPath, booking);
+                    return true;
+                }
+
+                // Start at a random shard so concurrent bookings spread across documents
+                for (int i = 0; i < shardCount; i++) {
+                    String shardPath = shardPath(parkingPath, (firstShard + i) % shardCount);
+                    Long available = tx.get(shardPath).getLong(FIELD_AVAILABLE_SPOTS);
+                    if (available != null && available > 0) {
+                        tx.update(shardPath, Collections.singletonMap(FIELD_AVAILABLE_SPOTS, available - 1));
+                        setBooking(tx, bookingPath, booking);
+                        return true;
+                    }
+                }
+                soldOutRejections.incrementAndGet();
+                throw new FirebaseFirestoreException(ERROR_NO_SPOTS,
+                        FirebaseFirestoreException.Code.FAILED_PRECONDITION);
+            });
+
+            return transaction.continueWithTask(DIRECT, done -> {
+                if (!done.isSuccessful()) {
+                    return Tasks.forException(done.getException());
+                }
+                transactionCommits.incrementAndGet();
+                return Tasks.forResult(null);
+            });
+        });
+    }
+
+    // Cancel the booking and give its spot back atomically. Resolves to the booking's
+    // parking space, or null if it was already cancelled so a spot is never restored twice.
+    public Task<String> releaseSpot(String bookingId) {
+        String bookingPath = bookingPath(bookingId);
+
+        return store.get(bookingPath).continueWithTask(DIRECT, readTask -> {
+            SpotStore.Document snapshot = readTask.getResult();
+            if (snapshot == null || !snapshot.exists()) {
+                return Tasks.forException(new FirebaseFirestoreException("Booking not found",
+                        FirebaseFirestoreException.Code.NOT_FOUND));
+            }
+            String parkingSpaceId = snapshot.getString("parkingSpaceId");
+            String parkingPath = parkingPath(parkingSpaceId);
+
+            return getShardCount(parkingSpaceId).continueWithTask(DIRECT, countTask -> {
+                int shardCount = countTask.getResult();
+                String shardPath = shardCount > 0 ? shardPath(parkingPath, random.nextInt(shardCount)) : null;
+
+                Task<String> transaction = store.runTransaction(tx -> {
+                    transactionAttempts.incrementAndGet();
+                    SpotStore.Document current = tx.get(bookingPath);
+                    if (!current.exists() || "CANCELLED".equals(current.getString("bookingStatus"))) {
+                        return null;
+                    }
+                    SpotStore.Document parking = tx.get(parkingPath);
+                    if (parking.exists()) {
+                        checkShardCount(parkingSpaceId, parking, shardCount);
+                    }
+                    // All reads before the first write
+                    SpotStore.Document target = parking.exists() && shardPath != null ? tx.get(shardPath) : parking;
+
+                    tx.update(bookingPath, stamped("bookingStatus", "CANCELLED"));
+                    if (!parking.exists()) {
+                        // Mock parking spaces have no document to restore
+                        return parkingSpaceId;
+                    }
+                    Long available = target.getLong(FIELD_AVAILABLE_SPOTS);
+                    long restored = (available != null ? available : 0) + 1;
+                    if (shardPath == null) {
+                        tx.update(parkingPath, stamped(FIELD_AVAILABLE_SPOTS, restored));
+                    } else {
+                        tx.update(shardPath, Collections.singletonMap(FIELD_AVAILABLE_SPOTS, restored));
+                    }
+                    return parkingSpaceId;
+                });
+
+                return transaction.continueWithTask(DIRECT, done -> {
+                    if (!done.isSuccessful()) {
+                        return Tasks.forException(done.getException());
+                    }
+                    transactionCommits.incrementAndGet();
+                    return Tasks.forResult(done.getResult());
+                });
+            });
+        });
+    }
+
+    // Free spots right now: the parent count, or the sum of the shards for a sharded lot
+    public Task<Long> getAvailableSpots(String parkingSpaceId) {
+        return store.get(parkingPath(parkingSpaceId))
+                .continueWithTask(DIRECT, readTask -> getAvailableSpots(readTask.getResult()));
+    }
+
+    // Same, starting from an already read parent document
+    public Task<Long> getAvailableSpots(DocumentSnapshot parking) {
+        return getAvailableSpots(FirestoreSpotStore.wrap(parking));
+    }
+
+    private Task<Long> getAvailableSpots(SpotStore.Document parking) {
+        if (shardCountOf(parking) == 0) {
+            Long available = parking.getLong(FIELD_AVAILABLE_SPOTS);
+            return Tasks.forResult(available != null ? available : 0L);
+        }
+        return store.getAll(parking.getPath() + "/" + SHARDS_COLLECTION).continueWith(DIRECT, shardsTask -> {
+            long available = 0;
+            for (SpotStore.Document shard : shardsTask.getResult()) {
+                Long slice = shard.getLong(FIELD_AVAILABLE_SPOTS);
+                available += slice != null ? slice : 0;
+            }
+            return available;
+        });
+    }
+
+    public static boolean isSharded(DocumentSnapshot parking) {
+        Long shardCount = parking.getLong(FIELD_SHARD_COUNT);
+        return shardCount != null && shardCount > 0;
+    }
+
+    // Split a lot's free spots across shardCount shard documents
+    public Task<Void> enableSharding(String parkingSpaceId, int shardCount) {
+        String parkingPath = parkingPath(parkingSpaceId);
+        return store.<Void>runTransaction(tx -> {
+            SpotStore.Document parking = tx.get(parkingPath);
+            Long available = parking.getLong(FIELD_AVAILABLE_SPOTS);
+            long total = available != null ? available : 0;
+
+            for (int i = 0; i < shardCount; i++) {
+                long slice = total / shardCount + (i < total % shardCount ? 1 : 0);
+                Map<String, Object> shard = new HashMap<>();
+                shard.put(FIELD_AVAILABLE_SPOTS, slice);
+                tx.set(shardPath(parkingPath, i), shard);
+            }
+            tx.update(parkingPath, stamped(FIELD_SHARD_COUNT, shardCount));
+            return null;
+        }).addOnSuccessListener(DIRECT, aVoid -> {
+            shardCounts.put(parkingSpaceId, shardCount);
+            Log.d(TAG, "Parking space " + parkingSpaceId + " split into " + shardCount + " shards");
+        });
+    }
+
+    public static long getTransactionAttempts() {
+        return transactionAttempts.get();
+    }
+
+    public static long getTransactionCommits() {
+        return transactionCommits.get();
+    }
+
+    public static long getSoldOutRejections() {
+        return soldOutRejections.get();
+    }
+
+    public static boolean isSoldOut(Exception e) {
+        return e instanceof FirebaseFirestoreException
+                && ((FirebaseFirestoreException) e).getCode() == FirebaseFirestoreException.Code.FAILED_PRECONDITION
+                && ERROR_NO_SPOTS.equals(e.getMessage());
+    }
+
+    // Fails when the layout cannot be read: guessing 0 would book a sharded lot from its
+    // parent count and oversell it
+    private Task<Integer> getShardCount(String parkingSpaceId) {
+        Integer cached = shardCounts.get(parkingSpaceId);
+        if (cached != null) {
+            return Tasks.forResult(cached);
+        }
+        return store.get(parkingPath(parkingSpaceId)).continueWith(DIRECT, task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            int count = shardCountOf(task.getResult());
+            shardCounts.put(parkingSpaceId, count);
+            return count;
+        });
+    }
+
+    // Call inside the transaction, before any write
+    private static void checkShardCount(String parkingSpaceId, SpotStore.Document parking, int expected)
+            throws FirebaseFirestoreException {
+        if (shardCountOf(parking) != expected) {
+            shardCounts.remove(parkingSpaceId);
+            throw new FirebaseFirestoreException(ERROR_SHARDS_CHANGED,
+                    FirebaseFirestoreException.Code.ABORTED);
+        }
+    }
+
+    private static int shardCountOf(SpotStore.Document parking) {
+        Long value = parking.getLong(FIELD_SHARD_COUNT);
+        return value != null ? value.intValue() : 0;
+    }
+
+    // Booking objects carry no updatedAt field, so it is stamped by a second write in the same transaction
+    private static void setBooking(SpotStore.Transaction tx, String bookingPath, Booking booking) {
+        tx.set(bookingPath, booking);
+        tx.update(bookingPath, Collections.singletonMap(SyncEngine.FIELD_UPDATED_AT, FieldValue.serverTimestamp()));
+    }
+
+    // One field plus the updatedAt stamp sync relies on
+    private static Map<String, Object> stamped(String field, Object value) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(field, value);
+        fields.put(SyncEngine.FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+        return fields;
+    }
+
+    private static String parkingPath(String parkingSpaceId) {
+        return "parkingSpaces/" + parkingSpaceId;
+    }
+
+    private static String bookingPath(String bookingId) {
+        return "bookings/" + bookingId;
+    }
+
+    private static String shardPath(String parkingPath, int shard) {
+        return parkingPath + "/" + SHARDS_COLLECTION + "/" + shard;
+    }
+}
@@ -0,0 +1,46 @@
+package com.smartparking.repositories;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import java.util.List;
+import java.util.Map;
+
+// The document access SpotCounter needs, addressed by Firestore document path
+// (e.g. "parkingSpaces/<id>"). The app runs it on Firestore; the JVM load test runs the
+// same SpotCounter on an in-memory store.
+public interface SpotStore {
+
+    interface Document {
+        String getPath();
+
+        boolean exists();
+
+        Long getLong(String field);
+
+        String getString(String field);
+    }
+
+    // Like Firestore's, every read has to happen before the first write
+    interface Transaction {
+        Document get(String path) throws FirebaseFirestoreException;
+
+        // data is a field map or an object Firestore can map, e.g. a Booking
+        void set(String path, Object data);
+
+        void update(String path, Map<String, Object> fields);
+    }
+
+    interface TransactionFunction<T> {
+        T apply(Transaction tx) throws FirebaseFirestoreException;
+    }
+
+    // Optimistic transaction, retried when a document it read changed before the commit.
+    // An exception thrown by the function fails the task without a retry.
+    <T> Task<T> runTransaction(TransactionFunction<T> function);
+
+    Task<Document> get(String path);
+
+    // Documents directly inside a collection, e.g. a lot's shards
+    Task<List<Document>> getAll(String collectionPath);
+}
@@ -0,0 +1,257 @@
+package com.smartparking.repositories;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
+import com.smartparking.models.ParkingDatabase;
+import com.smartparking.models.SyncState;
+import com.smartparking.models.SyncStateDao;
+import com.smartparking.utils.Metrics;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+// Incremental Firestore-to-Room sync. Every synced document carries a server-side
+// updatedAt and every delete leaves a tombstone, so after the first full read each sync
+// only fetches documents changed or deleted since the watermarks stored in Room. Each
+// page is applied in one Room transaction together with its watermark, and a full read
+// also saves the id of its last document, so an interrupted sync resumes where it stopped.
+public class SyncEngine {
+    private static final String TAG = "SyncEngine";
+
+    public static final String FIELD_UPDATED_AT = "updatedAt";
+    public static final String FIELD_DELETED_AT = "deletedAt";
+    private static final String TOMBSTONES_COLLECTION = "tombstones";
+    private static final String TOMBSTONE_ITEMS = "deleted";
+    private static final int PAGE_SIZE = 500;
+
+    // What to sync and how to apply it locally. apply* run on the IO pool inside a Room transaction.
+    public interface SyncSpec {
+        // Watermark key, include the scope (e.g. the user id) for scoped queries
+        String getKey();
+
+        Query getQuery();
+
+        // Tombstones for this spec's documents, or null if they are never deleted
+        Query getTombstoneQuery();
+
+        void applyChanges(List<DocumentSnapshot> documents);
+
+        void applyDeletes(List<String> documentIds);
+    }
+
+    private final FirebaseFirestore firestore;
+    private final ParkingDatabase database;
+    private final SyncStateDao syncStateDao;
+    private final Executor ioExecutor;
+
+    public SyncEngine(FirebaseFirestore firestore, ParkingDatabase database, Executor ioExecutor) {
+        this.firestore = firestore;
+        this.database = database;
+        this.syncStateDao = database.syncStateDao();
+        this.ioExecutor = ioExecutor;
+    }
+
+    // Tombstone location for documents of a collection
+    public static CollectionReference tombstones(FirebaseFirestore firestore, String collection) {
+        return firestore.collection(TOMBSTONES_COLLECTION).document(collection).collection(TOMBSTONE_ITEMS);
+    }
+
+    // Delete a document and record its tombstone in the same batch. scopeFields are
+    // copied onto the tombstone so scoped tombstone queries can filter on them.
+    public static Task<Void> deleteWithTombstone(FirebaseFirestore firestore, String collection,
+                                                 String documentId, Map<String, Object> scopeFields) {
+        Map<String, Object> tombstone = new HashMap<>();
+        if (scopeFields != null) {
+            tombstone.putAll(scopeFields);
+        }
+        tombstone.put(FIELD_DELETED_AT, FieldValue.serverTimestamp());
+
+        WriteBatch batch = firestore.batch();
+        batch.delete(firestore.collection(collection).document(documentId));
+        batch.set(tombstones(firestore, collection).document(documentId), tombstone);
+        return batch.commit();
+    }
+
+    // Resolves to the number of documents read
+    public Task<Integer> sync(SyncSpec spec) {
+        long startedAt = System.currentTimeMillis();
+        String name = metricName(spec);
+        Task<Integer> sync = Tasks.call(ioExecutor,
+                () -> Metrics.time("room.syncState.get", () -> syncStateDao.getSyncState(spec.getKey())))
+                .continueWithTask(ioExecutor, stateTask -> {
+                    SyncState state = stateTask.getResult();
+                    if (state == null) {
+                        // First sync: documents written before updatedAt existed only show up in a full read
+                        return startFullSync(spec, new SyncState(spec.getKey()));
+                    }
+                    if (state.getFullSyncCursor() != null) {
+                        // Interrupted full read, its watermarks were saved before the first page
+                        return fullSync(spec, state, 0).continueWithTask(ioExecutor, fullTask ->
+                                syncIncremental(spec, state, fullTask.getResult()));
+                    }
+                    return syncIncremental(spec, state, 0);
+                })
+                .addOnSuccessListener(reads -> Log.d(TAG, "Synced " + spec.getKey() + ": " + reads
+                        + " documents read in " + (System.currentTimeMillis() - startedAt) + "ms"))
+                .addOnFailureListener(e -> Log.e(TAG, "Sync failed for " + spec.getKey(), e));
+        return Metrics.trace("sync." + name, sync);
+    }
+
+    // Per-user keys such as "bookings:<uid>" share one metric
+    private static String metricName(SyncSpec spec) {
+        String key = spec.getKey();
+        int separator = key.indexOf(':');
+        return separator < 0 ? key : key.substring(0, separator);
+    }
+
+    // Forget the watermarks so the next sync does a full read
+    public Task<Void> reset(String key) {
+        return Tasks.call(ioExecutor, () -> {
+            Metrics.time("room.syncState.reset", () -> syncStateDao.reset(key));
+            return null;
+        });
+    }
+
+    // Both watermarks start at the newest updatedAt before the full read. Anything written
+    // or deleted while the pages are read is newer, so the incremental sync after it picks
+    // that up even for documents whose page was already applied.
+    private Task<Integer> startFullSync(SyncSpec spec, SyncState state) {
+        Query newest = spec.getQuery().orderBy(FIELD_UPDATED_AT, Query.Direction.DESCENDING).limit(1);
+        return Metrics.trace("firestore.sync." + metricName(spec) + ".start", newest.get())
+                .continueWithTask(ioExecutor, newestTask -> {
+                    List<DocumentSnapshot> documents = newestTask.getResult().getDocuments();
+                    long watermark = documents.isEmpty() ? 0 : updatedAt(documents.get(0));
+                    state.setChangesWatermark(watermark);
+                    state.setTombstonesWatermark(watermark);
+                    return fullSync(spec, state, documents.size());
+                })
+                .continueWithTask(ioExecutor, fullTask -> syncIncremental(spec, state, fullTask.getResult()));
+    }
+
+    // Tombstones go first: a document deleted and then created again under the same id has
+    // both a tombstone and a newer change, and the change has to be the one that sticks
+    private Task<Integer> syncIncremental(SyncSpec spec, SyncState state, int reads) {
+        return syncTombstones(spec, state, null, reads)
+                .continueWithTask(ioExecutor, tombstonesTask ->
+                        syncChanges(spec, state, null, tombstonesTask.getResult()));
+    }
+
+    private Task<Integer> fullSync(SyncSpec spec, SyncState state, int reads) {
+        Query query = spec.getQuery().orderBy(FieldPath.documentId()).limit(PAGE_SIZE);
+        if (state.getFullSyncCursor() != null) {
+            query = query.startAfter(state.getFullSyncCursor());
+        }
+        Task<QuerySnapshot> page = Metrics.trace("firestore.sync." + metricName(spec) + ".full", query.get());
+        return page.continueWithTask(ioExecutor, pageTask -> {
+            List<DocumentSnapshot> documents = pageTask.getResult().getDocuments();
+            boolean lastPage = documents.size() < PAGE_SIZE;
+            Metrics.time("room.sync." + metricName(spec) + ".applyChanges", () -> database.runInTransaction(() -> {
+                spec.applyChanges(documents);
+                if (lastPage) {
+                    state.setFullSyncCursor(null);
+                    state.setLastSyncedAt(System.currentTimeMillis());
+                } else {
+                    state.setFullSyncCursor(documents.get(documents.size() - 1).getId());
+                }
+                syncStateDao.upsert(state);
+            }));
+            int total = reads + documents.size();
+            if (lastPage) {
+                return Tasks.forResult(total);
+            }
+            return fullSync(spec, state, total);
+        });
+    }
+
+    private Task<Integer> syncChanges(SyncSpec spec, SyncState state, DocumentSnapshot after, int reads) {
+        Query query = spec.getQuery()
+                .whereGreaterThan(FIELD_UPDATED_AT, toTimestamp(state.getChangesWatermark()))
+                .orderBy(FIELD_UPDATED_AT)
+                .limit(PAGE_SIZE);
+        if (after != null) {
+            query = query.startAfter(after);
+        }
+        Task<QuerySnapshot> page = Metrics.trace("firestore.sync." + metricName(spec) + ".changes", query.get());
+        return page.continueWithTask(ioExecutor, pageTask -> {
+            List<DocumentSnapshot> documents = pageTask.getResult().getDocuments();
+            if (!documents.isEmpty()) {
+                state.setChangesWatermark(Math.max(state.getChangesWatermark(),
+                        updatedAt(documents.get(documents.size() - 1))));
+                state.setLastSyncedAt(System.currentTimeMillis());
+                Metrics.time("room.sync." + metricName(spec) + ".applyChanges", () -> database.runInTransaction(() -> {
+                    spec.applyChanges(documents);
+                    syncStateDao.upsert(state);
+                }));
+            }
+            int total = reads + documents.size();
+            if (documents.size() < PAGE_SIZE) {
+                return Tasks.forResult(total);
+            }
+            return syncChanges(spec, state, documents.get(documents.size() - 1), total);
+        });
+    }
+
+    private Task<Integer> syncTombstones(SyncSpec spec, SyncState state, DocumentSnapshot after, int reads) {
+        Query tombstoneQuery = spec.getTombstoneQuery();
+        if (tombstoneQuery == null) {
+            return Tasks.forResult(reads);
+        }
+        Query query = tombstoneQuery
+                .whereGreaterThan(FIELD_DELETED_AT, toTimestamp(state.getTombstonesWatermark()))
+                .orderBy(FIELD_DELETED_AT)
+                .limit(PAGE_SIZE);
+        if (after != null) {
+            query = query.startAfter(after);
+        }
+        Task<QuerySnapshot> page = Metrics.trace("firestore.sync." + metricName(spec) + ".tombstones", query.get());
+        return page.continueWithTask(ioExecutor, pageTask -> {
+            QuerySnapshot snapshot = pageTask.getResult();
+            List<DocumentSnapshot> documents = snapshot.getDocuments();
+            if (!documents.isEmpty()) {
+                List<String> ids = new ArrayList<>(documents.size());
+                for (DocumentSnapshot document : documents) {
+                    ids.add(document.getId());
+                }
+                Timestamp newest = documents.get(documents.size() - 1).getTimestamp(FIELD_DELETED_AT);
+                if (newest != null) {
+                    state.setTombstonesWatermark(newest.toDate().getTime());
+                }
+                Metrics.time("room.sync." + metricName(spec) + ".applyDeletes", () -> database.runInTransaction(() -> {
+                    spec.applyDeletes(ids);
+                    syncStateDao.upsert(state);
+                }));
+            }
+            int total = reads + documents.size();
+            if (documents.size() < PAGE_SIZE) {
+                return Tasks.forResult(total);
+            }
+            return syncTombstones(spec, state, documents.get(documents.size() - 1), total);
+        });
+    }
+
+    private static long updatedAt(DocumentSnapshot document) {
+        Timestamp timestamp = document.getTimestamp(FIELD_UPDATED_AT);
+        return timestamp != null ? timestamp.toDate().getTime() : 0;
+    }
+
+    // Watermarks are kept in millis; truncating the server's microseconds can only
+    // re-read a document, never skip one
+    private static Timestamp toTimestamp(long millis) {
+        return new Timestamp(new Date(millis));
+    }
+}
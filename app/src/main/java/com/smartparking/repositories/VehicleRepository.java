@@ -0,0 +1,155 @@
+package com.smartparking.repositories;
+
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+import com.smartparking.models.OutboxEntry;
+import com.smartparking.models.Vehicle;
+import com.smartparking.utils.AppExecutors;
+import com.smartparking.utils.Metrics;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+// User vehicles live in Firestore. New vehicles are queued in the outbox, which doubles
+// as their local copy until Firestore has them: the Room vehicles table needs a cached
+// user row that is never written.
+public class VehicleRepository {
+    private static final String TAG = "VehicleRepository";
+
+    public static final String OP_SAVE_VEHICLE = "saveVehicle";
+    // Firestore's limit on writes in one batch
+    private static final int MAX_BATCH_WRITES = 500;
+
+    private final FirebaseFirestore firestore;
+    private final Executor executorService;
+    private final Outbox outbox;
+
+    public VehicleRepository(AppExecutors appExecutors, Outbox outbox) {
+        firestore = FirebaseFirestore.getInstance();
+        executorService = appExecutors.io();
+        this.outbox = outbox;
+
+        outbox.register(OP_SAVE_VEHICLE, MAX_BATCH_WRITES, new SaveVehicleReplayer());
+    }
+
+    // Resolves to true once the vehicle is queued on disk
+    public LiveData<Boolean> saveVehicle(Vehicle vehicle) {
+        MutableLiveData<Boolean> success = new MutableLiveData<>();
+        String payload;
+        try {
+            payload = toJson(vehicle).toString();
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing vehicle", e);
+            success.setValue(false);
+            return success;
+        }
+
+        // The outbox entry is the local copy, there is nothing else to write. A newer edit
+        // of a vehicle still waiting to be pushed replaces the queued one.
+        outbox.enqueueLatest(new OutboxEntry(OP_SAVE_VEHICLE, vehicle.getVehicleId(), payload),
+                null, () -> success.postValue(true));
+        return success;
+    }
+
+    // Vehicles from Firestore plus any still waiting in the outbox
+    public LiveData<List<Vehicle>> getVehicles(String userId) {
+        MutableLiveData<List<Vehicle>> vehicles = new MutableLiveData<>();
+        Metrics.trace("firestore.vehicles.getForUser", firestore.collection("vehicles")
+                        .whereEqualTo("userId", userId)
+                        .get())
+                .addOnCompleteListener(executorService, task -> {
+                    Map<String, Vehicle> byId = new LinkedHashMap<>();
+                    if (task.isSuccessful() && task.getResult() != null) {
+                        for (DocumentSnapshot document : task.getResult()) {
+                            Vehicle vehicle = document.toObject(Vehicle.class);
+                            if (vehicle != null) {
+                                byId.put(vehicle.getVehicleId(), vehicle);
+                            }
+                        }
+                    } else {
+                        Log.e(TAG, "Error loading vehicles", task.getException());
+                    }
+                    for (Vehicle vehicle : getPendingVehicles(userId)) {
+                        byId.put(vehicle.getVehicleId(), vehicle);
+                    }
+                    vehicles.postValue(new ArrayList<>(byId.values()));
+                });
+        return vehicles;
+    }
+
+    private List<Vehicle> getPendingVehicles(String userId) {
+        List<Vehicle> pending = new ArrayList<>();
+        for (OutboxEntry entry : outbox.getPending(OP_SAVE_VEHICLE)) {
+            Vehicle vehicle = fromJson(entry);
+            if (vehicle != null && userId.equals(vehicle.getUserId())) {
+                pending.add(vehicle);
+            }
+        }
+        return pending;
+    }
+
+    private static JSONObject toJson(Vehicle vehicle) throws JSONException {
+        return new JSONObject()
+                .put("vehicleId", vehicle.getVehicleId())
+                .put("userId", vehicle.getUserId())
+                .put("licensePlate", vehicle.getLicensePlate())
+                .put("make", vehicle.getMake())
+                .put("model", vehicle.getModel())
+                .put("color", vehicle.getColor())
+                .put("vehicleType", vehicle.getVehicleType());
+    }
+
+    private static Vehicle fromJson(OutboxEntry entry) {
+        if (entry.getPayload() == null) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(entry.getPayload());
+            return new Vehicle(
+                    entry.getDocumentId(),
+                    json.optString("userId"),
+                    json.optString("licensePlate"),
+                    json.optString("make"),
+                    json.optString("model"),
+                    json.optString("color"),
+                    json.optString("vehicleType")
+            );
+        } catch (JSONException e) {
+            Log.e(TAG, "Bad outbox payload for vehicle " + entry.getDocumentId(), e);
+            return null;
+        }
+    }
+
+    // Vehicle writes are plain sets by id, so a whole group goes in one batch and replays are harmless
+    private class SaveVehicleReplayer implements Outbox.Replayer {
+        @Override
+        public Task<Void> replay(List<OutboxEntry> entries) {
+            WriteBatch batch = firestore.batch();
+            for (OutboxEntry entry : entries) {
+                Vehicle vehicle = fromJson(entry);
+                if (vehicle != null) {
+                    batch.set(firestore.collection("vehicles").document(vehicle.getVehicleId()), vehicle);
+                }
+            }
+            return Metrics.trace("firestore.vehicles.setBatch", batch.commit());
+        }
+
+        @Override
+        public void onRejected(OutboxEntry entry, Exception e) {
+            Log.e(TAG, "Error adding vehicle " + entry.getDocumentId(), e);
+        }
+    }
+}
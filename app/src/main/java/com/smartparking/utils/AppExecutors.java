@@ -0,0 +1,47 @@
+package com.smartparking.utils;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.List;
+
+// The app's only background thread pools, created once by ParkingApp and handed to the
+// repositories. io() is for Room and other blocking work, compute() for CPU-bound work
+// such as index rebuilds and bitmap rasterization.
+public class AppExecutors {
+    private static final String TAG = "AppExecutors";
+
+    private static final int IO_THREADS = 4;
+    private static final int IO_QUEUE_CAPACITY = 256;
+    private static final int COMPUTE_QUEUE_CAPACITY = 64;
+
+    private final InstrumentedExecutor io;
+    private final InstrumentedExecutor compute;
+
+    public AppExecutors() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        io = new InstrumentedExecutor("io", IO_THREADS, IO_QUEUE_CAPACITY,
+                Process.THREAD_PRIORITY_BACKGROUND);
+        compute = new InstrumentedExecutor("compute", Math.max(2, cores - 1), COMPUTE_QUEUE_CAPACITY,
+                Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_MORE_FAVORABLE);
+    }
+
+    public InstrumentedExecutor io() {
+        return io;
+    }
+
+    public InstrumentedExecutor compute() {
+        return compute;
+    }
+
+    public List<InstrumentedExecutor.Stats> getStats() {
+        return Arrays.asList(io.getStats(), compute.getStats());
+    }
+
+    public void logStats() {
+        for (InstrumentedExecutor.Stats stats : getStats()) {
+            Log.d(TAG, stats.toString());
+        }
+    }
+}
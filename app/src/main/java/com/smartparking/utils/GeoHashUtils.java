@@ -0,0 +1,154 @@
+package com.smartparking.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+public class GeoHashUtils {
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    private static final int MAX_PRECISION = 9;
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEGREE_LAT = 110.574;
+
+    private GeoHashUtils() {
+        // Static helpers only
+    }
+
+    // Encode a coordinate as a base32 geohash with the given number of characters
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int ch = 0;
+
+        while (hash.length() < precision) {
+            if (evenBit) {
+                double mid = (minLng + maxLng) / 2;
+                if (longitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLng = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLng = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLat = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+
+            if (++bit == 5) {
+                hash.append(BASE32.charAt(ch));
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    public static String encode(double latitude, double longitude) {
+        return encode(latitude, longitude, MAX_PRECISION);
+    }
+
+    // Returns the geohash prefixes whose cells together cover the circle of radiusInKm
+    // around the given point. Each prefix maps to one range query on the geohash field.
+    // A circle crossing the antimeridian is covered on both sides of it.
+    public static List<String> coveringPrefixes(double latitude, double longitude, double radiusInKm) {
+        double latDelta = radiusInKm / KM_PER_DEGREE_LAT;
+        double lngDelta = radiusInKm / kmPerDegreeLongitude(latitude, latDelta);
+
+        double minLat = Math.max(-90, latitude - latDelta);
+        double maxLat = Math.min(90, latitude + latDelta);
+        double west = longitude - lngDelta;
+        double east = longitude + lngDelta;
+
+        int precision = precisionForBox(maxLat - minLat, east - west);
+        if (precision == 0) {
+            // Radius larger than any cell, the whole collection is the candidate set
+            List<String> all = new ArrayList<>();
+            all.add("");
+            return all;
+        }
+
+        Set<String> prefixes = new LinkedHashSet<>();
+        if (west < -180) {
+            addCells(prefixes, precision, minLat, maxLat, west + 360, 180);
+            addCells(prefixes, precision, minLat, maxLat, -180, east);
+        } else if (east > 180) {
+            addCells(prefixes, precision, minLat, maxLat, west, 180);
+            addCells(prefixes, precision, minLat, maxLat, -180, east - 360);
+        } else {
+            addCells(prefixes, precision, minLat, maxLat, west, east);
+        }
+        return new ArrayList<>(prefixes);
+    }
+
+    private static void addCells(Set<String> prefixes, int precision, double minLat, double maxLat,
+                                 double minLng, double maxLng) {
+        double cellHeight = cellHeightDegrees(precision);
+        double cellWidth = cellWidthDegrees(precision);
+        for (double lat = minLat; ; lat += cellHeight) {
+            double clampedLat = Math.min(lat, maxLat);
+            for (double lng = minLng; ; lng += cellWidth) {
+                double clampedLng = Math.min(lng, maxLng);
+                prefixes.add(encode(clampedLat, clampedLng, precision));
+                if (clampedLng >= maxLng) break;
+            }
+            if (clampedLat >= maxLat) break;
+        }
+    }
+
+    // Upper bound for a range query that matches every hash starting with the prefix
+    public static String rangeEnd(String prefix) {
+        return prefix + "~";
+    }
+
+    // Haversine distance in km between two coordinates
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_KM * c;
+    }
+
+    // Pick the longest prefix whose cells are at least as big as the search box, so the box
+    // touches at most a 2x2 to 3x3 block of cells
+    private static int precisionForBox(double heightDegrees, double widthDegrees) {
+        for (int precision = MAX_PRECISION; precision > 0; precision--) {
+            if (cellHeightDegrees(precision) >= heightDegrees
+                    && cellWidthDegrees(precision) >= widthDegrees) {
+                return precision;
+            }
+        }
+        return 0;
+    }
+
+    private static double cellHeightDegrees(int precision) {
+        int latBits = (precision * 5) / 2;
+        return 180.0 / (1L << latBits);
+    }
+
+    private static double cellWidthDegrees(int precision) {
+        int lngBits = (precision * 5 + 1) / 2;
+        return 360.0 / (1L << lngBits);
+    }
+
+    // Use the latitude closest to a pole inside the box so the longitude span is never too narrow
+    private static double kmPerDegreeLongitude(double latitude, double latDelta) {
+        double worstLat = Math.min(89.9, Math.abs(latitude) + latDelta);
+        return Math.max(0.001, 111.320 * Math.cos(Math.toRadians(worstLat)));
+    }
+}
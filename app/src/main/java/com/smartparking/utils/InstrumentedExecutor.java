@@ -0,0 +1,197 @@
+package com.smartparking.utils;
+
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Fixed-size thread pool with a bounded queue that records queue depth, how long tasks
+// wait and run, and how often the queue was full. When it is full a background caller
+// runs the task itself, which throttles producers. The main thread must neither run pool
+// work nor wait, so its task is handed to an overflow thread that queues it as soon as
+// there is room.
+public class InstrumentedExecutor extends ThreadPoolExecutor {
+
+    private final String name;
+    private final AtomicInteger peakQueueDepth = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+    // Unbounded, so main-thread submissions are never refused while the pool is running
+    private final ThreadPoolExecutor overflow;
+
+    public InstrumentedExecutor(String name, int threads, int queueCapacity, int threadPriority) {
+        super(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueCapacity),
+                new NamedThreadFactory(name, threadPriority));
+        this.name = name;
+        // Idle pools release their threads instead of parking them forever
+        allowCoreThreadTimeOut(true);
+        overflow = new ThreadPoolExecutor(0, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new NamedThreadFactory(name + "-overflow", threadPriority));
+        setRejectedExecutionHandler((task, executor) -> {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException(name + " executor shut down");
+            }
+            rejected.incrementAndGet();
+            Log.w(name, "Queue full (" + executor.getQueue().size() + " waiting)");
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                overflow.execute(() -> enqueueWhenRoom(task));
+            } else {
+                task.run();
+            }
+        });
+    }
+
+    // Runs on the overflow thread. The queue was full, so the workers are busy and will
+    // take the task once they get to it.
+    private void enqueueWhenRoom(Runnable task) {
+        try {
+            getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (getPoolSize() == 0) {
+            // Every worker timed out meanwhile
+            prestartCoreThread();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        overflow.shutdown();
+        super.shutdown();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        submitted.incrementAndGet();
+        super.execute(new TimedTask(command));
+        int depth = getQueue().size();
+        int peak = peakQueueDepth.get();
+        while (depth > peak && !peakQueueDepth.compareAndSet(peak, depth)) {
+            peak = peakQueueDepth.get();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    public Stats getStats() {
+        long done = completed.get();
+        return new Stats(name, getQueue().size(), peakQueueDepth.get(), getActiveCount(),
+                submitted.get(), done, rejected.get(),
+                done > 0 ? totalWaitNanos.get() / done / 1_000_000.0 : 0,
+                maxWaitNanos.get() / 1_000_000.0,
+                done > 0 ? totalRunNanos.get() / done / 1_000_000.0 : 0,
+                maxRunNanos.get() / 1_000_000.0);
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    private class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long enqueuedAt = System.nanoTime();
+
+        TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long startedAt = System.nanoTime();
+            long wait = startedAt - enqueuedAt;
+            try {
+                task.run();
+            } finally {
+                long run = System.nanoTime() - startedAt;
+                totalWaitNanos.addAndGet(wait);
+                totalRunNanos.addAndGet(run);
+                updateMax(maxWaitNanos, wait);
+                updateMax(maxRunNanos, run);
+                completed.incrementAndGet();
+            }
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+        private final int priority;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(priority);
+                runnable.run();
+            }, name + "-" + count.incrementAndGet());
+        }
+    }
+
+    // Point-in-time copy of the executor metrics, latencies in milliseconds
+    public static class Stats {
+        public final String name;
+        public final int queueDepth;
+        public final int peakQueueDepth;
+        public final int activeThreads;
+        public final long submitted;
+        public final long completed;
+        public final long rejected;
+        public final double avgWaitMs;
+        public final double maxWaitMs;
+        public final double avgRunMs;
+        public final double maxRunMs;
+
+        Stats(String name, int queueDepth, int peakQueueDepth, int activeThreads, long submitted,
+              long completed, long rejected, double avgWaitMs, double maxWaitMs,
+              double avgRunMs, double maxRunMs) {
+            this.name = name;
+            this.queueDepth = queueDepth;
+            this.peakQueueDepth = peakQueueDepth;
+            this.activeThreads = activeThreads;
+            this.submitted = submitted;
+            this.completed = completed;
+            this.rejected = rejected;
+            this.avgWaitMs = avgWaitMs;
+            this.maxWaitMs = maxWaitMs;
+            this.avgRunMs = avgRunMs;
+            this.maxRunMs = maxRunMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%s: queue %d (peak %d), active %d, done %d/%d, rejected %d, "
+                            + "wait avg %.1fms max %.1fms, run avg %.1fms max %.1fms",
+                    name, queueDepth, peakQueueDepth, activeThreads, completed, submitted, rejected,
+                    avgWaitMs, maxWaitMs, avgRunMs, maxRunMs);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.smartparking.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Balanced interval tree over half-open [start, end) ranges keyed by id. Nodes are
+// ordered by start and every node keeps the largest end in its subtree, so overlap
+// queries skip whole subtrees that end before the window and run in O(log n + k).
+public class IntervalTree<T> {
+
+    private Node<T> root;
+    private final Map<String, Node<T>> nodesById = new HashMap<>();
+
+    public synchronized int size() {
+        return nodesById.size();
+    }
+
+    public synchronized void clear() {
+        root = null;
+        nodesById.clear();
+    }
+
+    // Insert a new interval or move an existing one with the same id
+    public synchronized void put(String id, long start, long end, T value) {
+        Node<T> existing = nodesById.get(id);
+        if (existing != null) {
+            if (existing.start == start && existing.end == end) {
+                existing.value = value;
+                return;
+            }
+            root = delete(root, existing);
+        }
+        Node<T> node = new Node<>(id, start, end, value);
+        nodesById.put(id, node);
+        root = insert(root, node);
+    }
+
+    public synchronized void remove(String id) {
+        Node<T> existing = nodesById.remove(id);
+        if (existing != null) {
+            root = delete(root, existing);
+        }
+    }
+
+    public synchronized T get(String id) {
+        Node<T> node = nodesById.get(id);
+        return node != null ? node.value : null;
+    }
+
+    public synchronized List<T> queryOverlapping(long start, long end) {
+        List<Node<T>> nodes = new ArrayList<>();
+        collectOverlapping(root, start, end, nodes);
+        List<T> result = new ArrayList<>(nodes.size());
+        for (Node<T> node : nodes) {
+            result.add(node.value);
+        }
+        return result;
+    }
+
+    public synchronized int countOverlapping(long start, long end) {
+        List<Node<T>> nodes = new ArrayList<>();
+        collectOverlapping(root, start, end, nodes);
+        return nodes.size();
+    }
+
+    // Highest number of intervals active at the same instant inside [start, end)
+    public synchronized int maxConcurrent(long start, long end) {
+        List<Node<T>> nodes = new ArrayList<>();
+        collectOverlapping(root, start, end, nodes);
+        if (nodes.isEmpty()) {
+            return 0;
+        }
+
+        // Sweep over clipped endpoints; an interval ending at t frees its slot before
+        // one starting at t takes it, because the ranges are half-open
+        int count = nodes.size();
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = Math.max(start, nodes.get(i).start);
+            ends[i] = Math.min(end, nodes.get(i).end);
+        }
+        Arrays.sort(starts);
+        Arrays.sort(ends);
+
+        int active = 0;
+        int max = 0;
+        int e = 0;
+        for (int s = 0; s < count; s++) {
+            while (e < count && ends[e] <= starts[s]) {
+                active--;
+                e++;
+            }
+            active++;
+            max = Math.max(max, active);
+        }
+        return max;
+    }
+
+    private void collectOverlapping(Node<T> node, long start, long end, List<Node<T>> out) {
+        if (node == null || node.maxEnd <= start) {
+            return;
+        }
+        collectOverlapping(node.left, start, end, out);
+        if (node.start >= end) {
+            // Everything to the right starts even later
+            return;
+        }
+        if (node.end > start) {
+            out.add(node);
+        }
+        collectOverlapping(node.right, start, end, out);
+    }
+
+    private Node<T> insert(Node<T> node, Node<T> inserted) {
+        if (node == null) {
+            return inserted;
+        }
+        if (compare(inserted, node) < 0) {
+            node.left = insert(node.left, inserted);
+        } else {
+            node.right = insert(node.right, inserted);
+        }
+        return rebalance(node);
+    }
+
+    private Node<T> delete(Node<T> node, Node<T> target) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(target, node);
+        if (cmp < 0) {
+            node.left = delete(node.left, target);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, target);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            // Replace with the in-order successor
+            Node<T> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeMin(node.right);
+            successor.left = node.left;
+            return rebalance(successor);
+        }
+        return rebalance(node);
+    }
+
+    private Node<T> removeMin(Node<T> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        return rebalance(node);
+    }
+
+    private Node<T> rebalance(Node<T> node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private Node<T> rotateRight(Node<T> node) {
+        Node<T> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private Node<T> rotateLeft(Node<T> node) {
+        Node<T> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private void update(Node<T> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private int height(Node<T> node) {
+        return node != null ? node.height : 0;
+    }
+
+    // Ties on start are broken by id so every node has a unique position
+    private int compare(Node<T> a, Node<T> b) {
+        int cmp = Long.compare(a.start, b.start);
+        return cmp != 0 ? cmp : a.id.compareTo(b.id);
+    }
+
+    private static class Node<T> {
+        final String id;
+        final long start;
+        final long end;
+        T value;
+        long maxEnd;
+        int height = 1;
+        Node<T> left;
+        Node<T> right;
+
+        Node(String id, long start, long end, T value) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.value = value;
+            this.maxEnd = end;
+        }
+    }
+}
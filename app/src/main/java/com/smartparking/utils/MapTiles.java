@@ -0,0 +1,100 @@
+package com.smartparking.utils;
+
+import android.content.Context;
+import android.preference.PreferenceManager;
+import android.text.TextUtils;
+
+import com.smartparking.BuildConfig;
+
+import org.osmdroid.config.Configuration;
+import org.osmdroid.config.IConfigurationProvider;
+import org.osmdroid.tileprovider.modules.ArchiveFileFactory;
+import org.osmdroid.tileprovider.tilesource.OnlineTileSourceBase;
+import org.osmdroid.tileprovider.tilesource.TileSourceFactory;
+import org.osmdroid.tileprovider.tilesource.TileSourcePolicy;
+import org.osmdroid.tileprovider.tilesource.XYTileSource;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+// OSMDroid tile storage and the tile source every map uses.
+//
+// Everything lives under noBackupFilesDir/osmdroid, so hundreds of MB never end up in Auto Backup:
+//  - tiles/cache.db: osmdroid's SQLite cache of tiles seen while browsing. Held to
+//    BuildConfig.TILE_CACHE_MAX_MB and trimmed back to TRIM_RATIO of it, soonest-expiring
+//    (i.e. least recently downloaded) first.
+//  - <region>.sqlite: archives written by TileSeeder for SEED_REGIONS. osmdroid serves these
+//    before going to the network and never trims them.
+//  - <region>.parkpack: region packs, which take over a seeded archive's tiles once built.
+public final class MapTiles {
+
+    // Operating areas pre-seeded when the tile server allows bulk downloads.
+    // Mumbai at zoom 12-17 is roughly 18.6k tiles.
+    public static final TileRegion MUMBAI = new TileRegion("mumbai", 18.89, 72.77, 19.31, 73.00, 12, 17);
+    public static final List<TileRegion> SEED_REGIONS = Collections.singletonList(MUMBAI);
+
+    private static final String TILE_SOURCE_NAME = "SmartParking";
+    private static final long MB = 1024L * 1024L;
+    private static final double TRIM_RATIO = 0.8;
+    // Tiles change rarely, keep cached ones instead of revalidating after the server's max-age
+    private static final long TILE_EXPIRY_MS = 30L * 24 * 60 * 60 * 1000;
+    private static final int MAX_CONCURRENT_DOWNLOADS = 4;
+
+    private static OnlineTileSourceBase tileSource;
+
+    private MapTiles() {
+    }
+
+    // Call once from Application.onCreate, before any MapView is inflated
+    public static void configure(Context context) {
+        IConfigurationProvider config = Configuration.getInstance();
+        config.load(context, PreferenceManager.getDefaultSharedPreferences(context));
+        config.setUserAgentValue(context.getPackageName());
+
+        File basePath = getBasePath(context);
+        config.setOsmdroidBasePath(basePath);
+        config.setOsmdroidTileCache(new File(basePath, "tiles"));
+        long budget = BuildConfig.TILE_CACHE_MAX_MB * MB;
+        config.setTileFileSystemCacheMaxBytes(budget);
+        config.setTileFileSystemCacheTrimBytes((long) (budget * TRIM_RATIO));
+        config.setExpirationOverrideDuration(TILE_EXPIRY_MS);
+        ArchiveFileFactory.registerArchiveFileProvider(RegionPackArchive.class, RegionPack.FILE_EXTENSION);
+    }
+
+    public static synchronized OnlineTileSourceBase getTileSource() {
+        if (tileSource == null) {
+            if (TextUtils.isEmpty(BuildConfig.TILE_SERVER_URL)) {
+                tileSource = TileSourceFactory.MAPNIK;
+            } else {
+                tileSource = createTileSource(BuildConfig.TILE_SERVER_URL);
+            }
+        }
+        return tileSource;
+    }
+
+    // Our own (or a local stand-in) z/x/y.png server, which allows pre-seeding
+    public static OnlineTileSourceBase createTileSource(String baseUrl) {
+        String url = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        return new XYTileSource(TILE_SOURCE_NAME, 0, 19, 256, ".png", new String[]{url},
+                "© OpenStreetMap contributors", new TileSourcePolicy(MAX_CONCURRENT_DOWNLOADS, 0));
+    }
+
+    // The OSM tile usage policy forbids bulk downloads from tile.openstreetmap.org
+    public static boolean canBulkDownload() {
+        return getTileSource().getTileSourcePolicy().acceptsBulkDownload();
+    }
+
+    public static File getBasePath(Context context) {
+        return new File(context.getNoBackupFilesDir(), "osmdroid");
+    }
+
+    // osmdroid picks up *.sqlite archives from the base path when a MapView is created
+    public static File archiveFile(Context context, TileRegion region) {
+        return new File(getBasePath(context), region.getName() + ".sqlite");
+    }
+
+    public static File packFile(Context context, TileRegion region) {
+        return new File(getBasePath(context), region.getName() + "." + RegionPack.FILE_EXTENSION);
+    }
+}
@@ -0,0 +1,367 @@
+package com.smartparking.utils;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.core.content.ContextCompat;
+
+import com.smartparking.R;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// App-wide cache of pre-rasterized map marker icons. Every icon state (plain drawable,
+// occupancy-tinted lot icon with a free-spot badge, cluster bubble) is rasterized once
+// into a bitmap and the same BitmapDrawable is shared by every marker in that state.
+// Free-spot counts above 9 are shown as coarse ranges ("10+", "50+"), so the set of states
+// is small and fixed: it is all rasterized up front and the cache is sized to hold it.
+// A state that is not ready yet is rendered on the compute executor while markers show the
+// unlabelled icon of the same colour.
+public class MarkerIconCache {
+
+    private static final String TAG = "MarkerIconCache";
+
+    private static final int LOT_ICON_SIZE_DP = 32;
+    private static final int CLUSTER_ICON_SIZE_DP = 40;
+    // Room for the plain drawable icons (my location, lot icons) at up to this size
+    private static final int RESOURCE_ICON_SIZE_DP = 48;
+    private static final int MAX_RESOURCE_ICONS = 4;
+    // Counts below the first step are shown exactly, larger ones as the highest step reached
+    private static final int[] LOT_BADGE_STEPS = {10, 20, 50, 100};
+    private static final int[] CLUSTER_LABEL_STEPS = {10, 20, 50, 100, 200, 500, 1000};
+
+    // Occupancy buckets used for colour-coding
+    public static final int BUCKET_FULL = 0;
+    public static final int BUCKET_LOW = 1;
+    public static final int BUCKET_MEDIUM = 2;
+    public static final int BUCKET_HIGH = 3;
+
+    public interface OnIconReadyListener {
+        void onIconReady(Drawable icon);
+    }
+
+    private static MarkerIconCache instance;
+
+    private final Resources resources;
+    private final Context context;
+    private final float density;
+    private final int[] bucketColors;
+    private final LruCache<String, BitmapDrawable> cache;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Listeners waiting for a state being rendered, main thread only
+    private final Map<String, List<OnIconReadyListener>> pending = new HashMap<>();
+    private volatile Executor renderExecutor;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public static synchronized MarkerIconCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new MarkerIconCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MarkerIconCache(Context context) {
+        this.context = context;
+        this.resources = context.getResources();
+        this.density = resources.getDisplayMetrics().density;
+        this.bucketColors = new int[]{
+                ContextCompat.getColor(context, R.color.colorUnavailable),
+                ContextCompat.getColor(context, R.color.colorBooked),
+                ContextCompat.getColor(context, R.color.colorAccent),
+                ContextCompat.getColor(context, R.color.colorAvailable)
+        };
+        this.cache = new LruCache<String, BitmapDrawable>(maxCacheBytes()) {
+            @Override
+            protected int sizeOf(String key, BitmapDrawable value) {
+                return value.getBitmap().getAllocationByteCount();
+            }
+        };
+    }
+
+    // Every state the cache can hold, so nothing is evicted while the map is in use
+    private int maxCacheBytes() {
+        int lotStates = stateCount(LOT_BADGE_STEPS);
+        int clusterStates = stateCount(CLUSTER_LABEL_STEPS);
+        return lotStates * bitmapBytes(LOT_ICON_SIZE_DP)
+                + clusterStates * bitmapBytes(CLUSTER_ICON_SIZE_DP)
+                + MAX_RESOURCE_ICONS * bitmapBytes(RESOURCE_ICON_SIZE_DP);
+    }
+
+    // One full state, plus each non-zero label in the three other buckets, plus one
+    // unlabelled placeholder per bucket
+    private static int stateCount(int[] steps) {
+        int labels = labels(steps).size();
+        return 1 + (labels - 1) * (BUCKET_HIGH - BUCKET_FULL) + (BUCKET_HIGH + 1);
+    }
+
+    private int bitmapBytes(int sizeDp) {
+        int size = Math.round(sizeDp * density);
+        return size * size * 4;
+    }
+
+    // Rasterize every lot and cluster state on the executor, which also renders any state
+    // requested before it is ready, so marker binding on the UI thread never draws text
+    public void prewarm(Executor executor) {
+        renderExecutor = executor;
+        executor.execute(() -> {
+            getIcon(R.drawable.ic_my_location);
+            getIcon(R.drawable.ic_parking_available);
+            getIcon(R.drawable.ic_parking_full);
+            for (int bucket = BUCKET_FULL; bucket <= BUCKET_HIGH; bucket++) {
+                placeholder(lotKey(bucket, null), bucket);
+                placeholder(clusterKey(bucket, null), bucket);
+            }
+            for (String label : labels(LOT_BADGE_STEPS)) {
+                for (int bucket : bucketsFor(label)) {
+                    String key = lotKey(bucket, label);
+                    if (cache.get(key) == null) {
+                        store(key, renderLotIcon(bucket, label));
+                    }
+                }
+            }
+            for (String label : labels(CLUSTER_LABEL_STEPS)) {
+                for (int bucket : bucketsFor(label)) {
+                    String key = clusterKey(bucket, label);
+                    if (cache.get(key) == null) {
+                        store(key, renderClusterIcon(bucket, label));
+                    }
+                }
+            }
+            Log.d(TAG, "Prewarmed marker icons, " + cache.size() + " of " + cache.maxSize() + " bytes");
+        });
+    }
+
+    // Drawable resource rasterized at its intrinsic size
+    public Drawable getIcon(int drawableRes) {
+        String key = "res:" + drawableRes;
+        BitmapDrawable cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        Drawable drawable = ContextCompat.getDrawable(context, drawableRes);
+        if (drawable == null) {
+            Log.e(TAG, "Drawable not found for resource: " + drawableRes);
+            return null;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight(),
+                Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
+        drawable.draw(canvas);
+        return store(key, bitmap);
+    }
+
+    // Parking icon tinted by occupancy bucket with the free-spot count as a badge. Call on
+    // the main thread; if the state is not rasterized yet a placeholder is returned and
+    // onReady gets the real icon once it is.
+    public Drawable getParkingIcon(int availableSpots, int totalSpots, OnIconReadyListener onReady) {
+        int bucket = occupancyBucket(availableSpots, totalSpots);
+        String label = label(availableSpots, LOT_BADGE_STEPS);
+        return getOrRender(lotKey(bucket, label), lotKey(bucket, null), bucket,
+                () -> renderLotIcon(bucket, label), onReady);
+    }
+
+    // Circle coloured by occupancy with the free spot count in the middle, see getParkingIcon
+    public Drawable getClusterIcon(int availableSpots, int totalSpots, OnIconReadyListener onReady) {
+        int bucket = occupancyBucket(availableSpots, totalSpots);
+        String label = label(availableSpots, CLUSTER_LABEL_STEPS);
+        return getOrRender(clusterKey(bucket, label), clusterKey(bucket, null), bucket,
+                () -> renderClusterIcon(bucket, label), onReady);
+    }
+
+    // Exact below the first step, otherwise the highest step reached, e.g. 37 -> "20+"
+    static String label(int count, int[] steps) {
+        if (count < steps[0]) {
+            return String.valueOf(Math.max(0, count));
+        }
+        int step = steps[0];
+        for (int candidate : steps) {
+            if (count >= candidate) {
+                step = candidate;
+            }
+        }
+        return step >= 1000 ? step / 1000 + "k+" : step + "+";
+    }
+
+    static List<String> labels(int[] steps) {
+        List<String> labels = new ArrayList<>();
+        for (int count = 0; count < steps[0]; count++) {
+            labels.add(String.valueOf(count));
+        }
+        for (int step : steps) {
+            labels.add(label(step, steps));
+        }
+        return labels;
+    }
+
+    // A zero count is always the full bucket, any other count is never
+    private static int[] bucketsFor(String label) {
+        return "0".equals(label) ? new int[]{BUCKET_FULL} : new int[]{BUCKET_LOW, BUCKET_MEDIUM, BUCKET_HIGH};
+    }
+
+    public static int occupancyBucket(int availableSpots, int totalSpots) {
+        if (availableSpots <= 0) {
+            return BUCKET_FULL;
+        }
+        if (totalSpots <= 0 || availableSpots * 2 >= totalSpots) {
+            return BUCKET_HIGH;
+        }
+        if (availableSpots * 4 >= totalSpots) {
+            return BUCKET_MEDIUM;
+        }
+        return BUCKET_LOW;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public int getCachedBytes() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.evictAll();
+    }
+
+    private Drawable getOrRender(String key, String placeholderKey, int bucket, Supplier<Bitmap> render,
+                                 OnIconReadyListener onReady) {
+        BitmapDrawable cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+        Executor executor = renderExecutor;
+        if (executor == null) {
+            // Not prewarmed (e.g. in tests), render in place
+            return store(key, render.get());
+        }
+
+        List<OnIconReadyListener> listeners = pending.get(key);
+        if (listeners == null) {
+            listeners = new ArrayList<>();
+            pending.put(key, listeners);
+            executor.execute(() -> {
+                BitmapDrawable icon = store(key, render.get());
+                mainHandler.post(() -> {
+                    List<OnIconReadyListener> waiting = pending.remove(key);
+                    if (waiting != null) {
+                        for (OnIconReadyListener listener : waiting) {
+                            listener.onIconReady(icon);
+                        }
+                    }
+                });
+            });
+        }
+        if (onReady != null) {
+            listeners.add(onReady);
+        }
+        return placeholder(placeholderKey, bucket);
+    }
+
+    // Unlabelled icon of the bucket's colour, prewarmed, so it is a cache hit in practice
+    private Drawable placeholder(String key, int bucket) {
+        BitmapDrawable cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        return store(key, key.startsWith("lot:") ? renderLotIcon(bucket, null) : renderClusterIcon(bucket, null));
+    }
+
+    private static String lotKey(int bucket, String label) {
+        return "lot:" + bucket + ":" + (label != null ? label : "");
+    }
+
+    private static String clusterKey(int bucket, String label) {
+        return "cluster:" + bucket + ":" + (label != null ? label : "");
+    }
+
+    // Safe on any thread, draws into a new bitmap only
+    private Bitmap renderLotIcon(int bucket, String label) {
+        int size = Math.round(LOT_ICON_SIZE_DP * density);
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        int iconRes = bucket == BUCKET_FULL ? R.drawable.ic_parking_full : R.drawable.ic_parking_available;
+        Drawable drawable = ContextCompat.getDrawable(context, iconRes);
+        if (drawable != null) {
+            drawable = drawable.mutate();
+            drawable.setTint(bucketColors[bucket]);
+            drawable.setBounds(0, 0, size, size);
+            drawable.draw(canvas);
+        }
+        if (label == null) {
+            return bitmap;
+        }
+
+        // Free-spot badge in the top right corner
+        float badgeRadius = size * 0.28f;
+        float badgeX = size - badgeRadius;
+        float badgeY = badgeRadius;
+        Paint badgePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        badgePaint.setColor(bucketColors[bucket]);
+        canvas.drawCircle(badgeX, badgeY, badgeRadius, badgePaint);
+        float scale = label.length() > 3 ? 0.65f : label.length() > 2 ? 0.8f : 1.1f;
+        drawCenteredText(canvas, label, badgeX, badgeY, badgeRadius * scale);
+        return bitmap;
+    }
+
+    private Bitmap renderClusterIcon(int bucket, String label) {
+        int size = Math.round(CLUSTER_ICON_SIZE_DP * density);
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        Paint circlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        circlePaint.setColor(bucketColors[bucket]);
+        canvas.drawCircle(size / 2f, size / 2f, size / 2f, circlePaint);
+        if (label != null) {
+            drawCenteredText(canvas, label, size / 2f, size / 2f, size * (label.length() > 3 ? 0.3f : 0.4f));
+        }
+        return bitmap;
+    }
+
+    private void drawCenteredText(Canvas canvas, String text, float x, float y, float textSize) {
+        Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        textPaint.setColor(0xFFFFFFFF);
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        textPaint.setTextSize(textSize);
+        textPaint.setFakeBoldText(true);
+        float baseline = y - (textPaint.descent() + textPaint.ascent()) / 2f;
+        canvas.drawText(text, x, baseline, textPaint);
+    }
+
+    private BitmapDrawable lookup(String key) {
+        BitmapDrawable cached = cache.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return cached;
+    }
+
+    private BitmapDrawable store(String key, Bitmap bitmap) {
+        BitmapDrawable drawable = new BitmapDrawable(resources, bitmap);
+        cache.put(key, drawable);
+        return drawable;
+    }
+}
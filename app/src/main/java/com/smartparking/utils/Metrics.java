@@ -0,0 +1,283 @@
+package com.smartparking.utils;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.smartparking.BuildConfig;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Spans and counters for the app's hot paths. Every span is also an android.os.Trace
+// section, so it shows up in Perfetto and macrobenchmark traces, and its duration goes
+// into an in-process histogram that the debug screen shows and export() writes to disk.
+// Names are dotted, e.g. "firestore.bookings.get" or "room.parkingSpaces.insertAll".
+public final class Metrics {
+    private static final String TAG = "Metrics";
+
+    // Marker tap until the parking details dialog has drawn
+    public static final String FLOW_MARKER_TO_DETAILS = "flow.markerTapToDetails";
+    // Book button until the confirmation notification is posted
+    public static final String FLOW_BOOK_TO_CONFIRMATION = "flow.bookToConfirmation";
+
+    // Trace section names are limited to 127 characters
+    private static final int MAX_SECTION_NAME = 127;
+
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Long> flowStarts = new ConcurrentHashMap<>();
+    private static final AtomicInteger asyncCookies = new AtomicInteger();
+
+    private Metrics() {
+    }
+
+    // Synchronous span, close it on the thread that opened it:
+    // try (Metrics.Span span = Metrics.begin("room.bookings.insert")) { ... }
+    public static Span begin(String name) {
+        Trace.beginSection(sectionName(name));
+        return new Span(name);
+    }
+
+    public static void time(String name, Runnable block) {
+        try (Span span = begin(name)) {
+            block.run();
+        }
+    }
+
+    public static <T> T time(String name, Supplier<T> block) {
+        try (Span span = begin(name)) {
+            return block.get();
+        }
+    }
+
+    // Times a Firestore call from now until its task completes, and counts successes and
+    // failures separately. Returns the same task so calls can be wrapped in place.
+    public static <T> Task<T> trace(String name, Task<T> task) {
+        int cookie = asyncCookies.incrementAndGet();
+        String section = sectionName(name);
+        long start = SystemClock.elapsedRealtimeNanos();
+        Trace.beginAsyncSection(section, cookie);
+        task.addOnCompleteListener(Runnable::run, done -> {
+            Trace.endAsyncSection(section, cookie);
+            record(name, SystemClock.elapsedRealtimeNanos() - start);
+            count(done.isSuccessful() ? name + ".ok" : name + ".error");
+        });
+        return task;
+    }
+
+    // User-visible flows that cross threads and components, such as a marker tap until the
+    // details dialog has drawn. Starting a flow again restarts it.
+    public static void startFlow(String name) {
+        Long previous = flowStarts.put(name, SystemClock.elapsedRealtimeNanos());
+        String section = sectionName(name);
+        if (previous != null) {
+            Trace.endAsyncSection(section, 0);
+        }
+        Trace.beginAsyncSection(section, 0);
+    }
+
+    // Ends the flow if it is running, otherwise does nothing
+    public static void endFlow(String name) {
+        Long start = flowStarts.remove(name);
+        if (start != null) {
+            Trace.endAsyncSection(sectionName(name), 0);
+            record(name, SystemClock.elapsedRealtimeNanos() - start);
+        }
+    }
+
+    public static void count(String name) {
+        count(name, 1);
+    }
+
+    public static void count(String name, long delta) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(name, key -> new AtomicLong());
+        }
+        counter.addAndGet(delta);
+    }
+
+    public static void record(String name, long durationNanos) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(name, key -> new Histogram());
+        }
+        histogram.record(durationNanos);
+    }
+
+    public static void reset() {
+        histograms.clear();
+        counters.clear();
+        flowStarts.clear();
+    }
+
+    // Timers sorted by name, latencies in milliseconds
+    public static List<TimerStats> getTimers() {
+        List<TimerStats> timers = new ArrayList<>();
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            TimerStats stats = entry.getValue().snapshot(entry.getKey());
+            if (stats.count > 0) {
+                timers.add(stats);
+            }
+        }
+        return timers;
+    }
+
+    public static Map<String, Long> getCounters() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        return snapshot;
+    }
+
+    // One metric per line in name order, so two exports diff cleanly
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        report.append("# timers: name count p50 p95 p99 max (ms)\n");
+        for (TimerStats timer : getTimers()) {
+            report.append(timer).append('\n');
+        }
+        report.append("# counters: name value\n");
+        for (Map.Entry<String, Long> counter : getCounters().entrySet()) {
+            report.append(counter.getKey()).append(' ').append(counter.getValue()).append('\n');
+        }
+        return report.toString();
+    }
+
+    // Writes the report to files/metrics/ with the build in the name and header, call from
+    // a background thread. Pull it with adb and diff it against another build's export.
+    public static File export(Context context) throws IOException {
+        File directory = new File(context.getFilesDir(), "metrics");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        File file = new File(directory, "metrics-" + BuildConfig.VERSION_NAME + "-"
+                + BuildConfig.BUILD_TYPE + "-" + timestamp + ".txt");
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("# build " + BuildConfig.VERSION_NAME + " (" + BuildConfig.VERSION_CODE + ") "
+                    + BuildConfig.BUILD_TYPE + "\n");
+            writer.write("# device " + Build.MANUFACTURER + " " + Build.MODEL
+                    + ", API " + Build.VERSION.SDK_INT + "\n");
+            writer.write(report());
+        }
+        Log.d(TAG, "Exported metrics to " + file);
+        return file;
+    }
+
+    private static String sectionName(String name) {
+        return name.length() > MAX_SECTION_NAME ? name.substring(0, MAX_SECTION_NAME) : name;
+    }
+
+    public static final class Span implements AutoCloseable {
+        private final String name;
+        private final long start = SystemClock.elapsedRealtimeNanos();
+
+        private Span(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void close() {
+            Trace.endSection();
+            record(name, SystemClock.elapsedRealtimeNanos() - start);
+        }
+    }
+
+    // Log-linear buckets over microseconds: four per power of two, so any percentile is
+    // within about 25% of the true value, in fixed memory however many samples arrive
+    static final class Histogram {
+        private static final int SUB_BITS = 2;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+        private final long[] buckets = new long[BUCKETS];
+        private long count;
+        private long maxMicros;
+
+        synchronized void record(long durationNanos) {
+            long micros = Math.max(0, durationNanos / 1000);
+            buckets[bucketFor(micros)]++;
+            count++;
+            maxMicros = Math.max(maxMicros, micros);
+        }
+
+        synchronized TimerStats snapshot(String name) {
+            return new TimerStats(name, count,
+                    percentile(0.50), percentile(0.95), percentile(0.99), maxMicros / 1000.0);
+        }
+
+        // Upper bound of the bucket holding the q-th sample, never above the real maximum
+        private double percentile(double q) {
+            long target = (long) Math.ceil(q * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= target && seen > 0) {
+                    return Math.min(upperBound(i), maxMicros) / 1000.0;
+                }
+            }
+            return maxMicros / 1000.0;
+        }
+
+        static int bucketFor(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) micros;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            int sub = bucket % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+        }
+    }
+
+    public static class TimerStats {
+        public final String name;
+        public final long count;
+        public final double p50Ms;
+        public final double p95Ms;
+        public final double p99Ms;
+        public final double maxMs;
+
+        TimerStats(String name, long count, double p50Ms, double p95Ms, double p99Ms, double maxMs) {
+            this.name = name;
+            this.count = count;
+            this.p50Ms = p50Ms;
+            this.p95Ms = p95Ms;
+            this.p99Ms = p99Ms;
+            this.maxMs = maxMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s %d %.1f %.1f %.1f %.1f",
+                    name, count, p50Ms, p95Ms, p99Ms, maxMs);
+        }
+    }
+}
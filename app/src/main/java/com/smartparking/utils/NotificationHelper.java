@@ -94,6 +94,44 @@ public class NotificationHelper {
         }
     }
 
+    // The server turned down a booking that was saved while offline, usually because the lot filled up
+    public static void showBookingRejectedNotification(Context context, String bookingId, String parkingName) {
+        if (context == null) {
+            Log.e("NotificationHelper", "Context is null, cannot show notification");
+            return;
+        }
+
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.putExtra("bookingId", bookingId);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+
+        PendingIntent pendingIntent = PendingIntent.getActivity(
+                context,
+                0,
+                intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_notification)
+                .setContentTitle("Booking Not Confirmed")
+                .setContentText("Your booking at " + parkingName + " could not be confirmed and was cancelled")
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setContentIntent(pendingIntent)
+                .setAutoCancel(true);
+
+        if (context.checkSelfPermission(android.Manifest.permission.POST_NOTIFICATIONS) !=
+                android.content.pm.PackageManager.PERMISSION_GRANTED) {
+            Log.e("NotificationHelper", "Notification permission not granted");
+            return;
+        }
+        try {
+            NotificationManagerCompat.from(context).notify((bookingId + "_rejected").hashCode(), builder.build());
+        } catch (SecurityException e) {
+            Log.e("NotificationHelper", "Security exception showing notification", e);
+        }
+    }
+
     public static void scheduleBookingReminderNotification(Context context, String bookingId, String parkingName, long startTime) {
         // Schedule a notification 15 minutes before the booking start time
         long reminderTime = startTime - (15 * 60 * 1000); // 15 minutes in milliseconds
@@ -0,0 +1,249 @@
+package com.smartparking.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Pre-aggregates parking lots into square grid cells for every clustered zoom level.
+// Each cell keeps the lot count, total and available spots, and a centroid. Updating a lot
+// only touches the one cell it lives in per zoom level, and bumps that cell's version so
+// the map can rebuild just the cluster markers that actually changed.
+public class ParkingClusterIndex {
+
+    public static final int MIN_ZOOM = 2;
+    public static final int MAX_CLUSTER_ZOOM = 14;
+
+    // Cell edge in screen pixels at the cell's own zoom level (tiles are 256px)
+    private static final int CELL_SIZE_PX = 64;
+    private static final int CELLS_PER_TILE = 256 / CELL_SIZE_PX;
+    private static final double MAX_MERCATOR_LAT = 85.05112878;
+
+    private final Map<String, Lot> lots = new HashMap<>();
+    private final List<Map<Long, Cluster>> cellsByZoom = new ArrayList<>();
+    // Global so a cell that is emptied and created again never reuses an old version
+    private long versionCounter = 0;
+
+    public ParkingClusterIndex() {
+        for (int zoom = 0; zoom <= MAX_CLUSTER_ZOOM; zoom++) {
+            cellsByZoom.add(new HashMap<>());
+        }
+    }
+
+    public synchronized int size() {
+        return lots.size();
+    }
+
+    // Add or update a lot. Returns false when nothing the clusters show has changed.
+    public synchronized boolean put(String id, double latitude, double longitude, int availableSpots, int totalSpots) {
+        Lot existing = lots.get(id);
+        if (existing != null) {
+            if (existing.latitude == latitude && existing.longitude == longitude
+                    && existing.availableSpots == availableSpots && existing.totalSpots == totalSpots) {
+                return false;
+            }
+            if (existing.latitude == latitude && existing.longitude == longitude) {
+                // Availability only changed, adjust the totals in place
+                int availableDelta = availableSpots - existing.availableSpots;
+                int totalDelta = totalSpots - existing.totalSpots;
+                for (int zoom = MIN_ZOOM; zoom <= MAX_CLUSTER_ZOOM; zoom++) {
+                    Cluster cell = cellsByZoom.get(zoom).get(existing.cellKeys[zoom]);
+                    cell.availableSpots += availableDelta;
+                    cell.totalSpots += totalDelta;
+                    cell.version = ++versionCounter;
+                }
+                existing.availableSpots = availableSpots;
+                existing.totalSpots = totalSpots;
+                return true;
+            }
+            removeFromCells(existing);
+        }
+
+        Lot lot = new Lot(latitude, longitude, availableSpots, totalSpots);
+        addToCells(lot);
+        lots.put(id, lot);
+        return true;
+    }
+
+    public synchronized boolean remove(String id) {
+        Lot existing = lots.remove(id);
+        if (existing == null) {
+            return false;
+        }
+        removeFromCells(existing);
+        return true;
+    }
+
+    public synchronized void clear() {
+        lots.clear();
+        for (Map<Long, Cluster> cells : cellsByZoom) {
+            cells.clear();
+        }
+    }
+
+    // Clusters at the given zoom level whose cells intersect the box
+    public synchronized List<Cluster> getClusters(int zoom, double minLat, double minLng, double maxLat, double maxLng) {
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_CLUSTER_ZOOM, zoom));
+        Map<Long, Cluster> cells = cellsByZoom.get(zoom);
+        List<Cluster> result = new ArrayList<>();
+
+        long minX = cellX(minLng, zoom);
+        long maxX = cellX(maxLng, zoom);
+        long minY = cellY(maxLat, zoom);
+        long maxY = cellY(minLat, zoom);
+        long rangeSize = (maxX - minX + 1) * (maxY - minY + 1);
+
+        if (rangeSize < cells.size()) {
+            for (long x = minX; x <= maxX; x++) {
+                for (long y = minY; y <= maxY; y++) {
+                    Cluster cell = cells.get(key(x, y));
+                    if (cell != null) {
+                        result.add(cell.copy());
+                    }
+                }
+            }
+        } else {
+            for (Cluster cell : cells.values()) {
+                if (cell.x >= minX && cell.x <= maxX && cell.y >= minY && cell.y <= maxY) {
+                    result.add(cell.copy());
+                }
+            }
+        }
+        return result;
+    }
+
+    private void addToCells(Lot lot) {
+        for (int zoom = MIN_ZOOM; zoom <= MAX_CLUSTER_ZOOM; zoom++) {
+            long x = cellX(lot.longitude, zoom);
+            long y = cellY(lot.latitude, zoom);
+            long key = key(x, y);
+            lot.cellKeys[zoom] = key;
+
+            Map<Long, Cluster> cells = cellsByZoom.get(zoom);
+            Cluster cell = cells.get(key);
+            if (cell == null) {
+                cell = new Cluster(zoom, x, y);
+                cells.put(key, cell);
+            }
+            cell.lotCount++;
+            cell.availableSpots += lot.availableSpots;
+            cell.totalSpots += lot.totalSpots;
+            cell.latitudeSum += lot.latitude;
+            cell.longitudeSum += lot.longitude;
+            cell.version = ++versionCounter;
+        }
+    }
+
+    private void removeFromCells(Lot lot) {
+        for (int zoom = MIN_ZOOM; zoom <= MAX_CLUSTER_ZOOM; zoom++) {
+            Map<Long, Cluster> cells = cellsByZoom.get(zoom);
+            Cluster cell = cells.get(lot.cellKeys[zoom]);
+            cell.lotCount--;
+            if (cell.lotCount == 0) {
+                cells.remove(lot.cellKeys[zoom]);
+                continue;
+            }
+            cell.availableSpots -= lot.availableSpots;
+            cell.totalSpots -= lot.totalSpots;
+            cell.latitudeSum -= lot.latitude;
+            cell.longitudeSum -= lot.longitude;
+            cell.version = ++versionCounter;
+        }
+    }
+
+    private static long gridSize(int zoom) {
+        return (1L << zoom) * CELLS_PER_TILE;
+    }
+
+    private static long cellX(double longitude, int zoom) {
+        long size = gridSize(zoom);
+        long x = (long) Math.floor((longitude + 180.0) / 360.0 * size);
+        return Math.max(0, Math.min(size - 1, x));
+    }
+
+    private static long cellY(double latitude, int zoom) {
+        long size = gridSize(zoom);
+        double lat = Math.toRadians(Math.max(-MAX_MERCATOR_LAT, Math.min(MAX_MERCATOR_LAT, latitude)));
+        double mercator = (1 - Math.log(Math.tan(lat) + 1 / Math.cos(lat)) / Math.PI) / 2;
+        long y = (long) Math.floor(mercator * size);
+        return Math.max(0, Math.min(size - 1, y));
+    }
+
+    private static long key(long x, long y) {
+        return (x << 32) | y;
+    }
+
+    private static class Lot {
+        final double latitude;
+        final double longitude;
+        int availableSpots;
+        int totalSpots;
+        final long[] cellKeys = new long[MAX_CLUSTER_ZOOM + 1];
+
+        Lot(double latitude, double longitude, int availableSpots, int totalSpots) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.availableSpots = availableSpots;
+            this.totalSpots = totalSpots;
+        }
+    }
+
+    public static class Cluster {
+        final int zoom;
+        final long x;
+        final long y;
+        int lotCount;
+        int availableSpots;
+        int totalSpots;
+        double latitudeSum;
+        double longitudeSum;
+        long version;
+
+        Cluster(int zoom, long x, long y) {
+            this.zoom = zoom;
+            this.x = x;
+            this.y = y;
+        }
+
+        Cluster copy() {
+            Cluster copy = new Cluster(zoom, x, y);
+            copy.lotCount = lotCount;
+            copy.availableSpots = availableSpots;
+            copy.totalSpots = totalSpots;
+            copy.latitudeSum = latitudeSum;
+            copy.longitudeSum = longitudeSum;
+            copy.version = version;
+            return copy;
+        }
+
+        // Stable identifier of the grid cell, e.g. "12/2891/1834"
+        public String getKey() {
+            return zoom + "/" + x + "/" + y;
+        }
+
+        public double getLatitude() {
+            return latitudeSum / lotCount;
+        }
+
+        public double getLongitude() {
+            return longitudeSum / lotCount;
+        }
+
+        public int getLotCount() {
+            return lotCount;
+        }
+
+        public int getAvailableSpots() {
+            return availableSpots;
+        }
+
+        public int getTotalSpots() {
+            return totalSpots;
+        }
+
+        // Changes every time a lot in the cell is added, removed or updated
+        public long getVersion() {
+            return version;
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.smartparking.utils;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+
+import com.smartparking.models.ParkingSpace;
+
+import org.osmdroid.events.DelayedMapListener;
+import org.osmdroid.events.MapListener;
+import org.osmdroid.events.ScrollEvent;
+import org.osmdroid.events.ZoomEvent;
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+import org.osmdroid.views.MapView;
+import org.osmdroid.views.overlay.Marker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Keeps parking markers on the map only for lots inside the visible viewport plus a margin.
+// Markers that scroll out of view go back to a pool and are reused for lots scrolling in.
+// Up to ParkingClusterIndex.MAX_CLUSTER_ZOOM the lots are drawn as one marker per grid cell
+// showing the cell's free spots, so a zoomed-out city costs a few hundred overlays.
+public class ParkingMarkerManager {
+
+    private static final String TAG = "ParkingMarkerManager";
+
+    // Extra area loaded around the viewport, as a fraction of its width/height on each side
+    private static final double VIEWPORT_MARGIN = 0.25;
+    // Scroll and zoom events are coalesced into one refresh after this delay
+    private static final long REFRESH_DELAY_MS = 150;
+    private static final int MAX_POOLED_MARKERS = 200;
+    // Tapping a cluster zooms in far enough to split it
+    private static final double CLUSTER_ZOOM_STEP = 2.0;
+
+    public interface OnParkingSpaceClickListener {
+        void onParkingSpaceClick(ParkingSpace parkingSpace);
+    }
+
+    private final MapView mapView;
+    private final OnParkingSpaceClickListener clickListener;
+    private final MarkerIconCache iconCache;
+    private final DelayedMapListener mapListener;
+
+    private final SpatialIndex<ParkingSpace> parkingIndex = new SpatialIndex<>();
+    private final ParkingClusterIndex clusterIndex = new ParkingClusterIndex();
+    // Snapshot of every lot the map currently knows about, keyed by spaceId
+    private final Map<String, ParkingSpace> shownSpaces = new HashMap<>();
+    private final Map<String, Marker> visibleMarkers = new HashMap<>();
+    private final Map<String, Marker> clusterMarkers = new HashMap<>();
+    private final ArrayDeque<Marker> markerPool = new ArrayDeque<>();
+
+    public ParkingMarkerManager(Context context, MapView mapView, OnParkingSpaceClickListener clickListener) {
+        this.mapView = mapView;
+        this.clickListener = clickListener;
+        this.iconCache = MarkerIconCache.getInstance(context);
+
+        mapListener = new DelayedMapListener(new MapListener() {
+            @Override
+            public boolean onScroll(ScrollEvent event) {
+                refreshVisibleMarkers();
+                return false;
+            }
+
+            @Override
+            public boolean onZoom(ZoomEvent event) {
+                refreshVisibleMarkers();
+                return false;
+            }
+        }, REFRESH_DELAY_MS);
+        mapView.addMapListener(mapListener);
+        mapView.addOnFirstLayoutListener((v, left, top, right, bottom) -> refreshVisibleMarkers());
+    }
+
+    // Reconcile the map with a new data set. Only lots that were added, removed or changed
+    // touch the indexes, and only their markers are mutated.
+    public void setParkingSpaces(List<ParkingSpace> parkingSpaces) {
+        if (shownSpaces.isEmpty()) {
+            loadParkingSpaces(parkingSpaces);
+            return;
+        }
+
+        ParkingSpaceDiff diff = ParkingSpaceDiff.compute(shownSpaces, parkingSpaces);
+        if (diff.isEmpty()) {
+            return;
+        }
+
+        boolean viewportChanged = !diff.getAdded().isEmpty() || !diff.getRemovedIds().isEmpty();
+        for (ParkingSpace space : diff.getAdded()) {
+            putSpace(space);
+        }
+        for (int i = 0; i < diff.getChanged().size(); i++) {
+            int flags = diff.getChangeFlags(i);
+            putSpace(diff.getChanged().get(i));
+            updateVisibleMarker(diff.getChanged().get(i), flags);
+            if ((flags & ParkingSpaceDiff.CHANGE_POSITION) != 0) {
+                viewportChanged = true;
+            }
+        }
+        for (String spaceId : diff.getRemovedIds()) {
+            removeSpace(spaceId);
+        }
+
+        Log.d(TAG, "Reconciled " + diff.getAdded().size() + " added, " + diff.getChanged().size()
+                + " changed, " + diff.getRemovedIds().size() + " removed");
+
+        // Adds, removes and moves can change which markers are in view, and cluster
+        // markers pick up availability changes through their cell version
+        if (!(viewportChanged || isClustering()) || !refreshVisibleMarkers()) {
+            mapView.invalidate();
+        }
+    }
+
+    // First load, bulk-build the indexes instead of inserting lot by lot
+    private void loadParkingSpaces(List<ParkingSpace> parkingSpaces) {
+        List<SpatialIndex.Entry<ParkingSpace>> entries = new ArrayList<>(parkingSpaces.size());
+        for (ParkingSpace space : parkingSpaces) {
+            ParkingSpace snapshot = ParkingSpaceDiff.snapshot(space);
+            shownSpaces.put(space.getSpaceId(), snapshot);
+            entries.add(new SpatialIndex.Entry<>(
+                    space.getSpaceId(), space.getLatitude(), space.getLongitude(), snapshot));
+            clusterIndex.put(space.getSpaceId(), space.getLatitude(), space.getLongitude(),
+                    space.getAvailableSpots(), space.getTotalSpots());
+        }
+        parkingIndex.rebuild(entries);
+        refreshVisibleMarkers();
+    }
+
+    private boolean isClustering() {
+        return Math.floor(mapView.getZoomLevelDouble()) <= ParkingClusterIndex.MAX_CLUSTER_ZOOM;
+    }
+
+    // Apply a single added or changed parking space
+    public void updateParkingSpace(ParkingSpace parkingSpace) {
+        ParkingSpace previous = shownSpaces.get(parkingSpace.getSpaceId());
+        int flags = previous == null
+                ? ParkingSpaceDiff.CHANGE_POSITION
+                : ParkingSpaceDiff.compare(previous, parkingSpace);
+        if (flags == 0) {
+            return;
+        }
+
+        putSpace(parkingSpace);
+        if (previous != null) {
+            updateVisibleMarker(parkingSpace, flags);
+        }
+        boolean viewportChanged = (flags & ParkingSpaceDiff.CHANGE_POSITION) != 0;
+        if (!(viewportChanged || isClustering()) || !refreshVisibleMarkers()) {
+            mapView.invalidate();
+        }
+    }
+
+    public void removeParkingSpace(String spaceId) {
+        if (shownSpaces.containsKey(spaceId)) {
+            removeSpace(spaceId);
+            refreshVisibleMarkers();
+        }
+    }
+
+    private void putSpace(ParkingSpace space) {
+        ParkingSpace snapshot = ParkingSpaceDiff.snapshot(space);
+        shownSpaces.put(space.getSpaceId(), snapshot);
+        parkingIndex.put(space.getSpaceId(), space.getLatitude(), space.getLongitude(), snapshot);
+        clusterIndex.put(space.getSpaceId(), space.getLatitude(), space.getLongitude(),
+                space.getAvailableSpots(), space.getTotalSpots());
+    }
+
+    private void removeSpace(String spaceId) {
+        shownSpaces.remove(spaceId);
+        parkingIndex.remove(spaceId);
+        clusterIndex.remove(spaceId);
+    }
+
+    // Mutate only the marker properties affected by the change
+    private void updateVisibleMarker(ParkingSpace space, int flags) {
+        Marker marker = visibleMarkers.get(space.getSpaceId());
+        if (marker == null) {
+            return;
+        }
+        ParkingSpace snapshot = shownSpaces.get(space.getSpaceId());
+        marker.setRelatedObject(snapshot);
+
+        if ((flags & ParkingSpaceDiff.CHANGE_POSITION) != 0) {
+            marker.setPosition(new GeoPoint(space.getLatitude(), space.getLongitude()));
+        }
+        if ((flags & ParkingSpaceDiff.CHANGE_DETAILS) != 0) {
+            marker.setTitle(space.getName());
+        }
+        if ((flags & (ParkingSpaceDiff.CHANGE_AVAILABILITY | ParkingSpaceDiff.CHANGE_DETAILS)) != 0) {
+            marker.setSnippet(buildSnippet(space));
+            if (marker.isInfoWindowShown()) {
+                marker.showInfoWindow();
+            }
+        }
+        if ((flags & ParkingSpaceDiff.CHANGE_AVAILABILITY) != 0) {
+            Drawable icon = iconFor(marker, snapshot);
+            if (icon != null) {
+                marker.setIcon(icon);
+            }
+        }
+    }
+
+    // Returns true when markers were added or removed, in which case the map was invalidated
+    public boolean refreshVisibleMarkers() {
+        if (mapView.getWidth() == 0 || mapView.getHeight() == 0) {
+            // Not laid out yet, the first layout listener will refresh
+            return false;
+        }
+
+        int zoom = (int) Math.floor(mapView.getZoomLevelDouble());
+        boolean changed;
+        if (isClustering()) {
+            changed = recycleAll(visibleMarkers);
+            changed |= refreshClusterMarkers(zoom, mapView.getBoundingBox());
+        } else {
+            changed = recycleAll(clusterMarkers);
+            changed |= refreshLotMarkers(mapView.getBoundingBox());
+        }
+
+        if (changed) {
+            mapView.invalidate();
+        }
+        return changed;
+    }
+
+    private boolean refreshLotMarkers(BoundingBox box) {
+        List<ParkingSpace> inView = queryViewport(box);
+        Set<String> inViewIds = new HashSet<>();
+        for (ParkingSpace space : inView) {
+            inViewIds.add(space.getSpaceId());
+        }
+
+        // Recycle markers that left the viewport
+        int recycled = recycleMissing(visibleMarkers, inViewIds);
+
+        // Add markers for lots that entered the viewport
+        int added = 0;
+        for (ParkingSpace space : inView) {
+            if (visibleMarkers.containsKey(space.getSpaceId())) {
+                continue;
+            }
+            Marker marker = obtainMarker();
+            bindMarker(marker, space);
+            visibleMarkers.put(space.getSpaceId(), marker);
+            mapView.getOverlays().add(marker);
+            added++;
+        }
+
+        if (added > 0 || recycled > 0) {
+            Log.d(TAG, "Viewport refresh: " + visibleMarkers.size() + " visible, "
+                    + added + " added, " + recycled + " recycled");
+            return true;
+        }
+        return false;
+    }
+
+    private boolean refreshClusterMarkers(int zoom, BoundingBox box) {
+        double[] bounds = viewportBounds(box);
+        List<ParkingClusterIndex.Cluster> clusters;
+        if (bounds[1] <= bounds[3]) {
+            clusters = clusterIndex.getClusters(zoom, bounds[0], bounds[1], bounds[2], bounds[3]);
+        } else {
+            clusters = clusterIndex.getClusters(zoom, bounds[0], bounds[1], bounds[2], 180);
+            clusters.addAll(clusterIndex.getClusters(zoom, bounds[0], -180, bounds[2], bounds[3]));
+        }
+
+        Set<String> inViewKeys = new HashSet<>();
+        for (ParkingClusterIndex.Cluster cluster : clusters) {
+            inViewKeys.add(cluster.getKey());
+        }
+        int recycled = recycleMissing(clusterMarkers, inViewKeys);
+
+        // Only build markers for new cells and rebind cells whose content changed
+        int added = 0;
+        int rebound = 0;
+        for (ParkingClusterIndex.Cluster cluster : clusters) {
+            Marker marker = clusterMarkers.get(cluster.getKey());
+            if (marker == null) {
+                marker = obtainMarker();
+                bindClusterMarker(marker, cluster);
+                clusterMarkers.put(cluster.getKey(), marker);
+                mapView.getOverlays().add(marker);
+                added++;
+            } else {
+                ParkingClusterIndex.Cluster shown = (ParkingClusterIndex.Cluster) marker.getRelatedObject();
+                if (shown.getVersion() != cluster.getVersion()) {
+                    bindClusterMarker(marker, cluster);
+                    rebound++;
+                }
+            }
+        }
+
+        if (added > 0 || recycled > 0 || rebound > 0) {
+            Log.d(TAG, "Cluster refresh at zoom " + zoom + ": " + clusterMarkers.size() + " clusters, "
+                    + added + " added, " + rebound + " rebuilt, " + recycled + " recycled");
+            return true;
+        }
+        return false;
+    }
+
+    private int recycleMissing(Map<String, Marker> markers, Set<String> keep) {
+        int recycled = 0;
+        Iterator<Map.Entry<String, Marker>> iterator = markers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Marker> entry = iterator.next();
+            if (!keep.contains(entry.getKey())) {
+                recycle(entry.getValue());
+                iterator.remove();
+                recycled++;
+            }
+        }
+        return recycled;
+    }
+
+    private boolean recycleAll(Map<String, Marker> markers) {
+        if (markers.isEmpty()) {
+            return false;
+        }
+        for (Marker marker : markers.values()) {
+            recycle(marker);
+        }
+        markers.clear();
+        return true;
+    }
+
+    private void recycle(Marker marker) {
+        mapView.getOverlays().remove(marker);
+        marker.closeInfoWindow();
+        if (markerPool.size() < MAX_POOLED_MARKERS) {
+            markerPool.push(marker);
+        }
+    }
+
+    public void detach() {
+        mapView.removeMapListener(mapListener);
+        for (Marker marker : visibleMarkers.values()) {
+            mapView.getOverlays().remove(marker);
+        }
+        for (Marker marker : clusterMarkers.values()) {
+            mapView.getOverlays().remove(marker);
+        }
+        visibleMarkers.clear();
+        clusterMarkers.clear();
+        markerPool.clear();
+    }
+
+    // Viewport plus margin as {minLat, west, maxLat, east}. west > east when the
+    // box crosses the antimeridian.
+    private double[] viewportBounds(BoundingBox box) {
+        double latMargin = (box.getLatNorth() - box.getLatSouth()) * VIEWPORT_MARGIN;
+        double minLat = Math.max(-90, box.getLatSouth() - latMargin);
+        double maxLat = Math.min(90, box.getLatNorth() + latMargin);
+
+        double west = box.getLonWest();
+        double east = box.getLonEast();
+        if (west <= east) {
+            double lngMargin = (east - west) * VIEWPORT_MARGIN;
+            west = Math.max(-180, west - lngMargin);
+            east = Math.min(180, east + lngMargin);
+        }
+        return new double[]{minLat, west, maxLat, east};
+    }
+
+    private List<ParkingSpace> queryViewport(BoundingBox box) {
+        double[] bounds = viewportBounds(box);
+        if (bounds[1] <= bounds[3]) {
+            return parkingIndex.queryBoundingBox(bounds[0], bounds[1], bounds[2], bounds[3]);
+        }
+
+        // Viewport crosses the antimeridian, query both sides
+        List<ParkingSpace> result = parkingIndex.queryBoundingBox(bounds[0], bounds[1], bounds[2], 180);
+        result.addAll(parkingIndex.queryBoundingBox(bounds[0], -180, bounds[2], bounds[3]));
+        return result;
+    }
+
+    private Marker obtainMarker() {
+        Marker marker = markerPool.poll();
+        if (marker == null) {
+            marker = new Marker(mapView);
+            marker.setOnMarkerClickListener((m, view) -> {
+                Object related = m.getRelatedObject();
+                if (related instanceof ParkingSpace) {
+                    Metrics.startFlow(Metrics.FLOW_MARKER_TO_DETAILS);
+                    clickListener.onParkingSpaceClick((ParkingSpace) related);
+                } else if (related instanceof ParkingClusterIndex.Cluster) {
+                    view.getController().animateTo(m.getPosition(),
+                            view.getZoomLevelDouble() + CLUSTER_ZOOM_STEP, null);
+                }
+                return true;
+            });
+        }
+        return marker;
+    }
+
+    private void bindMarker(Marker marker, ParkingSpace parkingSpace) {
+        marker.setId(parkingSpace.getSpaceId());
+        marker.setRelatedObject(parkingSpace);
+        marker.setTitle(parkingSpace.getName());
+        marker.setSnippet(buildSnippet(parkingSpace));
+        marker.setPosition(new GeoPoint(parkingSpace.getLatitude(), parkingSpace.getLongitude()));
+        marker.setAnchor(Marker.ANCHOR_CENTER, Marker.ANCHOR_BOTTOM);
+
+        // Set different icons based on availability
+        Drawable icon = iconFor(marker, parkingSpace);
+        if (icon != null) {
+            marker.setIcon(icon);
+        } else {
+            Log.e(TAG, "Parking icon drawable not found");
+        }
+    }
+
+    private String buildSnippet(ParkingSpace parkingSpace) {
+        return "Available: " + parkingSpace.getAvailableSpots() +
+                " / " + parkingSpace.getTotalSpots() +
+                "\nRate: $" + parkingSpace.getHourlyRate() + "/hr";
+    }
+
+    // Shared pre-rasterized icon for the lot's occupancy bucket and free-spot count. A state
+    // still being rendered shows a placeholder and is swapped in if the marker still shows
+    // the same snapshot by then.
+    private Drawable iconFor(Marker marker, ParkingSpace snapshot) {
+        return iconCache.getParkingIcon(snapshot.getAvailableSpots(), snapshot.getTotalSpots(), icon -> {
+            if (marker.getRelatedObject() == snapshot) {
+                marker.setIcon(icon);
+                mapView.invalidate();
+            }
+        });
+    }
+
+    private void bindClusterMarker(Marker marker, ParkingClusterIndex.Cluster cluster) {
+        marker.setId(cluster.getKey());
+        marker.setRelatedObject(cluster);
+        marker.setTitle(cluster.getLotCount() + " parking lots");
+        marker.setSnippet("Available: " + cluster.getAvailableSpots() + " / " + cluster.getTotalSpots());
+        marker.setPosition(new GeoPoint(cluster.getLatitude(), cluster.getLongitude()));
+        marker.setAnchor(Marker.ANCHOR_CENTER, Marker.ANCHOR_CENTER);
+        marker.setIcon(iconCache.getClusterIcon(cluster.getAvailableSpots(), cluster.getTotalSpots(), icon -> {
+            if (marker.getRelatedObject() == cluster) {
+                marker.setIcon(icon);
+                mapView.invalidate();
+            }
+        }));
+    }
+}
@@ -0,0 +1,114 @@
+package com.smartparking.utils;
+
+import com.smartparking.models.ParkingSpace;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// Differences between the parking spaces currently shown and a new list, keyed by spaceId
+public class ParkingSpaceDiff {
+
+    // Bit flags describing what changed on a parking space
+    public static final int CHANGE_POSITION = 1;
+    public static final int CHANGE_AVAILABILITY = 1 << 1;
+    public static final int CHANGE_DETAILS = 1 << 2;
+
+    private final List<ParkingSpace> added = new ArrayList<>();
+    private final List<ParkingSpace> changed = new ArrayList<>();
+    private final List<Integer> changeFlags = new ArrayList<>();
+    private final List<String> removedIds = new ArrayList<>();
+
+    private ParkingSpaceDiff() {
+    }
+
+    public static ParkingSpaceDiff compute(Map<String, ParkingSpace> current, List<ParkingSpace> incoming) {
+        ParkingSpaceDiff diff = new ParkingSpaceDiff();
+        Set<String> incomingIds = new HashSet<>();
+
+        for (ParkingSpace space : incoming) {
+            incomingIds.add(space.getSpaceId());
+            ParkingSpace previous = current.get(space.getSpaceId());
+            if (previous == null) {
+                diff.added.add(space);
+            } else {
+                int flags = compare(previous, space);
+                if (flags != 0) {
+                    diff.changed.add(space);
+                    diff.changeFlags.add(flags);
+                }
+            }
+        }
+
+        for (String spaceId : current.keySet()) {
+            if (!incomingIds.contains(spaceId)) {
+                diff.removedIds.add(spaceId);
+            }
+        }
+        return diff;
+    }
+
+    // Returns the CHANGE_* flags for the fields that differ, 0 when the space is unchanged
+    public static int compare(ParkingSpace previous, ParkingSpace next) {
+        int flags = 0;
+        if (previous.getLatitude() != next.getLatitude() || previous.getLongitude() != next.getLongitude()) {
+            flags |= CHANGE_POSITION;
+        }
+        if (previous.getAvailableSpots() != next.getAvailableSpots()
+                || previous.getTotalSpots() != next.getTotalSpots()) {
+            flags |= CHANGE_AVAILABILITY;
+        }
+        if (!Objects.equals(previous.getName(), next.getName())
+                || !Objects.equals(previous.getAddress(), next.getAddress())
+                || previous.getHourlyRate() != next.getHourlyRate()
+                || previous.isActive() != next.isActive()) {
+            flags |= CHANGE_DETAILS;
+        }
+        return flags;
+    }
+
+    // Callers may keep mutating the objects they pass in, so the shown state is held as copies
+    public static ParkingSpace snapshot(ParkingSpace space) {
+        ParkingSpace copy = new ParkingSpace();
+        copy.setSpaceId(space.getSpaceId());
+        copy.setName(space.getName());
+        copy.setAddress(space.getAddress());
+        copy.setLatitude(space.getLatitude());
+        copy.setLongitude(space.getLongitude());
+        copy.setTotalSpots(space.getTotalSpots());
+        copy.setAvailableSpots(space.getAvailableSpots());
+        copy.setHourlyRate(space.getHourlyRate());
+        copy.setActive(space.isActive());
+        copy.setOwnerId(space.getOwnerId());
+        copy.setGeohash(space.getGeohash());
+        return copy;
+    }
+
+    public List<ParkingSpace> getAdded() {
+        return added;
+    }
+
+    public List<ParkingSpace> getChanged() {
+        return changed;
+    }
+
+    // Flags for getChanged().get(i)
+    public int getChangeFlags(int index) {
+        return changeFlags.get(index);
+    }
+
+    public List<String> getRemovedIds() {
+        return removedIds;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && changed.isEmpty() && removedIds.isEmpty();
+    }
+
+    public int size() {
+        return added.size() + changed.size() + removedIds.size();
+    }
+}
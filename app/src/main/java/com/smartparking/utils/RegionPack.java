@@ -0,0 +1,380 @@
+package com.smartparking.utils;
+
+import com.smartparking.models.ParkingSpace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+// Read side of an offline region pack: parking lots, their spatial index and map tiles for one
+// TileRegion in a single memory-mapped file, queried in place without loading it into the heap.
+//
+// Layout, see RegionPackWriter:
+//   [header, HEADER_SIZE bytes]
+//   [tile data][tile index: (key, offset, length) sorted by key]
+//   [lots section]...   delta updates append a new lots section, the header points at the live one
+// A lots section is the lot count, fixed-size records sorted by geohash and then their strings.
+// Geohash order doubles as the spatial index: every covering geohash prefix of a query is a
+// contiguous run of records found by binary search.
+public class RegionPack {
+
+    public static final String FILE_EXTENSION = "parkpack";
+
+    static final int MAGIC = 0x53505250; // "SPRP"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 256;
+
+    // Header field offsets
+    static final int H_MAGIC = 0;
+    static final int H_VERSION = 4;
+    static final int H_CRC = 8;
+    static final int H_SOUTH = 12;
+    static final int H_WEST = 20;
+    static final int H_NORTH = 28;
+    static final int H_EAST = 36;
+    static final int H_MIN_ZOOM = 44;
+    static final int H_MAX_ZOOM = 48;
+    static final int H_TILE_INDEX_OFFSET = 52;
+    static final int H_TILE_COUNT = 60;
+    static final int H_LOTS_OFFSET = 64;
+    static final int H_LOTS_LENGTH = 72;
+    static final int H_CHANGES_WATERMARK = 76;
+    static final int H_TOMBSTONES_WATERMARK = 84;
+    static final int H_BUILT_AT = 92;
+    static final int H_REGION_NAME = 100;
+    static final int H_TILE_SOURCE_NAME = 164;
+    static final int MAX_NAME_BYTES = 62;
+
+    static final int TILE_ENTRY_SIZE = 20;
+
+    // Lot record field offsets
+    static final int RECORD_SIZE = 64;
+    static final int GEOHASH_BYTES = 9;
+    static final int R_LATITUDE = 12;
+    static final int R_LONGITUDE = 20;
+    static final int R_HOURLY_RATE = 28;
+    static final int R_TOTAL_SPOTS = 36;
+    static final int R_AVAILABLE_SPOTS = 40;
+    static final int R_FLAGS = 44;
+    static final int R_SPACE_ID = 48;
+    static final int R_NAME = 52;
+    static final int R_ADDRESS = 56;
+    static final int R_OWNER_ID = 60;
+    static final int FLAG_ACTIVE = 1;
+    static final int NO_STRING = -1;
+
+    private static final double MAX_SEARCH_RADIUS_KM = 20000;
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final TileRegion region;
+    private final String tileSourceName;
+    private final long tileIndexOffset;
+    private final int tileCount;
+    private final long lotsOffset;
+    private final int lotsLength;
+    private final int lotCount;
+    private final int stringsOffset;
+    private final long changesWatermark;
+    private final long tombstonesWatermark;
+    private final long builtAt;
+
+    private RegionPack(File file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(H_MAGIC) != MAGIC) {
+            throw new IOException(file + " is not a region pack");
+        }
+        if (buffer.getInt(H_VERSION) != FORMAT_VERSION) {
+            throw new IOException(file + " has unsupported version " + buffer.getInt(H_VERSION));
+        }
+        if (buffer.getInt(H_CRC) != headerCrc(buffer)) {
+            throw new IOException(file + " has a damaged header");
+        }
+
+        // Offsets are read once, a later delta update only appends and cannot move them
+        region = new TileRegion(readName(buffer, H_REGION_NAME),
+                buffer.getDouble(H_SOUTH), buffer.getDouble(H_WEST),
+                buffer.getDouble(H_NORTH), buffer.getDouble(H_EAST),
+                buffer.getInt(H_MIN_ZOOM), buffer.getInt(H_MAX_ZOOM));
+        tileSourceName = readName(buffer, H_TILE_SOURCE_NAME);
+        tileIndexOffset = buffer.getLong(H_TILE_INDEX_OFFSET);
+        tileCount = buffer.getInt(H_TILE_COUNT);
+        lotsOffset = buffer.getLong(H_LOTS_OFFSET);
+        lotsLength = buffer.getInt(H_LOTS_LENGTH);
+        changesWatermark = buffer.getLong(H_CHANGES_WATERMARK);
+        tombstonesWatermark = buffer.getLong(H_TOMBSTONES_WATERMARK);
+        builtAt = buffer.getLong(H_BUILT_AT);
+        if (lotsOffset + lotsLength > buffer.capacity()
+                || tileIndexOffset + (long) tileCount * TILE_ENTRY_SIZE > lotsOffset) {
+            throw new IOException(file + " is truncated");
+        }
+        lotCount = buffer.getInt((int) lotsOffset);
+        stringsOffset = (int) lotsOffset + 4 + lotCount * RECORD_SIZE;
+    }
+
+    public static RegionPack open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            return new RegionPack(file, buffer);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public TileRegion getRegion() {
+        return region;
+    }
+
+    public String getTileSourceName() {
+        return tileSourceName;
+    }
+
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    public int getLotCount() {
+        return lotCount;
+    }
+
+    public long getChangesWatermark() {
+        return changesWatermark;
+    }
+
+    public long getTombstonesWatermark() {
+        return tombstonesWatermark;
+    }
+
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    // End of the tile index, everything after it is lots sections
+    long getTilesEnd() {
+        return tileIndexOffset + (long) tileCount * TILE_ENTRY_SIZE;
+    }
+
+    int getLotsLength() {
+        return lotsLength;
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        return region.contains(latitude, longitude);
+    }
+
+    // Tile bytes as a read-only view into the mapping, or null if the pack does not have it
+    public ByteBuffer getTile(int zoom, int x, int y) {
+        long key = tileKey(zoom, x, y);
+        int low = 0;
+        int high = tileCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = (int) (tileIndexOffset + (long) mid * TILE_ENTRY_SIZE);
+            long midKey = buffer.getLong(entry);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                ByteBuffer tile = buffer.duplicate();
+                int offset = (int) buffer.getLong(entry + 8);
+                tile.limit(offset + buffer.getInt(entry + 16)).position(offset);
+                return tile.slice().asReadOnlyBuffer();
+            }
+        }
+        return null;
+    }
+
+    public List<ParkingSpace> getAllParkingSpaces() {
+        List<ParkingSpace> results = new ArrayList<>(lotCount);
+        for (int i = 0; i < lotCount; i++) {
+            results.add(readParkingSpace(i));
+        }
+        return results;
+    }
+
+    // All lots within radiusInKm of the given point
+    public List<ParkingSpace> queryRadius(double latitude, double longitude, double radiusInKm) {
+        List<ParkingSpace> results = new ArrayList<>();
+        for (String prefix : GeoHashUtils.coveringPrefixes(latitude, longitude, radiusInKm)) {
+            int end = lowerBound(GeoHashUtils.rangeEnd(prefix));
+            for (int i = lowerBound(prefix); i < end; i++) {
+                if (GeoHashUtils.distanceKm(latitude, longitude, latitude(i), longitude(i)) <= radiusInKm) {
+                    results.add(readParkingSpace(i));
+                }
+            }
+        }
+        return results;
+    }
+
+    // All lots inside the box, bounds inclusive
+    public List<ParkingSpace> queryBoundingBox(double minLat, double minLng, double maxLat, double maxLng) {
+        double centerLat = (minLat + maxLat) / 2;
+        double centerLng = (minLng + maxLng) / 2;
+        double radius = GeoHashUtils.distanceKm(centerLat, centerLng, maxLat, maxLng);
+        List<ParkingSpace> results = new ArrayList<>();
+        for (String prefix : GeoHashUtils.coveringPrefixes(centerLat, centerLng, radius)) {
+            int end = lowerBound(GeoHashUtils.rangeEnd(prefix));
+            for (int i = lowerBound(prefix); i < end; i++) {
+                double lat = latitude(i);
+                double lng = longitude(i);
+                if (lat >= minLat && lat <= maxLat && lng >= minLng && lng <= maxLng) {
+                    results.add(readParkingSpace(i));
+                }
+            }
+        }
+        return results;
+    }
+
+    // The count lots closest to the given point, nearest first. Widens a radius search until
+    // it holds enough lots, the nearest ones are then all inside it.
+    public List<ParkingSpace> queryNearest(double latitude, double longitude, int count) {
+        if (count <= 0 || lotCount == 0) {
+            return new ArrayList<>();
+        }
+        List<ParkingSpace> candidates;
+        double radius = 0.5;
+        do {
+            candidates = queryRadius(latitude, longitude, radius);
+            radius *= 2;
+        } while (candidates.size() < count && radius < MAX_SEARCH_RADIUS_KM);
+
+        Collections.sort(candidates, Comparator.comparingDouble(space ->
+                GeoHashUtils.distanceKm(latitude, longitude, space.getLatitude(), space.getLongitude())));
+        return new ArrayList<>(candidates.subList(0, Math.min(count, candidates.size())));
+    }
+
+    // Case-insensitive match on name or address, same as the online search
+    public List<ParkingSpace> search(String query) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        List<ParkingSpace> results = new ArrayList<>();
+        for (int i = 0; i < lotCount; i++) {
+            int record = recordOffset(i);
+            if (containsIgnoreCase(readString(buffer.getInt(record + R_NAME)), needle)
+                    || containsIgnoreCase(readString(buffer.getInt(record + R_ADDRESS)), needle)) {
+                results.add(readParkingSpace(i));
+            }
+        }
+        return results;
+    }
+
+    public ParkingSpace getParkingSpace(String spaceId) {
+        for (int i = 0; i < lotCount; i++) {
+            if (spaceId.equals(readString(buffer.getInt(recordOffset(i) + R_SPACE_ID)))) {
+                return readParkingSpace(i);
+            }
+        }
+        return null;
+    }
+
+    private static boolean containsIgnoreCase(String text, String lowerCaseNeedle) {
+        return text != null && text.toLowerCase(Locale.ROOT).contains(lowerCaseNeedle);
+    }
+
+    private int recordOffset(int index) {
+        return (int) lotsOffset + 4 + index * RECORD_SIZE;
+    }
+
+    private double latitude(int index) {
+        return buffer.getDouble(recordOffset(index) + R_LATITUDE);
+    }
+
+    private double longitude(int index) {
+        return buffer.getDouble(recordOffset(index) + R_LONGITUDE);
+    }
+
+    // First record whose geohash is not less than key
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = lotCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareGeohash(recordOffset(mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compareGeohash(int record, String key) {
+        for (int i = 0; i < key.length(); i++) {
+            int c = i < GEOHASH_BYTES ? buffer.get(record + i) : 0;
+            if (c == 0) {
+                // Stored hash is a proper prefix of the key
+                return -1;
+            }
+            if (c != key.charAt(i)) {
+                return c - key.charAt(i);
+            }
+        }
+        return 0;
+    }
+
+    private ParkingSpace readParkingSpace(int index) {
+        int record = recordOffset(index);
+        ParkingSpace space = new ParkingSpace();
+        space.setSpaceId(readString(buffer.getInt(record + R_SPACE_ID)));
+        space.setName(readString(buffer.getInt(record + R_NAME)));
+        space.setAddress(readString(buffer.getInt(record + R_ADDRESS)));
+        space.setOwnerId(readString(buffer.getInt(record + R_OWNER_ID)));
+        space.setLatitude(buffer.getDouble(record + R_LATITUDE));
+        space.setLongitude(buffer.getDouble(record + R_LONGITUDE));
+        space.setHourlyRate(buffer.getDouble(record + R_HOURLY_RATE));
+        space.setTotalSpots(buffer.getInt(record + R_TOTAL_SPOTS));
+        space.setAvailableSpots(buffer.getInt(record + R_AVAILABLE_SPOTS));
+        space.setActive((buffer.getInt(record + R_FLAGS) & FLAG_ACTIVE) != 0);
+        space.updateGeohash();
+        return space;
+    }
+
+    // Strings are an unsigned short byte length followed by UTF-8
+    private String readString(int ref) {
+        if (ref == NO_STRING) {
+            return null;
+        }
+        int offset = stringsOffset + ref;
+        byte[] bytes = new byte[buffer.getShort(offset) & 0xFFFF];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 2);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static long tileKey(int zoom, int x, int y) {
+        return ((long) zoom << 58) | ((long) x << 29) | y;
+    }
+
+    static int headerCrc(ByteBuffer header) {
+        CRC32 crc = new CRC32();
+        for (int i = H_CRC + 4; i < HEADER_SIZE; i++) {
+            crc.update(header.get(i));
+        }
+        return (int) crc.getValue();
+    }
+
+    private static String readName(ByteBuffer header, int offset) {
+        byte[] bytes = new byte[header.getShort(offset)];
+        ByteBuffer view = header.duplicate();
+        view.position(offset + 2);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
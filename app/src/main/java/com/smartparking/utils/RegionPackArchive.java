@@ -0,0 +1,67 @@
+package com.smartparking.utils;
+
+import android.util.Log;
+
+import org.osmdroid.tileprovider.modules.IArchiveFile;
+import org.osmdroid.tileprovider.tilesource.ITileSource;
+import org.osmdroid.util.MapTileIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+
+// Lets osmdroid's archive provider serve tiles straight out of region packs in its base
+// path. Registered for the .parkpack extension in MapTiles.configure.
+public class RegionPackArchive implements IArchiveFile {
+    private static final String TAG = "RegionPackArchive";
+
+    private RegionPack pack;
+    private boolean ignoreTileSource;
+
+    @Override
+    public void init(File file) throws Exception {
+        pack = RegionPack.open(file);
+    }
+
+    @Override
+    public InputStream getInputStream(ITileSource tileSource, long mapTileIndex) {
+        RegionPack current = pack;
+        if (current == null || (!ignoreTileSource && !tileSource.name().equals(current.getTileSourceName()))) {
+            return null;
+        }
+        ByteBuffer tile = current.getTile(MapTileIndex.getZoom(mapTileIndex),
+                MapTileIndex.getX(mapTileIndex), MapTileIndex.getY(mapTileIndex));
+        if (tile == null) {
+            return null;
+        }
+        byte[] bytes = new byte[tile.remaining()];
+        try {
+            tile.get(bytes);
+        } catch (RuntimeException e) {
+            // Reading the mapping fails if the file was truncated underneath it
+            Log.w(TAG, "Error reading tile from " + current.getFile(), e);
+            return null;
+        }
+        return new ByteArrayInputStream(bytes);
+    }
+
+    @Override
+    public void close() {
+        // Dropping the reference releases the mapping
+        pack = null;
+    }
+
+    @Override
+    public Set<String> getTileSources() {
+        RegionPack current = pack;
+        return current != null ? Collections.singleton(current.getTileSourceName()) : Collections.emptySet();
+    }
+
+    @Override
+    public void setIgnoreTileSource(boolean ignoreTileSource) {
+        this.ignoreTileSource = ignoreTileSource;
+    }
+}
@@ -0,0 +1,251 @@
+package com.smartparking.utils;
+
+import com.smartparking.models.ParkingSpace;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.smartparking.utils.RegionPack.*;
+
+// Builds and updates region pack files, see RegionPack for the layout.
+//
+// A full build writes a temporary file and renames it over the pack, so open readers keep
+// their old mapping. A delta update appends a new lots section and then rewrites the header,
+// which is small enough to land in one write; a header whose checksum does not match is
+// treated as no pack at all. Superseded lots sections are dropped by copying the tiles into
+// a fresh file once they outweigh the live one.
+public final class RegionPackWriter {
+
+    // Compact once stale lots sections are this many times the live one
+    private static final int COMPACT_RATIO = 4;
+    private static final long MIN_COMPACT_BYTES = 1024 * 1024;
+
+    public interface TileLookup {
+        // Encoded tile image, or null when there is none
+        byte[] getTile(int zoom, int x, int y) throws IOException;
+    }
+
+    private RegionPackWriter() {
+    }
+
+    public static void write(File file, TileRegion region, String tileSourceName, TileLookup tiles,
+                             Collection<ParkingSpace> lots, long changesWatermark, long tombstonesWatermark)
+            throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+             FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            channel.position(HEADER_SIZE);
+
+            // Tile data, then its index sorted by key
+            List<long[]> entries = new ArrayList<>();
+            IOException[] error = {null};
+            if (tiles != null) {
+                region.forEachTile((zoom, x, y) -> {
+                    try {
+                        byte[] tile = tiles.getTile(zoom, x, y);
+                        if (tile != null) {
+                            entries.add(new long[]{tileKey(zoom, x, y), channel.position(), tile.length});
+                            writeFully(channel, ByteBuffer.wrap(tile));
+                        }
+                        return true;
+                    } catch (IOException e) {
+                        error[0] = e;
+                        return false;
+                    }
+                });
+            }
+            if (error[0] != null) {
+                throw error[0];
+            }
+            entries.sort(Comparator.comparingLong(entry -> entry[0]));
+            long tileIndexOffset = channel.position();
+            ByteBuffer index = ByteBuffer.allocate(entries.size() * TILE_ENTRY_SIZE);
+            for (long[] entry : entries) {
+                index.putLong(entry[0]).putLong(entry[1]).putInt((int) entry[2]);
+            }
+            index.flip();
+            writeFully(channel, index);
+
+            long lotsOffset = channel.position();
+            ByteBuffer lotsSection = encodeLots(lots);
+            int lotsLength = lotsSection.remaining();
+            writeFully(channel, lotsSection);
+
+            ByteBuffer header = header(region, tileSourceName, tileIndexOffset, entries.size(),
+                    lotsOffset, lotsLength, changesWatermark, tombstonesWatermark);
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        rename(temp, file);
+    }
+
+    // Replace the lots of an existing pack, keeping its tiles
+    public static void updateLots(RegionPack pack, Collection<ParkingSpace> lots,
+                                  long changesWatermark, long tombstonesWatermark) throws IOException {
+        File file = pack.getFile();
+        ByteBuffer lotsSection = encodeLots(lots);
+        int lotsLength = lotsSection.remaining();
+        // Every lots section written since the last full build or compaction
+        long lotsBytes = file.length() - pack.getTilesEnd();
+        if (lotsBytes > Math.max(MIN_COMPACT_BYTES, (long) COMPACT_RATIO * lotsLength)) {
+            compact(pack, lotsSection, changesWatermark, tombstonesWatermark);
+            return;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            long lotsOffset = channel.size();
+            channel.position(lotsOffset);
+            writeFully(channel, lotsSection);
+            // The new section must be on disk before the header points at it
+            channel.force(true);
+            ByteBuffer header = header(pack.getRegion(), pack.getTileSourceName(), tileIndexOffset(pack),
+                    pack.getTileCount(), lotsOffset, lotsLength, changesWatermark, tombstonesWatermark);
+            channel.write(header, 0);
+            channel.force(true);
+        }
+    }
+
+    private static void compact(RegionPack pack, ByteBuffer lotsSection, long changesWatermark,
+                                long tombstonesWatermark) throws IOException {
+        File file = pack.getFile();
+        File temp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile source = new RandomAccessFile(file, "r");
+             FileChannel in = source.getChannel();
+             RandomAccessFile target = new RandomAccessFile(temp, "rw");
+             FileChannel out = target.getChannel()) {
+            out.truncate(0);
+            // Tile offsets are absolute and the header size is fixed, so tiles copy verbatim
+            long position = HEADER_SIZE;
+            while (position < pack.getTilesEnd()) {
+                position += in.transferTo(position, pack.getTilesEnd() - position, out.position(position));
+            }
+            long lotsOffset = pack.getTilesEnd();
+            int lotsLength = lotsSection.remaining();
+            out.position(lotsOffset);
+            writeFully(out, lotsSection);
+            ByteBuffer header = header(pack.getRegion(), pack.getTileSourceName(), tileIndexOffset(pack),
+                    pack.getTileCount(), lotsOffset, lotsLength, changesWatermark, tombstonesWatermark);
+            out.write(header, 0);
+            out.force(true);
+        }
+        rename(temp, file);
+    }
+
+    private static long tileIndexOffset(RegionPack pack) {
+        return pack.getTilesEnd() - (long) pack.getTileCount() * TILE_ENTRY_SIZE;
+    }
+
+    // Lot count, records sorted by geohash, then the strings they reference
+    static ByteBuffer encodeLots(Collection<ParkingSpace> lots) throws IOException {
+        List<ParkingSpace> sorted = new ArrayList<>(lots);
+        sorted.sort(Comparator.comparing(space -> GeoHashUtils.encode(space.getLatitude(), space.getLongitude())));
+
+        ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+        DataOutputStream strings = new DataOutputStream(stringBytes);
+        ByteBuffer records = ByteBuffer.allocate(4 + sorted.size() * RECORD_SIZE).order(ByteOrder.BIG_ENDIAN);
+        records.putInt(sorted.size());
+        for (ParkingSpace space : sorted) {
+            int record = records.position();
+            byte[] geohash = GeoHashUtils.encode(space.getLatitude(), space.getLongitude())
+                    .getBytes(StandardCharsets.US_ASCII);
+            records.put(geohash, 0, Math.min(GEOHASH_BYTES, geohash.length));
+            records.putDouble(record + R_LATITUDE, space.getLatitude());
+            records.putDouble(record + R_LONGITUDE, space.getLongitude());
+            records.putDouble(record + R_HOURLY_RATE, space.getHourlyRate());
+            records.putInt(record + R_TOTAL_SPOTS, space.getTotalSpots());
+            records.putInt(record + R_AVAILABLE_SPOTS, space.getAvailableSpots());
+            records.putInt(record + R_FLAGS, space.isActive() ? FLAG_ACTIVE : 0);
+            records.putInt(record + R_SPACE_ID, writeString(strings, space.getSpaceId()));
+            records.putInt(record + R_NAME, writeString(strings, space.getName()));
+            records.putInt(record + R_ADDRESS, writeString(strings, space.getAddress()));
+            records.putInt(record + R_OWNER_ID, writeString(strings, space.getOwnerId()));
+            records.position(record + RECORD_SIZE);
+        }
+        strings.flush();
+
+        ByteBuffer section = ByteBuffer.allocate(records.capacity() + stringBytes.size());
+        section.put(records.array()).put(stringBytes.toByteArray());
+        section.flip();
+        return section;
+    }
+
+    private static int writeString(DataOutputStream strings, String value) throws IOException {
+        if (value == null) {
+            return NO_STRING;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("String too long for a region pack: " + bytes.length + " bytes");
+        }
+        int ref = strings.size();
+        strings.writeShort(bytes.length);
+        strings.write(bytes);
+        return ref;
+    }
+
+    private static ByteBuffer header(TileRegion region, String tileSourceName, long tileIndexOffset, int tileCount,
+                                     long lotsOffset, int lotsLength, long changesWatermark,
+                                     long tombstonesWatermark) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        header.putInt(H_MAGIC, MAGIC);
+        header.putInt(H_VERSION, FORMAT_VERSION);
+        header.putDouble(H_SOUTH, region.getSouth());
+        header.putDouble(H_WEST, region.getWest());
+        header.putDouble(H_NORTH, region.getNorth());
+        header.putDouble(H_EAST, region.getEast());
+        header.putInt(H_MIN_ZOOM, region.getMinZoom());
+        header.putInt(H_MAX_ZOOM, region.getMaxZoom());
+        header.putLong(H_TILE_INDEX_OFFSET, tileIndexOffset);
+        header.putInt(H_TILE_COUNT, tileCount);
+        header.putLong(H_LOTS_OFFSET, lotsOffset);
+        header.putInt(H_LOTS_LENGTH, lotsLength);
+        header.putLong(H_CHANGES_WATERMARK, changesWatermark);
+        header.putLong(H_TOMBSTONES_WATERMARK, tombstonesWatermark);
+        header.putLong(H_BUILT_AT, System.currentTimeMillis());
+        putName(header, H_REGION_NAME, region.getName());
+        putName(header, H_TILE_SOURCE_NAME, tileSourceName != null ? tileSourceName : "");
+        header.putInt(H_CRC, headerCrc(header));
+        return header;
+    }
+
+    private static void putName(ByteBuffer header, int offset, String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_NAME_BYTES) {
+            throw new IOException("Name too long for a region pack header: " + name);
+        }
+        header.putShort(offset, (short) bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            header.put(offset + 2 + i, bytes[i]);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    private static void rename(File from, File to) throws IOException {
+        if (!from.renameTo(to)) {
+            from.delete();
+            throw new IOException("Cannot replace " + to);
+        }
+    }
+}
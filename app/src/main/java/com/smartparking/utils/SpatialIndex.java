@@ -0,0 +1,334 @@
+package com.smartparking.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// In-memory 2-d tree over latitude/longitude keyed by id. Supports incremental
+// insert/update/remove and answers radius, bounding box and k-nearest queries without
+// scanning every entry. Removed entries are tombstoned and the tree is rebuilt once
+// tombstones or unbalanced inserts pile up, which keeps the depth logarithmic.
+public class SpatialIndex<T> {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private Node<T> root;
+    private final Map<String, Node<T>> nodesById = new HashMap<>();
+    private int deletedCount = 0;
+    private int insertsSinceRebuild = 0;
+    private int sizeAtRebuild = 0;
+
+    public synchronized int size() {
+        return nodesById.size();
+    }
+
+    public synchronized void clear() {
+        root = null;
+        nodesById.clear();
+        deletedCount = 0;
+        insertsSinceRebuild = 0;
+        sizeAtRebuild = 0;
+    }
+
+    // Replace the whole index content with a balanced tree built from the given entries
+    public synchronized void rebuild(List<Entry<T>> entries) {
+        clear();
+        for (Entry<T> entry : entries) {
+            nodesById.put(entry.id, new Node<>(entry.id, entry.latitude, entry.longitude, entry.value));
+        }
+        List<Node<T>> nodes = new ArrayList<>(nodesById.values());
+        root = build(nodes, 0, nodes.size(), 0);
+        sizeAtRebuild = nodes.size();
+    }
+
+    // Insert a new entry or update an existing one with the same id
+    public synchronized void put(String id, double latitude, double longitude, T value) {
+        Node<T> existing = nodesById.get(id);
+        if (existing != null) {
+            if (existing.latitude == latitude && existing.longitude == longitude) {
+                existing.value = value;
+                return;
+            }
+            markDeleted(existing);
+        }
+
+        Node<T> node = new Node<>(id, latitude, longitude, value);
+        nodesById.put(id, node);
+        if (root == null) {
+            root = node;
+        } else {
+            insert(root, node, 0);
+        }
+        insertsSinceRebuild++;
+        rebuildIfNeeded();
+    }
+
+    public synchronized void remove(String id) {
+        Node<T> existing = nodesById.remove(id);
+        if (existing != null) {
+            existing.deleted = true;
+            deletedCount++;
+            rebuildIfNeeded();
+        }
+    }
+
+    public synchronized T get(String id) {
+        Node<T> node = nodesById.get(id);
+        return node != null ? node.value : null;
+    }
+
+    // All entries within radiusInKm (great-circle distance) of the given point
+    public synchronized List<T> queryRadius(double latitude, double longitude, double radiusInKm) {
+        List<T> results = new ArrayList<>();
+        queryRadius(root, latitude, longitude, radiusInKm, results);
+        return results;
+    }
+
+    // All entries inside the box, bounds inclusive. The box must not cross the antimeridian.
+    public synchronized List<T> queryBoundingBox(double minLat, double minLng, double maxLat, double maxLng) {
+        List<T> results = new ArrayList<>();
+        queryBox(root, minLat, minLng, maxLat, maxLng, results);
+        return results;
+    }
+
+    // The k entries closest to the given point, nearest first
+    public synchronized List<T> queryNearest(double latitude, double longitude, int k) {
+        if (k <= 0 || root == null) {
+            return new ArrayList<>();
+        }
+
+        // Max-heap on distance holding the current best k candidates
+        PriorityQueue<Candidate<T>> best = new PriorityQueue<>(k,
+                (a, b) -> Double.compare(b.distance, a.distance));
+        // Min-heap on lower-bound distance of subtrees still to visit
+        PriorityQueue<Candidate<T>> frontier = new PriorityQueue<>(
+                Comparator.comparingDouble(c -> c.distance));
+        frontier.add(new Candidate<>(root, lowerBoundKm(root, latitude, longitude)));
+
+        while (!frontier.isEmpty()) {
+            Candidate<T> next = frontier.poll();
+            if (best.size() == k && next.distance > best.peek().distance) {
+                break;
+            }
+
+            Node<T> node = next.node;
+            if (!node.deleted) {
+                double distance = distanceKm(latitude, longitude, node.latitude, node.longitude);
+                if (best.size() < k) {
+                    best.add(new Candidate<>(node, distance));
+                } else if (distance < best.peek().distance) {
+                    best.poll();
+                    best.add(new Candidate<>(node, distance));
+                }
+            }
+            if (node.left != null) {
+                frontier.add(new Candidate<>(node.left, lowerBoundKm(node.left, latitude, longitude)));
+            }
+            if (node.right != null) {
+                frontier.add(new Candidate<>(node.right, lowerBoundKm(node.right, latitude, longitude)));
+            }
+        }
+
+        List<Candidate<T>> sorted = new ArrayList<>(best);
+        Collections.sort(sorted, Comparator.comparingDouble(c -> c.distance));
+        List<T> results = new ArrayList<>(sorted.size());
+        for (Candidate<T> candidate : sorted) {
+            results.add(candidate.node.value);
+        }
+        return results;
+    }
+
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        return GeoHashUtils.distanceKm(lat1, lon1, lat2, lon2);
+    }
+
+    private void queryRadius(Node<T> node, double latitude, double longitude, double radiusInKm, List<T> results) {
+        if (node == null || lowerBoundKm(node, latitude, longitude) > radiusInKm) {
+            return;
+        }
+        if (!node.deleted && distanceKm(latitude, longitude, node.latitude, node.longitude) <= radiusInKm) {
+            results.add(node.value);
+        }
+        queryRadius(node.left, latitude, longitude, radiusInKm, results);
+        queryRadius(node.right, latitude, longitude, radiusInKm, results);
+    }
+
+    private void queryBox(Node<T> node, double minLat, double minLng, double maxLat, double maxLng, List<T> results) {
+        if (node == null
+                || node.maxLat < minLat || node.minLat > maxLat
+                || node.maxLng < minLng || node.minLng > maxLng) {
+            return;
+        }
+        if (!node.deleted
+                && node.latitude >= minLat && node.latitude <= maxLat
+                && node.longitude >= minLng && node.longitude <= maxLng) {
+            results.add(node.value);
+        }
+        queryBox(node.left, minLat, minLng, maxLat, maxLng, results);
+        queryBox(node.right, minLat, minLng, maxLat, maxLng, results);
+    }
+
+    private void insert(Node<T> parent, Node<T> node, int depth) {
+        while (true) {
+            parent.expand(node.latitude, node.longitude);
+            boolean goLeft = depth % 2 == 0
+                    ? node.latitude < parent.latitude
+                    : node.longitude < parent.longitude;
+            Node<T> child = goLeft ? parent.left : parent.right;
+            if (child == null) {
+                if (goLeft) {
+                    parent.left = node;
+                } else {
+                    parent.right = node;
+                }
+                return;
+            }
+            parent = child;
+            depth++;
+        }
+    }
+
+    private void markDeleted(Node<T> node) {
+        node.deleted = true;
+        deletedCount++;
+    }
+
+    private void rebuildIfNeeded() {
+        int live = nodesById.size();
+        if (deletedCount > live || insertsSinceRebuild > Math.max(16, sizeAtRebuild)) {
+            List<Node<T>> nodes = new ArrayList<>(nodesById.values());
+            for (Node<T> node : nodes) {
+                node.reset();
+            }
+            root = build(nodes, 0, nodes.size(), 0);
+            deletedCount = 0;
+            insertsSinceRebuild = 0;
+            sizeAtRebuild = live;
+        }
+    }
+
+    private Node<T> build(List<Node<T>> nodes, int from, int to, int depth) {
+        if (from >= to) {
+            return null;
+        }
+        Comparator<Node<T>> axis = depth % 2 == 0
+                ? Comparator.comparingDouble(n -> n.latitude)
+                : Comparator.comparingDouble(n -> n.longitude);
+        Collections.sort(nodes.subList(from, to), axis);
+
+        int mid = (from + to) >>> 1;
+        // Equal keys must go right to match the insert rule
+        while (mid > from && axis.compare(nodes.get(mid - 1), nodes.get(mid)) == 0) {
+            mid--;
+        }
+        Node<T> node = nodes.get(mid);
+        node.left = build(nodes, from, mid, depth + 1);
+        node.right = build(nodes, mid + 1, to, depth + 1);
+        if (node.left != null) {
+            node.expand(node.left);
+        }
+        if (node.right != null) {
+            node.expand(node.right);
+        }
+        return node;
+    }
+
+    // Smallest possible great-circle distance from the point to anything in the subtree box.
+    // Uses hav(d) = hav(dLat) + cos(lat1)cos(lat2)hav(dLng) with the cosines bounded by the
+    // highest latitude involved, so it never overestimates.
+    private static double lowerBoundKm(Node<?> node, double latitude, double longitude) {
+        double latGap = 0;
+        if (latitude < node.minLat) {
+            latGap = node.minLat - latitude;
+        } else if (latitude > node.maxLat) {
+            latGap = latitude - node.maxLat;
+        }
+        double lngGap = 0;
+        if (longitude < node.minLng) {
+            lngGap = node.minLng - longitude;
+        } else if (longitude > node.maxLng) {
+            lngGap = longitude - node.maxLng;
+        }
+        lngGap = Math.min(lngGap, 360 - lngGap);
+        if (latGap == 0 && lngGap == 0) {
+            return 0;
+        }
+
+        double maxAbsLat = Math.max(Math.abs(latitude),
+                Math.max(Math.abs(node.minLat), Math.abs(node.maxLat)));
+        double cosLat = Math.cos(Math.toRadians(Math.min(90, maxAbsLat)));
+        double sinHalfLat = Math.sin(Math.toRadians(latGap) / 2);
+        double sinHalfLng = Math.sin(Math.toRadians(lngGap) / 2);
+        double h = sinHalfLat * sinHalfLat + cosLat * cosLat * sinHalfLng * sinHalfLng;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(Math.min(1, h)));
+    }
+
+    public static class Entry<T> {
+        final String id;
+        final double latitude;
+        final double longitude;
+        final T value;
+
+        public Entry(String id, double latitude, double longitude, T value) {
+            this.id = id;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.value = value;
+        }
+    }
+
+    private static class Node<T> {
+        final String id;
+        final double latitude;
+        final double longitude;
+        T value;
+        boolean deleted;
+        Node<T> left;
+        Node<T> right;
+        // Bounding box of this node and its whole subtree
+        double minLat, maxLat, minLng, maxLng;
+
+        Node(String id, double latitude, double longitude, T value) {
+            this.id = id;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.value = value;
+            reset();
+        }
+
+        void reset() {
+            left = null;
+            right = null;
+            minLat = maxLat = latitude;
+            minLng = maxLng = longitude;
+        }
+
+        void expand(double lat, double lng) {
+            minLat = Math.min(minLat, lat);
+            maxLat = Math.max(maxLat, lat);
+            minLng = Math.min(minLng, lng);
+            maxLng = Math.max(maxLng, lng);
+        }
+
+        void expand(Node<T> child) {
+            minLat = Math.min(minLat, child.minLat);
+            maxLat = Math.max(maxLat, child.maxLat);
+            minLng = Math.min(minLng, child.minLng);
+            maxLng = Math.max(maxLng, child.maxLng);
+        }
+    }
+
+    private static class Candidate<T> {
+        final Node<T> node;
+        final double distance;
+
+        Candidate(Node<T> node, double distance) {
+            this.node = node;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.smartparking.utils;
+
+// A bounding box and zoom range of slippy-map tiles, e.g. an operating area to pre-seed.
+// Tile numbering follows the OSM scheme: x grows eastward, y grows southward.
+public class TileRegion {
+
+    // Web Mercator cuts off here
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    public interface TileVisitor {
+        // Return false to stop the walk
+        boolean visit(int zoom, int x, int y);
+    }
+
+    private final String name;
+    private final double south;
+    private final double west;
+    private final double north;
+    private final double east;
+    private final int minZoom;
+    private final int maxZoom;
+
+    public TileRegion(String name, double south, double west, double north, double east, int minZoom, int maxZoom) {
+        this.name = name;
+        this.south = south;
+        this.west = west;
+        this.north = north;
+        this.east = east;
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getSouth() {
+        return south;
+    }
+
+    public double getWest() {
+        return west;
+    }
+
+    public double getNorth() {
+        return north;
+    }
+
+    public double getEast() {
+        return east;
+    }
+
+    public int getMinZoom() {
+        return minZoom;
+    }
+
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        return latitude >= south && latitude <= north && longitude >= west && longitude <= east;
+    }
+
+    public long tileCount() {
+        long count = 0;
+        for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+            long columns = tileX(east, zoom) - tileX(west, zoom) + 1;
+            long rows = tileY(south, zoom) - tileY(north, zoom) + 1;
+            count += columns * rows;
+        }
+        return count;
+    }
+
+    // Zoom by zoom, row by row, so neighbouring tiles are fetched together
+    public void forEachTile(TileVisitor visitor) {
+        for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+            int minX = tileX(west, zoom);
+            int maxX = tileX(east, zoom);
+            int minY = tileY(north, zoom);
+            int maxY = tileY(south, zoom);
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    if (!visitor.visit(zoom, x, y)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    public static int tileX(double longitude, int zoom) {
+        int tiles = 1 << zoom;
+        int x = (int) Math.floor((longitude + 180) / 360 * tiles);
+        return Math.max(0, Math.min(tiles - 1, x));
+    }
+
+    public static int tileY(double latitude, int zoom) {
+        int tiles = 1 << zoom;
+        double lat = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude)));
+        double mercator = Math.log(Math.tan(lat) + 1 / Math.cos(lat));
+        int y = (int) Math.floor((1 - mercator / Math.PI) / 2 * tiles);
+        return Math.max(0, Math.min(tiles - 1, y));
+    }
+}
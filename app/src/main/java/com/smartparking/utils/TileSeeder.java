@@ -0,0 +1,132 @@
+package com.smartparking.utils;
+
+import android.util.Log;
+
+import org.osmdroid.tileprovider.modules.SqliteArchiveTileWriter;
+import org.osmdroid.tileprovider.tilesource.OnlineTileSourceBase;
+import org.osmdroid.util.MapTileIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.function.BooleanSupplier;
+
+// Downloads every tile of a region into a SQLite archive that osmdroid serves offline.
+// Tiles already in the archive are skipped, so an interrupted run resumes where it stopped.
+// Blocking, run it off the main thread.
+public class TileSeeder {
+    private static final String TAG = "TileSeeder";
+
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 15_000;
+    // This many failures in a row means the server or network is gone, try again later
+    private static final int MAX_CONSECUTIVE_FAILURES = 20;
+
+    public static class Result {
+        public int downloaded;
+        public int skipped;
+        public int failed;
+
+        public boolean isComplete() {
+            return failed == 0;
+        }
+
+        @Override
+        public String toString() {
+            return "downloaded=" + downloaded + " skipped=" + skipped + " failed=" + failed;
+        }
+    }
+
+    private final OnlineTileSourceBase tileSource;
+    private final File archive;
+    private final String userAgent;
+
+    public TileSeeder(OnlineTileSourceBase tileSource, File archive, String userAgent) {
+        this.tileSource = tileSource;
+        this.archive = archive;
+        this.userAgent = userAgent;
+    }
+
+    public Result seed(TileRegion region, BooleanSupplier stopped) throws IOException {
+        if (!tileSource.getTileSourcePolicy().acceptsBulkDownload()) {
+            throw new IOException(tileSource.name() + " does not allow bulk downloads");
+        }
+        File parent = archive.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+
+        SqliteArchiveTileWriter writer;
+        try {
+            writer = new SqliteArchiveTileWriter(archive.getAbsolutePath());
+        } catch (Exception e) {
+            throw new IOException("Cannot open tile archive " + archive, e);
+        }
+
+        Result result = new Result();
+        int[] consecutiveFailures = {0};
+        try (Metrics.Span ignored = Metrics.begin("tiles.seed." + region.getName())) {
+            region.forEachTile((zoom, x, y) -> {
+                if (stopped.getAsBoolean()) {
+                    return false;
+                }
+                long index = MapTileIndex.getTileIndex(zoom, x, y);
+                if (writer.exists(tileSource, index)) {
+                    result.skipped++;
+                    return true;
+                }
+                byte[] tile = download(tileSource.getTileURLString(index));
+                if (tile != null && writer.saveFile(tileSource, index, new ByteArrayInputStream(tile), null)) {
+                    result.downloaded++;
+                    consecutiveFailures[0] = 0;
+                } else {
+                    result.failed++;
+                    consecutiveFailures[0]++;
+                }
+                return consecutiveFailures[0] < MAX_CONSECUTIVE_FAILURES;
+            });
+        } finally {
+            writer.onDetach();
+        }
+
+        Metrics.count("tiles.seed.downloaded", result.downloaded);
+        Metrics.count("tiles.seed.failed", result.failed);
+        Log.d(TAG, "Seeded " + region.getName() + " of " + region.tileCount() + " tiles: " + result);
+        return result;
+    }
+
+    // Null on any failure, the tile counts as failed and is retried on the next run
+    private byte[] download(String url) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setRequestProperty("User-Agent", userAgent);
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                Log.w(TAG, "HTTP " + connection.getResponseCode() + " for " + url);
+                return null;
+            }
+            try (InputStream in = connection.getInputStream()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                return out.toByteArray();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Error downloading " + url, e);
+            return null;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+}
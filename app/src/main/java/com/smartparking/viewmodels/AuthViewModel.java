@@ -8,6 +8,7 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 
 import com.google.firebase.auth.FirebaseUser;
+import com.smartparking.ParkingApp;
 import com.smartparking.models.User;
 import com.smartparking.repositories.FirebaseRepository;
 import com.smartparking.repositories.RoomRepository;
@@ -19,7 +20,7 @@ public class AuthViewModel extends AndroidViewModel {
     public AuthViewModel(@NonNull Application application) {
         super(application);
         firebaseRepository = new FirebaseRepository(application);
-        roomRepository = new RoomRepository(application);
+        roomRepository = ParkingApp.from(application).getRoomRepository();
     }
 
     public void register(String email, String password, String name, String phoneNumber) {
@@ -8,16 +8,26 @@ import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
+import androidx.lifecycle.Transformations;
+import androidx.lifecycle.ViewModelKt;
+import androidx.paging.PagingData;
+import androidx.paging.PagingDataTransforms;
+import androidx.paging.PagingLiveData;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.smartparking.ParkingApp;
+import com.smartparking.adapters.BookingListItem;
 import com.smartparking.models.Booking;
+import com.smartparking.models.BookingWithParking;
 import com.smartparking.models.ParkingSpace;
 import com.smartparking.repositories.BookingRepository;
 import com.smartparking.repositories.ParkingRepository;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 public class BookingViewModel extends AndroidViewModel {
 
@@ -25,15 +35,20 @@ public class BookingViewModel extends AndroidViewModel {
 
     private final BookingRepository bookingRepository;
     private final ParkingRepository parkingRepository;
+    private final Executor computeExecutor;
     private final String userId;
 
     private final MutableLiveData<Boolean> bookingInProgress = new MutableLiveData<>(false);
     private final MutableLiveData<String> bookingError = new MutableLiveData<>();
 
+    private LiveData<PagingData<BookingListItem>> activeBookingsPaged;
+    private LiveData<PagingData<BookingListItem>> pastBookingsPaged;
+
     public BookingViewModel(@NonNull Application application) {
         super(application);
-        bookingRepository = new BookingRepository(application);
-        parkingRepository = new ParkingRepository(application);
+        bookingRepository = ParkingApp.from(application).getBookingRepository();
+        parkingRepository = ParkingApp.from(application).getParkingRepository();
+        computeExecutor = ParkingApp.from(application).getAppExecutors().compute();
 
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
         userId = currentUser != null ? currentUser.getUid() : "";
@@ -66,10 +81,36 @@ public class BookingViewModel extends AndroidViewModel {
         return bookingRepository.getPastBookingsForUser(userId);
     }
 
+    // Cached in the ViewModel so tab switches and rotation reuse the loaded pages
+    public LiveData<PagingData<BookingListItem>> getActiveBookingsPaged() {
+        if (activeBookingsPaged == null) {
+            activeBookingsPaged = toListItems(bookingRepository.getActiveBookingsPaged(userId));
+        }
+        return activeBookingsPaged;
+    }
+
+    public LiveData<PagingData<BookingListItem>> getPastBookingsPaged() {
+        if (pastBookingsPaged == null) {
+            pastBookingsPaged = toListItems(bookingRepository.getPastBookingsPaged(userId));
+        }
+        return pastBookingsPaged;
+    }
+
+    // Rows are formatted on the compute pool as pages load, not while binding
+    private LiveData<PagingData<BookingListItem>> toListItems(LiveData<PagingData<BookingWithParking>> pages) {
+        LiveData<PagingData<BookingListItem>> items = Transformations.map(pages, pagingData ->
+                PagingDataTransforms.map(pagingData, computeExecutor, BookingListItem::from));
+        return PagingLiveData.cachedIn(items, ViewModelKt.getViewModelScope(this));
+    }
+
     public LiveData<Booking> getBookingById(String bookingId) {
         return bookingRepository.getBookingById(bookingId);
     }
 
+    public LiveData<BookingWithParking> getBookingWithParkingById(String bookingId) {
+        return bookingRepository.getBookingWithParkingById(bookingId);
+    }
+
     public LiveData<Boolean> getBookingInProgress() {
         return bookingInProgress;
     }
@@ -93,34 +134,45 @@ public class BookingViewModel extends AndroidViewModel {
             // For mock data, create a booking directly
             createMockBooking(parkingSpaceId, vehicleId, startTime, endTime);
         } else {
-            // For real data, get parking space details first
-            parkingRepository.getParkingSpaceById(parkingSpaceId).observeForever(parkingSpace -> {
-                if (parkingSpace != null) {
-                    // Create booking object
-                    Booking booking = bookingRepository.createBookingObject(
-                            userId,
-                            parkingSpaceId,
-                            vehicleId,
-                            startTime,
-                            endTime,
-                            parkingSpace.getHourlyRate()
-                    );
-
-                    // Create booking in repository
-                    bookingRepository.createBooking(booking, parkingSpace).observeForever(success -> {
-                        bookingInProgress.setValue(false);
-                        if (!success) {
-                            bookingError.setValue("Failed to create booking");
-                        }
-                    });
-                } else {
-                    bookingInProgress.setValue(false);
-                    bookingError.setValue("Parking space not found");
+            // For real data, get parking space details first. Only the first value is used:
+            // createBooking writes the space back, which would emit it again and book twice.
+            LiveData<ParkingSpace> source = parkingRepository.getParkingSpaceById(parkingSpaceId);
+            source.observeForever(new Observer<ParkingSpace>() {
+                @Override
+                public void onChanged(ParkingSpace parkingSpace) {
+                    source.removeObserver(this);
+                    onParkingSpaceLoaded(parkingSpace, parkingSpaceId, vehicleId, startTime, endTime);
                 }
             });
         }
     }
 
+    private void onParkingSpaceLoaded(ParkingSpace parkingSpace, String parkingSpaceId, String vehicleId,
+                                      long startTime, long endTime) {
+        if (parkingSpace != null) {
+            // Create booking object
+            Booking booking = bookingRepository.createBookingObject(
+                    userId,
+                    parkingSpaceId,
+                    vehicleId,
+                    startTime,
+                    endTime,
+                    parkingSpace.getHourlyRate()
+            );
+
+            // Create booking in repository
+            bookingRepository.createBooking(booking, parkingSpace).observeForever(success -> {
+                bookingInProgress.setValue(false);
+                if (!success) {
+                    bookingError.setValue("Failed to create booking");
+                }
+            });
+        } else {
+            bookingInProgress.setValue(false);
+            bookingError.setValue("Parking space not found");
+        }
+    }
+
     private void createMockBooking(String parkingSpaceId, String vehicleId, long startTime, long endTime) {
         try {
             // Create a default mock space with reasonable values
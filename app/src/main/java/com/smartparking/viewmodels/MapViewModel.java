@@ -7,29 +7,111 @@ import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
 
+import com.smartparking.ParkingApp;
 import com.smartparking.models.ParkingSpace;
+import com.smartparking.repositories.AvailabilityStream;
+import com.smartparking.repositories.ParkingPrefetcher;
 import com.smartparking.repositories.ParkingRepository;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 public class MapViewModel extends AndroidViewModel {
 
     private final ParkingRepository parkingRepository;
+    private final AvailabilityStream availabilityStream;
+    private final ParkingPrefetcher prefetcher;
+    private final Executor ioExecutor;
     private final MutableLiveData<Double> userLatitude = new MutableLiveData<>();
     private final MutableLiveData<Double> userLongitude = new MutableLiveData<>();
     private final MutableLiveData<Double> searchRadius = new MutableLiveData<>(50.0); // Default 5km radius
+    private final MutableLiveData<List<ParkingSpace>> mapParkingSpaces = new MutableLiveData<>();
 
     public MapViewModel(@NonNull Application application) {
         super(application);
-        parkingRepository = new ParkingRepository(application);
+        parkingRepository = ParkingApp.from(application).getParkingRepository();
         parkingRepository.addMockParkingSpaces();
+        availabilityStream = new AvailabilityStream(parkingRepository);
+        ioExecutor = ParkingApp.from(application).getAppExecutors().io();
+        prefetcher = new ParkingPrefetcher(application, parkingRepository, ioExecutor, ParkingPrefetcher.DEFAULT_COUNT);
+    }
+
+    // Live availability for the visible map region, coalesced to a few updates per second
+    public LiveData<AvailabilityStream.AvailabilityUpdate> getAvailabilityUpdates() {
+        return availabilityStream.getUpdates();
+    }
+
+    // Lots for the map markers: the visible area from the cached spatial index (the region
+    // packs until Room has lots), topped up by the nearby query around the user
+    public LiveData<List<ParkingSpace>> getMapParkingSpaces() {
+        return mapParkingSpaces;
+    }
+
+    // west > east when the area crosses the antimeridian
+    public void loadParkingSpacesInBounds(double south, double west, double north, double east) {
+        ioExecutor.execute(() -> {
+            List<ParkingSpace> spaces;
+            if (west <= east) {
+                spaces = getParkingSpacesInBounds(south, west, north, east);
+            } else {
+                spaces = new ArrayList<>(getParkingSpacesInBounds(south, west, north, 180));
+                spaces.addAll(getParkingSpacesInBounds(south, -180, north, east));
+            }
+            mapParkingSpaces.postValue(spaces);
+        });
+    }
+
+    // Asks Firestore (or the region packs offline) for the lots around the user and merges
+    // them into the map lots
+    public void loadNearbyParkingSpaces() {
+        if (userLatitude.getValue() == null || userLongitude.getValue() == null) {
+            return;
+        }
+        LiveData<List<ParkingSpace>> nearby = getNearbyParkingSpaces();
+        nearby.observeForever(new Observer<List<ParkingSpace>>() {
+            @Override
+            public void onChanged(List<ParkingSpace> parkingSpaces) {
+                nearby.removeObserver(this);
+                if (parkingSpaces == null || parkingSpaces.isEmpty()) {
+                    return;
+                }
+                Map<String, ParkingSpace> merged = new LinkedHashMap<>();
+                List<ParkingSpace> current = mapParkingSpaces.getValue();
+                if (current != null) {
+                    for (ParkingSpace space : current) {
+                        merged.put(space.getSpaceId(), space);
+                    }
+                }
+                for (ParkingSpace space : parkingSpaces) {
+                    merged.put(space.getSpaceId(), space);
+                }
+                mapParkingSpaces.setValue(new ArrayList<>(merged.values()));
+            }
+        });
+    }
+
+    public void setVisibleRegion(double latitude, double longitude, double radiusInKm) {
+        availabilityStream.setRegion(latitude, longitude, radiusInKm);
+        prefetcher.setViewportCenter(latitude, longitude);
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        availabilityStream.stop();
+        prefetcher.stop();
     }
 
     public void setUserLocation(double latitude, double longitude) {
         userLatitude.setValue(latitude);
         userLongitude.setValue(longitude);
+        prefetcher.setUserLocation(latitude, longitude);
     }
 
     public void addParkingSpace(ParkingSpace parkingSpace) {
@@ -64,6 +146,34 @@ public class MapViewModel extends AndroidViewModel {
         return parkingRepository.getNearbyParkingSpaces(lat, lng, radius);
     }
 
+    // Served from the in-memory spatial index over cached parking spaces, no network round trip
+    public List<ParkingSpace> getCachedNearbyParkingSpaces() {
+        Double lat = userLatitude.getValue();
+        Double lng = userLongitude.getValue();
+        Double radius = searchRadius.getValue();
+
+        if (lat == null || lng == null || radius == null) {
+            return new ArrayList<>();
+        }
+
+        return parkingRepository.getCachedParkingSpacesWithinRadius(lat, lng, radius);
+    }
+
+    public List<ParkingSpace> getNearestParkingSpaces(int count) {
+        Double lat = userLatitude.getValue();
+        Double lng = userLongitude.getValue();
+
+        if (lat == null || lng == null) {
+            return new ArrayList<>();
+        }
+
+        return parkingRepository.getNearestCachedParkingSpaces(lat, lng, count);
+    }
+
+    public List<ParkingSpace> getParkingSpacesInBounds(double minLat, double minLng, double maxLat, double maxLng) {
+        return parkingRepository.getCachedParkingSpacesInBounds(minLat, minLng, maxLat, maxLng);
+    }
+
     public LiveData<List<ParkingSpace>> getAllParkingSpaces() {
         return parkingRepository.getAllParkingSpaces();
     }
@@ -83,21 +193,41 @@ public class MapViewModel extends AndroidViewModel {
     public LiveData<List<ParkingSpace>> searchParkingSpaces(String query) {
         MutableLiveData<List<ParkingSpace>> searchResultsLiveData = new MutableLiveData<>();
 
-        getAllParkingSpaces().observeForever(parkingSpaces -> {
-            if (parkingSpaces != null) {
-                List<ParkingSpace> filteredSpaces = new ArrayList<>();
-
-                for (ParkingSpace space : parkingSpaces) {
-                    if (space.getName().toLowerCase().contains(query.toLowerCase()) ||
-                            space.getAddress().toLowerCase().contains(query.toLowerCase())) {
-                        filteredSpaces.add(space);
-                    }
+        // One answer per search, so stop observing Room once it has delivered
+        LiveData<List<ParkingSpace>> allSpaces = getAllParkingSpaces();
+        allSpaces.observeForever(new Observer<List<ParkingSpace>>() {
+            @Override
+            public void onChanged(List<ParkingSpace> parkingSpaces) {
+                if (parkingSpaces == null) {
+                    return;
+                }
+                allSpaces.removeObserver(this);
+                if (parkingSpaces.isEmpty()) {
+                    // Nothing synced yet, search the offline region packs instead
+                    ioExecutor.execute(() -> searchResultsLiveData.postValue(
+                            parkingRepository.searchOfflineParkingSpaces(query)));
+                } else {
+                    searchResultsLiveData.setValue(filterParkingSpaces(parkingSpaces, query));
                 }
-
-                searchResultsLiveData.setValue(filteredSpaces);
             }
         });
 
         return searchResultsLiveData;
     }
+
+    // Case-insensitive match on name or address. The query is lowercased once, not per row.
+    public static List<ParkingSpace> filterParkingSpaces(List<ParkingSpace> parkingSpaces, String query) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        List<ParkingSpace> filteredSpaces = new ArrayList<>();
+        for (ParkingSpace space : parkingSpaces) {
+            if (containsIgnoreCase(space.getName(), needle) || containsIgnoreCase(space.getAddress(), needle)) {
+                filteredSpaces.add(space);
+            }
+        }
+        return filteredSpaces;
+    }
+
+    private static boolean containsIgnoreCase(String text, String lowerCaseNeedle) {
+        return text != null && text.toLowerCase(Locale.ROOT).contains(lowerCaseNeedle);
+    }
 }
\ No newline at end of file
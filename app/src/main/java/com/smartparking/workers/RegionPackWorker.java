@@ -0,0 +1,86 @@
+package com.smartparking.workers;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.smartparking.ParkingApp;
+import com.smartparking.repositories.RegionPackRepository;
+import com.smartparking.utils.MapTiles;
+import com.smartparking.utils.TileRegion;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Keeps the offline region packs current whenever the device is online: builds a missing pack,
+// otherwise applies the lots changed since its last update.
+public class RegionPackWorker extends Worker {
+    private static final String TAG = "RegionPackWorker";
+
+    private static final String PERIODIC_WORK_NAME = "region-pack";
+    private static final String ONE_TIME_WORK_NAME = "region-pack-now";
+    private static final long UPDATE_INTERVAL_HOURS = 6;
+
+    public RegionPackWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    public static void schedule(Context context) {
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(RegionPackWorker.class,
+                UPDATE_INTERVAL_HOURS, TimeUnit.HOURS)
+                .setConstraints(constraints())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 5, TimeUnit.MINUTES)
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(PERIODIC_WORK_NAME,
+                ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    // Out-of-schedule update, e.g. once freshly seeded tiles can go into the pack
+    public static void updateNow(Context context) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(RegionPackWorker.class)
+                .setConstraints(constraints())
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(ONE_TIME_WORK_NAME, ExistingWorkPolicy.REPLACE, request);
+    }
+
+    private static Constraints constraints() {
+        // Deltas are small, a full build reads one region's lots
+        return new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .setRequiresStorageNotLow(true)
+                .build();
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        RegionPackRepository regionPacks = ParkingApp.from(getApplicationContext()).getRegionPackRepository();
+        for (TileRegion region : MapTiles.SEED_REGIONS) {
+            if (isStopped()) {
+                return Result.retry();
+            }
+            try {
+                regionPacks.update(region);
+            } catch (IOException e) {
+                Log.e(TAG, "Error updating region pack " + region.getName(), e);
+                return Result.retry();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.retry();
+            }
+        }
+        return Result.success();
+    }
+}
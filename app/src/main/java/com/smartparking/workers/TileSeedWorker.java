@@ -0,0 +1,105 @@
+package com.smartparking.workers;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.smartparking.utils.MapTiles;
+import com.smartparking.utils.TileRegion;
+import com.smartparking.utils.TileSeeder;
+
+import org.osmdroid.tileprovider.tilesource.OnlineTileSourceBase;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Pre-seeds map tiles for MapTiles.SEED_REGIONS on unmetered networks while the device
+// has battery and storage to spare. Finished regions are remembered, an interrupted region
+// resumes from the tiles already in its archive.
+public class TileSeedWorker extends Worker {
+    private static final String TAG = "TileSeedWorker";
+
+    private static final String WORK_NAME = "tile-seed";
+    private static final String PREFS_NAME = "tile_seed";
+    // Bump when regions or zoom ranges change so existing installs seed again
+    private static final int SEED_VERSION = 1;
+
+    public TileSeedWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    public static void schedule(Context context) {
+        if (!MapTiles.canBulkDownload()) {
+            Log.d(TAG, "Tile source does not allow bulk downloads, not seeding");
+            return;
+        }
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .setRequiresBatteryNotLow(true)
+                .setRequiresStorageNotLow(true)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(TileSeedWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 5, TimeUnit.MINUTES)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    // True once every tile of the region is in its archive
+    public static boolean isSeeded(Context context, TileRegion region) {
+        return marker().equals(prefs(context).getString(region.getName(), null));
+    }
+
+    // Seed the region again, e.g. after its tiles were lost together with a damaged region pack
+    public static void reset(Context context, TileRegion region) {
+        prefs(context).edit().remove(region.getName()).apply();
+        schedule(context);
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static String marker() {
+        return MapTiles.getTileSource().name() + ":" + SEED_VERSION;
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        SharedPreferences prefs = prefs(context);
+        OnlineTileSourceBase tileSource = MapTiles.getTileSource();
+        String marker = marker();
+
+        for (TileRegion region : MapTiles.SEED_REGIONS) {
+            if (marker.equals(prefs.getString(region.getName(), null))) {
+                continue;
+            }
+            try {
+                TileSeeder.Result result = new TileSeeder(tileSource, MapTiles.archiveFile(context, region),
+                        context.getPackageName()).seed(region, this::isStopped);
+                if (isStopped() || !result.isComplete()) {
+                    return Result.retry();
+                }
+                prefs.edit().putString(region.getName(), marker).apply();
+                // Fold the tiles into the region pack instead of keeping two copies
+                RegionPackWorker.updateNow(context);
+            } catch (IOException e) {
+                Log.e(TAG, "Error seeding " + region.getName(), e);
+                return Result.failure();
+            }
+        }
+        return Result.success();
+    }
+}
@@ -0,0 +1,19 @@
+package com.smartparking.loadtest;
+
+// The booking operations the load harness drives. Implementations wrap either the real
+// SpotCounter against the Firestore emulator or an in-process fake.
+public interface BookingBackend {
+
+    void createLot(String lotId, int capacity) throws Exception;
+
+    // True if a spot was taken, false if the lot was sold out
+    boolean reserve(String lotId, String bookingId, String userId) throws Exception;
+
+    // True if this call gave the spot back, false if the booking was already cancelled
+    boolean release(String bookingId) throws Exception;
+
+    int availableSpots(String lotId) throws Exception;
+
+    // Transaction attempts that had to be retried because of contention, since creation
+    long conflictRetries();
+}
@@ -0,0 +1,127 @@
+package com.smartparking.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Drives simulated users booking and cancelling against a BookingBackend, all starting
+// together, then checks every lot's remaining count against the bookings still held.
+public class BookingLoadHarness {
+
+    // Share of cancels that are sent twice, to check a spot is never given back twice
+    private static final double DUPLICATE_CANCEL_RATIO = 0.1;
+
+    private final BookingBackend backend;
+    private final LoadProfile profile;
+
+    public BookingLoadHarness(BookingBackend backend, LoadProfile profile) {
+        this.backend = backend;
+        this.profile = profile;
+    }
+
+    public LoadReport run() throws Exception {
+        String runId = Long.toString(System.nanoTime(), 36);
+        List<String> lotIds = new ArrayList<>();
+        for (int i = 0; i < profile.lots; i++) {
+            String lotId = "load-" + runId + "-lot-" + i;
+            backend.createLot(lotId, profile.capacityPerLot);
+            lotIds.add(lotId);
+        }
+
+        Map<String, String> heldLotByBooking = new ConcurrentHashMap<>();
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger soldOut = new AtomicInteger();
+        AtomicInteger cancelled = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        LatencyRecorder reserveLatency = new LatencyRecorder();
+        LatencyRecorder releaseLatency = new LatencyRecorder();
+        long retriesBefore = backend.conflictRetries();
+
+        ExecutorService pool = Executors.newFixedThreadPool(profile.users);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int u = 0; u < profile.users; u++) {
+            String userId = "load-" + runId + "-user-" + u;
+            Random random = new Random(profile.seed * 1000 + u);
+            pool.execute(() -> {
+                List<String> mine = new ArrayList<>();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int op = 0; op < profile.operationsPerUser; op++) {
+                    try {
+                        if (!mine.isEmpty() && random.nextDouble() < profile.cancelRatio) {
+                            String bookingId = mine.remove(random.nextInt(mine.size()));
+                            long t = System.nanoTime();
+                            boolean released = backend.release(bookingId);
+                            releaseLatency.record(System.nanoTime() - t);
+                            if (released) {
+                                heldLotByBooking.remove(bookingId);
+                                cancelled.incrementAndGet();
+                            }
+                            if (random.nextDouble() < DUPLICATE_CANCEL_RATIO && backend.release(bookingId)) {
+                                // Shows up as an accounting mismatch too, counted here for the log
+                                errors.incrementAndGet();
+                            }
+                        } else {
+                            String lotId = lotIds.get(random.nextInt(lotIds.size()));
+                            String bookingId = userId + "-booking-" + op;
+                            long t = System.nanoTime();
+                            boolean reserved = backend.reserve(lotId, bookingId, userId);
+                            reserveLatency.record(System.nanoTime() - t);
+                            if (reserved) {
+                                heldLotByBooking.put(bookingId, lotId);
+                                mine.add(bookingId);
+                                booked.incrementAndGet();
+                            } else {
+                                soldOut.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        if (!pool.awaitTermination(30, TimeUnit.MINUTES)) {
+            pool.shutdownNow();
+        }
+        long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000;
+
+        int oversold = 0;
+        int mismatches = 0;
+        for (String lotId : lotIds) {
+            int held = 0;
+            for (String heldLot : heldLotByBooking.values()) {
+                if (heldLot.equals(lotId)) {
+                    held++;
+                }
+            }
+            oversold += Math.max(0, held - profile.capacityPerLot);
+            int available = backend.availableSpots(lotId);
+            if (available < 0) {
+                oversold -= available;
+            }
+            if (profile.capacityPerLot - available != held) {
+                mismatches++;
+            }
+        }
+
+        int operations = reserveLatency.count() + releaseLatency.count();
+        return new LoadReport(profile, elapsedMs, operations, booked.get(), soldOut.get(), cancelled.get(),
+                errors.get(), oversold, mismatches, backend.conflictRetries() - retriesBefore,
+                reserveLatency, releaseLatency);
+    }
+}
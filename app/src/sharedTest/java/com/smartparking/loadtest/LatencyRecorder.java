@@ -0,0 +1,31 @@
+package com.smartparking.loadtest;
+
+import java.util.Arrays;
+
+// Thread-safe latency sample store with exact percentiles
+public class LatencyRecorder {
+    private long[] samples = new long[1024];
+    private int count = 0;
+
+    public synchronized void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    // Nearest-rank percentile in milliseconds, 0 when empty
+    public synchronized double percentileMs(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return sorted[Math.max(0, Math.min(count - 1, rank - 1))] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,31 @@
+package com.smartparking.loadtest;
+
+// Shape of one load run. Defaults are small enough for a unit test; override them with
+// -Dloadtest.users=... and friends for real measurements.
+public class LoadProfile {
+    public int users = 32;
+    public int lots = 4;
+    public int capacityPerLot = 10;
+    public int operationsPerUser = 40;
+    // Chance that a user cancels one of their bookings instead of making a new one
+    public double cancelRatio = 0.3;
+    public long seed = 7;
+
+    public static LoadProfile fromSystemProperties() {
+        LoadProfile profile = new LoadProfile();
+        profile.users = Integer.getInteger("loadtest.users", profile.users);
+        profile.lots = Integer.getInteger("loadtest.lots", profile.lots);
+        profile.capacityPerLot = Integer.getInteger("loadtest.capacity", profile.capacityPerLot);
+        profile.operationsPerUser = Integer.getInteger("loadtest.ops", profile.operationsPerUser);
+        profile.cancelRatio = Double.parseDouble(
+                System.getProperty("loadtest.cancelRatio", String.valueOf(profile.cancelRatio)));
+        profile.seed = Long.getLong("loadtest.seed", profile.seed);
+        return profile;
+    }
+
+    @Override
+    public String toString() {
+        return users + " users x " + operationsPerUser + " ops on " + lots + " lots of "
+                + capacityPerLot + " spots, cancel ratio " + cancelRatio;
+    }
+}
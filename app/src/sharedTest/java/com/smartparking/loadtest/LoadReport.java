@@ -0,0 +1,57 @@
+package com.smartparking.loadtest;
+
+import java.util.Locale;
+
+public class LoadReport {
+    public final LoadProfile profile;
+    public final long elapsedMs;
+    public final int operations;
+    public final int booked;
+    public final int soldOut;
+    public final int cancelled;
+    public final int errors;
+    // Spots held beyond a lot's capacity, summed over lots
+    public final int oversold;
+    // Lots whose remaining count disagrees with the bookings still held
+    public final int accountingMismatches;
+    public final long conflictRetries;
+    public final LatencyRecorder reserveLatency;
+    public final LatencyRecorder releaseLatency;
+
+    LoadReport(LoadProfile profile, long elapsedMs, int operations, int booked, int soldOut, int cancelled,
+               int errors, int oversold, int accountingMismatches, long conflictRetries,
+               LatencyRecorder reserveLatency, LatencyRecorder releaseLatency) {
+        this.profile = profile;
+        this.elapsedMs = elapsedMs;
+        this.operations = operations;
+        this.booked = booked;
+        this.soldOut = soldOut;
+        this.cancelled = cancelled;
+        this.errors = errors;
+        this.oversold = oversold;
+        this.accountingMismatches = accountingMismatches;
+        this.conflictRetries = conflictRetries;
+        this.reserveLatency = reserveLatency;
+        this.releaseLatency = releaseLatency;
+    }
+
+    public double throughput() {
+        return operations * 1000.0 / Math.max(1, elapsedMs);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%s%n"
+                        + "  %d ops in %dms, %.1f ops/sec%n"
+                        + "  booked %d, sold out %d, cancelled %d, errors %d%n"
+                        + "  reserve p50/p95/p99 %.2f/%.2f/%.2f ms%n"
+                        + "  release p50/p95/p99 %.2f/%.2f/%.2f ms%n"
+                        + "  oversold %d, accounting mismatches %d, conflict retries %d",
+                profile, operations, elapsedMs, throughput(),
+                booked, soldOut, cancelled, errors,
+                reserveLatency.percentileMs(50), reserveLatency.percentileMs(95), reserveLatency.percentileMs(99),
+                releaseLatency.percentileMs(50), releaseLatency.percentileMs(95), releaseLatency.percentileMs(99),
+                oversold, accountingMismatches, conflictRetries);
+    }
+}
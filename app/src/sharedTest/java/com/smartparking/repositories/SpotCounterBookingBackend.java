@@ -0,0 +1,94 @@
+package com.smartparking.repositories;
+
+import com.google.android.gms.tasks.Task;
+import com.smartparking.loadtest.BookingBackend;
+import com.smartparking.models.Booking;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Load harness backend running the real SpotCounter, on Firestore (the emulator) in
+// instrumented tests or on an in-memory SpotStore in JVM tests
+public class SpotCounterBookingBackend implements BookingBackend {
+
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private final SpotStore store;
+    private final SpotCounter spotCounter;
+    private final long attemptsAtStart = SpotCounter.getTransactionAttempts();
+    // Each reserve or release call ends in exactly one transaction outcome
+    private final AtomicLong transactions = new AtomicLong();
+
+    public SpotCounterBookingBackend(SpotStore store) {
+        this.store = store;
+        this.spotCounter = new SpotCounter(store);
+    }
+
+    @Override
+    public void createLot(String lotId, int capacity) throws Exception {
+        Map<String, Object> lot = new HashMap<>();
+        lot.put("spaceId", lotId);
+        lot.put("name", "Load Test Lot");
+        lot.put("totalSpots", capacity);
+        lot.put(SpotCounter.FIELD_AVAILABLE_SPOTS, capacity);
+        await(store.<Void>runTransaction(tx -> {
+            tx.set("parkingSpaces/" + lotId, lot);
+            return null;
+        }));
+    }
+
+    @Override
+    public boolean reserve(String lotId, String bookingId, String userId) throws Exception {
+        long now = System.currentTimeMillis();
+        Booking booking = new Booking(bookingId, userId, lotId, "load-test-vehicle",
+                now, now + 60 * 60 * 1000, 2.0);
+        try {
+            await(spotCounter.reserveSpot(booking));
+            return true;
+        } catch (ExecutionException e) {
+            if (SpotCounter.isSoldOut((Exception) e.getCause())) {
+                return false;
+            }
+            throw e;
+        } finally {
+            transactions.incrementAndGet();
+        }
+    }
+
+    @Override
+    public boolean release(String bookingId) throws Exception {
+        try {
+            return await(spotCounter.releaseSpot(bookingId)) != null;
+        } finally {
+            transactions.incrementAndGet();
+        }
+    }
+
+    @Override
+    public int availableSpots(String lotId) throws Exception {
+        return await(spotCounter.getAvailableSpots(lotId)).intValue();
+    }
+
+    @Override
+    public long conflictRetries() {
+        return Math.max(0, SpotCounter.getTransactionAttempts() - attemptsAtStart - transactions.get());
+    }
+
+    // Tasks.await insists on an Android looper check, which the JVM tests do not have
+    private static <T> T await(Task<T> task) throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        task.addOnCompleteListener(Runnable::run, t -> done.countDown());
+        if (!done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new TimeoutException("SpotCounter call timed out");
+        }
+        if (!task.isSuccessful()) {
+            throw new ExecutionException(task.getException());
+        }
+        return task.getResult();
+    }
+}
@@ -0,0 +1,142 @@
+package com.smartparking.utils;
+
+import com.smartparking.models.Booking;
+import com.smartparking.models.ParkingSpace;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+// Deterministic synthetic parking data over Greater Mumbai for load tests. Items are
+// generated on demand, so a million bookings can be streamed into BulkWriter without
+// being held in memory. The same seed always produces the same city.
+public class SyntheticCity {
+
+    private static final double MIN_LAT = 18.90;
+    private static final double MAX_LAT = 19.30;
+    private static final double MIN_LNG = 72.77;
+    private static final double MAX_LNG = 72.99;
+
+    private static final long ONE_HOUR = 60 * 60 * 1000;
+    private static final long ONE_DAY = 24 * ONE_HOUR;
+    private static final long SLOT = 15 * 60 * 1000;
+
+    private final long seed;
+    private final int lotCount;
+    private final int userCount;
+    private final long now;
+
+    public SyntheticCity(long seed, int lotCount, int userCount) {
+        this.seed = seed;
+        this.lotCount = lotCount;
+        this.userCount = userCount;
+        // Bookings are spread around this instant, rounded so reruns line up
+        this.now = System.currentTimeMillis() / ONE_DAY * ONE_DAY;
+    }
+
+    public static String lotId(int index) {
+        return String.format(Locale.US, "synthetic-lot-%05d", index);
+    }
+
+    public static String userId(int index) {
+        return String.format(Locale.US, "synthetic-user-%05d", index);
+    }
+
+    public ParkingSpace lot(int index) {
+        Random random = new Random(seed * 31 + index);
+        ParkingSpace lot = new ParkingSpace(
+                lotId(index),
+                "Synthetic Lot " + index,
+                "Block " + (index / 100) + ", Mumbai",
+                MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT),
+                MIN_LNG + random.nextDouble() * (MAX_LNG - MIN_LNG),
+                20 + random.nextInt(381),
+                hourlyRate(random),
+                "synthetic-owner-" + (index % 500)
+        );
+        lot.setAvailableSpots(random.nextInt(lot.getTotalSpots() + 1));
+        return lot;
+    }
+
+    public Iterator<ParkingSpace> lots() {
+        return new CountingIterator<ParkingSpace>(lotCount) {
+            @Override
+            ParkingSpace create(int index) {
+                return lot(index);
+            }
+        };
+    }
+
+    // Bookings over the last 30 days and the next 7, on random lots and users
+    public Iterator<Booking> bookings(int count) {
+        Random random = new Random(seed);
+        return new CountingIterator<Booking>(count) {
+            @Override
+            Booking create(int index) {
+                int lotIndex = random.nextInt(lotCount);
+                // Same generator as lot(), so the rate matches the lot
+                double rate = hourlyRate(lotRandomForRate(lotIndex));
+                long start = now - 30 * ONE_DAY + (long) (random.nextDouble() * 37 * ONE_DAY) / SLOT * SLOT;
+                long duration = (1 + random.nextInt(8)) * ONE_HOUR;
+
+                Booking booking = new Booking(
+                        String.format(Locale.US, "synthetic-booking-%07d", index),
+                        userId(random.nextInt(userCount)),
+                        lotId(lotIndex),
+                        "synthetic-vehicle",
+                        start,
+                        start + duration,
+                        rate * duration / ONE_HOUR
+                );
+                if (random.nextInt(20) == 0) {
+                    booking.setBookingStatus("CANCELLED");
+                } else if (start + duration <= now) {
+                    booking.setBookingStatus("COMPLETED");
+                    booking.setPaymentStatus("COMPLETED");
+                } else if (start <= now) {
+                    booking.setBookingStatus("ACTIVE");
+                    booking.setPaymentStatus("COMPLETED");
+                }
+                return booking;
+            }
+        };
+    }
+
+    private Random lotRandomForRate(int index) {
+        Random random = new Random(seed * 31 + index);
+        // Skip latitude, longitude and total spots
+        random.nextDouble();
+        random.nextDouble();
+        random.nextInt(381);
+        return random;
+    }
+
+    private static double hourlyRate(Random random) {
+        return 1 + random.nextInt(15) * 0.5;
+    }
+
+    private abstract static class CountingIterator<T> implements Iterator<T> {
+        private final int count;
+        private int next = 0;
+
+        CountingIterator(int count) {
+            this.count = count;
+        }
+
+        abstract T create(int index);
+
+        @Override
+        public boolean hasNext() {
+            return next < count;
+        }
+
+        @Override
+        public T next() {
+            if (next >= count) {
+                throw new NoSuchElementException();
+            }
+            return create(next++);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.smartparking.loadtest;
+
+import com.smartparking.repositories.SpotCounterBookingBackend;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Booking load through the real SpotCounter on an in-memory store. Scale it up with system properties,
+// e.g. ./gradlew testDebugUnitTest --tests '*BookingLoadTest' -Dloadtest.users=200 -Dloadtest.ops=500
+public class BookingLoadTest {
+
+    @Test
+    public void concurrentUsers_neverOversellOrLeakSpots() throws Exception {
+        LoadProfile profile = LoadProfile.fromSystemProperties();
+        SpotCounterBookingBackend backend = new SpotCounterBookingBackend(
+                new InMemorySpotStore(Long.getLong("loadtest.rttMicros", 200)));
+
+        LoadReport report = new BookingLoadHarness(backend, profile).run();
+
+        // The report is the failure message, so a failing run shows its numbers
+        String summary = report.toString();
+        assertEquals(summary, 0, report.oversold);
+        assertEquals(summary, 0, report.accountingMismatches);
+        assertEquals(summary, profile.users * profile.operationsPerUser, report.operations + report.errors);
+        assertTrue(summary, report.booked > 0);
+        assertTrue(summary, report.booked - report.cancelled <= profile.lots * profile.capacityPerLot);
+    }
+}
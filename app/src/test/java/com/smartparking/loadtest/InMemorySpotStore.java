@@ -0,0 +1,196 @@
+package com.smartparking.loadtest;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.smartparking.repositories.SpotStore;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+// In-process stand-in for Firestore under SpotCounter. Transactions are optimistic like
+// Firestore's: reads record document versions, the commit fails if any of them changed and
+// the whole transaction is retried, up to the SDK's 5 attempts. A simulated round trip
+// between read and commit gives contention a realistic window. Calls complete before they
+// return.
+public class InMemorySpotStore implements SpotStore {
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final Map<String, Stored> documents = new HashMap<>();
+    private final long roundTripNanos;
+
+    public InMemorySpotStore(long roundTripMicros) {
+        this.roundTripNanos = roundTripMicros * 1000;
+    }
+
+    @Override
+    public <T> Task<T> runTransaction(TransactionFunction<T> function) {
+        for (int attempt = 1; ; attempt++) {
+            InMemoryTransaction tx = new InMemoryTransaction();
+            T result;
+            try {
+                result = function.apply(tx);
+            } catch (FirebaseFirestoreException e) {
+                return Tasks.forException(e);
+            }
+            LockSupport.parkNanos(roundTripNanos);
+            if (tx.commit()) {
+                return Tasks.forResult(result);
+            }
+            if (attempt == MAX_ATTEMPTS) {
+                return Tasks.forException(new FirebaseFirestoreException("Too much contention",
+                        FirebaseFirestoreException.Code.ABORTED));
+            }
+            // Firestore backs off with jitter before retrying
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(roundTripNanos + 1) * attempt);
+        }
+    }
+
+    @Override
+    public Task<Document> get(String path) {
+        LockSupport.parkNanos(roundTripNanos / 2);
+        synchronized (documents) {
+            return Tasks.forResult(snapshot(path, documents.get(path)));
+        }
+    }
+
+    @Override
+    public Task<List<Document>> getAll(String collectionPath) {
+        LockSupport.parkNanos(roundTripNanos / 2);
+        String prefix = collectionPath + "/";
+        List<Document> result = new ArrayList<>();
+        synchronized (documents) {
+            for (Map.Entry<String, Stored> entry : documents.entrySet()) {
+                String path = entry.getKey();
+                if (path.startsWith(prefix) && path.indexOf('/', prefix.length()) < 0) {
+                    result.add(snapshot(path, entry.getValue()));
+                }
+            }
+        }
+        return Tasks.forResult(result);
+    }
+
+    private static class Stored {
+        final long version;
+        final Map<String, Object> fields;
+
+        Stored(long version, Map<String, Object> fields) {
+            this.version = version;
+            this.fields = fields;
+        }
+    }
+
+    private static Document snapshot(String path, Stored stored) {
+        Map<String, Object> fields = stored != null ? stored.fields : null;
+        return new Document() {
+            @Override
+            public String getPath() {
+                return path;
+            }
+
+            @Override
+            public boolean exists() {
+                return fields != null;
+            }
+
+            @Override
+            public Long getLong(String field) {
+                Object value = fields != null ? fields.get(field) : null;
+                return value instanceof Number ? ((Number) value).longValue() : null;
+            }
+
+            @Override
+            public String getString(String field) {
+                Object value = fields != null ? fields.get(field) : null;
+                return value instanceof String ? (String) value : null;
+            }
+        };
+    }
+
+    // Objects are stored through their getters, the way Firestore maps them
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> toFields(Object data) {
+        if (data instanceof Map) {
+            return new HashMap<>((Map<String, Object>) data);
+        }
+        Map<String, Object> fields = new HashMap<>();
+        for (Method method : data.getClass().getMethods()) {
+            String name = method.getName();
+            if (name.startsWith("get") && name.length() > 3 && method.getParameterCount() == 0
+                    && !Modifier.isStatic(method.getModifiers()) && method.getDeclaringClass() != Object.class) {
+                try {
+                    fields.put(Character.toLowerCase(name.charAt(3)) + name.substring(4), method.invoke(data));
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalArgumentException("Cannot map " + data.getClass(), e);
+                }
+            }
+        }
+        return fields;
+    }
+
+    private class InMemoryTransaction implements Transaction {
+        private final Map<String, Long> readVersions = new HashMap<>();
+        private final Map<String, Map<String, Object>> writes = new LinkedHashMap<>();
+
+        @Override
+        public Document get(String path) {
+            if (!writes.isEmpty()) {
+                throw new IllegalStateException("Firestore transactions require all reads before any write");
+            }
+            // Reads take a round trip too
+            LockSupport.parkNanos(roundTripNanos / 2);
+            synchronized (documents) {
+                Stored stored = documents.get(path);
+                readVersions.put(path, stored != null ? stored.version : -1);
+                return snapshot(path, stored);
+            }
+        }
+
+        @Override
+        public void set(String path, Object data) {
+            writes.put(path, toFields(data));
+        }
+
+        @Override
+        public void update(String path, Map<String, Object> fields) {
+            Map<String, Object> merged = writes.get(path);
+            if (merged == null) {
+                synchronized (documents) {
+                    Stored stored = documents.get(path);
+                    if (stored == null) {
+                        throw new IllegalStateException("No document to update at " + path);
+                    }
+                    merged = new HashMap<>(stored.fields);
+                }
+            }
+            merged.putAll(fields);
+            writes.put(path, merged);
+        }
+
+        boolean commit() {
+            synchronized (documents) {
+                for (Map.Entry<String, Long> read : readVersions.entrySet()) {
+                    Stored current = documents.get(read.getKey());
+                    long version = current != null ? current.version : -1;
+                    if (version != read.getValue()) {
+                        return false;
+                    }
+                }
+                for (Map.Entry<String, Map<String, Object>> write : writes.entrySet()) {
+                    Stored current = documents.get(write.getKey());
+                    long version = current != null ? current.version + 1 : 0;
+                    documents.put(write.getKey(), new Stored(version, write.getValue()));
+                }
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.smartparking.utils;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks geohash encoding against published vectors and cell boundaries, and that the
+ * covering prefixes of a circle match every point inside it.
+ */
+public class GeoHashUtilsTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void encode_matchesKnownVectors() {
+        assertEquals("u4pruydqqvj", GeoHashUtils.encode(57.64911, 10.40744, 11));
+        assertEquals("ezs42", GeoHashUtils.encode(42.6, -5.6, 5));
+        assertEquals("te7u", GeoHashUtils.encode(19.1079172, 72.834547, 4));
+    }
+
+    @Test
+    public void encode_defaultsToFullPrecision() {
+        String hash = GeoHashUtils.encode(57.64911, 10.40744);
+        assertEquals(9, hash.length());
+        assertTrue("u4pruydqqvj".startsWith(hash));
+    }
+
+    @Test
+    public void encode_splitsCellsAtTheEquatorAndPrimeMeridian() {
+        // Boundaries belong to the cell to the north and east
+        assertEquals("s0000", GeoHashUtils.encode(0, 0, 5));
+        assertEquals("7zzzz", GeoHashUtils.encode(-1e-9, -1e-9, 5));
+        assertEquals("kpbpb", GeoHashUtils.encode(-1e-9, 0, 5));
+        assertEquals("ebpbp", GeoHashUtils.encode(0, -1e-9, 5));
+    }
+
+    @Test
+    public void encode_placesTheAntimeridianAtOppositeEnds() {
+        assertEquals("xbpbp", GeoHashUtils.encode(0, 180 - 1e-9, 5));
+        assertEquals("80000", GeoHashUtils.encode(0, -180, 5));
+        assertEquals("zzzz", GeoHashUtils.encode(90, 180, 4));
+        assertEquals("0000", GeoHashUtils.encode(-90, -180, 4));
+    }
+
+    @Test
+    public void coveringPrefixes_coverEveryPointInTheCircle() {
+        double[][] circles = {
+                {19.1079172, 72.834547, 2},     // Mumbai
+                {0, 0, 5},                      // Equator and prime meridian, four top-level cells
+                {-33.8688, 151.2093, 0.5},      // Sydney
+                {0.5, 179.98, 5},               // East side of the antimeridian
+                {-12.3, -179.99, 20},           // West side of the antimeridian
+                {64.1466, -21.9426, 50},        // High latitude, wide longitude span
+        };
+        for (double[] circle : circles) {
+            List<String> prefixes = GeoHashUtils.coveringPrefixes(circle[0], circle[1], circle[2]);
+            assertFalse(prefixes.contains(""));
+            for (int i = 0; i < 2000; i++) {
+                double[] point = randomPointWithin(circle[0], circle[1], circle[2]);
+                String hash = GeoHashUtils.encode(point[0], point[1]);
+                assertTrue(hash + " at " + point[0] + "," + point[1] + " outside " + prefixes,
+                        matchesAny(hash, prefixes));
+            }
+        }
+    }
+
+    @Test
+    public void coveringPrefixes_crossTheAntimeridian() {
+        List<String> prefixes = GeoHashUtils.coveringPrefixes(0.5, 179.98, 5);
+        assertTrue(matchesAny(GeoHashUtils.encode(0.5, 179.99), prefixes));
+        assertTrue(matchesAny(GeoHashUtils.encode(0.5, -179.99), prefixes));
+    }
+
+    @Test
+    public void coveringPrefixes_fallBackToEverythingForHugeRadii() {
+        List<String> prefixes = GeoHashUtils.coveringPrefixes(19.1, 72.8, 10000);
+        assertEquals(1, prefixes.size());
+        assertEquals("", prefixes.get(0));
+    }
+
+    @Test
+    public void rangeEnd_sortsAfterEveryHashWithThePrefix() {
+        String end = GeoHashUtils.rangeEnd("te7u");
+        assertTrue(GeoHashUtils.encode(19.1079172, 72.834547).compareTo(end) < 0);
+        assertTrue("te7uzzzzz".compareTo(end) < 0);
+        assertTrue("te7v".compareTo(end) > 0);
+    }
+
+    private static boolean matchesAny(String hash, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (hash.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Uniform over the disk, longitudes wrapped into [-180, 180)
+    private double[] randomPointWithin(double latitude, double longitude, double radiusInKm) {
+        while (true) {
+            double latDelta = radiusInKm / 110.574;
+            double lngDelta = radiusInKm / (111.320 * Math.cos(Math.toRadians(latitude)));
+            double lat = latitude + (random.nextDouble() * 2 - 1) * latDelta;
+            double lng = longitude + (random.nextDouble() * 2 - 1) * lngDelta;
+            if (lng >= 180) {
+                lng -= 360;
+            } else if (lng < -180) {
+                lng += 360;
+            }
+            if (GeoHashUtils.distanceKm(latitude, longitude, lat, lng) <= radiusInKm) {
+                return new double[]{lat, lng};
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.smartparking.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the interval tree against a linear scan over the same booking windows.
+ */
+public class IntervalTreeTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+
+    private final Random random = new Random(7);
+    private final Map<String, long[]> intervals = new LinkedHashMap<>();
+    private IntervalTree<String> tree;
+
+    @Before
+    public void setUp() {
+        tree = new IntervalTree<>();
+        for (int i = 0; i < 3000; i++) {
+            String id = "booking-" + i;
+            long[] interval = randomInterval();
+            intervals.put(id, interval);
+            tree.put(id, interval[0], interval[1], id);
+        }
+    }
+
+    @Test
+    public void overlapQueries_matchBruteForce() {
+        for (int i = 0; i < 200; i++) {
+            long[] window = randomInterval();
+            List<String> expected = bruteForceOverlapping(window[0], window[1]);
+            assertEquals(new HashSet<>(expected), new HashSet<>(tree.queryOverlapping(window[0], window[1])));
+            assertEquals(expected.size(), tree.countOverlapping(window[0], window[1]));
+            assertEquals(bruteForceMaxConcurrent(window[0], window[1]), tree.maxConcurrent(window[0], window[1]));
+        }
+    }
+
+    @Test
+    public void backToBackBookings_doNotOverlap() {
+        IntervalTree<String> slots = new IntervalTree<>();
+        slots.put("a", 0, HOUR, "a");
+        slots.put("b", HOUR, 2 * HOUR, "b");
+        assertEquals(1, slots.maxConcurrent(0, 2 * HOUR));
+        assertEquals(0, slots.countOverlapping(2 * HOUR, 3 * HOUR));
+        assertEquals(2, slots.countOverlapping(HOUR - 1, HOUR + 1));
+    }
+
+    @Test
+    public void updatesAndRemovals_matchBruteForce() {
+        List<String> ids = new ArrayList<>(intervals.keySet());
+        for (int i = 0; i < 1500; i++) {
+            String id = ids.get(random.nextInt(ids.size()));
+            if (random.nextBoolean()) {
+                intervals.remove(id);
+                tree.remove(id);
+            } else {
+                long[] interval = randomInterval();
+                intervals.put(id, interval);
+                tree.put(id, interval[0], interval[1], id);
+            }
+        }
+        assertEquals(intervals.size(), tree.size());
+        for (int i = 0; i < 200; i++) {
+            long[] window = randomInterval();
+            assertEquals(new HashSet<>(bruteForceOverlapping(window[0], window[1])),
+                    new HashSet<>(tree.queryOverlapping(window[0], window[1])));
+            assertEquals(bruteForceMaxConcurrent(window[0], window[1]), tree.maxConcurrent(window[0], window[1]));
+        }
+    }
+
+    private long[] randomInterval() {
+        long start = (long) (random.nextDouble() * 30 * DAY);
+        long length = HOUR / 2 + (long) (random.nextDouble() * 8 * HOUR);
+        return new long[]{start, start + length};
+    }
+
+    private List<String> bruteForceOverlapping(long start, long end) {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : intervals.entrySet()) {
+            if (entry.getValue()[0] < end && entry.getValue()[1] > start) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    // Occupancy only changes at interval starts, so checking each start point is enough
+    private int bruteForceMaxConcurrent(long start, long end) {
+        int max = 0;
+        for (long[] candidate : intervals.values()) {
+            long t = Math.max(start, candidate[0]);
+            if (t >= end || candidate[1] <= start) {
+                continue;
+            }
+            int active = 0;
+            for (long[] interval : intervals.values()) {
+                if (interval[0] <= t && interval[1] > t) {
+                    active++;
+                }
+            }
+            max = Math.max(max, active);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,54 @@
+package com.smartparking.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the metrics histogram buckets and percentiles against exact sorted samples.
+ */
+public class MetricsHistogramTest {
+
+    @Test
+    public void buckets_coverEveryValueOnce() {
+        long previousUpper = -1;
+        for (int bucket = 0; bucket < 200; bucket++) {
+            long upper = Metrics.Histogram.upperBound(bucket);
+            assertTrue(upper > previousUpper);
+            assertEquals(bucket, Metrics.Histogram.bucketFor(previousUpper + 1));
+            assertEquals(bucket, Metrics.Histogram.bucketFor(upper));
+            previousUpper = upper;
+        }
+    }
+
+    @Test
+    public void percentiles_withinBucketError() {
+        Random random = new Random(11);
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        long[] micros = new long[20000];
+        for (int i = 0; i < micros.length; i++) {
+            // Log-normal-ish latencies from tens of microseconds to seconds
+            micros[i] = (long) Math.exp(3 + random.nextDouble() * 11);
+            histogram.record(micros[i] * 1000);
+        }
+        Arrays.sort(micros);
+
+        Metrics.TimerStats stats = histogram.snapshot("test");
+        assertEquals(micros.length, stats.count);
+        assertEquals(micros[micros.length - 1] / 1000.0, stats.maxMs, 0.001);
+        assertClose(micros[(int) Math.ceil(0.50 * micros.length) - 1], stats.p50Ms);
+        assertClose(micros[(int) Math.ceil(0.95 * micros.length) - 1], stats.p95Ms);
+        assertClose(micros[(int) Math.ceil(0.99 * micros.length) - 1], stats.p99Ms);
+    }
+
+    // Reported values are the upper bound of the sample's bucket, at most 25% above it
+    private static void assertClose(long exactMicros, double reportedMs) {
+        double exactMs = exactMicros / 1000.0;
+        assertTrue("expected ~" + exactMs + " got " + reportedMs,
+                reportedMs >= exactMs && reportedMs <= exactMs * 1.25 + 0.001);
+    }
+}
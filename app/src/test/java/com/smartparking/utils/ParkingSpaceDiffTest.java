@@ -0,0 +1,136 @@
+package com.smartparking.utils;
+
+import com.smartparking.models.ParkingSpace;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks how the marker reconciliation matches lots by spaceId and which CHANGE_* flags
+ * each field sets.
+ */
+public class ParkingSpaceDiffTest {
+
+    @Test
+    public void sameItemWithSameContent_isNotAChange() {
+        ParkingSpace shown = lot("lot-1");
+        ParkingSpaceDiff diff = ParkingSpaceDiff.compute(shownMap(shown), Collections.singletonList(lot("lot-1")));
+
+        assertTrue(diff.isEmpty());
+        assertEquals(0, ParkingSpaceDiff.compare(shown, lot("lot-1")));
+    }
+
+    @Test
+    public void itemsAreMatchedBySpaceId() {
+        ParkingSpaceDiff diff = ParkingSpaceDiff.compute(shownMap(lot("lot-1"), lot("lot-2")),
+                Arrays.asList(lot("lot-2"), lot("lot-3")));
+
+        assertEquals(1, diff.getAdded().size());
+        assertEquals("lot-3", diff.getAdded().get(0).getSpaceId());
+        assertEquals(Collections.singletonList("lot-1"), diff.getRemovedIds());
+        assertTrue(diff.getChanged().isEmpty());
+        assertEquals(2, diff.size());
+    }
+
+    @Test
+    public void moving_setsPositionFlag() {
+        ParkingSpace moved = lot("lot-1");
+        moved.setLatitude(moved.getLatitude() + 0.001);
+        assertEquals(ParkingSpaceDiff.CHANGE_POSITION, ParkingSpaceDiff.compare(lot("lot-1"), moved));
+
+        moved = lot("lot-1");
+        moved.setLongitude(moved.getLongitude() - 0.001);
+        assertEquals(ParkingSpaceDiff.CHANGE_POSITION, ParkingSpaceDiff.compare(lot("lot-1"), moved));
+    }
+
+    @Test
+    public void spotCounts_setAvailabilityFlag() {
+        ParkingSpace changed = lot("lot-1");
+        changed.setAvailableSpots(3);
+        assertEquals(ParkingSpaceDiff.CHANGE_AVAILABILITY, ParkingSpaceDiff.compare(lot("lot-1"), changed));
+
+        changed = lot("lot-1");
+        changed.setTotalSpots(80);
+        assertEquals(ParkingSpaceDiff.CHANGE_AVAILABILITY, ParkingSpaceDiff.compare(lot("lot-1"), changed));
+    }
+
+    @Test
+    public void detailFields_setDetailsFlag() {
+        ParkingSpace changed = lot("lot-1");
+        changed.setName("Renamed");
+        assertEquals(ParkingSpaceDiff.CHANGE_DETAILS, ParkingSpaceDiff.compare(lot("lot-1"), changed));
+
+        changed = lot("lot-1");
+        changed.setAddress(null);
+        assertEquals(ParkingSpaceDiff.CHANGE_DETAILS, ParkingSpaceDiff.compare(lot("lot-1"), changed));
+
+        changed = lot("lot-1");
+        changed.setHourlyRate(4.5);
+        assertEquals(ParkingSpaceDiff.CHANGE_DETAILS, ParkingSpaceDiff.compare(lot("lot-1"), changed));
+
+        changed = lot("lot-1");
+        changed.setActive(false);
+        assertEquals(ParkingSpaceDiff.CHANGE_DETAILS, ParkingSpaceDiff.compare(lot("lot-1"), changed));
+    }
+
+    @Test
+    public void fieldsNotShownOnTheMap_areIgnored() {
+        ParkingSpace changed = lot("lot-1");
+        changed.setOwnerId("someone-else");
+        assertEquals(0, ParkingSpaceDiff.compare(lot("lot-1"), changed));
+    }
+
+    @Test
+    public void severalChanges_combineFlagsInThePayload() {
+        ParkingSpace changed = lot("lot-1");
+        changed.setLatitude(changed.getLatitude() + 0.001);
+        changed.setAvailableSpots(0);
+        changed.setName("Renamed");
+
+        ParkingSpaceDiff diff = ParkingSpaceDiff.compute(shownMap(lot("lot-1")), Collections.singletonList(changed));
+
+        assertEquals(1, diff.getChanged().size());
+        assertEquals(ParkingSpaceDiff.CHANGE_POSITION | ParkingSpaceDiff.CHANGE_AVAILABILITY
+                | ParkingSpaceDiff.CHANGE_DETAILS, diff.getChangeFlags(0));
+        assertTrue(diff.getAdded().isEmpty());
+        assertTrue(diff.getRemovedIds().isEmpty());
+    }
+
+    @Test
+    public void snapshot_isAnEqualCopy() {
+        ParkingSpace space = lot("lot-1");
+        ParkingSpace copy = ParkingSpaceDiff.snapshot(space);
+
+        assertNotSame(space, copy);
+        assertEquals(0, ParkingSpaceDiff.compare(space, copy));
+        assertEquals(space.getOwnerId(), copy.getOwnerId());
+        assertEquals(space.getGeohash(), copy.getGeohash());
+
+        // Later edits to the original do not reach the copy
+        space.setAvailableSpots(1);
+        assertEquals(ParkingSpaceDiff.CHANGE_AVAILABILITY, ParkingSpaceDiff.compare(copy, space));
+    }
+
+    private static ParkingSpace lot(String spaceId) {
+        ParkingSpace space = new ParkingSpace(spaceId, "Lot " + spaceId, "1 Main Road, Mumbai",
+                19.1079172, 72.834547, 40, 2.0, "owner-1");
+        space.setAvailableSpots(12);
+        return space;
+    }
+
+    private static Map<String, ParkingSpace> shownMap(ParkingSpace... spaces) {
+        Map<String, ParkingSpace> shown = new LinkedHashMap<>();
+        for (ParkingSpace space : spaces) {
+            shown.put(space.getSpaceId(), ParkingSpaceDiff.snapshot(space));
+        }
+        return shown;
+    }
+}
@@ -0,0 +1,180 @@
+package com.smartparking.utils;
+
+import com.smartparking.models.ParkingSpace;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Round-trips lots and tiles through a pack file and checks the geohash index against
+ * brute-force answers from SpatialIndex.
+ */
+public class RegionPackTest {
+
+    private static final TileRegion REGION = new TileRegion("test", 18.89, 72.77, 19.31, 73.00, 12, 13);
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("region", "." + RegionPack.FILE_EXTENSION);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void queries_matchSpatialIndex() throws Exception {
+        List<ParkingSpace> lots = randomLots(2000, 42);
+        RegionPackWriter.write(file, REGION, "tiles", null, lots, 100, 50);
+        RegionPack pack = RegionPack.open(file);
+
+        SpatialIndex<ParkingSpace> index = new SpatialIndex<>();
+        for (ParkingSpace lot : lots) {
+            index.put(lot.getSpaceId(), lot.getLatitude(), lot.getLongitude(), lot);
+        }
+
+        assertEquals(2000, pack.getLotCount());
+        assertEquals(100, pack.getChangesWatermark());
+        assertEquals(50, pack.getTombstonesWatermark());
+        assertEquals(ids(index.queryRadius(19.1, 72.85, 2.5)), ids(pack.queryRadius(19.1, 72.85, 2.5)));
+        assertEquals(ids(index.queryBoundingBox(19.0, 72.8, 19.2, 72.9)),
+                ids(pack.queryBoundingBox(19.0, 72.8, 19.2, 72.9)));
+        assertEquals(idList(index.queryNearest(19.2, 72.95, 10)), idList(pack.queryNearest(19.2, 72.95, 10)));
+    }
+
+    @Test
+    public void lots_roundTrip() throws Exception {
+        ParkingSpace lot = new ParkingSpace("lot-1", "Juhu Beach Parking", "Juhu Tara Road, Mumbai",
+                19.0988, 72.8267, 40, 30.0, null);
+        lot.setAvailableSpots(12);
+        lot.setActive(false);
+        RegionPackWriter.write(file, REGION, "tiles", null, Arrays.asList(lot), 0, 0);
+
+        ParkingSpace read = RegionPack.open(file).getParkingSpace("lot-1");
+        assertEquals("Juhu Beach Parking", read.getName());
+        assertEquals("Juhu Tara Road, Mumbai", read.getAddress());
+        assertNull(read.getOwnerId());
+        assertEquals(19.0988, read.getLatitude(), 0);
+        assertEquals(72.8267, read.getLongitude(), 0);
+        assertEquals(40, read.getTotalSpots());
+        assertEquals(12, read.getAvailableSpots());
+        assertEquals(30.0, read.getHourlyRate(), 0);
+        assertFalse(read.isActive());
+        assertEquals(lot.getGeohash(), read.getGeohash());
+
+        assertEquals(1, RegionPack.open(file).search("juhu").size());
+        assertEquals(1, RegionPack.open(file).search("TARA").size());
+        assertTrue(RegionPack.open(file).search("bandra").isEmpty());
+    }
+
+    @Test
+    public void tiles_areServedByKey() throws Exception {
+        RegionPackWriter.write(file, REGION, "tiles", (zoom, x, y) -> (x + y) % 3 == 0 ? null : tile(zoom, x, y),
+                new ArrayList<>(), 0, 0);
+        RegionPack pack = RegionPack.open(file);
+
+        int[] expected = {0};
+        REGION.forEachTile((zoom, x, y) -> {
+            ByteBuffer tile = pack.getTile(zoom, x, y);
+            if ((x + y) % 3 == 0) {
+                assertNull(tile);
+            } else {
+                byte[] bytes = new byte[tile.remaining()];
+                tile.get(bytes);
+                assertArrayEquals(tile(zoom, x, y), bytes);
+                expected[0]++;
+            }
+            return true;
+        });
+        assertEquals(expected[0], pack.getTileCount());
+        assertNull(pack.getTile(11, 0, 0));
+    }
+
+    @Test
+    public void deltaUpdates_keepTilesAndCompact() throws Exception {
+        RegionPackWriter.write(file, REGION, "tiles", RegionPackTest::tile, randomLots(100, 1), 1, 1);
+        RegionPack pack = RegionPack.open(file);
+        int tileCount = pack.getTileCount();
+        long builtSize = file.length();
+
+        for (int version = 2; version < 200; version++) {
+            RegionPackWriter.updateLots(pack, randomLots(100, version), version, version);
+            pack = RegionPack.open(file);
+            assertEquals(version, pack.getChangesWatermark());
+            assertEquals(100, pack.getLotCount());
+            assertEquals(tileCount, pack.getTileCount());
+        }
+        assertArrayEquals(tile(12, 2876, 1826), bytes(pack.getTile(12, 2876, 1826)));
+        // Superseded sections were dropped along the way
+        assertTrue(file.length() < builtSize + 2 * 1024 * 1024);
+    }
+
+    @Test
+    public void damagedHeader_isRejected() throws Exception {
+        RegionPackWriter.write(file, REGION, "tiles", null, randomLots(10, 3), 0, 0);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(RegionPack.H_LOTS_OFFSET + 7);
+            raf.write(0x7F);
+        }
+        try {
+            RegionPack.open(file);
+            fail("Damaged header accepted");
+        } catch (java.io.IOException expected) {
+            // Treated as no pack, the next update rebuilds it
+        }
+    }
+
+    private static List<ParkingSpace> randomLots(int count, long seed) {
+        Random random = new Random(seed);
+        List<ParkingSpace> lots = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double lat = REGION.getSouth() + random.nextDouble() * (REGION.getNorth() - REGION.getSouth());
+            double lng = REGION.getWest() + random.nextDouble() * (REGION.getEast() - REGION.getWest());
+            lots.add(new ParkingSpace("lot-" + i, "Lot " + i, "Street " + i, lat, lng, 20, 40.0, "owner"));
+        }
+        return lots;
+    }
+
+    private static byte[] tile(int zoom, int x, int y) {
+        return (zoom + "/" + x + "/" + y).getBytes();
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static Set<String> ids(List<ParkingSpace> spaces) {
+        return new HashSet<>(idList(spaces));
+    }
+
+    private static List<String> idList(List<ParkingSpace> spaces) {
+        List<String> ids = new ArrayList<>();
+        for (ParkingSpace space : spaces) {
+            ids.add(space.getSpaceId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,142 @@
+package com.smartparking.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the spatial index against a brute-force Haversine scan over the same points.
+ */
+public class SpatialIndexTest {
+
+    private static final double CENTER_LAT = 19.1079172;
+    private static final double CENTER_LNG = 72.834547;
+
+    private final Random random = new Random(42);
+    private final Map<String, double[]> points = new LinkedHashMap<>();
+    private SpatialIndex<String> index;
+
+    @Before
+    public void setUp() {
+        List<SpatialIndex.Entry<String>> entries = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String id = "space-" + i;
+            double[] point = randomPoint();
+            points.put(id, point);
+            entries.add(new SpatialIndex.Entry<>(id, point[0], point[1], id));
+        }
+        index = new SpatialIndex<>();
+        index.rebuild(entries);
+    }
+
+    @Test
+    public void radiusQuery_matchesBruteForce() {
+        for (int i = 0; i < 50; i++) {
+            double[] center = randomPoint();
+            double radius = 0.5 + random.nextDouble() * 10;
+            assertEquals(bruteForceRadius(center, radius),
+                    new HashSet<>(index.queryRadius(center[0], center[1], radius)));
+        }
+    }
+
+    @Test
+    public void boundingBoxQuery_matchesBruteForce() {
+        for (int i = 0; i < 50; i++) {
+            double[] a = randomPoint();
+            double[] b = randomPoint();
+            double minLat = Math.min(a[0], b[0]);
+            double maxLat = Math.max(a[0], b[0]);
+            double minLng = Math.min(a[1], b[1]);
+            double maxLng = Math.max(a[1], b[1]);
+
+            HashSet<String> expected = new HashSet<>();
+            for (Map.Entry<String, double[]> entry : points.entrySet()) {
+                double[] p = entry.getValue();
+                if (p[0] >= minLat && p[0] <= maxLat && p[1] >= minLng && p[1] <= maxLng) {
+                    expected.add(entry.getKey());
+                }
+            }
+            assertEquals(expected, new HashSet<>(index.queryBoundingBox(minLat, minLng, maxLat, maxLng)));
+        }
+    }
+
+    @Test
+    public void nearestQuery_matchesBruteForce() {
+        for (int i = 0; i < 50; i++) {
+            double[] center = randomPoint();
+            int k = 1 + random.nextInt(20);
+            assertEquals(bruteForceNearest(center, k), index.queryNearest(center[0], center[1], k));
+        }
+    }
+
+    @Test
+    public void incrementalUpdates_matchBruteForce() {
+        List<String> ids = new ArrayList<>(points.keySet());
+        for (int i = 0; i < 3000; i++) {
+            int op = random.nextInt(3);
+            if (op == 0) {
+                String id = "new-" + i;
+                double[] point = randomPoint();
+                points.put(id, point);
+                ids.add(id);
+                index.put(id, point[0], point[1], id);
+            } else if (op == 1 && !ids.isEmpty()) {
+                String id = ids.get(random.nextInt(ids.size()));
+                double[] point = randomPoint();
+                points.put(id, point);
+                index.put(id, point[0], point[1], id);
+            } else if (!ids.isEmpty()) {
+                String id = ids.remove(random.nextInt(ids.size()));
+                points.remove(id);
+                index.remove(id);
+            }
+        }
+
+        assertEquals(points.size(), index.size());
+        for (int i = 0; i < 30; i++) {
+            double[] center = randomPoint();
+            double radius = 0.5 + random.nextDouble() * 10;
+            assertEquals(bruteForceRadius(center, radius),
+                    new HashSet<>(index.queryRadius(center[0], center[1], radius)));
+            assertEquals(bruteForceNearest(center, 10), index.queryNearest(center[0], center[1], 10));
+        }
+    }
+
+    private double[] randomPoint() {
+        // Roughly a 40km square around Mumbai
+        return new double[]{
+                CENTER_LAT + (random.nextDouble() - 0.5) * 0.4,
+                CENTER_LNG + (random.nextDouble() - 0.5) * 0.4
+        };
+    }
+
+    private HashSet<String> bruteForceRadius(double[] center, double radius) {
+        HashSet<String> expected = new HashSet<>();
+        for (Map.Entry<String, double[]> entry : points.entrySet()) {
+            double[] p = entry.getValue();
+            if (GeoHashUtils.distanceKm(center[0], center[1], p[0], p[1]) <= radius) {
+                expected.add(entry.getKey());
+            }
+        }
+        return expected;
+    }
+
+    private List<String> bruteForceNearest(double[] center, int k) {
+        List<String> ids = new ArrayList<>(points.keySet());
+        Collections.sort(ids, Comparator.comparingDouble(id -> {
+            double[] p = points.get(id);
+            return GeoHashUtils.distanceKm(center[0], center[1], p[0], p[1]);
+        }));
+        return ids.subList(0, Math.min(k, ids.size()));
+    }
+}
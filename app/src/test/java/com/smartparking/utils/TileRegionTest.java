@@ -0,0 +1,54 @@
+package com.smartparking.utils;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks tile numbering against known OSM tiles and the walk against the tile count.
+ */
+public class TileRegionTest {
+
+    private static final TileRegion MUMBAI = new TileRegion("mumbai", 18.89, 72.77, 19.31, 73.00, 12, 17);
+
+    @Test
+    public void tileNumbers_matchOsmScheme() {
+        assertEquals(0, TileRegion.tileX(-180, 0));
+        assertEquals(0, TileRegion.tileY(0, 0));
+        // Vile Parle, Mumbai at zoom 12
+        assertEquals(2876, TileRegion.tileX(72.834547, 12));
+        assertEquals(1826, TileRegion.tileY(19.1079172, 12));
+        // Poles and the antimeridian clamp into range
+        assertEquals(0, TileRegion.tileY(90, 5));
+        assertEquals(31, TileRegion.tileY(-90, 5));
+        assertEquals(31, TileRegion.tileX(180, 5));
+    }
+
+    @Test
+    public void walk_visitsEveryTileOnce() {
+        Set<String> seen = new HashSet<>();
+        MUMBAI.forEachTile((zoom, x, y) -> {
+            assertTrue(seen.add(zoom + "/" + x + "/" + y));
+            return true;
+        });
+        assertEquals(MUMBAI.tileCount(), seen.size());
+    }
+
+    @Test
+    public void walk_stopsWhenVisitorDeclines() {
+        int[] visited = {0};
+        MUMBAI.forEachTile((zoom, x, y) -> ++visited[0] < 10);
+        assertEquals(10, visited[0]);
+    }
+
+    @Test
+    public void contains_checksBounds() {
+        assertTrue(MUMBAI.contains(19.1079172, 72.834547));
+        assertFalse(MUMBAI.contains(37.7749, -122.4194));
+    }
+}
@@ -0,0 +1,54 @@
+plugins {
+    alias(libs.plugins.android.test)
+}
+
+// Microbenchmarks for the app's data-layer hot paths. They run inside the app's process
+// against its non-debuggable "benchmark" build:
+//   ./gradlew :benchmark:connectedBenchmarkAndroidTest
+// Results are written as JSON (one entry per benchmark with min/median/max ns and
+// allocations) under build/outputs/connected_android_test_additional_output, so runs can
+// be compared between releases.
+android {
+    namespace = "com.smartparking.benchmark"
+    compileSdk = 35
+
+    defaultConfig {
+        minSdk = 30
+        targetSdk = 35
+
+        testInstrumentationRunner = "androidx.benchmark.junit4.AndroidBenchmarkRunner"
+        testInstrumentationRunnerArguments["androidx.benchmark.output.enable"] = "true"
+    }
+
+    buildTypes {
+        create("benchmark") {
+            isDebuggable = true
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+        }
+    }
+
+    targetProjectPath = ":app"
+
+    // Test data generators shared with the app's tests, e.g. SyntheticCity
+    sourceSets {
+        getByName("main").java.srcDir("../app/src/sharedTest/java")
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_11
+        targetCompatibility = JavaVersion.VERSION_11
+    }
+}
+
+dependencies {
+    implementation(libs.androidx.benchmark.junit4)
+    implementation(libs.ext.junit)
+    implementation("androidx.room:room-runtime:2.6.1")
+}
+
+androidComponents {
+    beforeVariants(selector().all()) {
+        it.enable = it.buildType == "benchmark"
+    }
+}
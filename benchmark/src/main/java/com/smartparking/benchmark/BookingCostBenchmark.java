@@ -0,0 +1,40 @@
+package com.smartparking.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.smartparking.ParkingApp;
+import com.smartparking.repositories.BookingRepository;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+// BookingRepository.createBookingObject: id generation and cost computation per booking
+@RunWith(AndroidJUnit4.class)
+public class BookingCostBenchmark {
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private BookingRepository bookingRepository;
+
+    @Before
+    public void getRepository() {
+        bookingRepository = ParkingApp.from(InstrumentationRegistry.getInstrumentation().getTargetContext())
+                .getBookingRepository();
+    }
+
+    @Test
+    public void createBookingObject() {
+        BenchmarkState state = benchmarkRule.getState();
+        long start = System.currentTimeMillis();
+        while (state.keepRunning()) {
+            bookingRepository.createBookingObject("user", "space", "vehicle",
+                    start, start + 2 * 60 * 60 * 1000, 2.5);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.smartparking.benchmark;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.smartparking.models.Booking;
+import com.smartparking.models.BookingDao;
+import com.smartparking.models.ParkingDatabase;
+import com.smartparking.utils.SyntheticCity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Room bulk insert and the per-space capacity query on an on-disk database
+@RunWith(AndroidJUnit4.class)
+public class BookingDaoBenchmark {
+
+    private static final String DB_NAME = "booking_dao_benchmark";
+    private static final int LOTS = 200;
+    private static final int PAGE_SIZE = 500;
+    private static final int ROWS = 20_000;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private Context context;
+    private ParkingDatabase database;
+    private BookingDao bookingDao;
+    private final List<Booking> bookings = new ArrayList<>(ROWS);
+
+    @Before
+    public void createDatabase() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        database = Room.databaseBuilder(context, ParkingDatabase.class, DB_NAME).build();
+        bookingDao = database.bookingDao();
+
+        Iterator<Booking> generated = new SyntheticCity(1, LOTS, 1000).bookings(ROWS);
+        while (generated.hasNext()) {
+            bookings.add(generated.next());
+        }
+    }
+
+    @After
+    public void closeDatabase() {
+        database.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void insertAllPage() {
+        List<Booking> page = bookings.subList(0, PAGE_SIZE);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            bookingDao.deleteAllBookings();
+            state.resumeTiming();
+            bookingDao.insertAll(page);
+        }
+    }
+
+    @Test
+    public void occupyingBookingsForSpace() {
+        for (int from = 0; from < ROWS; from += PAGE_SIZE) {
+            bookingDao.insertAll(bookings.subList(from, Math.min(ROWS, from + PAGE_SIZE)));
+        }
+        String spaceId = SyntheticCity.lotId(LOTS / 2);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            bookingDao.getOccupyingBookingsForParkingSpaceSync(spaceId);
+        }
+    }
+}
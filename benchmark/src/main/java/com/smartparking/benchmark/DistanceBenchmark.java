@@ -0,0 +1,54 @@
+package com.smartparking.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.smartparking.utils.GeoHashUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+// Haversine distance as used by ParkingRepository.calculateDistance for the nearby-search
+// range check, over a city-sized array of lots
+@RunWith(AndroidJUnit4.class)
+public class DistanceBenchmark {
+
+    private static final int POINTS = 50_000;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final double[] latitudes = new double[POINTS];
+    private final double[] longitudes = new double[POINTS];
+
+    @Before
+    public void createPoints() {
+        Random random = new Random(1);
+        for (int i = 0; i < POINTS; i++) {
+            latitudes[i] = 18.90 + random.nextDouble() * 0.40;
+            longitudes[i] = 72.77 + random.nextDouble() * 0.22;
+        }
+    }
+
+    @Test
+    public void distanceToEveryLot() {
+        BenchmarkState state = benchmarkRule.getState();
+        int inRange = 0;
+        while (state.keepRunning()) {
+            for (int i = 0; i < POINTS; i++) {
+                if (GeoHashUtils.distanceKm(19.1031, 72.8517, latitudes[i], longitudes[i]) <= 5.0) {
+                    inRange++;
+                }
+            }
+        }
+        // Keep the loop from being optimized away
+        if (inRange < 0) {
+            throw new AssertionError();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.smartparking.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.smartparking.models.ParkingSpace;
+import com.smartparking.utils.SyntheticCity;
+import com.smartparking.viewmodels.MapViewModel;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// MapViewModel.searchParkingSpaces text filter over every cached lot
+@RunWith(AndroidJUnit4.class)
+public class SearchFilterBenchmark {
+
+    private static final int LOTS = 10_000;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final List<ParkingSpace> lots = new ArrayList<>(LOTS);
+
+    @Before
+    public void createLots() {
+        Iterator<ParkingSpace> city = new SyntheticCity(1, LOTS, 1).lots();
+        while (city.hasNext()) {
+            lots.add(city.next());
+        }
+    }
+
+    @Test
+    public void filterByName() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            MapViewModel.filterParkingSpaces(lots, "Lot 12");
+        }
+    }
+
+    @Test
+    public void filterNoMatch() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            MapViewModel.filterParkingSpaces(lots, "no such garage");
+        }
+    }
+}
@@ -1,5 +1,6 @@
 plugins {
     alias(libs.plugins.android.application) apply false
+    alias(libs.plugins.android.test) apply false
     id("com.google.gms.google-services") version "4.4.0" apply false
     id("androidx.navigation.safeargs") version "2.7.5" apply false
 }
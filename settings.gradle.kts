@@ -22,3 +22,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "SmartParkingApp"
 include(":app")
+include(":benchmark")